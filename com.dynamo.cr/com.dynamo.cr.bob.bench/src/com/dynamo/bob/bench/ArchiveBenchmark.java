@@ -0,0 +1,99 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+// 
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+// 
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+
+package com.dynamo.bob.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dynamo.bob.archive.ArchiveBuilder;
+import com.dynamo.bob.archive.ManifestBuilder;
+import com.dynamo.liveupdate.proto.Manifest.HashAlgorithm;
+
+/**
+ * Writing the game archive (arci/arcd) from the compiled content of a project.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ArchiveBenchmark {
+
+    @Param({"500", "2000"})
+    public int fileCount;
+
+    private File contentRoot;
+    private File outputIndex;
+    private File outputData;
+    private Path resourcePackDir;
+    private List<String> paths;
+
+    @Setup
+    public void setup() throws IOException {
+        contentRoot = Files.createTempDirectory("bob-bench-archive").toFile();
+        outputIndex = new File(contentRoot, "game.arci");
+        outputData = new File(contentRoot, "game.arcd");
+        resourcePackDir = Files.createTempDirectory(contentRoot.toPath(), "resourcepack");
+        paths = Fixtures.createArchiveContent(contentRoot, new Random(Fixtures.SEED), fileCount);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(contentRoot);
+    }
+
+    @Benchmark
+    public byte[] write() throws IOException {
+        ManifestBuilder manifestBuilder = new ManifestBuilder();
+        manifestBuilder.setResourceHashAlgorithm(HashAlgorithm.HASH_SHA1);
+        ArchiveBuilder archiveBuilder = new ArchiveBuilder(contentRoot.getAbsolutePath(), manifestBuilder);
+        for (String path : paths) {
+            archiveBuilder.add(path, true);
+        }
+
+        RandomAccessFile archiveIndex = new RandomAccessFile(outputIndex, "rw");
+        RandomAccessFile archiveData = new RandomAccessFile(outputData, "rw");
+        try {
+            archiveIndex.setLength(0);
+            archiveData.setLength(0);
+            archiveBuilder.write(archiveIndex, archiveData, resourcePackDir, new ArrayList<String>());
+        } finally {
+            archiveIndex.close();
+            archiveData.close();
+        }
+        return archiveBuilder.getArchiveIndexHash();
+    }
+}
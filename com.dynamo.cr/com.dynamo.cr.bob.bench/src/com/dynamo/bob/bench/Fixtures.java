@@ -0,0 +1,274 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+// 
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+// 
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.bench;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.FileUtils;
+
+import com.dynamo.bob.font.DistanceFieldGenerator;
+import com.dynamo.bob.textureset.TextureSetLayout.Rect;
+
+/**
+ * Generated benchmark input. Everything is derived from a seeded Random, so
+ * that the same fixtures are used from run to run and results can be compared.
+ */
+public class Fixtures {
+
+    public static final long SEED = 0x5eed;
+
+    public static void writeFile(File root, String path, byte[] content) throws IOException {
+        FileUtils.writeByteArrayToFile(new File(root, path), content);
+    }
+
+    public static void writeFile(File root, String path, String content) throws IOException {
+        writeFile(root, path, content.getBytes("UTF-8"));
+    }
+
+    /**
+     * Rectangles with the size distribution of a typical sprite atlas; mostly
+     * small images with the occasional large background.
+     */
+    public static List<Rect> createRects(Random random, int count) {
+        List<Rect> rects = new ArrayList<Rect>(count);
+        for (int i = 0; i < count; ++i) {
+            int max = random.nextInt(20) == 0 ? 256 : 64;
+            rects.add(new Rect("rect" + i, i, 8 + random.nextInt(max), 8 + random.nextInt(max)));
+        }
+        return rects;
+    }
+
+    /**
+     * A sprite with a transparent border around an opaque blob, so that hull
+     * generation and trimming have something to do.
+     */
+    public static BufferedImage createSprite(Random random, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_4BYTE_ABGR);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(new Color(random.nextInt(0x1000000)));
+        int bw = width / 4 + random.nextInt(Math.max(1, width / 2));
+        int bh = height / 4 + random.nextInt(Math.max(1, height / 2));
+        g.fillOval((width - bw) / 2, (height - bh) / 2, bw, bh);
+        g.setColor(new Color(random.nextInt(0x1000000)));
+        g.fillRect(width / 3, height / 3, Math.max(1, width / 6), Math.max(1, height / 2));
+        g.dispose();
+        return image;
+    }
+
+    public static List<BufferedImage> createSprites(Random random, List<Rect> rects) {
+        List<BufferedImage> images = new ArrayList<BufferedImage>(rects.size());
+        for (Rect rect : rects) {
+            images.add(createSprite(random, rect.width, rect.height));
+        }
+        return images;
+    }
+
+    public static Shape getGlyphOutline(Font font, char c) {
+        FontRenderContext context = new FontRenderContext(new AffineTransform(), true, true);
+        return font.createGlyphVector(context, new char[] { c }).getGlyphOutline(0);
+    }
+
+    /**
+     * A glyph outline, flattened into line segments the way Fontc does
+     * before rendering a distance field.
+     */
+    public static DistanceFieldGenerator createGlyph(Shape outline) {
+        DistanceFieldGenerator generator = new DistanceFieldGenerator();
+        double[] coords = new double[6];
+        double startX = 0, startY = 0, lastX = 0, lastY = 0;
+        for (PathIterator it = outline.getPathIterator(null, 0.1); !it.isDone(); it.next()) {
+            switch (it.currentSegment(coords)) {
+            case PathIterator.SEG_MOVETO:
+                startX = lastX = coords[0];
+                startY = lastY = coords[1];
+                break;
+            case PathIterator.SEG_LINETO:
+                generator.addLine(lastX, lastY, coords[0], coords[1]);
+                lastX = coords[0];
+                lastY = coords[1];
+                break;
+            case PathIterator.SEG_CLOSE:
+                generator.addLine(lastX, lastY, startX, startY);
+                lastX = startX;
+                lastY = startY;
+                break;
+            }
+        }
+        return generator;
+    }
+
+    /**
+     * Data with the mix of compressibility found in a game archive; text
+     * formats compress well while images and sounds barely compress at all.
+     */
+    public static byte[] createResourceData(Random random, int size) {
+        byte[] data = new byte[size];
+        if (random.nextBoolean()) {
+            random.nextBytes(data);
+        } else {
+            String text = createLuaSource(random, 1 + size / 512, "modules.common");
+            byte[] textBytes = text.getBytes();
+            for (int i = 0; i < size; ++i) {
+                data[i] = textBytes[i % textBytes.length];
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Write files for an archive, with sizes ranging from small compiled
+     * components to a few large textures.
+     * @return the absolute paths of the files
+     */
+    public static List<String> createArchiveContent(File root, Random random, int count) throws IOException {
+        String[] exts = new String[] { "goc", "spritec", "texturec", "luac", "scriptc", "collectionc" };
+        List<String> paths = new ArrayList<String>(count);
+        for (int i = 0; i < count; ++i) {
+            String ext = exts[random.nextInt(exts.length)];
+            int size = ext.equals("texturec") ? 64 * 1024 + random.nextInt(512 * 1024) : 256 + random.nextInt(16 * 1024);
+            String path = String.format("content/%d/file%d.%s", i % 16, i, ext);
+            writeFile(root, path, createResourceData(random, size));
+            paths.add(new File(root, path).getAbsolutePath());
+        }
+        return paths;
+    }
+
+    /**
+     * A Lua script in the style of a game script, with requires, script
+     * properties, comments and strings.
+     * @param module module to require, or null for a script without requires
+     */
+    public static String createLuaSource(Random random, int functionCount, String module) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("--[[\n  Generated script\n  require \"commented.out\"\n--]]\n\n");
+        for (int i = 0; module != null && i < 4; ++i) {
+            switch (i) {
+            case 0: sb.append(String.format("local m%d = require \"%s\"\n", i, module)); break;
+            case 1: sb.append(String.format("local m%d = require(\"%s\") -- comment\n", i, module)); break;
+            case 2: sb.append(String.format("local m%d = require '%s'\n", i, module)); break;
+            default: sb.append(String.format("local m%d = require('%s').value\n", i, module)); break;
+            }
+        }
+        sb.append("\n");
+        sb.append("go.property(\"speed\", 10.5)\n");
+        sb.append("go.property(\"target\", hash(\"player\"))\n");
+        sb.append("go.property(\"offset\", vmath.vector3(1, 2, 3)) -- offset\n");
+        sb.append("go.property(\"enabled\", true)\n");
+        sb.append("go.property(\"receiver\", msg.url(\"#sprite\"))\n\n");
+        for (int i = 0; i < functionCount; ++i) {
+            sb.append(String.format("local function update_%d(self, dt)\n", i));
+            sb.append("    -- Integrate the position\n");
+            sb.append(String.format("    local p = go.get_position() + vmath.vector3(%d * dt, 0, 0)\n", random.nextInt(1000)));
+            sb.append(String.format("    local s = 'require \"not_a_module\" %d'\n", i));
+            sb.append("    if p.x > self.speed then\n");
+            sb.append(String.format("        msg.post(self.receiver, \"hit_%d\", { x = p.x, text = \"--[[ not a comment ]]\" })\n", i));
+            sb.append("    end\n");
+            sb.append("    go.set_position(p)\n");
+            sb.append("end\n\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Minified Lua, with the whole script on a single line.
+     */
+    public static String createMinifiedLuaSource(Random random, int functionCount, String module) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < functionCount; ++i) {
+            sb.append(String.format("local m%d=require(\"%s\");", i, module));
+            sb.append(String.format("local function f%d(a,b) if a>b then return \"x%d\" else return b..'require \"y\"' end end;", i, random.nextInt(1000)));
+        }
+        sb.append("\n");
+        return sb.toString();
+    }
+
+    /**
+     * A collection with instances laid out in a grid, in the text format
+     * written by the editor.
+     */
+    public static String createCollection(String name, int instanceCount, String prototype) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("name: \"%s\"\n", name));
+        for (int i = 0; i < instanceCount; ++i) {
+            sb.append("instances {\n");
+            sb.append(String.format("  id: \"instance%d\"\n", i));
+            sb.append(String.format("  prototype: \"%s\"\n", prototype));
+            sb.append(String.format("  position {\n    x: %d.0\n    y: %d.0\n    z: 0.0\n  }\n", (i % 100) * 32, (i / 100) * 32));
+            sb.append("  rotation {\n    x: 0.0\n    y: 0.0\n    z: 0.0\n    w: 1.0\n  }\n");
+            sb.append("  scale3 {\n    x: 1.0\n    y: 1.0\n    z: 1.0\n  }\n");
+            sb.append("}\n");
+        }
+        sb.append("scale_along_z: 0\n");
+        return sb.toString();
+    }
+
+    /**
+     * A project with resourceCount source files: images packed in atlases,
+     * game objects with script components, the Lua modules they require and
+     * a collection that spawns the game objects.
+     */
+    public static void createProject(File root, Random random, int resourceCount) throws IOException {
+        int count = Math.max(1, resourceCount / 4);
+
+        writeFile(root, "game.project", "[display]\nwidth=640\nheight=480\n\n[bootstrap]\nmain_collection = /main/main.collectionc\n");
+        writeFile(root, "builtins/render/default.render", "script: \"/builtins/render/default.render_script\"\n");
+        writeFile(root, "builtins/render/default.render_script", "");
+        writeFile(root, "builtins/render/default.display_profiles", "");
+        writeFile(root, "builtins/graphics/default.texture_profiles", "");
+        writeFile(root, "builtins/input/default.gamepads", "");
+        writeFile(root, "input/game.input_binding", "");
+
+        int imagesPerAtlas = 64;
+        StringBuilder atlas = new StringBuilder();
+        for (int i = 0; i < count; ++i) {
+            String path = String.format("images/image%d.png", i);
+            File file = new File(root, path);
+            file.getParentFile().mkdirs();
+            ImageIO.write(createSprite(random, 16 + random.nextInt(64), 16 + random.nextInt(64)), "png", file);
+            atlas.append(String.format("images {\n  image: \"/%s\"\n}\n", path));
+            if ((i + 1) % imagesPerAtlas == 0 || i == count - 1) {
+                writeFile(root, String.format("atlases/atlas%d.atlas", i / imagesPerAtlas), atlas.toString());
+                atlas.setLength(0);
+            }
+        }
+
+        StringBuilder collection = new StringBuilder("name: \"main\"\n");
+        for (int i = 0; i < count; ++i) {
+            // Each module requires the previous one, so that there are chains of dependencies
+            String required = i > 0 ? String.format("modules.module%d", i - 1) : null;
+            writeFile(root, String.format("modules/module%d.lua", i), createLuaSource(random, 4, required) + "\nreturn {}\n");
+            writeFile(root, String.format("scripts/script%d.script", i), createLuaSource(random, 8, String.format("modules.module%d", i)));
+            writeFile(root, String.format("objects/object%d.go", i),
+                    String.format("components {\n  id: \"script\"\n  component: \"/scripts/script%d.script\"\n}\n", i));
+            collection.append(String.format("instances {\n  id: \"object%d\"\n  prototype: \"/objects/object%d.go\"\n}\n", i, i));
+        }
+        collection.append("scale_along_z: 0\n");
+        writeFile(root, "main/main.collection", collection.toString());
+    }
+}
@@ -0,0 +1,83 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+// 
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+// 
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+
+package com.dynamo.bob.bench;
+
+import java.awt.Font;
+import java.awt.Shape;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.dynamo.bob.font.DistanceFieldGenerator;
+
+/**
+ * Distance field rendering of the printable ASCII glyphs of a font, which is
+ * the bulk of the work when building a distance field font.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class FontBenchmark {
+
+    private static final int PADDING = 4;
+
+    @Param({"32", "96"})
+    public int fontSize;
+
+    private List<DistanceFieldGenerator> generators;
+    private List<Rectangle2D> bounds;
+
+    @Setup
+    public void setup() {
+        Font font = new Font(Font.SANS_SERIF, Font.PLAIN, fontSize);
+        generators = new ArrayList<DistanceFieldGenerator>();
+        bounds = new ArrayList<Rectangle2D>();
+        for (char c = 33; c < 127; ++c) {
+            Shape outline = Fixtures.getGlyphOutline(font, c);
+            generators.add(Fixtures.createGlyph(outline));
+            bounds.add(outline.getBounds2D());
+        }
+    }
+
+    @Benchmark
+    public void renderDistanceFields(Blackhole blackhole) {
+        for (int i = 0; i < generators.size(); ++i) {
+            Rectangle2D b = bounds.get(i);
+            int width = (int) Math.ceil(b.getWidth()) + PADDING * 2;
+            int height = (int) Math.ceil(b.getHeight()) + PADDING * 2;
+            double u0 = b.getMinX() - PADDING;
+            double v0 = b.getMinY() - PADDING;
+            double[] output = new double[width * height];
+            generators.get(i).render(output, u0, v0, u0 + width, v0 + height, width, height);
+            blackhole.consume(output);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+// 
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+// 
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+
+package com.dynamo.bob.bench;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dynamo.bob.pipeline.LuaScanner;
+import com.dynamo.bob.pipeline.LuaScanner.Property;
+
+/**
+ * Scanning of Lua sources for requires and script properties, done for every
+ * script and module when the project is built, compared with the earlier
+ * regular expression based scanner.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class LuaScannerBenchmark {
+
+    // A typical script, and a large generated module
+    @Param({"20", "1000"})
+    public int functionCount;
+
+    @Param({"false", "true"})
+    public boolean minified;
+
+    private String source;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(Fixtures.SEED);
+        if (minified) {
+            source = Fixtures.createMinifiedLuaSource(random, functionCount, "modules.common");
+        } else {
+            source = Fixtures.createLuaSource(random, functionCount, "modules.common");
+        }
+    }
+
+    @Benchmark
+    public List<String> scan() {
+        return LuaScanner.scan(source);
+    }
+
+    @Benchmark
+    public List<Property> scanProperties() {
+        return LuaScanner.scanProperties(source);
+    }
+
+    @Benchmark
+    public String stripProperties() {
+        return LuaScanner.stripProperties(source);
+    }
+
+    @Benchmark
+    public List<String> regexScan() {
+        return RegexLuaScanner.scan(source);
+    }
+
+    @Benchmark
+    public List<Property> regexScanProperties() {
+        return RegexLuaScanner.scanProperties(source);
+    }
+
+    @Benchmark
+    public String regexStripProperties() {
+        return RegexLuaScanner.stripProperties(source);
+    }
+}
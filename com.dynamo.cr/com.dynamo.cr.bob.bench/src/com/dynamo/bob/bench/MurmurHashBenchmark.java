@@ -0,0 +1,72 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+// 
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+// 
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+
+package com.dynamo.bob.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dynamo.bob.util.MurmurHash;
+
+/**
+ * Hashing of resource paths and ids, done for every reference in the
+ * compiled content, and of resource data.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class MurmurHashBenchmark {
+
+    private List<String> paths;
+    private byte[] data;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(Fixtures.SEED);
+        paths = new ArrayList<String>();
+        for (int i = 0; i < 10000; ++i) {
+            paths.add(String.format("/main/level%d/objects/object%d.goc", random.nextInt(20), i));
+        }
+        data = Fixtures.createResourceData(random, 1024 * 1024);
+    }
+
+    @Benchmark
+    public long hashPaths() {
+        long hash = 0;
+        for (String path : paths) {
+            hash ^= MurmurHash.hash64(path);
+        }
+        return hash;
+    }
+
+    @Benchmark
+    public long hashData() {
+        return MurmurHash.hash64(data, data.length);
+    }
+}
@@ -0,0 +1,109 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+// 
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+// 
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+
+package com.dynamo.bob.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dynamo.bob.ClassLoaderScanner;
+import com.dynamo.bob.CompileExceptionError;
+import com.dynamo.bob.MultipleCompileException;
+import com.dynamo.bob.NullProgress;
+import com.dynamo.bob.Project;
+import com.dynamo.bob.TaskResult;
+import com.dynamo.bob.archive.publisher.NullPublisher;
+import com.dynamo.bob.archive.publisher.PublisherSettings;
+import com.dynamo.bob.fs.DefaultFileSystem;
+
+/**
+ * End to end build of a generated project with resourceCount source files,
+ * from scratch and when nothing has changed.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class ProjectBuildBenchmark {
+
+    @Param({"100", "1000"})
+    public int resourceCount;
+
+    private File root;
+
+    @Setup
+    public void setup() throws IOException, CompileExceptionError, MultipleCompileException {
+        root = Files.createTempDirectory("bob-bench-project").toFile();
+        Fixtures.createProject(root, new Random(Fixtures.SEED), resourceCount);
+        // Make sure the project builds, and that there is something to compare with for the incremental build
+        build("clean", "build");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(root);
+    }
+
+    private List<TaskResult> build(String... commands) throws IOException, CompileExceptionError, MultipleCompileException {
+        Project project = new Project(new DefaultFileSystem(), root.getAbsolutePath(), "build");
+        try {
+            project.setPublisher(new NullPublisher(new PublisherSettings()));
+
+            ClassLoaderScanner scanner = new ClassLoaderScanner();
+            project.scan(scanner, "com.dynamo.bob");
+            project.scan(scanner, "com.dynamo.bob.pipeline");
+
+            project.findSources(root.getAbsolutePath(), new HashSet<String>());
+            List<TaskResult> result = project.build(new NullProgress(), commands);
+            for (TaskResult taskResult : result) {
+                if (!taskResult.isOk()) {
+                    throw new IllegalStateException("Failed to build the benchmark project: " + taskResult);
+                }
+            }
+            return result;
+        } finally {
+            project.dispose();
+        }
+    }
+
+    @Benchmark
+    public List<TaskResult> fullBuild() throws IOException, CompileExceptionError, MultipleCompileException {
+        return build("clean", "build");
+    }
+
+    @Benchmark
+    public List<TaskResult> incrementalBuild() throws IOException, CompileExceptionError, MultipleCompileException {
+        return build("build");
+    }
+}
@@ -0,0 +1,102 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+// 
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+// 
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+
+package com.dynamo.bob.bench;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dynamo.bob.textureset.TextureSetGenerator;
+import com.dynamo.bob.textureset.TextureSetGenerator.AnimDesc;
+import com.dynamo.bob.textureset.TextureSetGenerator.AnimIterator;
+import com.dynamo.bob.textureset.TextureSetGenerator.TextureSetResult;
+import com.dynamo.bob.textureset.TextureSetLayout;
+import com.dynamo.bob.textureset.TextureSetLayout.Layout;
+import com.dynamo.bob.textureset.TextureSetLayout.Rect;
+
+/**
+ * Atlas packing and generation, with as many images as a large atlas.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TextureSetBenchmark {
+
+    // The packing time grows quickly with the number of images, so keep the larger atlas within reason
+    @Param({"200", "500"})
+    public int imageCount;
+
+    private List<Rect> rects;
+    private List<BufferedImage> images;
+    private List<Integer> hullSizes;
+    private List<String> ids;
+
+    // Single frame images only, like an atlas without animations
+    private static class NoAnimIterator implements AnimIterator {
+        @Override
+        public AnimDesc nextAnim() {
+            return null;
+        }
+
+        @Override
+        public Integer nextFrameIndex() {
+            return null;
+        }
+
+        @Override
+        public void rewind() {
+        }
+    }
+
+    @Setup
+    public void setup() {
+        Random random = new Random(Fixtures.SEED);
+        rects = Fixtures.createRects(random, imageCount);
+        images = Fixtures.createSprites(random, rects);
+        hullSizes = new ArrayList<Integer>(imageCount);
+        ids = new ArrayList<String>(imageCount);
+        for (Rect rect : rects) {
+            hullSizes.add(8);
+            ids.add(rect.id);
+        }
+    }
+
+    @Benchmark
+    public Layout maxRectsLayout() {
+        // The layout sorts the rectangles, so give it a copy in the original order
+        return TextureSetLayout.createMaxRectsLayout(2, new ArrayList<Rect>(rects), true);
+    }
+
+    @Benchmark
+    public TextureSetResult generate() {
+        return TextureSetGenerator.generate(new ArrayList<BufferedImage>(images), hullSizes, ids, new NoAnimIterator(), 2, 0, 1, true, false, null);
+    }
+}
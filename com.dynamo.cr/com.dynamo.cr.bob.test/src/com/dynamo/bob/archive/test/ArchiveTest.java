@@ -25,10 +25,13 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang.StringUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -40,6 +43,7 @@ import com.dynamo.bob.archive.ManifestBuilder;
 import com.dynamo.bob.pipeline.ResourceNode;
 import com.dynamo.liveupdate.proto.Manifest.HashAlgorithm;
 import com.dynamo.liveupdate.proto.Manifest.ResourceEntryFlag;
+import com.dynamo.liveupdate.proto.Manifest.SignAlgorithm;
 
 public class ArchiveTest {
 
@@ -142,6 +146,206 @@ public class ArchiveTest {
         ar.close();
     }
 
+    private Map<String, Integer> readOffsetsByContent() throws IOException {
+        ArchiveReader ar = new ArchiveReader(outputIndex.getAbsolutePath(), outputData.getAbsolutePath(), null);
+        ar.read();
+        Map<String, Integer> offsets = new HashMap<String, Integer>();
+        for (ArchiveEntry entry : ar.getEntries()) {
+            offsets.put(new String(ar.getEntryContent(entry)), entry.resourceOffset);
+        }
+        ar.close();
+        return offsets;
+    }
+
+    @Test
+    public void testWriteIncremental() throws IOException {
+        String a = StringUtils.repeat("a", 1000);
+        String c = StringUtils.repeat("c", 1000);
+
+        ArchiveBuilder ab = new ArchiveBuilder(contentRoot, manifestBuilder);
+        ab.add(createDummyFile(contentRoot, "a.txt", a.getBytes()), false);
+        ab.add(createDummyFile(contentRoot, "b.txt", "first".getBytes()), false);
+        ab.add(createDummyFile(contentRoot, "c.txt", c.getBytes()), false);
+        RandomAccessFile outFileIndex = new RandomAccessFile(outputIndex, "rw");
+        RandomAccessFile outFileData = new RandomAccessFile(outputData, "rw");
+        ab.write(outFileIndex, outFileData, resourcePackDir, new ArrayList<String>());
+        outFileIndex.close();
+        outFileData.close();
+        Map<String, Integer> previousOffsets = readOffsetsByContent();
+
+        ArchiveReader ar = new ArchiveReader(outputIndex.getAbsolutePath(), outputData.getAbsolutePath(), null);
+        ar.read();
+        List<ArchiveEntry> previousEntries = ar.getEntries();
+        ar.close();
+
+        // Change one file and add another, the data of the unchanged files must stay where it is
+        ManifestBuilder incrementalManifestBuilder = new ManifestBuilder();
+        incrementalManifestBuilder.setResourceHashAlgorithm(HashAlgorithm.HASH_SHA1);
+        ab = new ArchiveBuilder(contentRoot, incrementalManifestBuilder);
+        ab.add(createDummyFile(contentRoot, "a.txt", a.getBytes()), false);
+        ab.add(createDummyFile(contentRoot, "b.txt", "second".getBytes()), false);
+        ab.add(createDummyFile(contentRoot, "c.txt", c.getBytes()), false);
+        ab.add(createDummyFile(contentRoot, "d.txt", "new".getBytes()), false);
+        outFileIndex = new RandomAccessFile(outputIndex, "rw");
+        outFileIndex.setLength(0);
+        outFileData = new RandomAccessFile(outputData, "rw");
+        ab.writeIncremental(outFileIndex, outFileData, previousEntries, resourcePackDir, new ArrayList<String>());
+        outFileIndex.close();
+        outFileData.close();
+
+        Map<String, Integer> offsets = readOffsetsByContent();
+        assertEquals(4, offsets.size());
+        assertEquals(previousOffsets.get(a), offsets.get(a));
+        assertEquals(previousOffsets.get(c), offsets.get(c));
+        assertTrue(offsets.containsKey("second"));
+        assertTrue(offsets.containsKey("new"));
+        assertFalse(offsets.containsKey("first"));
+        for (Integer offset : offsets.values()) {
+            assertTrue(offset % 4 == 0);
+        }
+    }
+
+    private void writeCompressedAndEncrypted(String a, String script) throws IOException {
+        ArchiveBuilder ab = new ArchiveBuilder(contentRoot, manifestBuilder);
+        ab.add(createDummyFile(contentRoot, "a.txt", a.getBytes()), true);
+        ab.add(createDummyFile(contentRoot, "b.txt", "not compressed".getBytes()), true);
+        ab.add(createDummyFile(contentRoot, "script.luac", script.getBytes()), true);
+        RandomAccessFile outFileIndex = new RandomAccessFile(outputIndex, "rw");
+        RandomAccessFile outFileData = new RandomAccessFile(outputData, "rw");
+        outFileIndex.setLength(0);
+        outFileData.setLength(0);
+        ab.write(outFileIndex, outFileData, resourcePackDir, new ArrayList<String>());
+        outFileIndex.close();
+        outFileData.close();
+    }
+
+    @Test
+    public void testVerify() throws IOException {
+        String a = StringUtils.repeat("a", 1000);
+        String script = StringUtils.repeat("print(\"hello\")\n", 100);
+        writeCompressedAndEncrypted(a, script);
+
+        for (boolean memoryMapped : new boolean[] { false, true }) {
+            ArchiveReader ar = new ArchiveReader(outputIndex.getAbsolutePath(), outputData.getAbsolutePath(), null, memoryMapped);
+            ar.setThreadCount(2);
+            ar.read();
+            assertEquals(0, ar.verify().size());
+
+            // The content is decompressed and decrypted
+            List<String> contents = new ArrayList<String>();
+            for (ArchiveEntry entry : ar.getEntries()) {
+                contents.add(new String(ar.getEntryContent(entry)));
+            }
+            assertEquals(3, contents.size());
+            assertTrue(contents.contains(a));
+            assertTrue(contents.contains("not compressed"));
+            assertTrue(contents.contains(script));
+            ar.close();
+        }
+    }
+
+    @Test
+    public void testVerifyCorruptEntry() throws IOException {
+        writeCompressedAndEncrypted(StringUtils.repeat("a", 1000), StringUtils.repeat("print(\"hello\")\n", 100));
+
+        ArchiveReader ar = new ArchiveReader(outputIndex.getAbsolutePath(), outputData.getAbsolutePath(), null);
+        ar.read();
+        ArchiveEntry entry = ar.getEntries().get(0);
+        ar.close();
+
+        RandomAccessFile data = new RandomAccessFile(outputData, "rw");
+        data.seek(entry.resourceOffset);
+        int b = data.read();
+        data.seek(entry.resourceOffset);
+        data.write(b ^ 0xff);
+        data.close();
+
+        ar = new ArchiveReader(outputIndex.getAbsolutePath(), outputData.getAbsolutePath(), null);
+        ar.read();
+        List<String> errors = ar.verify();
+        ar.close();
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).endsWith("hash mismatch"));
+    }
+
+    @Test
+    public void testExtractAll() throws Exception {
+        writeCompressedAndEncrypted(StringUtils.repeat("a", 1000), StringUtils.repeat("print(\"hello\")\n", 100));
+
+        ArchiveReader ar = new ArchiveReader(outputIndex.getAbsolutePath(), outputData.getAbsolutePath(), null);
+        ar.read();
+        File extractDir = new File(contentRoot, "extract");
+        ar.extractAll(extractDir.getAbsolutePath());
+        ar.close();
+
+        // Without a manifest the entries are named by hash
+        assertEquals(3, extractDir.list().length);
+        String name = ManifestBuilder.CryptographicOperations.hexdigest(ManifestBuilder.CryptographicOperations.hash("not compressed".getBytes(), HashAlgorithm.HASH_SHA1));
+        assertEquals("not compressed", FileUtils.readFileToString(new File(extractDir, name)));
+    }
+
+    // Write an archive of the files, and return the manifest of it
+    private byte[] writeWithManifest(String... filenames) throws Exception {
+        ManifestBuilder builder = new ManifestBuilder();
+        builder.setProjectIdentifier("<test project>");
+        builder.setResourceHashAlgorithm(HashAlgorithm.HASH_SHA1);
+        builder.setSignatureHashAlgorithm(HashAlgorithm.HASH_SHA256);
+        builder.setSignatureSignAlgorithm(SignAlgorithm.SIGN_RSA);
+        String privateKey = FilenameUtils.concat(contentRoot, "test.private.der");
+        String publicKey = FilenameUtils.concat(contentRoot, "test.public.der");
+        ManifestBuilder.CryptographicOperations.generateKeyPair(SignAlgorithm.SIGN_RSA, privateKey, publicKey);
+        builder.setPrivateKeyFilepath(privateKey);
+        builder.setPublicKeyFilepath(publicKey);
+
+        ArchiveBuilder ab = new ArchiveBuilder(contentRoot, builder);
+        ResourceNode root = new ResourceNode("<Anonymous Root>", "<Anonymous Root>");
+        for (String filename : filenames) {
+            addEntry(filename, filename, ab, root);
+        }
+        builder.setDependencies(root);
+
+        RandomAccessFile outFileIndex = new RandomAccessFile(outputIndex, "rw");
+        RandomAccessFile outFileData = new RandomAccessFile(outputData, "rw");
+        outFileIndex.setLength(0);
+        outFileData.setLength(0);
+        ab.write(outFileIndex, outFileData, resourcePackDir, new ArrayList<String>());
+        outFileIndex.close();
+        outFileData.close();
+
+        builder.setArchiveIdentifier(ab.getArchiveIndexHash());
+        return builder.buildManifest();
+    }
+
+    @Test
+    public void testVerifyManifest() throws Exception {
+        File manifest = new File(contentRoot, "game.dmanifest");
+        FileUtils.writeByteArrayToFile(manifest, writeWithManifest("a.txt", "b.txt", "c.txt"));
+
+        ArchiveReader ar = new ArchiveReader(outputIndex.getAbsolutePath(), outputData.getAbsolutePath(), manifest.getAbsolutePath());
+        ar.read();
+        assertEquals(0, ar.verify().size());
+
+        // With a manifest the entries are named by url
+        File extractDir = new File(contentRoot, "extract");
+        ar.extractAll(extractDir.getAbsolutePath());
+        ar.close();
+        assertEquals(3, extractDir.list().length);
+        assertEquals("b.txt", FileUtils.readFileToString(new File(extractDir, "b.txt")));
+
+        // Replace c.txt with d.txt in the archive, but keep the old manifest
+        writeWithManifest("a.txt", "b.txt", "d.txt");
+
+        ar = new ArchiveReader(outputIndex.getAbsolutePath(), outputData.getAbsolutePath(), manifest.getAbsolutePath());
+        ar.read();
+        List<String> errors = ar.verify();
+        ar.close();
+        String name = ManifestBuilder.CryptographicOperations.hexdigest(ManifestBuilder.CryptographicOperations.hash("d.txt".getBytes(), HashAlgorithm.HASH_SHA1));
+        assertEquals(3, errors.size());
+        assertTrue(errors.contains("Archive index: MD5 doesn't match the archive identifier of the manifest"));
+        assertTrue(errors.contains(name + ": not in the manifest"));
+        assertTrue(errors.contains("/c.txt: missing from the archive"));
+    }
+
     @Test
     public void testEntriesOrder() throws IOException {
 
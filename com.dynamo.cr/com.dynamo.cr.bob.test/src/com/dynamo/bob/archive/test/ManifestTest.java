@@ -14,6 +14,7 @@ package com.dynamo.bob.archive.test;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -29,7 +30,9 @@ import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.spec.InvalidKeySpecException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
@@ -73,6 +76,10 @@ public class ManifestTest {
         public byte[] manifest = null;
 
         public ManifestInstance() throws IOException, NoSuchAlgorithmException, InvalidKeySpecException {
+            this(new HashSet<String>());
+        }
+
+        public ManifestInstance(Set<String> excludedResources) throws IOException, NoSuchAlgorithmException, InvalidKeySpecException {
             this.resources = this.createResources();
             this.dependencies = this.createDependencies();
             this.publicKey = ManifestBuilder.CryptographicOperations.loadPublicKey(this.publicKeyFilepath, SignAlgorithm.SIGN_RSA);
@@ -88,7 +95,8 @@ public class ManifestTest {
             }
 
             for (String[] entry : this.resources) {
-                manifestBuilder.addResourceEntry(entry[0], entry[1].getBytes(), ResourceEntryFlag.BUNDLED.getNumber());
+                ResourceEntryFlag flag = excludedResources.contains(entry[0]) ? ResourceEntryFlag.EXCLUDED : ResourceEntryFlag.BUNDLED;
+                manifestBuilder.addResourceEntry(entry[0], entry[1].getBytes(), flag.getNumber());
             }
 
             this.manifestHeader = manifestBuilder.buildManifestHeader();
@@ -546,4 +554,26 @@ public class ManifestTest {
         assertEquals("/main/main.collectionc",          parents.get(0).get(0));
     }
 
+    @Test
+    public void testGetResourceHashes() throws NoSuchAlgorithmException, InvalidKeySpecException, IOException {
+        Set<String> excludedResources = new HashSet<String>();
+        excludedResources.add("/main/level2.collectionc");
+        excludedResources.add("/main/level2.goc");
+        ManifestInstance instance = new ManifestInstance(excludedResources);
+        Set<String> hashes = ManifestBuilder.getResourceHashes(instance.manifest);
+
+        // Only the excluded resources have been published
+        assertEquals(2, hashes.size());
+        assertTrue(hashes.contains(sha1Hex("8")));
+        assertTrue(hashes.contains(sha1Hex("9")));
+
+        // A bundled resource must be published if it's excluded in the next release
+        assertFalse(hashes.contains(sha1Hex("10")));
+        assertFalse(hashes.contains(sha1Hex("1")));
+    }
+
+    private static String sha1Hex(String content) throws NoSuchAlgorithmException {
+        return ManifestBuilder.CryptographicOperations.hexdigest(ManifestBuilder.CryptographicOperations.hash(content.getBytes(), HashAlgorithm.HASH_SHA1));
+    }
+
 }
@@ -0,0 +1,109 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+// 
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+// 
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.bundle.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dynamo.bob.ClassLoaderScanner;
+import com.dynamo.bob.NullProgress;
+import com.dynamo.bob.Platform;
+import com.dynamo.bob.Project;
+import com.dynamo.bob.TaskResult;
+import com.dynamo.bob.archive.publisher.NullPublisher;
+import com.dynamo.bob.archive.publisher.PublisherSettings;
+import com.dynamo.bob.fs.DefaultFileSystem;
+
+public class BundlePlatformsTest {
+
+    private String contentRoot;
+    private String outputDir;
+
+    @Before
+    public void setUp() throws Exception {
+        contentRoot = Files.createTempDirectory("defoldtest").toFile().getAbsolutePath();
+        outputDir = Files.createTempDirectory("defoldtest").toFile().getAbsolutePath();
+        createFile("game.project", "[display]\nwidth=640\nheight=480\n");
+        createFile("logic/main.collection", "name: \"default\"\nscale_along_z: 0\n");
+        createFile("builtins/render/default.render", "script: \"/builtins/render/default.render_script\"\n");
+        createFile("builtins/render/default.render_script", "");
+        createFile("builtins/render/default.display_profiles", "");
+        createFile("builtins/input/default.gamepads", "");
+        createFile("input/game.input_binding", "");
+        createFile("builtins/graphics/default.texture_profiles", "");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(new File(contentRoot));
+        FileUtils.deleteDirectory(new File(outputDir));
+    }
+
+    private void createFile(String name, String content) throws IOException {
+        File file = new File(contentRoot, name);
+        FileUtils.copyInputStreamToFile(new ByteArrayInputStream(content.getBytes()), file);
+    }
+
+    @Test
+    public void testBundlePlatforms() throws Exception {
+        List<Platform> platforms = Arrays.asList(Platform.X86_64Linux, Platform.X86_64Win32);
+
+        Project project = new Project(new DefaultFileSystem(), contentRoot, "build");
+        project.setPublisher(new NullPublisher(new PublisherSettings()));
+        ClassLoaderScanner scanner = new ClassLoaderScanner();
+        project.scan(scanner, "com.dynamo.bob");
+        project.scan(scanner, "com.dynamo.bob.pipeline");
+        project.setOption("platform", platforms.get(0).getPair() + "," + platforms.get(1).getPair());
+        project.setOption("archive", "true");
+        project.setOption("bundle-output", outputDir);
+
+        Set<String> skipDirs = new HashSet<String>(Arrays.asList(".git", project.getBuildDirectory(), ".internal"));
+        project.findSources(contentRoot, skipDirs);
+        try {
+            List<TaskResult> result = project.build(new NullProgress(), "clean", "build", "bundle");
+            for (TaskResult taskResult : result) {
+                assertTrue(taskResult.toString(), taskResult.isOk());
+            }
+        } finally {
+            project.dispose();
+        }
+
+        // Each platform is bundled from a snapshot of the content it was built with
+        File buildDir = new File(contentRoot, "build");
+        for (Platform platform : platforms) {
+            File contentDir = new File(buildDir, "_bundle/" + platform.getPair());
+            for (String name : Arrays.asList("game.projectc", "game.arci", "game.arcd", "game.dmanifest")) {
+                assertTrue(new File(contentDir, name).isFile());
+            }
+            File bundleDir = new File(outputDir, platform.getPair() + "/unnamed");
+            assertTrue(bundleDir.isDirectory());
+            assertArrayEquals(FileUtils.readFileToByteArray(new File(contentDir, "game.arcd")),
+                              FileUtils.readFileToByteArray(new File(bundleDir, "game.arcd")));
+        }
+        assertTrue(new File(outputDir, Platform.X86_64Win32.getPair() + "/unnamed/unnamed.exe").isFile());
+    }
+}
@@ -12,13 +12,20 @@
 
 package com.dynamo.bob.fs.test;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.junit.After;
 import org.junit.Before;
@@ -27,6 +34,8 @@ import org.junit.Test;
 
 import com.dynamo.bob.fs.DefaultFileSystem;
 import com.dynamo.bob.fs.FileSystemWalker;
+import com.dynamo.bob.fs.IResource;
+import com.dynamo.bob.fs.ZipMountPoint;
 import com.dynamo.bob.fs.IFileSystem.IWalker;
 import com.dynamo.bob.test.TestLibrariesRule;
 
@@ -60,6 +69,123 @@ public class FileSystemTest {
         assertTrue(results.contains("test_lib4.zip"));
     }
 
+    @Test
+    public void testWalkerOrder() throws Exception {
+        // Enough directories for the walk to be split over several threads
+        for (int i = 0; i < 20; ++i) {
+            for (int j = 0; j < 5; ++j) {
+                this.fileSystem.get(String.format("walk/dir%d/sub%d/file.txt", i, j)).setContent("x".getBytes());
+            }
+            this.fileSystem.get(String.format("walk/dir%d/file.txt", i)).setContent("x".getBytes());
+        }
+
+        // Every directory must come before its contents, in the order of a depth first walk
+        List<String> results = new ArrayList<String>();
+        this.fileSystem.walk("walk", new FileSystemWalker() {
+            @Override
+            public boolean handleDirectory(String path, Collection<String> results) {
+                results.add(path + "/");
+                return !path.endsWith("sub3");
+            }
+        }, results);
+        assertEquals(1 + 20 * (1 + 5 + 1 + 4), results.size());
+        for (int i = 0; i < results.size(); ++i) {
+            String path = results.get(i);
+            String parent = FilenameUtils.getPath(path.endsWith("/") ? path.substring(0, path.length() - 1) : path);
+            if (!parent.isEmpty()) {
+                assertTrue(results.subList(0, i).contains(parent));
+                assertTrue(results.lastIndexOf(parent) == results.subList(0, i).lastIndexOf(parent));
+            }
+            for (String other : results.subList(results.indexOf(parent) + 1, i)) {
+                assertTrue(other.startsWith(parent));
+            }
+        }
+        assertFalse(results.contains("walk/dir0/sub3/file.txt"));
+    }
+
+    @Test
+    public void testWriteHardLinked() throws Exception {
+        IResource resource = this.fileSystem.get("linked.txt");
+        resource.setContent("first".getBytes());
+        File link = new File(testLibs.getServerLocation(), "link.txt");
+        try {
+            Files.createLink(link.toPath(), new File(resource.getAbsPath()).toPath());
+        } catch (UnsupportedOperationException e) {
+            return;
+        }
+
+        // Writing the resource must not change the linked file, e.g. an archive in a bundle
+        resource.setContent("second".getBytes());
+        assertArrayEquals("second".getBytes(), resource.getContent());
+        assertArrayEquals("first".getBytes(), FileUtils.readFileToByteArray(link));
+    }
+
+    @Test
+    public void testInternedResources() throws Exception {
+        IResource resource = this.fileSystem.get("test_lib1/file1.in");
+        assertTrue(resource == this.fileSystem.get("test_lib1/file1.in"));
+        assertTrue(resource == this.fileSystem.get("/test_lib1/file1.in"));
+        assertFalse(resource.exists());
+
+        // Mounting must not leave stale resources behind
+        this.fileSystem.addMountPoint(new ZipMountPoint(this.fileSystem, FilenameUtils.concat(testLibs.getServerLocation(), "test_lib1.zip")));
+        IResource mounted = this.fileSystem.get("test_lib1/file1.in");
+        assertTrue(mounted != resource);
+        assertTrue(mounted.exists());
+        assertTrue(mounted == this.fileSystem.get("test_lib1/file1.in"));
+
+        // Not in any include directory of the library
+        assertFalse(this.fileSystem.get("other/file1.in").exists());
+    }
+
+    @Test
+    public void testContent() throws Exception {
+        IResource resource = this.fileSystem.get("content.txt");
+        resource.setContent("first".getBytes());
+        assertArrayEquals("first".getBytes(), resource.getContent());
+
+        // Changing the content through the resource must not return cached content
+        resource.setContent("other".getBytes());
+        assertArrayEquals("other".getBytes(), resource.getContent());
+
+        // Neither must changing the file behind the back of the file system
+        FileUtils.writeByteArrayToFile(new File(resource.getAbsPath()), "changed".getBytes());
+        ByteBuffer buffer = resource.getContentBuffer();
+        assertTrue(buffer.isReadOnly());
+        assertEquals(7, buffer.remaining());
+        byte[] content = new byte[buffer.remaining()];
+        buffer.get(content);
+        assertArrayEquals("changed".getBytes(), content);
+
+        // The returned content is owned by the caller, both when read from the file and from the cache
+        resource.setContent("copied".getBytes());
+        resource.getContent()[0] = 'x';
+        assertArrayEquals("copied".getBytes(), resource.getContent());
+        assertEquals(6, resource.getContentBuffer().remaining());
+        resource.getContent()[0] = 'x';
+        assertArrayEquals("copied".getBytes(), resource.getContent());
+
+        resource.remove();
+        assertTrue(resource.getContent() == null);
+        assertTrue(resource.getContentBuffer() == null);
+    }
+
+    @Test
+    public void testWalkCache() throws Exception {
+        IResource resource = this.fileSystem.get("walked/file.txt");
+        resource.setContent("first".getBytes());
+        File file = new File(resource.getAbsPath());
+        file.setLastModified(1000000000000L);
+        byte[] first = resource.sha1();
+        this.fileSystem.walk("walked", new FileSystemWalker(), new ArrayList<String>());
+
+        // The modification time read by the walk isn't trusted once the build has ended
+        this.fileSystem.clearWalkCache();
+        resource.setContent("other".getBytes());
+        file.setLastModified(1000000002000L);
+        assertFalse(Arrays.equals(first, resource.sha1()));
+    }
+
     private static class ZipWalker extends FileSystemWalker {
         @Override
         public void handleFile(String path, Collection<String> results) {
@@ -12,16 +12,27 @@
 
 package com.dynamo.bob.fs.test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import com.dynamo.bob.fs.FileSystemWalker;
 import com.dynamo.bob.fs.IResource;
@@ -35,6 +46,9 @@ public class ZipMountPointTest {
     @Rule
     public TestLibrariesRule testLibs = new TestLibrariesRule();
 
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
     @Before
     public void setUp() throws Exception {
         this.mp = new ZipMountPoint(null, "server_root/test_lib1.zip");
@@ -100,5 +114,73 @@ public class ZipMountPointTest {
         assertEquals(1, results.size());
         assertTrue(results.contains("test_lib4/file4.in"));
     }
-}
 
+    @Test
+    public void testStoredAndDeflated() throws Exception {
+        File file = tmpFolder.newFile("mixed.zip");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+        byte[] stored = "stored".getBytes();
+        ZipEntry entry = new ZipEntry("a/stored.bin");
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(stored.length);
+        CRC32 crc = new CRC32();
+        crc.update(stored);
+        entry.setCrc(crc.getValue());
+        out.putNextEntry(entry);
+        out.write(stored);
+        out.closeEntry();
+        byte[] deflated = new byte[64 * 1024];
+        deflated[deflated.length - 1] = 1;
+        out.putNextEntry(new ZipEntry("a/b/deflated.bin"));
+        out.write(deflated);
+        out.closeEntry();
+        out.putNextEntry(new ZipEntry("ab/other.bin"));
+        out.closeEntry();
+        out.close();
+
+        ZipMountPoint mp = new ZipMountPoint(null, file.getAbsolutePath(), false);
+        mp.mount();
+        assertArrayEquals(stored, mp.get("a/stored.bin").getContent());
+        assertArrayEquals(deflated, mp.get("a/b/deflated.bin").getContent());
+        assertTrue(mp.get("a/missing.bin") == null);
+
+        FileSystemWalker walker = new FileSystemWalker();
+        Collection<String> results = new ArrayList<String>();
+        mp.walk(".", walker, results);
+        mp.unmount();
+        assertEquals(3, results.size());
+    }
+
+    @Test
+    public void testReplaceMounted() throws Exception {
+        // A mounted library must not keep its archive open, e.g. when it's downloaded again
+        File file = tmpFolder.newFile("lib.zip");
+        writeZip(file, "a/file.in", "old");
+        ZipMountPoint mp = new ZipMountPoint(null, file.getAbsolutePath(), false);
+        mp.mount();
+        assertEquals("old", new String(mp.get("a/file.in").getContent()));
+        File newFile = tmpFolder.newFile("lib.zip.new");
+        writeZip(newFile, "a/file.in", "newer");
+        Files.move(newFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        // The index doesn't match the new archive until it's mounted again
+        try {
+            mp.get("a/file.in").getContent();
+            fail("Expected an exception");
+        } catch (IOException e) {
+        }
+        mp.unmount();
+
+        mp.mount();
+        assertEquals("newer", new String(mp.get("a/file.in").getContent()));
+        mp.unmount();
+    }
+
+    private static void writeZip(File file, String name, String content) throws Exception {
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+        out.putNextEntry(new ZipEntry(name));
+        out.write(content.getBytes());
+        out.closeEntry();
+        out.close();
+    }
+}
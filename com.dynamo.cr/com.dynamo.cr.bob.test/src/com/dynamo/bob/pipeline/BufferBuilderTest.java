@@ -0,0 +1,67 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+// 
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+// 
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.pipeline;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.dynamo.bob.CompileExceptionError;
+import com.dynamo.buffer.proto.BufferProto.BufferDesc;
+import com.dynamo.buffer.proto.BufferProto.StreamDesc;
+import com.dynamo.buffer.proto.BufferProto.ValueType;
+
+public class BufferBuilderTest extends AbstractProtoBuilderTest {
+
+    @Test
+    public void testBuild() throws Exception {
+        StringBuilder src = new StringBuilder();
+        src.append("[\n");
+        src.append("  { \"data\": [1.5, 2, -3.25, 4], \"type\": \"float32\", \"name\": \"position\", \"count\": 2 },\n");
+        src.append("  { \"name\": \"color\", \"type\": \"uint8\", \"count\": 1, \"data\": [255, 0] },\n");
+        src.append("  { \"name\": \"id\", \"type\": \"int64\", \"count\": 1, \"data\": [-1, 1099511627776], \"unknown\": { \"a\": [1] } }\n");
+        src.append("]\n");
+        BufferDesc buffer = (BufferDesc)build("/test.buffer", src.toString()).get(0);
+        assertEquals(3, buffer.getStreamsCount());
+
+        // The fields may come in any order
+        StreamDesc position = buffer.getStreams(0);
+        assertEquals("position", position.getName());
+        assertEquals(ValueType.VALUE_TYPE_FLOAT32, position.getValueType());
+        assertEquals(2, position.getValueCount());
+        assertEquals(4, position.getFCount());
+        assertEquals(1.5f, position.getF(0), 0.0f);
+        assertEquals(-3.25f, position.getF(2), 0.0f);
+
+        StreamDesc color = buffer.getStreams(1);
+        assertEquals(ValueType.VALUE_TYPE_UINT8, color.getValueType());
+        assertEquals(2, color.getUiCount());
+        assertEquals(255, color.getUi(0));
+        assertEquals(0, color.getUi(1));
+
+        StreamDesc id = buffer.getStreams(2);
+        assertEquals(2, id.getI64Count());
+        assertEquals(-1L, id.getI64(0));
+        assertEquals(1099511627776L, id.getI64(1));
+    }
+
+    @Test(expected = CompileExceptionError.class)
+    public void testStreamSize() throws Exception {
+        build("/test.buffer", "[ { \"name\": \"position\", \"type\": \"float32\", \"count\": 3, \"data\": [1, 2, 3, 4] } ]");
+    }
+
+    @Test(expected = CompileExceptionError.class)
+    public void testMissingType() throws Exception {
+        build("/test.buffer", "[ { \"name\": \"position\", \"count\": 3, \"data\": [1, 2, 3] } ]");
+    }
+}
@@ -12,6 +12,7 @@
 
 package com.dynamo.bob.pipeline;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -24,18 +25,34 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipFile;
 
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.codec.binary.Base64;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.bio.SocketConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
+import com.defold.extender.client.ExtenderClient;
+import com.defold.extender.client.ExtenderResource;
 import com.dynamo.bob.Project;
 import com.dynamo.bob.fs.IResource;
 import com.dynamo.bob.fs.DefaultFileSystem;
@@ -115,5 +132,129 @@ public class ExtenderUtilTest {
         assertTrue(resources.containsKey("bundle1/values/strings.xml"));
         assertTrue(resources.containsKey("bundle2/values/strings.xml"));
     }
-}
 
+    @Test
+    public void testSharedContent() throws Exception {
+        final AtomicInteger reads = new AtomicInteger();
+        File file = new File(tmpDir, "extension1/src/ext1.cpp");
+        ExtenderResource resource = new ExtenderUtil.FileExtenderResource(file, "extension1/src/ext1.cpp") {
+            @Override
+            public byte[] getContent() throws IOException {
+                reads.incrementAndGet();
+                return super.getContent();
+            }
+        };
+
+        // The same file uploaded for two architectures is hashed and uploaded for each of them, but only read once
+        ExtenderUtil.SharedContent sharedContent = new ExtenderUtil.SharedContent(ExtenderUtil.SharedContent.DEFAULT_BUDGET);
+        List<ExtenderResource> first = sharedContent.share(Arrays.asList(resource));
+        List<ExtenderResource> second = sharedContent.share(Arrays.asList(resource));
+        byte[] sha1 = resource.sha1();
+        reads.set(0);
+        assertArrayEquals(sha1, first.get(0).sha1());
+        assertArrayEquals(sha1, second.get(0).sha1());
+        assertEquals("// ext1.cpp", new String(first.get(0).getContent()));
+        assertEquals("// ext1.cpp", new String(second.get(0).getContent()));
+        assertEquals(1, reads.get());
+        assertTrue(ExtenderUtil.unwrap(second.get(0)) == resource);
+
+        // Nothing is kept beyond the budget
+        sharedContent = new ExtenderUtil.SharedContent(0);
+        first = sharedContent.share(Arrays.asList(resource));
+        first.get(0).getContent();
+        first.get(0).getContent();
+        assertEquals(3, reads.get());
+
+        // A changed file isn't shared, even if the modification time is the same
+        long lastModified = file.lastModified();
+        sharedContent = new ExtenderUtil.SharedContent(ExtenderUtil.SharedContent.DEFAULT_BUDGET);
+        sharedContent.share(Arrays.asList(resource)).get(0).getContent();
+        FileUtils.writeStringToFile(file, "// changed");
+        file.setLastModified(lastModified);
+        assertEquals("// changed", new String(sharedContent.share(Arrays.asList(resource)).get(0).getContent()));
+    }
+
+    // Stand-in for the build server, which records the uploads
+    private static class BuildServerHandler extends AbstractHandler {
+        Map<String, String> uploads = new ConcurrentHashMap<String, String>();
+
+        @Override
+        public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+            byte[] body = IOUtils.toByteArray(request.getInputStream());
+            if (target.equals("/query")) {
+                // Nothing is cached on the server
+                response.getOutputStream().write("{\"version\":1,\"files\":[]}".getBytes());
+            } else {
+                // The multipart request holds the content of the files as is
+                uploads.put(target, new String(body, "ISO-8859-1"));
+                response.getOutputStream().write("engine".getBytes());
+            }
+            response.setStatus(HttpServletResponse.SC_OK);
+            baseRequest.setHandled(true);
+        }
+    }
+
+    @Test
+    public void testSharedContentUpload() throws Exception {
+        // Each architecture uploads its own manifest, with the same path and modification time
+        final String[] platforms = new String[] { "armv7-android", "arm64-android" };
+        File source = new File(tmpDir, "extension1/src/ext1.cpp");
+        ExtenderUtil.SharedContent sharedContent = new ExtenderUtil.SharedContent(ExtenderUtil.SharedContent.DEFAULT_BUDGET);
+        final List<List<ExtenderResource>> uploads = new ArrayList<List<ExtenderResource>>();
+        for (String platform : platforms) {
+            File manifest = new File(tmpDir, "build/" + platform + "/AndroidManifest.xml");
+            manifest.getParentFile().mkdirs();
+            FileUtils.writeStringToFile(manifest, "<manifest platform=\"" + platform + "\"/>");
+            manifest.setLastModified(1000000000000L);
+            List<ExtenderResource> resources = new ArrayList<ExtenderResource>();
+            resources.add(new ExtenderUtil.FileExtenderResource(source, "extension1/src/ext1.cpp"));
+            resources.add(new ExtenderUtil.FileExtenderResource(manifest, "AndroidManifest.xml"));
+            uploads.add(sharedContent.share(resources));
+        }
+
+        BuildServerHandler handler = new BuildServerHandler();
+        Server server = new Server();
+        SocketConnector connector = new SocketConnector();
+        connector.setPort(0);
+        server.addConnector(connector);
+        server.setHandler(handler);
+        server.start();
+        final String serverURL = "http://localhost:" + connector.getLocalPort();
+
+        ExecutorService executor = Executors.newFixedThreadPool(platforms.length);
+        try {
+            List<Future<Void>> builds = new ArrayList<Future<Void>>();
+            for (int i = 0; i < platforms.length; ++i) {
+                final String platform = platforms[i];
+                final List<ExtenderResource> resources = uploads.get(i);
+                final File cacheDir = new File(tmpDir, "cache/" + platform);
+                cacheDir.mkdirs();
+                builds.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        ExtenderClient extender = new ExtenderClient(serverURL, cacheDir);
+                        extender.build(platform, "sdk", resources, new File(cacheDir, "build.zip"), new File(cacheDir, "log.txt"));
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> build : builds) {
+                build.get();
+            }
+        } finally {
+            executor.shutdownNow();
+            server.stop();
+        }
+
+        for (String platform : platforms) {
+            String upload = handler.uploads.get("/build/" + platform + "/sdk");
+            assertTrue(upload.contains("// ext1.cpp"));
+            assertTrue(upload.contains("<manifest platform=\"" + platform + "\"/>"));
+            for (String other : platforms) {
+                if (!other.equals(platform)) {
+                    assertFalse(upload.contains("<manifest platform=\"" + other + "\"/>"));
+                }
+            }
+        }
+    }
+}
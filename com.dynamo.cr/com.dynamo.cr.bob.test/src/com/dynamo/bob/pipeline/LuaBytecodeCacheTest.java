@@ -0,0 +1,132 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+// 
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+// 
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.pipeline;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LuaBytecodeCacheTest {
+
+    private File cacheDir;
+    private LuaBytecodeCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheDir = Files.createTempDirectory("defold_luajit_").toFile();
+        cache = new LuaBytecodeCache(cacheDir);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(cacheDir);
+    }
+
+    private static String getKey(String source) {
+        return LuaBytecodeCache.getKey(source.getBytes(), "=main/main.script", "luajit-64", "-bgf");
+    }
+
+    @Test
+    public void testKey() throws Exception {
+        String key = getKey("print(1)");
+        assertEquals(key, getKey("print(1)"));
+        assertNotEquals(key, getKey("print(2)"));
+        assertNotEquals(key, LuaBytecodeCache.getKey("print(1)".getBytes(), "=main/other.script", "luajit-64", "-bgf"));
+        assertNotEquals(key, LuaBytecodeCache.getKey("print(1)".getBytes(), "=main/main.script", "luajit-32", "-bgf"));
+        assertNotEquals(key, LuaBytecodeCache.getKey("print(1)".getBytes(), "=main/main.script", "luajit-64", "-bf"));
+        // The fields can't run into each other
+        assertNotEquals(LuaBytecodeCache.getKey(new byte[0], "=ab", "c", "-bgf"), LuaBytecodeCache.getKey(new byte[0], "=a", "bc", "-bgf"));
+    }
+
+    @Test
+    public void testPutGet() throws Exception {
+        String key = getKey("print(1)");
+        assertNull(cache.get(key));
+
+        byte[] bytecode = new byte[] { 0x1b, 0x4c, 0x4a, 0x02, 0x00 };
+        cache.put(key, bytecode);
+        assertArrayEquals(bytecode, cache.get(key));
+        assertNull(cache.get(getKey("print(2)")));
+
+        // Entries are persistent
+        assertArrayEquals(bytecode, new LuaBytecodeCache(cacheDir).get(key));
+    }
+
+    @Test
+    public void testDedupe() throws Exception {
+        byte[] bytecode = new byte[] { 0x1b, 0x4c, 0x4a, 0x02, 0x01 };
+        cache.put(getKey("print(1)"), bytecode);
+        cache.put(getKey("print(1) "), bytecode);
+        cache.put(getKey("print(1)  "), new byte[] { 0x1b, 0x4c, 0x4a, 0x02, 0x02 });
+        assertEquals(3, new File(cacheDir, "keys").list().length);
+        assertEquals(2, new File(cacheDir, "blobs").list().length);
+    }
+
+    @Test
+    public void testCorruptBlob() throws Exception {
+        String key = getKey("print(1)");
+        byte[] bytecode = new byte[] { 0x1b, 0x4c, 0x4a, 0x02, 0x03 };
+        cache.put(key, bytecode);
+
+        File blob = new File(cacheDir, "blobs").listFiles()[0];
+        FileUtils.writeByteArrayToFile(blob, new byte[] { 0x1b, 0x4c, 0x4a, 0x02, 0x04 });
+        assertNull(cache.get(key));
+
+        // Putting the entry again repairs it
+        cache.put(key, bytecode);
+        assertArrayEquals(bytecode, cache.get(key));
+    }
+
+    @Test
+    public void testPrune() throws Exception {
+        String oldKey = getKey("print(1)");
+        String newKey = getKey("print(2)");
+        String sharedKey = getKey("print(3)");
+        byte[] oldBytecode = new byte[] { 0x1b, 0x4c, 0x4a, 0x02, 0x05 };
+        byte[] newBytecode = new byte[] { 0x1b, 0x4c, 0x4a, 0x02, 0x06 };
+        cache.put(oldKey, oldBytecode);
+        cache.put(newKey, newBytecode);
+        cache.put(sharedKey, oldBytecode);
+
+        long old = System.currentTimeMillis() - 2 * 60 * 60 * 1000;
+        for (File file : new File(cacheDir, "blobs").listFiles()) {
+            file.setLastModified(old);
+        }
+        new File(new File(cacheDir, "keys"), oldKey).setLastModified(old);
+        new File(new File(cacheDir, "keys"), sharedKey).setLastModified(old);
+        // Using an entry keeps it
+        assertArrayEquals(oldBytecode, cache.get(sharedKey));
+
+        cache.prune(60 * 60 * 1000);
+        assertNull(cache.get(oldKey));
+        assertArrayEquals(newBytecode, cache.get(newKey));
+        assertArrayEquals(oldBytecode, cache.get(sharedKey));
+        assertEquals(2, new File(cacheDir, "keys").list().length);
+        assertEquals(2, new File(cacheDir, "blobs").list().length);
+
+        // Bytecode that no entry uses is removed
+        new File(new File(cacheDir, "keys"), sharedKey).setLastModified(old);
+        cache.prune(60 * 60 * 1000);
+        assertEquals(1, new File(cacheDir, "keys").list().length);
+        assertEquals(1, new File(cacheDir, "blobs").list().length);
+    }
+}
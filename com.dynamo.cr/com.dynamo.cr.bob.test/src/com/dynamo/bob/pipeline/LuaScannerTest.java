@@ -238,4 +238,56 @@ public class LuaScannerTest {
         assertProperty(properties, "prop4", "material", 3);
     }
 
+    private static String describe(String source) {
+        StringBuilder sb = new StringBuilder();
+        for (String module : LuaScanner.scan(source)) {
+            sb.append("require ").append(module).append("\n");
+        }
+        for (Property p : LuaScanner.scanProperties(source)) {
+            sb.append(String.format("property %d %s %s %s %s\n", p.line, p.status, p.name, p.type, p.value));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testCorpus() throws Exception {
+        // The expected results are those of the earlier line based scanner, except where
+        // it found requires and properties in strings and comments
+        String[] names = new String[] { "script", "module", "minified", "edge" };
+        for (String name : names) {
+            String source = getFile("test_scanner_corpus_" + name + ".lua");
+            assertEquals(name, getFile("test_scanner_corpus_" + name + ".txt"), describe(source));
+
+            // Stripping keeps the lines and the requires, and removes the properties
+            String stripped = LuaScanner.stripProperties(source);
+            assertEquals(name, source.split("\n", -1).length, stripped.split("\n", -1).length);
+            assertEquals(name, LuaScanner.scan(source), LuaScanner.scan(stripped));
+            assertEquals(name, 0, LuaScanner.scanProperties(stripped).size());
+        }
+    }
+
+    @Test
+    public void testStripComments() throws Exception {
+        String source = "local a = 1 -- comment\nlocal b = a--[[ c ]]+1\n--[[\nblock\n]]\nlocal s = \"-- not a comment\"\n";
+        assertEquals("local a = 1 \nlocal b = a +1\n\n\n\nlocal s = \"-- not a comment\"\n", LuaScanner.stripProperties(source));
+
+        source = "go.property(\"a\", 1); -- comment\nprint(1)";
+        assertEquals("                     \nprint(1)", LuaScanner.stripProperties(source));
+    }
+
+    @Test(timeout = 10000)
+    public void testLongLine() throws Exception {
+        // A long line with many quotes, which was quadratic with the line based scanner
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; ++i) {
+            sb.append("local a").append(i).append(" = require \"m\" .. '\" require \"' ");
+        }
+        sb.append("local b = require \"last\"\n");
+        String source = sb.toString();
+        List<String> modules = LuaScanner.scan(source);
+        assertEquals(1, modules.size());
+        assertEquals("last", modules.get(0));
+        assertEquals(source.length(), LuaScanner.stripProperties(source).length());
+    }
+
 }
@@ -19,6 +19,7 @@ import java.util.Map;
 import org.apache.commons.io.FilenameUtils;
 
 import com.dynamo.bob.fs.IResource;
+import com.dynamo.buffer.proto.BufferProto.BufferDesc;
 import com.dynamo.gameobject.proto.GameObject.CollectionDesc;
 import com.dynamo.gameobject.proto.GameObject.PrototypeDesc;
 import com.dynamo.graphics.proto.Graphics;
@@ -51,6 +52,12 @@ public class ParseUtil {
                 return CollectionDesc.parseFrom(content);
             }
         });
+        parseMap.put("bufferc", new IParser() {
+            @Override
+            public Message parse(byte[] content) throws InvalidProtocolBufferException {
+                return BufferDesc.parseFrom(content);
+            }
+        });
         parseMap.put("scriptc", new IParser() {
             @Override
             public Message parse(byte[] content) throws InvalidProtocolBufferException {
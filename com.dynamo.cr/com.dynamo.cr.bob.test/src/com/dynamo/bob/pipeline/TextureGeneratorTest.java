@@ -109,6 +109,24 @@ public class TextureGeneratorTest {
         assertEquals(TextureFormat.TEXTURE_FORMAT_RGB, image.getFormat());
     }
 
+    @Test
+    public void testRGBWithoutConversion() throws TextureGeneratorException, IOException {
+        // BGR images are read as is, and must give the same texture as other RGB images, which are converted to ABGR
+        BufferedImage bgr = new BufferedImage(16, 8, BufferedImage.TYPE_3BYTE_BGR);
+        BufferedImage rgb = new BufferedImage(16, 8, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 8; ++y) {
+            for (int x = 0; x < 16; ++x) {
+                int color = (x * 16) << 16 | (y * 32) << 8 | (x + y);
+                bgr.setRGB(x, y, color);
+                rgb.setRGB(x, y, color);
+            }
+        }
+        Image fromBGR = TextureGenerator.generate(bgr, null, false).getAlternatives(0);
+        Image fromRGB = TextureGenerator.generate(rgb, null, false).getAlternatives(0);
+        assertEquals(TextureFormat.TEXTURE_FORMAT_RGB, fromBGR.getFormat());
+        assertEquals(fromRGB.getData(), fromBGR.getData());
+    }
+
     @Test
     public void testLuminance() throws TextureGeneratorException, IOException {
         TextureImage texture = TextureGenerator.generate(getClass().getResourceAsStream("128_64_lum.png"));
@@ -0,0 +1,105 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+// 
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+// 
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.pipeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TextureResamplerTest {
+
+    // Fill an image with a pattern of two RGBA colors, packed as 0xRRGGBBAA
+    static ByteBuffer createChecker(int width, int height, int color0, int color1) {
+        ByteBuffer pixels = ByteBuffer.allocateDirect(width * height * 4);
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                pixels.putInt(((x + y) & 1) == 0 ? color0 : color1);
+            }
+        }
+        pixels.flip();
+        return pixels;
+    }
+
+    static int getByte(ByteBuffer pixels, int x, int y, int width, int channel) {
+        return pixels.get((y * width + x) * 4 + channel) & 0xff;
+    }
+
+    @Test
+    public void testMipMapSizes() throws Exception {
+        int[][] sizes = new int[][] { { 128, 64 }, { 64, 32 }, { 32, 16 }, { 16, 8 }, { 8, 4 }, { 4, 2 }, { 2, 1 }, { 1, 1 } };
+        List<ByteBuffer> levels = TextureResampler.generate(createChecker(100, 70, 0xff0000ff, 0x00ff00ff), 100, 70, 128, 64, true, true);
+        assertEquals(sizes.length, levels.size());
+        for (int i = 0; i < sizes.length; ++i) {
+            assertEquals(sizes[i][0] * sizes[i][1] * 4, levels.get(i).capacity());
+        }
+
+        levels = TextureResampler.generate(createChecker(100, 70, 0xff0000ff, 0x00ff00ff), 100, 70, 128, 64, false, true);
+        assertEquals(1, levels.size());
+    }
+
+    @Test
+    public void testUnchangedLevel() throws Exception {
+        ByteBuffer pixels = createChecker(4, 4, 0x80402000, 0xffffffff);
+        List<ByteBuffer> levels = TextureResampler.generate(pixels, 4, 4, 4, 4, false, false);
+        assertEquals(pixels, levels.get(0));
+    }
+
+    @Test
+    public void testLinearColorSpace() throws Exception {
+        // Black and white average to a linear gray, which is brighter than 128 in sRGB
+        List<ByteBuffer> levels = TextureResampler.generate(createChecker(16, 16, 0x000000ff, 0xffffffff), 16, 16, 16, 16, true, true);
+        ByteBuffer level = levels.get(1);
+        for (int c = 0; c < 3; ++c) {
+            assertEquals(188, getByte(level, 3, 3, 8, c), 1);
+        }
+        assertEquals(255, getByte(level, 3, 3, 8, 3));
+    }
+
+    @Test
+    public void testAlphaWeighted() throws Exception {
+        // The color of transparent pixels must not bleed into the visible ones
+        List<ByteBuffer> levels = TextureResampler.generate(createChecker(16, 16, 0xff0000ff, 0x00ff0000), 16, 16, 16, 16, true, false);
+        ByteBuffer level = levels.get(1);
+        assertEquals(255, getByte(level, 3, 3, 8, 0));
+        assertEquals(0, getByte(level, 3, 3, 8, 1));
+        assertEquals(128, getByte(level, 3, 3, 8, 3), 1);
+
+        // Unless all pixels are transparent
+        levels = TextureResampler.generate(createChecker(16, 16, 0xffffff00, 0xffffff00), 16, 16, 16, 16, true, false);
+        assertEquals(255, getByte(levels.get(1), 3, 3, 8, 0));
+
+        // Premultiplied levels have no color where alpha is 0
+        levels = TextureResampler.generate(createChecker(16, 16, 0xffffff00, 0xffffff00), 16, 16, 16, 16, true, true);
+        for (ByteBuffer l : levels) {
+            assertEquals(0, getByte(l, 0, 0, 1, 0));
+        }
+    }
+
+    @Test
+    public void testDownsample() throws Exception {
+        // A flat color stays flat when filtered
+        List<ByteBuffer> levels = TextureResampler.generate(createChecker(300, 200, 0x336699ff, 0x336699ff), 300, 200, 64, 64, true, true);
+        for (ByteBuffer level : levels) {
+            for (int i = 0; i < level.capacity(); i += 4) {
+                assertTrue(Math.abs((level.get(i) & 0xff) - 0x33) <= 1);
+                assertTrue(Math.abs((level.get(i + 1) & 0xff) - 0x66) <= 1);
+                assertTrue(Math.abs((level.get(i + 2) & 0xff) - 0x99) <= 1);
+                assertEquals(0xff, level.get(i + 3) & 0xff);
+            }
+        }
+    }
+}
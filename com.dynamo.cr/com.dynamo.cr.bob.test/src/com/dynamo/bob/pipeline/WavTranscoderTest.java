@@ -0,0 +1,117 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+// 
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+// 
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.pipeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+import com.dynamo.bob.pipeline.WavTranscoder.Sound;
+import com.dynamo.sound.proto.Sound.SoundPathSettings;
+import com.dynamo.sound.proto.Sound.SoundProfile;
+import com.dynamo.sound.proto.Sound.SoundProfiles;
+
+public class WavTranscoderTest {
+
+    static Sound createSine(int channelCount, int sampleRate, int bitsPerSample, double frequency, double amplitude, double seconds) {
+        Sound sound = new Sound();
+        sound.format = 1;
+        sound.sampleRate = sampleRate;
+        sound.bitsPerSample = bitsPerSample;
+        sound.channels = new float[channelCount][(int) (sampleRate * seconds)];
+        for (float[] channel : sound.channels) {
+            for (int i = 0; i < channel.length; ++i) {
+                channel[i] = (float) (amplitude * Math.sin(2.0 * Math.PI * frequency * i / sampleRate));
+            }
+        }
+        return sound;
+    }
+
+    @Test
+    public void testTranscode() throws Exception {
+        byte[] data = WavTranscoder.encode(createSine(2, 44100, 16, 1000.0, 0.5, 2.0), 16);
+        SoundProfile profile = SoundProfile.newBuilder()
+                .setName("voice")
+                .setMono(true)
+                .setSampleRate(22050)
+                .setLoudness(-20.0f)
+                .build();
+
+        Sound sound = WavTranscoder.decode(WavTranscoder.transcode(data, profile));
+        assertEquals(1, sound.channels.length);
+        assertEquals(22050, sound.sampleRate);
+        assertEquals(16, sound.bitsPerSample);
+        assertEquals(44100, sound.getFrameCount());
+        assertEquals(-20.0, WavTranscoder.loudness(sound.channels, sound.sampleRate), 0.1);
+    }
+
+    @Test
+    public void testUnchanged() throws Exception {
+        byte[] data = WavTranscoder.encode(createSine(1, 22050, 16, 440.0, 0.25, 0.5), 16);
+        SoundProfile profile = SoundProfile.newBuilder()
+                .setName("unchanged")
+                .setSampleRate(44100)
+                .build();
+
+        // Sounds are never upsampled, so the file already matches the profile
+        assertTrue(data == WavTranscoder.transcode(data, profile));
+    }
+
+    static byte[] create24BitWav(float[] samples, int sampleRate) {
+        int dataSize = samples.length * 3;
+        ByteBuffer buffer = ByteBuffer.allocate(44 + dataSize + (dataSize & 1)).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put("RIFF".getBytes()).putInt(36 + dataSize + (dataSize & 1)).put("WAVE".getBytes());
+        buffer.put("fmt ".getBytes()).putInt(16).putShort((short) 1).putShort((short) 1);
+        buffer.putInt(sampleRate).putInt(sampleRate * 3).putShort((short) 3).putShort((short) 24);
+        buffer.put("data".getBytes()).putInt(dataSize);
+        for (float v : samples) {
+            int s = Math.round(v * 8388607.0f);
+            buffer.put((byte) s).put((byte) (s >> 8)).put((byte) (s >> 16));
+        }
+        return buffer.array();
+    }
+
+    @Test
+    public void testBitsPerSample() throws Exception {
+        // 24 bit samples can't be played by the runtime
+        float[] samples = createSine(1, 44100, 24, 440.0, 0.5, 0.5).channels[0];
+        byte[] data = create24BitWav(samples, 44100);
+        SoundProfile profile = SoundProfile.newBuilder().setName("default").build();
+
+        Sound sound = WavTranscoder.decode(WavTranscoder.transcode(data, profile));
+        assertEquals(16, sound.bitsPerSample);
+        assertEquals(samples.length, sound.getFrameCount());
+        for (int i = 0; i < samples.length; ++i) {
+            assertEquals(samples[i], sound.channels[0][i], 1.0 / 32768);
+        }
+    }
+
+    @Test
+    public void testProfileByPath() throws Exception {
+        SoundProfiles profiles = SoundProfiles.newBuilder()
+                .addPathSettings(SoundPathSettings.newBuilder().setPath("/sounds/voice/**").setProfile("voice"))
+                .addPathSettings(SoundPathSettings.newBuilder().setPath("**").setProfile("default"))
+                .addProfiles(SoundProfile.newBuilder().setName("voice").setMono(true))
+                .addProfiles(SoundProfile.newBuilder().setName("default"))
+                .build();
+
+        assertEquals("voice", WavBuilder.getSoundProfileByPath(profiles, "sounds/voice/hello.wav").getName());
+        assertEquals("default", WavBuilder.getSoundProfileByPath(profiles, "sounds/music.wav").getName());
+        assertNull(WavBuilder.getSoundProfileByPath(null, "sounds/music.wav"));
+    }
+}
@@ -0,0 +1,35 @@
+-- Copyright 2020 The Defold Foundation
+-- Licensed under the Defold License version 1.0 (the "License"); you may not use
+-- this file except in compliance with the License.
+-- 
+-- You may obtain a copy of the License, together with FAQs at
+-- https://www.defold.com/license
+-- 
+-- Unless required by applicable law or agreed to in writing, software distributed
+-- under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+-- CONDITIONS OF ANY KIND, either express or implied. See the License for the
+-- specific language governing permissions and limitations under the License.
+
+-- Corner cases of the old line based scanner, which are kept
+
+---[[ this is a line comment
+require "after.dashes"
+--]]
+local foo = require("spaced")   .foo
+local bar = require ( "spaced.parens" )
+local a = require "a" .. "b"
+local b = require("not_last"), 1
+local c = require("chained").x.y
+local d = require("called")()
+local e = require "first.a" local f = require "second.b"
+local g = require
+    "on.next.line"
+local x = require("x") -- trailing comment with (parens) and "quotes"
+go.property("not_alone", 1) local y = 1
+local z = 1 go.property("not_first", 1)
+go.property("spanning",
+    1)
+go.property("comment_after", 2) -- comment
+go.property("semicolon", 3);
+go.property("parens_in_string", hash("(x)"))
+go.property('single_quotes', 4)
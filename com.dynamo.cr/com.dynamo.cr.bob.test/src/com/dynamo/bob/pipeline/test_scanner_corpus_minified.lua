@@ -0,0 +1,16 @@
+-- Copyright 2020 The Defold Foundation
+-- Licensed under the Defold License version 1.0 (the "License"); you may not use
+-- this file except in compliance with the License.
+-- 
+-- You may obtain a copy of the License, together with FAQs at
+-- https://www.defold.com/license
+-- 
+-- Unless required by applicable law or agreed to in writing, software distributed
+-- under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+-- CONDITIONS OF ANY KIND, either express or implied. See the License for the
+-- specific language governing permissions and limitations under the License.
+
+-- Minified code, on a few very long lines
+local m0=require("mods.m0");local function f0(a,b) if a>b then return "x0" else return b..'y' end end;local m1=require("mods.m1");local function f1(a,b) if a>b then return "x1" else return b..'y' end end;local m2=require("mods.m2");local function f2(a,b) if a>b then return "x2" else return b..'y' end end;local m3=require("mods.m3");local function f3(a,b) if a>b then return "x3" else return b..'y' end end;local m4=require("mods.m4");local function f4(a,b) if a>b then return "x4" else return b..'y' end end;local m5=require("mods.m5");local function f5(a,b) if a>b then return "x5" else return b..'y' end end;local m6=require("mods.m6");local function f6(a,b) if a>b then return "x6" else return b..'y' end end;local m7=require("mods.m7");local function f7(a,b) if a>b then return "x7" else return b..'y' end end;local m8=require("mods.m8");local function f8(a,b) if a>b then return "x8" else return b..'y' end end;local m9=require("mods.m9");local function f9(a,b) if a>b then return "x9" else return b..'y' end end;local m10=require("mods.m10");local function f10(a,b) if a>b then return "x10" else return b..'y' end end;local m11=require("mods.m11");local function f11(a,b) if a>b then return "x11" else return b..'y' end end;local m12=require("mods.m12");local function f12(a,b) if a>b then return "x12" else return b..'y' end end;local m13=require("mods.m13");local function f13(a,b) if a>b then return "x13" else return b..'y' end end;local m14=require("mods.m14");local function f14(a,b) if a>b then return "x14" else return b..'y' end end;local m15=require("mods.m15");local function f15(a,b) if a>b then return "x15" else return b..'y' end end;local m16=require("mods.m16");local function f16(a,b) if a>b then return "x16" else return b..'y' end end;local m17=require("mods.m17");local function f17(a,b) if a>b then return "x17" else return b..'y' end end;local m18=require("mods.m18");local function f18(a,b) if a>b then return "x18" else return b..'y' end end;local m19=require("mods.m19");local function f19(a,b) if a>b then return "x19" else return b..'y' end end;local m20=require("mods.m20");local function f20(a,b) if a>b then return "x20" else return b..'y' end end;local m21=require("mods.m21");local function f21(a,b) if a>b then return "x21" else return b..'y' end end;local m22=require("mods.m22");local function f22(a,b) if a>b then return "x22" else return b..'y' end end;local m23=require("mods.m23");local function f23(a,b) if a>b then return "x23" else return b..'y' end end;local m24=require("mods.m24");local function f24(a,b) if a>b then return "x24" else return b..'y' end end;local m25=require("mods.m25");local function f25(a,b) if a>b then return "x25" else return b..'y' end end;local m26=require("mods.m26");local function f26(a,b) if a>b then return "x26" else return b..'y' end end;local m27=require("mods.m27");local function f27(a,b) if a>b then return "x27" else return b..'y' end end;local m28=require("mods.m28");local function f28(a,b) if a>b then return "x28" else return b..'y' end end;local m29=require("mods.m29");local function f29(a,b) if a>b then return "x29" else return b..'y' end end;local m30=require("mods.m30");local function f30(a,b) if a>b then return "x30" else return b..'y' end end;local m31=require("mods.m31");local function f31(a,b) if a>b then return "x31" else return b..'y' end end;local m32=require("mods.m32");local function f32(a,b) if a>b then return "x32" else return b..'y' end end;local m33=require("mods.m33");local function f33(a,b) if a>b then return "x33" else return b..'y' end end;local m34=require("mods.m34");local function f34(a,b) if a>b then return "x34" else return b..'y' end end;local m35=require("mods.m35");local function f35(a,b) if a>b then return "x35" else return b..'y' end end;local m36=require("mods.m36");local function f36(a,b) if a>b then return "x36" else return b..'y' end end;local m37=require("mods.m37");local function f37(a,b) if a>b then return "x37" else return b..'y' end end;local m38=require("mods.m38");local function f38(a,b) if a>b then return "x38" else return b..'y' end end;local m39=require("mods.m39");local function f39(a,b) if a>b then return "x39" else return b..'y' end end
+local t={k0=require("mods.k0"),k1=require("mods.k1"),k2=require("mods.k2"),k3=require("mods.k3"),k4=require("mods.k4"),k5=require("mods.k5"),k6=require("mods.k6"),k7=require("mods.k7"),k8=require("mods.k8"),k9=require("mods.k9"),k10=require("mods.k10"),k11=require("mods.k11"),k12=require("mods.k12"),k13=require("mods.k13"),k14=require("mods.k14"),k15=require("mods.k15"),k16=require("mods.k16"),k17=require("mods.k17"),k18=require("mods.k18"),k19=require("mods.k19"),k20=require("mods.k20"),k21=require("mods.k21"),k22=require("mods.k22"),k23=require("mods.k23"),k24=require("mods.k24"),k25=require("mods.k25"),k26=require("mods.k26"),k27=require("mods.k27"),k28=require("mods.k28"),k29=require("mods.k29")}
+local last=require("mods.last")
@@ -0,0 +1,54 @@
+-- Copyright 2020 The Defold Foundation
+-- Licensed under the Defold License version 1.0 (the "License"); you may not use
+-- this file except in compliance with the License.
+-- 
+-- You may obtain a copy of the License, together with FAQs at
+-- https://www.defold.com/license
+-- 
+-- Unless required by applicable law or agreed to in writing, software distributed
+-- under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+-- CONDITIONS OF ANY KIND, either express or implied. See the License for the
+-- specific language governing permissions and limitations under the License.
+
+--[[
+    A module with long strings and comments of all kinds.
+    require "in.block.comment"
+    go.property("in_block_comment", 1)
+]]
+
+local M = {}
+
+local handlers = {
+    ["a"] = require("handlers.a"),
+    ["b"] = require("handlers.b").handler,
+    ["c"] = require "handlers.c",
+}
+
+M.template = [[
+require "in.long.string"
+go.property("in_long_string", 1)
+]]
+
+M.other = [==[
+  a ]] inside
+  require "in.level.long.string"
+]==]
+
+--[==[
+require "in.level.comment"
+]==]
+
+local escaped = "a \"string\" with require 'escaped.quotes'"
+local continued = "a string continued \
+require 'on.the.next.line'"
+local two = require "first", require "second"
+
+local inline = --[[ comment ]] require "after.comment"
+local lib = require "lib.dashed-name" --[[ trailing block ]]
+
+function M.load(name)
+    -- Dynamic requires can't be resolved
+    return require(name)
+end
+
+return M
@@ -0,0 +1,53 @@
+-- Copyright 2020 The Defold Foundation
+-- Licensed under the Defold License version 1.0 (the "License"); you may not use
+-- this file except in compliance with the License.
+-- 
+-- You may obtain a copy of the License, together with FAQs at
+-- https://www.defold.com/license
+-- 
+-- Unless required by applicable law or agreed to in writing, software distributed
+-- under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+-- CONDITIONS OF ANY KIND, either express or implied. See the License for the
+-- specific language governing permissions and limitations under the License.
+
+-- A typical game object script
+
+local camera = require "main.camera"
+local input = require("main.input")
+local util = require 'lib.util'
+local tween = require('lib.tween').ease -- only the easing functions
+local settings = require "main.settings";
+
+go.property("speed", 250)
+go.property("acceleration", 1.5e3) -- pixels per second
+go.property("jump_height", -.5)
+go.property("target", hash("player"))
+go.property("spawner", msg.url("/level#spawner"))
+go.property("offset", vmath.vector3(0, 12.5, 0))
+go.property("tint", vmath.vector4(1, 1, 1, 0.5));
+go.property("rotation", vmath.quat())
+go.property("active", true)
+go.property("atlas", resource.atlas("/main/sprites.atlas"))
+go.property("invalid", vmath.vector3(a, b, c))
+  go.property( "indented" ,  3 )
+
+local SPEED_FACTOR = 0.5
+
+function init(self)
+    msg.post(".", "acquire_input_focus")
+    self.velocity = vmath.vector3()
+    -- require "not.a.module"
+    self.text = "go.property(\"no_prop\", 1)"
+end
+
+function update(self, dt)
+    local p = go.get_position()
+    p = p + self.velocity * dt * SPEED_FACTOR
+    go.set_position(p)
+end
+
+function on_input(self, action_id, action)
+    if action_id == hash("jump") and action.pressed then
+        self.velocity.y = self.jump_height
+    end
+end
@@ -0,0 +1,72 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+// 
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+// 
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.dynamo.bob.BuilderIndex;
+import com.dynamo.bob.ClassLoaderScanner;
+
+public class BuilderIndexTest {
+
+    private static BuilderIndex.Entry findEntry(List<BuilderIndex.Entry> entries, String inExt) {
+        for (BuilderIndex.Entry entry : entries) {
+            if (entry.getInExts().contains(inExt)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testCreate() throws Exception {
+        BuilderIndex index = BuilderIndex.create(new ClassLoaderScanner(), "com.dynamo.bob", "com.dynamo.bob.pipeline");
+        assertTrue(index.hasPackage("com.dynamo.bob"));
+        assertFalse(index.hasPackage("com.dynamo.bob.test"));
+
+        BuilderIndex.Entry entry = findEntry(index.getEntries("com.dynamo.bob.pipeline"), ".script");
+        assertNotNull(entry);
+        assertEquals("com.dynamo.bob.pipeline.ScriptBuilders$ScriptBuilder", entry.getClassName());
+        assertEquals(".scriptc", entry.getOutExt());
+    }
+
+    @Test
+    public void testReadWrite() throws Exception {
+        BuilderIndex index = BuilderIndex.create(new ClassLoaderScanner(), "com.dynamo.bob.pipeline");
+        StringWriter writer = new StringWriter();
+        index.write(writer);
+
+        BuilderIndex read = BuilderIndex.read(new ByteArrayInputStream(writer.toString().getBytes(StandardCharsets.UTF_8)));
+        assertTrue(read.hasPackage("com.dynamo.bob.pipeline"));
+        assertTrue(read.hasClass("com.dynamo.bob.pipeline.ScriptBuilders"));
+        assertFalse(read.hasClass("com.dynamo.bob.Project"));
+        List<BuilderIndex.Entry> expected = index.getEntries("com.dynamo.bob.pipeline");
+        List<BuilderIndex.Entry> actual = read.getEntries("com.dynamo.bob.pipeline");
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(expected.get(i).getClassName(), actual.get(i).getClassName());
+            assertEquals(expected.get(i).getOutExt(), actual.get(i).getOutExt());
+            assertEquals(expected.get(i).getInExts(), actual.get(i).getInExts());
+        }
+    }
+}
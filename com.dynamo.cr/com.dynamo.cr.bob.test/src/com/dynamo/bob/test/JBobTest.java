@@ -20,11 +20,13 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.matchers.JUnitMatchers.hasItem;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.net.URL;
 import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -36,10 +38,12 @@ import org.junit.Before;
 import org.junit.Test;
 
 import com.dynamo.bob.Builder;
+import com.dynamo.bob.BuilderIndex;
 import com.dynamo.bob.BuilderParams;
 import com.dynamo.bob.CommandBuilder;
 import com.dynamo.bob.CompileExceptionError;
 import com.dynamo.bob.CopyBuilder;
+import com.dynamo.bob.IClassScanner;
 import com.dynamo.bob.LibraryException;
 import com.dynamo.bob.MultipleCompileException;
 import com.dynamo.bob.NullProgress;
@@ -235,6 +239,34 @@ public class JBobTest {
         assertThat(classes, hasItem("com.dynamo.bob.test.JBobTest"));
     }
 
+    @Test
+    public void testIndexedScan() throws Exception {
+        // CBuilder is added after the index was created, e.g. by an extension
+        final String added = CBuilder.class.getName();
+        BuilderIndex index = BuilderIndex.create(new IClassScanner() {
+            @Override
+            public Set<String> scan(String pkg) {
+                Set<String> classNames = new HashSet<String>(new ClassLoaderScanner().scan(pkg));
+                classNames.remove(added);
+                return classNames;
+            }
+        }, "com.dynamo.bob.test");
+        assertFalse(index.hasClass(added));
+
+        project.dispose();
+        fileSystem = new MockFileSystem();
+        project = new Project(fileSystem);
+        project.scan(new ClassLoaderScanner(), "com.dynamo.bob.test", index);
+
+        fileSystem.addFile("test.in", "test data".getBytes());
+        fileSystem.addFile("test.c", "f();".getBytes());
+        project.setInputs(Arrays.asList("test.in", "test.c"));
+        List<TaskResult> result = build();
+        assertThat(result.size(), is(2));
+        assertThat(new String(fileSystem.get("test.out").output().getContent()), is("test data"));
+        assertThat(new String(fileSystem.get("test.o").output().getContent()), is("f();"));
+    }
+
     @Test
     public void testCopy() throws Exception {
         fileSystem.addFile("test.in", "test data".getBytes());
@@ -280,6 +312,46 @@ public class JBobTest {
         assertThat(result.get(0).isOk(), is(false));
     }
 
+    @Test
+    public void testReachableOnly() throws Exception {
+        fileSystem.addFile("game.project", "[bootstrap]\nmain_collection = /main/main.out\n".getBytes());
+        fileSystem.addFile("main/main.in", "component: \"/main/used.in\"".getBytes());
+        fileSystem.addFile("main/used.in", "data: \"embedded: \\\"/main/embedded.in\\\"\"".getBytes());
+        fileSystem.addFile("main/embedded.in", "embedded".getBytes());
+        fileSystem.addFile("test/unused.in", "unused".getBytes());
+        project.loadProjectFile();
+        project.setOption("reachable-only", "true");
+        project.setInputs(Arrays.asList("main/main.in", "main/used.in", "main/embedded.in", "test/unused.in"));
+        List<TaskResult> result = build();
+        assertThat(result.size(), is(3));
+        assertTrue(fileSystem.get("main/embedded.out").output().exists());
+        assertFalse(fileSystem.get("test/unused.out").output().exists());
+    }
+
+    @Test
+    public void testBuildTrace() throws Exception {
+        fileSystem.addFile("test.in", "test data".getBytes());
+        project.setInputs(Arrays.asList("test.in"));
+        build();
+        List<TaskResult> tasks = project.getBuildTracer().getTasks();
+        assertThat(tasks.size(), is(1));
+        assertFalse(tasks.get(0).isCached());
+        // Sizes come from the content, the resources aren't files on disk
+        assertThat(tasks.get(0).getBytesRead(), is(9L));
+        assertThat(tasks.get(0).getBytesWritten(), is(9L));
+
+        // Up to date, recorded as cached but not returned as a result
+        List<TaskResult> result = build();
+        assertThat(result.size(), is(0));
+        tasks = project.getBuildTracer().getTasks();
+        assertThat(tasks.size(), is(1));
+        assertTrue(tasks.get(0).isCached());
+
+        StringWriter writer = new StringWriter();
+        project.getBuildTracer().writeChromeTrace(writer);
+        assertTrue(writer.toString().contains("test.in"));
+    }
+
     @Test
     public void testAbsPath() throws Exception {
         fileSystem.addFile("/root/test.in", "test data".getBytes());
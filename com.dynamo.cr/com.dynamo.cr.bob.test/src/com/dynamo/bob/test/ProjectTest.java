@@ -15,6 +15,7 @@ package com.dynamo.bob.test;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
@@ -47,9 +48,11 @@ import org.junit.Test;
 
 import com.dynamo.bob.CompileExceptionError;
 import com.dynamo.bob.ClassLoaderScanner;
+import com.dynamo.bob.LibraryException;
 import com.dynamo.bob.ClassLoaderResourceScanner;
 import com.dynamo.bob.MultipleCompileException;
 import com.dynamo.bob.NullProgress;
+import com.dynamo.bob.Platform;
 import com.dynamo.bob.Project;
 import com.dynamo.bob.TaskResult;
 import com.dynamo.bob.util.LibraryUtil;
@@ -68,6 +71,7 @@ public class ProjectTest {
     private ArrayList<URL> libraryUrls = new ArrayList<URL>();
 
     private AtomicInteger _304Count = new AtomicInteger();
+    private String checksumHeader = null;
 
     @Rule
     public TestLibrariesRule testLibs = new TestLibrariesRule();
@@ -156,6 +160,40 @@ System.out.printf("testResolve start");
         System.out.printf("testResolve end");
     }
 
+    @Test
+    public void testResolveMany() throws Exception {
+        libraryUrls.add(new URL("http://localhost:8081/test_lib3.zip"));
+        libraryUrls.add(new URL("http://localhost:8081/test_lib4.zip"));
+        project.resolveLibUrls(new NullProgress());
+
+        String[] comments = {"111", "222", "555", "333", "444"};
+        for (int i = 0; i < libraryUrls.size(); ++i) {
+            File file = new File(FilenameUtils.concat(project.getLibPath(), LibraryUtil.libUrlToFilename(libraryUrls.get(i))));
+            assertTrue(file.exists());
+            assertEquals(comments[i], LibraryUtil.readZipComment(file));
+        }
+        // No temporary download files are left behind
+        assertEquals(libraryUrls.size(), new File(project.getLibPath()).list().length);
+
+        project.resolveLibUrls(new NullProgress());
+        assertEquals(libraryUrls.size(), _304Count.get());
+    }
+
+    @Test
+    public void testResolveChecksumMismatch() throws Exception {
+        checksumHeader = "0000000000000000000000000000000000000000";
+        try {
+            project.resolveLibUrls(new NullProgress());
+            fail("Expected a checksum error");
+        } catch (LibraryException e) {
+            assertTrue(e.getMessage().contains("checksum"));
+        }
+        // The broken download must not be placed in the lib dir
+        for (URL url : libraryUrls) {
+            assertFalse(libExists(LibraryUtil.libUrlToFilename(url)));
+        }
+    }
+
     @Test
     public void testMountPoints() throws Exception {
         System.out.printf("testMountPoints start");
@@ -242,6 +280,24 @@ System.out.printf("testResolve start");
         System.out.printf("end");
     }
 
+    @Test
+    public void testTargetPlatforms() throws Exception {
+        assertTrue(project.getTargetPlatforms().isEmpty());
+
+        project.setOption("platform", "armv7-android");
+        assertEquals(Arrays.asList(Platform.Armv7Android), project.getTargetPlatforms());
+
+        project.setOption("platform", "armv7-android,js-web, x86_64-linux,js-web");
+        assertEquals(Arrays.asList(Platform.Armv7Android, Platform.JsWeb, Platform.X86_64Linux), project.getTargetPlatforms());
+
+        project.setOption("platform", "armv7-android,no-platform");
+        try {
+            project.getTargetPlatforms();
+            fail("Expected an unsupported platform");
+        } catch (CompileExceptionError e) {
+        }
+    }
+
     private class FileHandler extends ResourceHandler {
         public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException ,javax.servlet.ServletException {
 
@@ -270,6 +326,9 @@ System.out.printf("testResolve start");
                 if (sha1 != null) {
                     response.setHeader("ETag", sha1);
                 }
+                if (checksumHeader != null) {
+                    response.setHeader("X-Checksum-Sha1", checksumHeader);
+                }
                 if (etag != null && etag.equals(sha1)) {
                     _304Count.incrementAndGet();
                     response.setStatus(304);
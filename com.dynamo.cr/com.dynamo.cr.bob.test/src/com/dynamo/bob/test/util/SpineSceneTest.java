@@ -657,6 +657,43 @@ public class SpineSceneTest {
         assertEquals(SpineSceneUtil.slotSignalUnchanged, drawOrderBuilder.GetOrderOffset(14));
     }
 
+    @Test
+    public void testLoadingUnusedSections() throws Exception {
+        // Sections that aren't loaded, e.g. transform constraints and deform timelines, are skipped
+        String json = "{"
+                + "\"skeleton\": { \"spine\": \"3.8.99\" },"
+                + "\"bones\": [ { \"name\": \"root\" } ],"
+                + "\"transform\": [ { \"name\": \"t\", \"bones\": [ \"root\" ], \"target\": \"root\" } ],"
+                + "\"slots\": [ { \"name\": \"slot\", \"bone\": \"root\", \"attachment\": \"mesh\" } ],"
+                + "\"skins\": ["
+                + "  { \"name\": \"default\", \"attachments\": { \"slot\": { \"mesh\": {"
+                + "    \"type\": \"mesh\", \"uvs\": [ 0, 0, 1, 0, 1, 1 ], \"triangles\": [ 0, 1, 2 ], \"vertices\": [ 0, 0, 10, 0, 10, 10 ] } } } },"
+                + "  { \"name\": \"other\", \"attachments\": { \"slot\": { \"region\": { \"width\": 10, \"height\": 10 } } } }"
+                + "],"
+                + "\"animations\": { \"anim\": {"
+                + "  \"deform\": { \"default\": { \"slot\": { \"mesh\": [ { \"time\": 0, \"vertices\": [ 1, 1 ] } ] } } },"
+                + "  \"bones\": { \"root\": { \"rotate\": [ { \"time\": 0, \"angle\": 0 }, { \"time\": 1, \"angle\": 90 } ] } }"
+                + "} }"
+                + "}";
+        SpineSceneUtil scene = SpineSceneUtil.loadJson(new ByteArrayInputStream(json.getBytes("UTF-8")), new TestUVTProvider());
+
+        assertEquals(2, scene.attachments.size());
+        MeshAttachment mesh = scene.getDefaultAttachments().get(0);
+        assertEquals(3 * 5, mesh.vertices.length);
+        assertEquals(10.0, mesh.vertices[5], EPSILON);
+        assertEquals(3, mesh.triangles.length);
+        assertEquals(2, mesh.triangles[2]);
+
+        // The attachment of the other skin is an attachment point of the slot
+        BaseSlot slot = scene.getBaseSlot("slot");
+        assertEquals(2, slot.attachments.size());
+        assertEquals(1, scene.getAttachmentsForSkin("other").size());
+
+        Animation anim = scene.getAnimation("anim");
+        assertEquals(1, anim.tracks.size());
+        assertEquals(1.0, anim.duration, EPSILON);
+    }
+
     @Test
     public void testEmptyScene() throws Exception {
         InputStream input = null;
@@ -29,6 +29,7 @@ import com.dynamo.bob.textureset.TextureSetGenerator.AnimDesc;
 import com.dynamo.bob.textureset.TextureSetGenerator.AnimIterator;
 import com.dynamo.bob.textureset.TextureSetGenerator.TextureSetResult;
 import com.dynamo.bob.textureset.TextureSetGenerator.UVTransform;
+import com.dynamo.bob.util.RGBAImage;
 import com.dynamo.textureset.proto.TextureSetProto.TextureSet;
 import com.dynamo.textureset.proto.TextureSetProto.TextureSetAnimation;
 import com.dynamo.tile.proto.Tile.Playback;
@@ -96,6 +97,16 @@ public class TextureSetGeneratorTest {
         return new BufferedImage(w, h, BufferedImage.TYPE_4BYTE_ABGR);
     }
 
+    BufferedImage newPatternImage(int w, int h, int seed) {
+        BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < h; ++y) {
+            for (int x = 0; x < w; ++x) {
+                image.setRGB(x, y, 0xff000000 | ((seed * 40 + x * 7) & 0xff) << 16 | ((y * 13) & 0xff) << 8 | ((x * y + seed) & 0xff));
+            }
+        }
+        return image;
+    }
+
     MappedAnimDesc newAnim(String id, List<String> ids) {
         return new MappedAnimDesc(id, ids, Playback.PLAYBACK_LOOP_BACKWARD, 30, false, false);
     }
@@ -227,6 +238,90 @@ public class TextureSetGeneratorTest {
         assertUVTransform(0.5f, 1.0f, 0.5f, -0.5f, getUvTransforms(result.uvTransforms, textureSet, "anim1", 2));
     }
 
+    @Test
+    public void testRasterMatchesImage() throws Exception {
+        // Mixed sizes to force rotation, plus padding and extrusion
+        List<BufferedImage> images = Arrays.asList(newPatternImage(40, 12, 1), newPatternImage(12, 40, 2),
+                newPatternImage(17, 9, 3), newPatternImage(5, 30, 4));
+        List<String> ids = Arrays.asList("1", "2", "3", "4");
+        List<Integer> hullSizes = Arrays.asList(0, 0, 0, 0);
+
+        List<MappedAnimDesc> animations = new ArrayList<MappedAnimDesc>();
+        animations.add(newAnim("anim1", Arrays.asList("1", "2", "3", "4")));
+
+        TextureSetResult expected = TextureSetGenerator.generate(new ArrayList<BufferedImage>(images), hullSizes, ids,
+                new MappedAnimIterator(animations, ids), 1, 2, 3, true, false, null);
+        TextureSetResult actual = TextureSetGenerator.generateRaster(new ArrayList<BufferedImage>(images), hullSizes, ids,
+                new MappedAnimIterator(animations, ids), 1, 2, 3, true, false, null, 0);
+
+        BufferedImage image = expected.image;
+        assertThat(actual.rasters.size(), is(1));
+        try (RGBAImage raster = actual.rasters.get(0)) {
+            assertThat(raster.getWidth(), is(image.getWidth()));
+            assertThat(raster.getHeight(), is(image.getHeight()));
+            assertThat(raster.isFlippedY(), is(true));
+            for (int y = 0; y < image.getHeight(); ++y) {
+                for (int x = 0; x < image.getWidth(); ++x) {
+                    int expectedPixel = image.getRGB(x, y);
+                    if ((expectedPixel >>> 24) == 0) {
+                        expectedPixel = 0;
+                    }
+                    assertEquals(expectedPixel, raster.getARGB(x, y));
+                }
+            }
+        }
+        assertEquals(expected.builder.setTexture("").build(), actual.builder.setTexture("").build());
+    }
+
+    @Test
+    public void testMultiPage() throws Exception {
+        List<BufferedImage> images = Arrays.asList(newPatternImage(32, 32, 1), newPatternImage(32, 32, 2),
+                newPatternImage(32, 32, 3), newPatternImage(32, 32, 4), newPatternImage(32, 32, 5));
+        List<String> ids = Arrays.asList("1", "2", "3", "4", "5");
+        List<Integer> hullSizes = Arrays.asList(0, 0, 0, 0, 0);
+
+        List<MappedAnimDesc> animations = new ArrayList<MappedAnimDesc>();
+        animations.add(newAnim("anim1", Arrays.asList("1", "5")));
+
+        TextureSetResult result = TextureSetGenerator.generateRaster(images, hullSizes, ids,
+                new MappedAnimIterator(animations, ids), 0, 0, 0, true, false, null, 64);
+        TextureSet textureSet = result.builder.setTexture("").build();
+
+        // Four images fit on the first 64x64 page, the fifth spills over
+        assertThat(result.rasters.size(), is(2));
+        assertThat(result.layoutResult.layout.getPageCount(), is(2));
+        assertThat(result.layoutResult.layout.getWidth(), is(64));
+        assertThat(result.layoutResult.layout.getHeight(), is(64));
+        assertThat(textureSet.getPageIndicesCount(), is(images.size()));
+
+        int[] pageUsage = new int[2];
+        for (int pageIndex : textureSet.getPageIndicesList()) {
+            pageUsage[pageIndex]++;
+        }
+        assertThat(pageUsage[0], is(4));
+        assertThat(pageUsage[1], is(1));
+
+        for (RGBAImage raster : result.rasters) {
+            assertThat(raster.getWidth(), is(64));
+            assertThat(raster.getHeight(), is(64));
+            raster.close();
+        }
+    }
+
+    @Test
+    public void testSinglePageHasNoPageIndices() throws Exception {
+        List<BufferedImage> images = Arrays.asList(newImage(16, 16), newImage(16, 16));
+        List<String> ids = Arrays.asList("1", "2");
+        List<Integer> hullSizes = Arrays.asList(0, 0);
+
+        TextureSetResult result = TextureSetGenerator.generateRaster(images, hullSizes, ids,
+                new MappedAnimIterator(new ArrayList<MappedAnimDesc>(), ids), 0, 0, 0, true, false, null, 64);
+        TextureSet textureSet = result.builder.setTexture("").build();
+        assertThat(result.rasters.size(), is(1));
+        assertThat(textureSet.getPageIndicesCount(), is(0));
+        result.rasters.get(0).close();
+    }
+
     private static int getFrameIndex(TextureSet textureSet, String id, int frame) {
         return textureSet.getFrameIndices(getAnim(textureSet, id).getStart() + frame);
     }
@@ -162,6 +162,38 @@ public class TextureSetLayoutTest {
         assertRect(layout, 3, "3", 3, 0, (15 + 2) * 2);
     }
 
+    @Test
+    public void testPagedLayout() {
+        List<TextureSetLayout.Rect> rectangles = new ArrayList<TextureSetLayout.Rect>();
+        for (int i = 0; i < 9; ++i) {
+            rectangles.add(rect(Integer.toString(i), i, 16, 16));
+        }
+
+        Layout layout = TextureSetLayout.packedLayout(0, rectangles, true, 32);
+        assertThat(layout.getWidth(), is(32));
+        assertThat(layout.getHeight(), is(32));
+        assertThat(layout.getPageCount(), is(3));
+        assertThat(layout.getRectangles().size(), is(9));
+        for (Rect r : layout.getRectangles()) {
+            assertThat(r.x + r.width <= 32, is(true));
+            assertThat(r.y + r.height <= 32, is(true));
+        }
+    }
+
+    @Test
+    public void testPagedLayoutUnlimited() {
+        List<TextureSetLayout.Rect> rectangles
+            = Arrays.asList(rect("0", 0, 16, 16),
+                            rect("1", 1, 16, 16),
+                            rect("2", 2, 16, 16),
+                            rect("3", 3, 16, 16));
+
+        Layout layout = TextureSetLayout.packedLayout(0, rectangles, true, 0);
+        assertThat(layout.getWidth(), is(32));
+        assertThat(layout.getHeight(), is(32));
+        assertThat(layout.getPageCount(), is(1));
+    }
+
     @Test
     public void testThinStrip() {
         List<TextureSetLayout.Rect> rectangles = Arrays.asList(rect("0", 0, 1, 16));
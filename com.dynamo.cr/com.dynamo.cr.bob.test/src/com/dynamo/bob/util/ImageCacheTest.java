@@ -0,0 +1,73 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+// 
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+// 
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.dynamo.bob.fs.IResource;
+import com.dynamo.bob.test.util.MockFileSystem;
+
+public class ImageCacheTest {
+
+    @After
+    public void tearDown() {
+        ImageCache.clear();
+    }
+
+    private static IResource createImage(MockFileSystem fileSystem, String path, int type, int color) throws Exception {
+        BufferedImage image = new BufferedImage(4, 4, type);
+        for (int y = 0; y < 4; ++y) {
+            for (int x = 0; x < 4; ++x) {
+                image.setRGB(x, y, color);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(image, "png", out));
+        fileSystem.addFile(path, out.toByteArray());
+        return fileSystem.get(path);
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        MockFileSystem fileSystem = new MockFileSystem();
+        IResource rgba = createImage(fileSystem, "/rgba.png", BufferedImage.TYPE_4BYTE_ABGR, 0x80112233);
+        IResource rgb = createImage(fileSystem, "/rgb.png", BufferedImage.TYPE_3BYTE_BGR, 0x00445566);
+
+        // The decoded type is kept, so that the texture generator doesn't have to convert it
+        BufferedImage first = ImageCache.read(rgba);
+        assertEquals(BufferedImage.TYPE_4BYTE_ABGR, first.getType());
+        assertEquals(0x80112233, first.getRGB(1, 1));
+        assertEquals(BufferedImage.TYPE_3BYTE_BGR, ImageCache.read(rgb).getType());
+
+        // Changing a returned image doesn't change the image of the next reader
+        first.setRGB(1, 1, 0xffffffff);
+        first.getRaster().setSample(2, 2, 0, 0);
+        BufferedImage second = ImageCache.read(rgba);
+        assertEquals(BufferedImage.TYPE_4BYTE_ABGR, second.getType());
+        assertEquals(0x80112233, second.getRGB(1, 1));
+        assertEquals(0x80112233, second.getRGB(2, 2));
+
+        fileSystem.addFile("/invalid.png", "invalid".getBytes());
+        assertNull(ImageCache.read(fileSystem.get("/invalid.png")));
+    }
+}
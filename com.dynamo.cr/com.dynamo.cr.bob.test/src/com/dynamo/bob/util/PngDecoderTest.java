@@ -0,0 +1,110 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+// 
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+// 
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+public class PngDecoderTest {
+
+    private byte[] getResource(String name) throws IOException {
+        InputStream is = getClass().getResourceAsStream("/com/dynamo/bob/pipeline/" + name);
+        try {
+            return IOUtils.toByteArray(is);
+        } finally {
+            is.close();
+        }
+    }
+
+    private static byte[] writePng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(image, "png", out));
+        return out.toByteArray();
+    }
+
+    // The decoded image must look the same, and have as many components, as when read with ImageIO
+    private static void assertSameAsImageIO(byte[] data) throws IOException {
+        BufferedImage expected = ImageIO.read(new ByteArrayInputStream(data));
+        BufferedImage actual = PngDecoder.decode(data);
+        assertNotNull(actual);
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        assertEquals(expected.getColorModel().getNumComponents(), actual.getColorModel().getNumComponents());
+        assertEquals(expected.getColorModel().hasAlpha(), actual.getColorModel().hasAlpha());
+        for (int y = 0; y < expected.getHeight(); ++y) {
+            for (int x = 0; x < expected.getWidth(); ++x) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testFormats() throws Exception {
+        assertSameAsImageIO(getResource("128_64_rgba.png"));
+        assertSameAsImageIO(getResource("127_65_rgba.png"));
+        assertSameAsImageIO(getResource("128_64_rgb.png"));
+        assertSameAsImageIO(getResource("128_64_lum.png"));
+        assertSameAsImageIO(getResource("128_64_luma.png"));
+        assertSameAsImageIO(getResource("128_64_idx.png"));
+        assertSameAsImageIO(getResource("btn_next_level.png"));
+    }
+
+    @Test
+    public void testFilters() throws Exception {
+        // Noise with gradients, so that the encoder picks all kinds of row filters
+        Random random = new Random(0);
+        int[] types = new int[] { BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_GRAY };
+        for (int type : types) {
+            BufferedImage image = new BufferedImage(61, 47, type);
+            for (int y = 0; y < image.getHeight(); ++y) {
+                for (int x = 0; x < image.getWidth(); ++x) {
+                    int noise = random.nextInt(16);
+                    image.setRGB(x, y, ((x * 4 + noise) << 24) | ((y * 5) << 16) | ((x + y + noise) << 8) | (x * y & 0xff));
+                }
+            }
+            assertSameAsImageIO(writePng(image));
+        }
+    }
+
+    @Test
+    public void testFallback() throws Exception {
+        // 16 bit samples are left to ImageIO
+        assertNull(PngDecoder.decode(getResource("16_bit_texture.png")));
+        assertNotNull(ImageCache.decode(getResource("16_bit_texture.png")));
+
+        // As are other formats
+        assertNull(PngDecoder.decode("GIF89a".getBytes()));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncated() throws Exception {
+        byte[] data = getResource("128_64_rgba.png");
+        byte[] truncated = new byte[data.length / 2];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+        PngDecoder.decode(truncated);
+    }
+}
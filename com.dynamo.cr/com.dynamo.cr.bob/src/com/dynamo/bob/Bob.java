@@ -19,6 +19,9 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
 import java.nio.file.AccessDeniedException;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.FileSystemException;
@@ -27,6 +30,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -60,6 +64,13 @@ public class Bob {
 
     private static boolean verbose = false;
     private static File rootFolder = null;
+    // True if the root folder is the shared tool cache, which outlives this process
+    private static boolean sharedRootFolder = false;
+    // Archives extracted (or found extracted) by this process
+    private static Set<String> extractedArchives = new HashSet<String>();
+
+    // Tool cache folders of other versions of bob are deleted when they haven't been used for this long
+    private static final int TOOL_CACHE_MAX_UNUSED_DAYS = 30;
 
     public Bob() {
     }
@@ -110,19 +121,71 @@ public class Bob {
                 }
                 System.out.println("env DM_BOB_ROOTFOLDER=" + rootFolder);
             } else {
-                rootFolder = Files.createTempDirectory(null).toFile();
-                // Make sure we remove the temp folder on exit
-                registerShutdownHook();
+                rootFolder = getToolCacheFolder();
+                if (rootFolder != null) {
+                    sharedRootFolder = true;
+                    verbose("Using tool cache %s", rootFolder.getAbsolutePath());
+                } else {
+                    rootFolder = Files.createTempDirectory(null).toFile();
+                    // Make sure we remove the temp folder on exit
+                    registerShutdownHook();
+                }
             }
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Get the folder where the tools of this version of bob are extracted, shared
+     * by all bob processes of the same user. The folder is keyed by the sha1 and
+     * build time of bob, so a new bob never uses the tools of an older one.
+     * The location can be changed with DM_BOB_TOOLCACHE.
+     * @return the folder, or null if there is no version information or the folder can't be created
+     */
+    private static File getToolCacheFolder() {
+        String sha1 = EngineVersion.sha1;
+        if (sha1 == null || !sha1.matches("[0-9a-fA-F]{40}")) {
+            return null;
+        }
+
+        String envToolCache = System.getenv("DM_BOB_TOOLCACHE");
+        File baseFolder = envToolCache != null ? new File(envToolCache) : new File(System.getProperty("user.home"), ".defold/bob");
+        String key = String.format("%s-%08x", sha1, EngineVersion.timestamp.hashCode());
+        File folder = new File(baseFolder, key);
+        folder.mkdirs();
+        if (!folder.isDirectory() || !folder.canWrite()) {
+            return null;
+        }
+        // The modification time tells when a version was last used
+        folder.setLastModified(System.currentTimeMillis());
+        deleteUnusedToolCacheFolders(baseFolder);
+        return folder;
+    }
+
+    /**
+     * Delete the tool cache folders of other versions of bob that haven't been
+     * used for a while. Versions that are still in use, e.g. by an editor and a
+     * build server of different versions, touch their folder every time they start.
+     */
+    private static void deleteUnusedToolCacheFolders(File baseFolder) {
+        File[] folders = baseFolder.listFiles();
+        if (folders == null) {
+            return;
+        }
+        long expired = System.currentTimeMillis() - TOOL_CACHE_MAX_UNUSED_DAYS * 24L * 60 * 60 * 1000;
+        for (File folder : folders) {
+            if (folder.isDirectory() && folder.getName().matches("[0-9a-fA-F]{40}-[0-9a-f]{8}") && folder.lastModified() < expired) {
+                verbose("Deleting unused tool cache %s", folder.getAbsolutePath());
+                FileUtils.deleteQuietly(folder);
+            }
+        }
+    }
+
     public static void initLua() {
         init();
         try {
-            extract(Bob.class.getResource("/lib/luajit-share.zip"), new File(rootFolder, "share"));
+            extractOnce(Bob.class.getResource("/lib/luajit-share.zip"), new File(rootFolder, "share"));
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -140,7 +203,7 @@ public class Bob {
                 atomicCopy(libc_url, f, false);
             }
 
-            extract(Bob.class.getResource("/lib/android-res.zip"), rootFolder);
+            extractOnce(Bob.class.getResource("/lib/android-res.zip"), rootFolder);
 
             // NOTE: android.jar and classes.dex aren't are only available in "full bob", i.e. from CI
             URL android_jar = Bob.class.getResource("/lib/android.jar");
@@ -159,6 +222,54 @@ public class Bob {
         }
     }
 
+    /**
+     * Extract an archive unless it has already been extracted to the root folder,
+     * by this or any other bob process. A marker file is written when the archive
+     * has been fully extracted, and a file lock makes sure that only one process
+     * extracts it at a time. Markers are only used in the tool cache, since it's
+     * keyed by the version of bob. Other root folders might have been extracted
+     * to by another version of bob, or have their files deleted on exit, so the
+     * archive is extracted once per process.
+     */
+    private static synchronized void extractOnce(final URL url, File toFolder) throws IOException {
+        String name = FilenameUtils.getName(url.getPath());
+        if (extractedArchives.contains(name)) {
+            return;
+        }
+
+        File marker = new File(rootFolder, "." + name + ".extracted");
+        if (!sharedRootFolder || !marker.exists()) {
+            Path lockPath = new File(rootFolder, "." + name + ".lock").toPath();
+            try (FileChannel channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock lock = lock(channel)) {
+                // Another process might have extracted it while we were waiting for the lock
+                if (!sharedRootFolder || !marker.exists()) {
+                    extract(url, toFolder);
+                    if (sharedRootFolder) {
+                        marker.createNewFile();
+                    }
+                }
+            }
+        }
+        extractedArchives.add(name);
+    }
+
+    private static FileLock lock(FileChannel channel) throws IOException {
+        while (true) {
+            try {
+                return channel.lock();
+            } catch (OverlappingFileLockException e) {
+                // Held by a bob loaded by another class loader in this JVM, e.g. by the editor or the tests
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for " + channel, ie);
+                }
+            }
+        }
+    }
+
     private static void extract(final URL url, File toFolder) throws IOException {
 
         ZipInputStream zipStream = new ZipInputStream(new BufferedInputStream(url.openStream()));
@@ -170,7 +281,9 @@ public class Bob {
                 if (!entry.isDirectory()) {
 
                     File dstFile = new File(toFolder, entry.getName());
-                    dstFile.deleteOnExit();
+                    if (!sharedRootFolder) {
+                        dstFile.deleteOnExit();
+                    }
                     dstFile.getParentFile().mkdirs();
 
                     OutputStream fileStream = null;
@@ -362,10 +475,11 @@ public class Bob {
         options.addOption("v", "verbose", false, "Verbose output");
         options.addOption("h", "help", false, "This help message");
         options.addOption("a", "archive", false, "Build archive");
+        options.addOption(null, "incremental-archive", false, "Update the archive of the previous build in place, only writing new and changed resources. Faster for iterative builds, but the resulting archive depends on the previous one");
         options.addOption("e", "email", true, "User email");
         options.addOption("u", "auth", true, "User auth token");
 
-        options.addOption("p", "platform", true, "Platform (when bundling)");
+        options.addOption("p", "platform", true, "Platform (when bundling). Several platforms can be bundled at once with a comma separated list, each to a sub directory of the bundle output");
         options.addOption("bo", "bundle-output", true, "Bundle output directory");
 
         options.addOption("mp", "mobileprovisioning", true, "mobileprovisioning profile (iOS)");
@@ -381,10 +495,13 @@ public class Bob {
 
         options.addOption("tp", "texture-profiles", true, "Use texture profiles (deprecated)");
         options.addOption("tc", "texture-compression", true, "Use texture compression as specified in texture profiles");
+        options.addOption(null, "multi-page-atlases", false, "Split atlases with a max_page_size into several pages of a texture array. Experimental, the engine can't load texture arrays yet");
         options.addOption("k", "keep-unused", false, "Keep unused resources in archived output");
+        options.addOption(null, "reachable-only", false, "Only build resources reachable from the game.project roots (main collection, render, input bindings, display profiles and custom resources)");
 
         options.addOption("br", "build-report", true, "Filepath where to save a build report as JSON");
         options.addOption("brhtml", "build-report-html", true, "Filepath where to save a build report as HTML");
+        options.addOption(null, "build-trace", true, "Filepath where to save a trace of the build in the Chrome trace event format (chrome://tracing, ui.perfetto.dev)");
 
         options.addOption(null, "build-server", true, "The build server (when using native extensions)");
         options.addOption(null, "defoldsdk", true, "What version of the defold sdk (sha1) to use");
@@ -393,6 +510,7 @@ public class Bob {
         options.addOption(null, "use-vanilla-lua", false, "Only ships vanilla source code (i.e. no byte code)");
 
         options.addOption("l", "liveupdate", true, "yes if liveupdate content should be published");
+        options.addOption(null, "liveupdate-delta", true, "Path to a previously published game.dmanifest. Only the liveupdate resources that are new or changed since then are published");
 
         options.addOption("ar", "architectures", true, "comma separated list of architectures to include for the platform");
 
@@ -518,35 +636,44 @@ public class Bob {
             }
         }
 
-        // Get and set architectures list.
-        Platform platform = project.getPlatform();
-        String[] architectures = platform.getArchitectures().getDefaultArchitectures();
-        List<String> availableArchitectures = Arrays.asList(platform.getArchitectures().getArchitectures());
-
-        if (cmd.hasOption("architectures")) {
-            architectures = cmd.getOptionValue("architectures").split(",");
-        }
+        // Get and set architectures list. When bundling several platforms each
+        // platform is built with its default architectures.
+        if (project.getTargetPlatforms().size() > 1) {
+            if (cmd.hasOption("architectures")) {
+                System.out.println("ERROR! --architectures can't be used when bundling more than one platform");
+                System.exit(1);
+                return;
+            }
+        } else {
+            Platform platform = project.getPlatform();
+            String[] architectures = platform.getArchitectures().getDefaultArchitectures();
+            List<String> availableArchitectures = Arrays.asList(platform.getArchitectures().getArchitectures());
 
-        if (architectures.length == 0) {
-            System.out.println(String.format("ERROR! --architectures cannot be empty. Available architectures: %s", String.join(", ", availableArchitectures)));
-            System.exit(1);
-            return;
-        }
+            if (cmd.hasOption("architectures")) {
+                architectures = cmd.getOptionValue("architectures").split(",");
+            }
 
-        // Remove duplicates and make sure they are all supported for
-        // selected platform.
-        Set<String> uniqueArchitectures = new HashSet<String>();
-        for (int i = 0; i < architectures.length; i++) {
-            String architecture = architectures[i];
-            if (!availableArchitectures.contains(architecture)) {
-                System.out.println(String.format("ERROR! %s is not a supported architecture for %s platform. Available architectures: %s", architecture, platform.getPair(), String.join(", ", availableArchitectures)));
+            if (architectures.length == 0) {
+                System.out.println(String.format("ERROR! --architectures cannot be empty. Available architectures: %s", String.join(", ", availableArchitectures)));
                 System.exit(1);
                 return;
             }
-            uniqueArchitectures.add(architecture);
-        }
 
-        project.setOption("architectures", String.join(",", uniqueArchitectures));
+            // Remove duplicates and make sure they are all supported for
+            // selected platform.
+            Set<String> uniqueArchitectures = new HashSet<String>();
+            for (int i = 0; i < architectures.length; i++) {
+                String architecture = architectures[i];
+                if (!availableArchitectures.contains(architecture)) {
+                    System.out.println(String.format("ERROR! %s is not a supported architecture for %s platform. Available architectures: %s", architecture, platform.getPair(), String.join(", ", availableArchitectures)));
+                    System.exit(1);
+                    return;
+                }
+                uniqueArchitectures.add(architecture);
+            }
+
+            project.setOption("architectures", String.join(",", uniqueArchitectures));
+        }
 
         boolean shouldPublish = getOptionsValue(cmd, 'l', "no").equals("yes");
         project.setOption("liveupdate", shouldPublish ? "true" : "false");
@@ -78,6 +78,15 @@ public abstract class Builder<T> {
 
     }
 
+    /**
+     * Add the target platform to the signature. Used by builders with platform
+     * specific output, the tasks of other builders are shared between platforms
+     * @param digest message digest to update
+     */
+    protected void platformSignature(MessageDigest digest) {
+        digest.update(project.option("platform", "").getBytes());
+    }
+
     /**
      * Set project
      * @param project project to set
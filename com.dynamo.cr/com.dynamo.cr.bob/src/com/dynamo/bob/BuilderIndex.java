@@ -0,0 +1,229 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+// 
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+// 
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Index of the builders, i.e. the classes annotated with {@link BuilderParams},
+ * in a set of packages. The index is generated when bob is built (see main) so
+ * that bob doesn't have to enumerate the jar and load every class on startup.
+ *
+ * The index also lists all the classes that were in the packages, so that classes
+ * added later, e.g. builders of extensions and plugins, can still be found by
+ * scanning and loading only those classes.
+ *
+ * Each line in the index is either "package name", "class class-name" or
+ * "builder class-name out-ext in-ext[,in-ext...]".
+ */
+public class BuilderIndex {
+
+    public static final String RESOURCE_NAME = "com/dynamo/bob/builders.index";
+
+    private static BuilderIndex defaultIndex = null;
+    private static boolean defaultIndexLoaded = false;
+
+    public static class Entry {
+        private final String className;
+        private final String outExt;
+        private final List<String> inExts;
+
+        public Entry(String className, String outExt, List<String> inExts) {
+            this.className = className;
+            this.outExt = outExt;
+            this.inExts = inExts;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public String getPackageName() {
+            int i = className.lastIndexOf('.');
+            return i < 0 ? "" : className.substring(0, i);
+        }
+
+        public String getOutExt() {
+            return outExt;
+        }
+
+        public List<String> getInExts() {
+            return inExts;
+        }
+    }
+
+    private final Set<String> packages = new LinkedHashSet<String>();
+    private final Set<String> classNames = new LinkedHashSet<String>();
+    private final List<Entry> entries = new ArrayList<Entry>();
+
+    /**
+     * Get the index bundled with bob.
+     * @return the index, or null if bob was built without one
+     */
+    public static synchronized BuilderIndex getDefault() {
+        if (!defaultIndexLoaded) {
+            defaultIndexLoaded = true;
+            InputStream is = BuilderIndex.class.getClassLoader().getResourceAsStream(RESOURCE_NAME);
+            if (is != null) {
+                try {
+                    defaultIndex = read(is);
+                } catch (IOException e) {
+                    Bob.verbose("Failed to read builder index: %s", e.getMessage());
+                } finally {
+                    IOUtils.closeQuietly(is);
+                }
+            }
+        }
+        return defaultIndex;
+    }
+
+    /**
+     * Create an index by scanning packages. The classes are loaded but not initialized.
+     * @param scanner class scanner
+     * @param pkgs packages to index
+     * @return new index
+     */
+    public static BuilderIndex create(IClassScanner scanner, String... pkgs) {
+        BuilderIndex index = new BuilderIndex();
+        ClassLoader classLoader = BuilderIndex.class.getClassLoader();
+        for (String pkg : pkgs) {
+            index.packages.add(pkg);
+            List<String> classNames = new ArrayList<String>(scanner.scan(pkg));
+            Collections.sort(classNames);
+            index.classNames.addAll(classNames);
+            for (String className : classNames) {
+                // Same exception as in Project.doScan, TexcLibrary loads native code
+                if (className.startsWith("com.dynamo.bob.TexcLibrary")) {
+                    continue;
+                }
+                try {
+                    Class<?> klass = Class.forName(className, false, classLoader);
+                    BuilderParams params = klass.getAnnotation(BuilderParams.class);
+                    if (params != null) {
+                        index.entries.add(new Entry(className, params.outExt(), Arrays.asList(params.inExts())));
+                    }
+                } catch (ClassNotFoundException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+        return index;
+    }
+
+    public static BuilderIndex read(InputStream is) throws IOException {
+        BuilderIndex index = new BuilderIndex();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] tokens = line.trim().split(" ");
+            if (tokens.length == 2 && tokens[0].equals("package")) {
+                index.packages.add(tokens[1]);
+            } else if (tokens.length == 2 && tokens[0].equals("class")) {
+                index.classNames.add(tokens[1]);
+            } else if (tokens.length == 4 && tokens[0].equals("builder")) {
+                index.entries.add(new Entry(tokens[1], tokens[2], Arrays.asList(tokens[3].split(","))));
+            } else if (!line.trim().isEmpty()) {
+                throw new IOException(String.format("Invalid line in builder index: '%s'", line));
+            }
+        }
+        return index;
+    }
+
+    public void write(Writer writer) throws IOException {
+        for (String pkg : packages) {
+            writer.write(String.format("package %s\n", pkg));
+        }
+        for (String className : classNames) {
+            writer.write(String.format("class %s\n", className));
+        }
+        for (Entry entry : entries) {
+            StringBuilder inExts = new StringBuilder();
+            for (String inExt : entry.getInExts()) {
+                if (inExts.length() > 0) {
+                    inExts.append(',');
+                }
+                inExts.append(inExt);
+            }
+            writer.write(String.format("builder %s %s %s\n", entry.getClassName(), entry.getOutExt(), inExts));
+        }
+        writer.flush();
+    }
+
+    /**
+     * @param pkg package name
+     * @return true if the package was indexed, even if it has no builders
+     */
+    public boolean hasPackage(String pkg) {
+        return packages.contains(pkg);
+    }
+
+    /**
+     * @param className class name
+     * @return true if the class was in an indexed package when the index was created
+     */
+    public boolean hasClass(String className) {
+        return classNames.contains(className);
+    }
+
+    /**
+     * @param pkg package name
+     * @return the builders in the package (but not in its sub packages)
+     */
+    public List<Entry> getEntries(String pkg) {
+        List<Entry> result = new ArrayList<Entry>();
+        for (Entry entry : entries) {
+            if (entry.getPackageName().equals(pkg)) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Generate the index, run as part of the bob build.
+     * @param args output file followed by the packages to index
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BuilderIndex <output file> <package>...");
+            System.exit(1);
+        }
+        BuilderIndex index = create(new ClassLoaderScanner(), Arrays.copyOfRange(args, 1, args.length));
+        File file = new File(args[0]);
+        file.getParentFile().mkdirs();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+        try {
+            index.write(writer);
+        } finally {
+            writer.close();
+        }
+        System.out.println(String.format("Indexed %d builders in %s", index.entries.size(), file.getPath()));
+    }
+}
@@ -14,7 +14,6 @@ package com.dynamo.bob;
 
 import static org.apache.commons.io.FilenameUtils.normalizeNoEndSeparator;
 
-import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -23,14 +22,12 @@ import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.net.ConnectException;
-import java.net.HttpURLConnection;
-import java.net.URISyntaxException;
 import java.net.URL;
-import java.net.URI;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -44,17 +41,19 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
-import java.util.zip.ZipException;
-import java.util.zip.ZipFile;
+import java.util.regex.Pattern;
 import java.util.zip.ZipOutputStream;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.codec.binary.Base64;
 
 import com.defold.extender.client.ExtenderClient;
 import com.defold.extender.client.ExtenderResource;
@@ -77,13 +76,18 @@ import com.dynamo.bob.bundle.OSXBundler;
 import com.dynamo.bob.bundle.Win32Bundler;
 import com.dynamo.bob.bundle.Win64Bundler;
 import com.dynamo.bob.fs.ClassLoaderMountPoint;
+import com.dynamo.bob.fs.DefaultResource;
 import com.dynamo.bob.fs.FileSystemWalker;
 import com.dynamo.bob.fs.IFileSystem;
 import com.dynamo.bob.fs.IResource;
 import com.dynamo.bob.fs.ZipMountPoint;
 import com.dynamo.bob.pipeline.ExtenderUtil;
 import com.dynamo.bob.util.BobProjectProperties;
+import com.dynamo.bob.util.BuildTracer;
+import com.dynamo.bob.util.ImageCache;
+import com.dynamo.bob.util.LibraryDownloader;
 import com.dynamo.bob.util.LibraryUtil;
+import com.dynamo.bob.util.RGBAImage;
 import com.dynamo.bob.util.ReportGenerator;
 import com.dynamo.graphics.proto.Graphics.TextureProfiles;
 
@@ -97,6 +101,9 @@ public class Project {
     public final static String LIB_DIR = ".internal/lib";
     public final static String CACHE_DIR = ".internal/cache";
 
+    // Maximum number of architectures built on the build server at the same time
+    private final static int MAX_CONCURRENT_ENGINE_BUILDS = 4;
+
     public enum OutputFlags {
         NONE,
         UNCOMPRESSED
@@ -104,6 +111,8 @@ public class Project {
 
     private IFileSystem fileSystem;
     private Map<String, Class<? extends Builder<?>>> extToBuilder = new HashMap<String, Class<? extends Builder<?>>>();
+    // Builders registered from the builder index, loaded on first use
+    private Map<String, BuilderIndex.Entry> extToIndexedBuilder = new HashMap<String, BuilderIndex.Entry>();
     private List<String> inputs = new ArrayList<String>();
     private HashMap<String, EnumSet<OutputFlags>> outputs = new HashMap<String, EnumSet<OutputFlags>>();
     private ArrayList<Task<?>> newTasks;
@@ -114,6 +123,7 @@ public class Project {
     private List<URL> libUrls = new ArrayList<URL>();
     private final List<String> excludedCollectionProxies = new ArrayList<String>();
     private List<String> propertyFiles = new ArrayList<String>();
+    private BuildTracer tracer = new BuildTracer();
 
     private BobProjectProperties projectProperties;
     private Publisher publisher;
@@ -136,6 +146,29 @@ public class Project {
         clearProjectProperties();
     }
 
+    /**
+     * Create a project that shares the sources, file system and settings of
+     * another project, but has its own options and build directory. Used to
+     * bundle a platform from a snapshot of its content.
+     * @param project project to share the sources and settings of
+     * @param buildDirectory build directory with the content to bundle
+     */
+    private Project(Project project, String buildDirectory) {
+        this.fileSystem = project.fileSystem;
+        // Indexed builders are loaded on first use, so the projects can't share the maps
+        this.extToBuilder = new HashMap<String, Class<? extends Builder<?>>>(project.extToBuilder);
+        this.extToIndexedBuilder = new HashMap<String, BuilderIndex.Entry>(project.extToIndexedBuilder);
+        this.inputs = project.inputs;
+        this.rootDirectory = project.rootDirectory;
+        this.buildDirectory = buildDirectory;
+        this.options = new HashMap<String, String>(project.options);
+        this.libUrls = project.libUrls;
+        this.propertyFiles = project.propertyFiles;
+        this.projectProperties = project.projectProperties;
+        this.publisher = project.publisher;
+        this.textureProfiles = project.textureProfiles;
+    }
+
     public void dispose() {
         this.fileSystem.close();
     }
@@ -168,17 +201,53 @@ public class Project {
         this.publisher = publisher;
     }
 
+    /**
+     * Get the tracer of the current (or last) build.
+     * @return tracer
+     */
+    public BuildTracer getBuildTracer() {
+        return tracer;
+    }
+
     public Publisher getPublisher() {
         return this.publisher;
     }
 
     /**
-     * Scan package for builder classes
+     * Scan package for builder classes. The builders of packages that are part
+     * of the builder index generated when bob was built are registered from the
+     * index, and only loaded when they are needed. Only the classes that aren't
+     * in the index, e.g. builders of extensions and plugins, are loaded here.
      * @param scanner class scanner
      * @param pkg package name to be scanned
      */
     public void scan(IClassScanner scanner, String pkg) {
+        scan(scanner, pkg, BuilderIndex.getDefault());
+    }
+
+    /**
+     * Scan package for builder classes, see {@link #scan(IClassScanner, String)}.
+     * @param scanner class scanner
+     * @param pkg package name to be scanned
+     * @param index builder index, or null to load all classes
+     */
+    public void scan(IClassScanner scanner, String pkg, BuilderIndex index) {
         Set<String> classNames = scanner.scan(pkg);
+        if (index != null && index.hasPackage(pkg)) {
+            for (BuilderIndex.Entry entry : index.getEntries(pkg)) {
+                for (String inExt : entry.getInExts()) {
+                    extToBuilder.remove(inExt);
+                    extToIndexedBuilder.put(inExt, entry);
+                }
+            }
+            Set<String> unindexed = new HashSet<String>();
+            for (String className : classNames) {
+                if (!index.hasClass(className)) {
+                    unindexed.add(className);
+                }
+            }
+            classNames = unindexed;
+        }
         doScan(classNames);
     }
 
@@ -227,6 +296,7 @@ public class Project {
                     BuilderParams params = klass.getAnnotation(BuilderParams.class);
                     if (params != null) {
                         for (String inExt : params.inExts()) {
+                            extToIndexedBuilder.remove(inExt);
                             extToBuilder.put(inExt, (Class<? extends Builder<?>>) klass);
                         }
                     }
@@ -263,12 +333,64 @@ public class Project {
         }
     }
 
+    @SuppressWarnings("unchecked")
     private Class<? extends Builder<?>> getBuilderFromExtension(String input) {
         String ext = "." + FilenameUtils.getExtension(input);
         Class<? extends Builder<?>> builderClass = extToBuilder.get(ext);
+        if (builderClass == null) {
+            BuilderIndex.Entry entry = extToIndexedBuilder.get(ext);
+            if (entry != null) {
+                try {
+                    builderClass = (Class<? extends Builder<?>>) Class.forName(entry.getClassName());
+                } catch (ClassNotFoundException e) {
+                    throw new RuntimeException(e);
+                }
+                // Register the class for all the extensions of the builder
+                for (String inExt : entry.getInExts()) {
+                    if (extToIndexedBuilder.get(inExt) == entry) {
+                        extToIndexedBuilder.remove(inExt);
+                        extToBuilder.put(inExt, builderClass);
+                    }
+                }
+            }
+        }
         return builderClass;
     }
 
+    private boolean hasBuilder(String ext) {
+        return extToBuilder.containsKey(ext) || extToIndexedBuilder.containsKey(ext);
+    }
+
+    /**
+     * Get the input extensions of the registered builders by the output extension,
+     * without loading the builder classes.
+     * @return map from output extension to input extensions
+     */
+    Map<String, List<String>> getOutExtToInExts() {
+        Map<String, List<String>> outExtToInExts = new HashMap<String, List<String>>();
+        for (Class<? extends Builder<?>> builderClass : extToBuilder.values()) {
+            BuilderParams params = builderClass.getAnnotation(BuilderParams.class);
+            addOutExt(outExtToInExts, params.outExt(), Arrays.asList(params.inExts()));
+        }
+        for (BuilderIndex.Entry entry : extToIndexedBuilder.values()) {
+            addOutExt(outExtToInExts, entry.getOutExt(), entry.getInExts());
+        }
+        return outExtToInExts;
+    }
+
+    private static void addOutExt(Map<String, List<String>> outExtToInExts, String outExt, List<String> inExts) {
+        List<String> list = outExtToInExts.get(outExt);
+        if (list == null) {
+            list = new ArrayList<String>();
+            outExtToInExts.put(outExt, list);
+        }
+        for (String inExt : inExts) {
+            if (!list.contains(inExt)) {
+                list.add(inExt);
+            }
+        }
+    }
+
     /**
      * Create task from resource. Typically called from builder
      * that create intermediate output/input-files
@@ -305,7 +427,7 @@ public class Project {
         return task;
     }
 
-    private List<String> sortInputs() {
+    private List<String> sortInputs(Collection<String> inputs) {
         ArrayList<String> sortedInputs = new ArrayList<String>(inputs);
         Collections.sort(sortedInputs, new Comparator<String>() {
 
@@ -323,9 +445,15 @@ public class Project {
         return sortedInputs;
     }
 
-    private void createTasks() throws CompileExceptionError {
+    private void createTasks() throws CompileExceptionError, IOException {
         newTasks = new ArrayList<Task<?>>();
-        List<String> sortedInputs = sortInputs();
+        Collection<String> buildInputs = inputs;
+        if (option("reachable-only", "false").equals("true")) {
+            // Skip everything that can't be reached from game.project, e.g. test and work in progress content
+            buildInputs = new ReachableInputs(this, inputs).find();
+            Bob.verbose("Building %d of %d inputs reachable from %s", buildInputs.size(), inputs.size(), getGameProjectResource().getPath());
+        }
+        List<String> sortedInputs = sortInputs(buildInputs);
 
         for (String input : sortedInputs) {
             Task<?> task = doCreateTask(input);
@@ -367,6 +495,15 @@ public class Project {
                     this.publisher = new NullPublisher(settings);
                 }
             }
+
+            String publishedManifest = this.option("liveupdate-delta", null);
+            if (shouldPublish && publishedManifest != null) {
+                File manifestFile = new File(publishedManifest);
+                if (!manifestFile.isFile()) {
+                    throw new CompileExceptionError(String.format("The published manifest '%s' does not exist", publishedManifest), null);
+                }
+                this.publisher.setPublishedManifest(FileUtils.readFileToByteArray(manifestFile));
+            }
         } catch (CompileExceptionError e) {
             throw e;
         } catch (Throwable e) {
@@ -452,6 +589,10 @@ public class Project {
     public List<TaskResult> build(IProgress monitor, String... commands) throws IOException, CompileExceptionError, MultipleCompileException {
         try {
             loadProjectFile();
+            List<Platform> platforms = getTargetPlatforms();
+            if (platforms.size() > 1) {
+                return doBuildPlatforms(monitor, platforms, commands);
+            }
             return doBuild(monitor, commands);
         } catch (CompileExceptionError e) {
             logExceptionToStdErr(e.getResource(), e.getLineNumber());
@@ -463,6 +604,12 @@ public class Project {
             throw e;
         } catch (Throwable e) {
             throw new CompileExceptionError(null, 0, e.getMessage(), e);
+        } finally {
+            // Decoded images and image buffers are only shared within a build
+            ImageCache.clear();
+            RGBAImage.clearPool();
+            // Files might change before the next build, which must not trust the last walk
+            fileSystem.clearWalkCache();
         }
     }
 
@@ -608,6 +755,134 @@ public class Project {
         m.done();
     }
 
+    /**
+     * Get the platforms to build for. The platform option is either a single
+     * platform or a comma separated list of platforms to bundle at once.
+     * @return list of platforms, empty if no platform is set
+     * @throws CompileExceptionError if a platform isn't supported
+     */
+    public List<Platform> getTargetPlatforms() throws CompileExceptionError {
+        List<Platform> platforms = new ArrayList<Platform>();
+        String pairs = option("platform", null);
+        if (pairs == null) {
+            return platforms;
+        }
+        for (String pair : pairs.split(",")) {
+            Platform platform = Platform.get(pair.trim());
+            if (platform == null) {
+                throw new CompileExceptionError(null, -1, String.format("Platform %s not supported", pair));
+            }
+            if (!platforms.contains(platform)) {
+                platforms.add(platform);
+            }
+        }
+        return platforms;
+    }
+
+    /**
+     * Create a project to bundle the current content of a platform with. The
+     * archive is linked or copied to a directory of its own, so that the next
+     * platform can be built while the bundler is running.
+     * @param platform platform the content was built for
+     * @return new project with the snapshot as build directory
+     * @throws IOException
+     */
+    private Project createBundleProject(Platform platform) throws IOException {
+        String contentDirectory = FilenameUtils.concat(buildDirectory, "_bundle/" + platform.getPair());
+        File buildDir = new File(rootDirectory, buildDirectory);
+        File contentDir = new File(rootDirectory, contentDirectory);
+        for (String name : Arrays.asList("game.projectc", "game.arci", "game.arcd", "game.dmanifest", "game.public.der")) {
+            File src = new File(buildDir, name);
+            if (src.exists()) {
+                BundleHelper.copyBuildOutput(src, new File(contentDir, name));
+            }
+        }
+
+        Project project = new Project(this, normalizeNoEndSeparator(contentDirectory, true));
+        String bundleOutput = option("bundle-output", buildDir.getAbsolutePath());
+        project.setOption("bundle-output", FilenameUtils.concat(bundleOutput, platform.getPair()));
+        return project;
+    }
+
+    /**
+     * Build, and bundle, several platforms. The platforms are built one at a
+     * time in the same build directory, and since only the builders with platform
+     * specific output include the platform in their signatures (see
+     * {@link Builder#platformSignature}) the remaining tasks are only built for
+     * the first platform. The bundlers run concurrently, each on a snapshot of
+     * the content of its platform.
+     */
+    private List<TaskResult> doBuildPlatforms(IProgress monitor, List<Platform> platforms, String... commands) throws IOException, CompileExceptionError, MultipleCompileException {
+        boolean shouldBundle = false;
+        List<String> buildCommands = new ArrayList<String>();
+        for (String command : commands) {
+            if (command.equals("bundle")) {
+                shouldBundle = true;
+            } else {
+                buildCommands.add(command);
+            }
+        }
+
+        if (shouldBundle && !buildCommands.contains("build")) {
+            logWarning("Bundling %d platforms without building them, all of them will be bundled with the content in %s", platforms.size(), buildDirectory);
+        }
+
+        String platformOption = option("platform", null);
+        String architecturesOption = option("architectures", null);
+        ExecutorService executor = Executors.newFixedThreadPool(platforms.size());
+        List<Future<Void>> bundles = new ArrayList<Future<Void>>();
+        List<TaskResult> result = new ArrayList<TaskResult>();
+        try {
+            for (Platform platform : platforms) {
+                BundleHelper.throwIfCanceled(monitor);
+                setOption("platform", platform.getPair());
+                setOption("architectures", String.join(",", platform.getArchitectures().getDefaultArchitectures()));
+                result = doBuild(monitor, buildCommands.toArray(new String[buildCommands.size()]));
+                if (anyFailing(result)) {
+                    break;
+                }
+                // Cleaning and resolving is only done before the first platform
+                buildCommands.retainAll(Arrays.asList("build"));
+
+                if (shouldBundle) {
+                    final Project bundleProject = createBundleProject(platform);
+                    bundles.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            bundleProject.bundle(new NullProgress());
+                            return null;
+                        }
+                    }));
+                }
+            }
+
+            for (Future<Void> bundle : bundles) {
+                try {
+                    bundle.get();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    } else if (cause instanceof CompileExceptionError) {
+                        throw (CompileExceptionError) cause;
+                    }
+                    throw new RuntimeException(cause);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            setOption("platform", platformOption);
+            if (architecturesOption != null) {
+                setOption("architectures", architecturesOption);
+            } else {
+                options.remove("architectures");
+            }
+        }
+        return result;
+    }
+
     private static boolean anyFailing(Collection<TaskResult> results) {
         for (TaskResult taskResult : results) {
             if (!taskResult.isOk()) {
@@ -656,7 +931,7 @@ public class Project {
         File cacheDir = new File(FilenameUtils.concat(internalDir, "cache"));
         cacheDir.mkdirs();
 
-        String serverURL = this.option("build-server", "https://build.defold.com");
+        final String serverURL = this.option("build-server", "https://build.defold.com");
 
         // Get SHA1 and create log file
         final String sdkVersion = this.option("defoldsdk", EngineVersion.sha1);
@@ -666,74 +941,104 @@ public class Project {
 
         final String variant = appmanifestOptions.get("baseVariant");
 
-        // Build all skews of platform
+        // Build all skews of platform. The sources of each architecture are gathered
+        // here, and the remote builds run concurrently, sharing the uploaded content
         String outputDir = getBinaryOutputDirectory();
-        for (int i = 0; i < architectures.length; ++i) {
-            Platform platform = Platform.get(architectures[i]);
-
-            String buildPlatform = platform.getExtenderPair();
-            File buildDir = new File(FilenameUtils.concat(outputDir, buildPlatform));
-            buildDir.mkdirs();
-
-            List<String> defaultNames = platform.formatBinaryName("dmengine");
-            List<File> exes = new ArrayList<File>();
-            for (String name : defaultNames) {
-                File exe = new File(FilenameUtils.concat(buildDir.getAbsolutePath(), name));
-                exes.add(exe);
-            }
+        ExtenderUtil.SharedContent sharedContent = new ExtenderUtil.SharedContent(ExtenderUtil.SharedContent.DEFAULT_BUDGET);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(architectures.length, MAX_CONCURRENT_ENGINE_BUILDS)));
+        List<Future<Void>> builds = new ArrayList<Future<Void>>();
+        try {
+            for (int i = 0; i < architectures.length; ++i) {
+                final Platform platform = Platform.get(architectures[i]);
 
-            List<ExtenderResource> allSource = ExtenderUtil.getExtensionSources(this, platform, appmanifestOptions);
+                final String buildPlatform = platform.getExtenderPair();
+                final File buildDir = new File(FilenameUtils.concat(outputDir, buildPlatform));
+                buildDir.mkdirs();
 
-            BundleHelper helper = new BundleHelper(this, platform, buildDir, variant);
+                List<ExtenderResource> allSource = ExtenderUtil.getExtensionSources(this, platform, appmanifestOptions);
 
-            allSource.addAll(helper.writeExtensionResources(platform));
+                BundleHelper helper = new BundleHelper(this, platform, buildDir, variant);
 
-            // Replace the unresolved manifests with the resolved ones
-            List<ExtenderResource> resolvedManifests = helper.writeManifestFiles(platform, helper.getTargetManifestDir(platform));
-            for (ExtenderResource manifest : resolvedManifests) {
-                ExtenderResource src = null;
-                for (ExtenderResource s : allSource) {
-                    if (s.getPath().equals(manifest.getPath())) {
-                        src = s;
-                        break;
+                allSource.addAll(helper.writeExtensionResources(platform));
+
+                // Replace the unresolved manifests with the resolved ones
+                List<ExtenderResource> resolvedManifests = helper.writeManifestFiles(platform, helper.getTargetManifestDir(platform));
+                for (ExtenderResource manifest : resolvedManifests) {
+                    ExtenderResource src = null;
+                    for (ExtenderResource s : allSource) {
+                        if (s.getPath().equals(manifest.getPath())) {
+                            src = s;
+                            break;
+                        }
                     }
+                    if (src != null) {
+                        allSource.remove(src);
+                    }
+                    allSource.add(manifest);
                 }
-                if (src != null) {
-                    allSource.remove(src);
-                }
-                allSource.add(manifest);
-            }
 
-            boolean debugUploadZip = this.hasOption("debug-ne-upload");
+                boolean debugUploadZip = this.hasOption("debug-ne-upload");
 
-            if (debugUploadZip) {
-                File debugZip = new File(buildDir, "upload.zip");
-                ZipOutputStream zipOut = null;
-                try {
-                    zipOut = new ZipOutputStream(new FileOutputStream(debugZip));
-                    ExtenderUtil.writeResourcesToZip(allSource, zipOut);
-                    System.out.printf("Wrote debug upload zip file to: %s", debugZip);
-                } catch (Exception e) {
-                    throw new CompileExceptionError(String.format("Failed to write debug zip file to %s", debugZip), e);
-                } finally {
-                    zipOut.close();
+                if (debugUploadZip) {
+                    File debugZip = new File(buildDir, "upload.zip");
+                    ZipOutputStream zipOut = null;
+                    try {
+                        zipOut = new ZipOutputStream(new FileOutputStream(debugZip));
+                        ExtenderUtil.writeResourcesToZip(allSource, zipOut);
+                        System.out.printf("Wrote debug upload zip file to: %s", debugZip);
+                    } catch (Exception e) {
+                        throw new CompileExceptionError(String.format("Failed to write debug zip file to %s", debugZip), e);
+                    } finally {
+                        zipOut.close();
+                    }
                 }
-            }
-
-            // Located in the same place as the log file in the unpacked successful build
-            File logFile = new File(buildDir, "log.txt");
 
-            try {
-                ExtenderClient extender = new ExtenderClient(serverURL, cacheDir);
-                File zip = BundleHelper.buildEngineRemote(extender, buildPlatform, sdkVersion, allSource, logFile);
-
-                cleanEngine(platform, buildDir);
+                // Located in the same place as the log file in the unpacked successful build
+                final File logFile = new File(buildDir, "log.txt");
+                final List<ExtenderResource> source = sharedContent.share(allSource);
+                // The client cache isn't safe to share between concurrent builds
+                final File platformCacheDir = new File(cacheDir, buildPlatform);
+                platformCacheDir.mkdirs();
+
+                builds.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        try {
+                            ExtenderClient extender = new ExtenderClient(serverURL, platformCacheDir);
+                            File zip = BundleHelper.buildEngineRemote(extender, buildPlatform, sdkVersion, source, logFile);
+
+                            cleanEngine(platform, buildDir);
+
+                            BundleHelper.unzip(new FileInputStream(zip), buildDir.toPath());
+                            zip.delete();
+                        } catch (ConnectException e) {
+                            throw new CompileExceptionError(String.format("Failed to connect to %s: %s", serverURL, e.getMessage()), e);
+                        }
+                        return null;
+                    }
+                }));
+            }
 
-                BundleHelper.unzip(new FileInputStream(zip), buildDir.toPath());
-            } catch (ConnectException e) {
-                throw new CompileExceptionError(String.format("Failed to connect to %s: %s", serverURL, e.getMessage()), e);
+            for (Future<Void> build : builds) {
+                try {
+                    build.get();
+                } catch (InterruptedException e) {
+                    throw new CompileExceptionError("Engine build was interrupted", e);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    } else if (cause instanceof CompileExceptionError) {
+                        throw (CompileExceptionError) cause;
+                    } else if (cause instanceof MultipleCompileException) {
+                        throw (MultipleCompileException) cause;
+                    }
+                    throw new RuntimeException(cause);
+                }
+                m.worked(1);
             }
-            m.worked(1);
+        } finally {
+            executor.shutdownNow();
         }
 
         m.done();
@@ -780,133 +1085,145 @@ public class Project {
     }
 
     private List<TaskResult> doBuild(IProgress monitor, String... commands) throws IOException, CompileExceptionError, MultipleCompileException {
+        tracer = new BuildTracer();
         fileSystem.loadCache();
         IResource stateResource = fileSystem.get(FilenameUtils.concat(buildDirectory, "state"));
         state = State.load(stateResource);
-        createTasks();
-        validateBuildResourceMapping();
+        try (BuildTracer.Span span = tracer.span("createTasks")) {
+            createTasks();
+            validateBuildResourceMapping();
+        }
         List<TaskResult> result = new ArrayList<TaskResult>();
 
         BundleHelper.throwIfCanceled(monitor);
 
         monitor.beginTask("", 100);
 
-        loop:
-        for (String command : commands) {
-            BundleHelper.throwIfCanceled(monitor);
-            switch (command) {
-                case "build": {
-                    ExtenderUtil.checkProjectForDuplicates(this); // Throws if there are duplicate files in the project (i.e. library and local files conflict)
-
-                    // Do early test if report files are writable before we start building
-                    boolean generateReport = this.hasOption("build-report") || this.hasOption("build-report-html");
-                    FileWriter fileJSONWriter = null;
-                    FileWriter fileHTMLWriter = null;
-
-                    if (this.hasOption("build-report")) {
-                        String reportJSONPath = this.option("build-report", "report.json");
-                        File reportJSONFile = new File(reportJSONPath);
-                        fileJSONWriter = new FileWriter(reportJSONFile);
-                    }
-                    if (this.hasOption("build-report-html")) {
-                        String reportHTMLPath = this.option("build-report-html", "report.html");
-                        File reportHTMLFile = new File(reportHTMLPath);
-                        fileHTMLWriter = new FileWriter(reportHTMLFile);
-                    }
+        try {
+            loop:
+            for (String command : commands) {
+                BundleHelper.throwIfCanceled(monitor);
+                switch (command) {
+                    case "build": {
+                        ExtenderUtil.checkProjectForDuplicates(this); // Throws if there are duplicate files in the project (i.e. library and local files conflict)
 
-                    IProgress m = monitor.subProgress(99);
-                    BundleHelper.throwIfCanceled(monitor);
-                    m.beginTask("Building...", newTasks.size());
-                    result = runTasks(m);
-                    m.done();
-                    if (anyFailing(result)) {
-                        break loop;
-                    }
-                    BundleHelper.throwIfCanceled(monitor);
-
-                    final String[] platforms = getPlatformStrings();
-                    // Get or build engine binary
-                    boolean buildRemoteEngine = ExtenderUtil.hasNativeExtensions(this);
-                    if (buildRemoteEngine) {
-
-                        final String variant = this.option("variant", Bob.VARIANT_RELEASE);
-                        final Boolean withSymbols = this.hasOption("with-symbols");
-
-                        Map<String, String> appmanifestOptions = new HashMap<>();
-                        appmanifestOptions.put("baseVariant", variant);
-                        appmanifestOptions.put("withSymbols", withSymbols.toString());
-
-                        // Since this can be a call from Editor we can't expect the architectures option to be set.
-                        // We default to the default architectures for the platform, and take the option value
-                        // only if it has been set.
-                        Platform platform = this.getPlatform();
-                        String[] architectures = platform.getArchitectures().getDefaultArchitectures();
-                        String customArchitectures = this.option("architectures", null);
-                        if (customArchitectures != null) {
-                            architectures = customArchitectures.split(",");
+                        // Do early test if report files are writable before we start building
+                        boolean generateReport = this.hasOption("build-report") || this.hasOption("build-report-html");
+                        FileWriter fileJSONWriter = null;
+                        FileWriter fileHTMLWriter = null;
+
+                        if (this.hasOption("build-report")) {
+                            String reportJSONPath = this.option("build-report", "report.json");
+                            File reportJSONFile = new File(reportJSONPath);
+                            fileJSONWriter = new FileWriter(reportJSONFile);
                         }
+                        if (this.hasOption("build-report-html")) {
+                            String reportHTMLPath = this.option("build-report-html", "report.html");
+                            File reportHTMLFile = new File(reportHTMLPath);
+                            fileHTMLWriter = new FileWriter(reportHTMLFile);
+                        }
+                        IProgress m = monitor.subProgress(99);
+                        BundleHelper.throwIfCanceled(monitor);
+                        m.beginTask("Building...", newTasks.size());
+                        try (BuildTracer.Span span = tracer.span("runTasks")) {
+                            result = runTasks(m);
+                        }
+                        m.done();
+                        if (anyFailing(result)) {
+                            break loop;
+                        }
+                        BundleHelper.throwIfCanceled(monitor);
+
+                        final String[] platforms = getPlatformStrings();
+                        // Get or build engine binary
+                        boolean buildRemoteEngine = ExtenderUtil.hasNativeExtensions(this);
+                        if (buildRemoteEngine) {
+
+                            final String variant = this.option("variant", Bob.VARIANT_RELEASE);
+                            final Boolean withSymbols = this.hasOption("with-symbols");
+
+                            Map<String, String> appmanifestOptions = new HashMap<>();
+                            appmanifestOptions.put("baseVariant", variant);
+                            appmanifestOptions.put("withSymbols", withSymbols.toString());
+
+                            // Since this can be a call from Editor we can't expect the architectures option to be set.
+                            // We default to the default architectures for the platform, and take the option value
+                            // only if it has been set.
+                            Platform platform = this.getPlatform();
+                            String[] architectures = platform.getArchitectures().getDefaultArchitectures();
+                            String customArchitectures = this.option("architectures", null);
+                            if (customArchitectures != null) {
+                                architectures = customArchitectures.split(",");
+                            }
 
-                        buildEngine(monitor, architectures, appmanifestOptions);
-                    } else {
-                        // Remove the remote built executables in the build folder, they're still in the cache
-                        cleanEngines(monitor, platforms);
-                    }
+                            try (BuildTracer.Span span = tracer.span("buildEngine")) {
+                                buildEngine(monitor, architectures, appmanifestOptions);
+                            }
+                        } else {
+                            // Remove the remote built executables in the build folder, they're still in the cache
+                            cleanEngines(monitor, platforms);
+                        }
 
-                    BundleHelper.throwIfCanceled(monitor);
+                        BundleHelper.throwIfCanceled(monitor);
 
-                    // Generate and save build report
-                    if (generateReport) {
-                        IProgress mrep = monitor.subProgress(1);
-                        mrep.beginTask("Generating report...", 1);
-                        ReportGenerator rg = new ReportGenerator(this);
-                        String reportJSON = rg.generateJSON();
+                        // Generate and save build report
+                        if (generateReport) {
+                            IProgress mrep = monitor.subProgress(1);
+                            mrep.beginTask("Generating report...", 1);
+                            ReportGenerator rg = new ReportGenerator(this);
+                            String reportJSON = rg.generateJSON();
 
-                        // Save JSON report
-                        if (this.hasOption("build-report")) {
-                            fileJSONWriter.write(reportJSON);
-                            fileJSONWriter.close();
+                            // Save JSON report
+                            if (this.hasOption("build-report")) {
+                                fileJSONWriter.write(reportJSON);
+                                fileJSONWriter.close();
+                            }
+
+                            // Save HTML report
+                            if (this.hasOption("build-report-html")) {
+                                String reportHTML = rg.generateHTML(reportJSON);
+                                fileHTMLWriter.write(reportHTML);
+                                fileHTMLWriter.close();
+                            }
+                            mrep.done();
                         }
 
-                        // Save HTML report
-                        if (this.hasOption("build-report-html")) {
-                            String reportHTML = rg.generateHTML(reportJSON);
-                            fileHTMLWriter.write(reportHTML);
-                            fileHTMLWriter.close();
+                        break;
+                    }
+                    case "clean": {
+                        IProgress m = monitor.subProgress(1);
+                        m.beginTask("Cleaning...", newTasks.size());
+                        for (Task<?> t : newTasks) {
+                            List<IResource> outputs = t.getOutputs();
+                            for (IResource r : outputs) {
+                                BundleHelper.throwIfCanceled(monitor);
+                                r.remove();
+                                m.worked(1);
+                            }
                         }
-                        mrep.done();
+                        m.done();
+                        break;
                     }
-
-                    break;
-                }
-                case "clean": {
-                    IProgress m = monitor.subProgress(1);
-                    m.beginTask("Cleaning...", newTasks.size());
-                    for (Task<?> t : newTasks) {
-                        List<IResource> outputs = t.getOutputs();
-                        for (IResource r : outputs) {
-                            BundleHelper.throwIfCanceled(monitor);
-                            r.remove();
-                            m.worked(1);
+                    case "distclean": {
+                        IProgress m = monitor.subProgress(1);
+                        m.beginTask("Cleaning...", newTasks.size());
+                        BundleHelper.throwIfCanceled(monitor);
+                        FileUtils.deleteDirectory(new File(FilenameUtils.concat(rootDirectory, buildDirectory)));
+                        m.worked(1);
+                        m.done();
+                        break;
+                    }
+                    case "bundle": {
+                        try (BuildTracer.Span span = tracer.span("bundle")) {
+                            bundle(monitor);
                         }
+                        break;
                     }
-                    m.done();
-                    break;
-                }
-                case "distclean": {
-                    IProgress m = monitor.subProgress(1);
-                    m.beginTask("Cleaning...", newTasks.size());
-                    BundleHelper.throwIfCanceled(monitor);
-                    FileUtils.deleteDirectory(new File(FilenameUtils.concat(rootDirectory, buildDirectory)));
-                    m.worked(1);
-                    m.done();
-                    break;
+                    default: break;
                 }
-                case "bundle": {
-                    bundle(monitor);
-                    break;
-                }
-                default: break;
             }
+        } finally {
+            writeTrace();
         }
 
         monitor.done();
@@ -915,6 +1232,32 @@ public class Project {
         return result;
     }
 
+    // The trace file is only opened once all commands have run, so that a failed build doesn't leak it
+    private void writeTrace() throws IOException {
+        if (this.hasOption("build-trace")) {
+            String tracePath = this.option("build-trace", "trace.json");
+            try (FileWriter writer = new FileWriter(new File(tracePath))) {
+                tracer.writeChromeTrace(writer);
+            }
+        }
+    }
+
+    private static long getTotalSize(List<IResource> resources) throws IOException {
+        long size = 0;
+        for (IResource r : resources) {
+            if (r instanceof DefaultResource) {
+                size += new File(r.getAbsPath()).length();
+            } else {
+                // Library and builtin resources aren't files of their own
+                ByteBuffer content = r.getContentBuffer();
+                if (content != null) {
+                    size += content.remaining();
+                }
+            }
+        }
+        return size;
+    }
+
     @SuppressWarnings({ "rawtypes", "unchecked" })
     private List<TaskResult> runTasks(IProgress monitor) throws IOException {
 
@@ -965,7 +1308,12 @@ run:
 
                 monitor.worked(1);
 
-                byte[] taskSignature = task.calculateSignature(this);
+                long startTime = System.nanoTime();
+                long startCpuTime = BuildTracer.getCurrentThreadCpuTime();
+                byte[] taskSignature;
+                try (BuildTracer.Span span = tracer.span("signature")) {
+                    taskSignature = task.calculateSignature(this);
+                }
 
                 // do all output files exist?
                 boolean allOutputExists = true;
@@ -1001,6 +1349,12 @@ run:
                         // output files to the completed output set
                         completedTasks.add(task);
                         completedOutputs.addAll(task.getOutputs());
+
+                        TaskResult cachedResult = new TaskResult(task);
+                        cachedResult.setCached(true);
+                        cachedResult.setTime(startTime, System.nanoTime() - startTime, BuildTracer.getCurrentThreadCpuTime() - startCpuTime);
+                        cachedResult.setThread(Thread.currentThread());
+                        tracer.addTask(cachedResult);
                     }
                     continue;
                 }
@@ -1043,6 +1397,10 @@ run:
                     // to fix the issue it's easier to see the actual callstack
                     exception.printStackTrace(new java.io.PrintStream(System.out));
                 }
+                taskResult.setTime(startTime, System.nanoTime() - startTime, BuildTracer.getCurrentThreadCpuTime() - startCpuTime);
+                taskResult.setThread(Thread.currentThread());
+                taskResult.setBytes(getTotalSize(task.getInputs()), getTotalSize(task.getOutputs()));
+                tracer.addTask(taskResult);
                 if (!ok) {
                     taskFailed = true;
                     taskResult.setOk(ok);
@@ -1113,103 +1471,8 @@ run:
      */
     public void resolveLibUrls(IProgress progress) throws IOException, LibraryException {
         try {
-            String libPath = getLibPath();
-            File libDir = new File(libPath);
-            // Clean lib dir first
-            //FileUtils.deleteQuietly(libDir);
-            FileUtils.forceMkdir(libDir);
-            // Download libs
-            List<File> libFiles = LibraryUtil.convertLibraryUrlsToFiles(libPath, libUrls);
-            int count = this.libUrls.size();
-            IProgress subProgress = progress.subProgress(count);
-            subProgress.beginTask("Download archives", count);
-            for (int i = 0; i < count; ++i) {
-                BundleHelper.throwIfCanceled(progress);
-                File f = libFiles.get(i);
-                String sha1 = null;
-
-                if (f.exists()) {
-                    ZipFile zipFile = null;
-
-                    try {
-                        zipFile = new ZipFile(f);
-                        sha1 = zipFile.getComment();
-                    } finally {
-                        if (zipFile != null) {
-                            zipFile.close();
-                        }
-                    }
-                }
-
-                URL url = libUrls.get(i);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                if (sha1 != null) {
-                    connection.addRequestProperty("If-None-Match", sha1);
-                }
-
-                // Check if URL contains basic auth credentials
-                String basicAuthData = null;
-                try {
-                    URI uri = new URI(url.toString());
-                    basicAuthData = uri.getUserInfo();
-                } catch (URISyntaxException e1) {
-                    // Ignored, could not get URI and basic auth data from URL.
-                }
-
-                // Pass correct headers along to server depending on auth alternative.
-                if (basicAuthData != null) {
-                    String basicAuth = "Basic " + new String(new Base64().encode(basicAuthData.getBytes()));
-                    connection.setRequestProperty("Authorization", basicAuth);
-                } else {
-                    connection.addRequestProperty("X-Email", this.options.get("email"));
-                    connection.addRequestProperty("X-Auth", this.options.get("auth"));
-                }
-
-                InputStream input = null;
-                try {
-                    connection.connect();
-                    int code = connection.getResponseCode();
-                    if (code == 304) {
-                        // Reusing cached library
-                    } else {
-                        boolean serverSha1Match = false;
-                        if(code == 200) {
-                            // GitHub uses eTags and we can check we have the up to date version by comparing SHA1 and server eTag if we get a 200 OK response
-                            if (sha1 != null) {
-                                String serverETag = connection.getHeaderField("ETag");
-                                if (serverETag != null) {
-                                    if (sha1.equals(serverETag.replace("\"", ""))) {
-                                        // Reusing cached library
-                                        serverSha1Match = true;
-                                    }
-                                }
-                            }
-                        }
-                        if(!serverSha1Match) {
-                            input = new BufferedInputStream(connection.getInputStream());
-                            FileUtils.copyInputStreamToFile(input, f);
-
-                            try {
-                                ZipFile zip = new ZipFile(f);
-                                zip.close();
-                            } catch (ZipException e) {
-                                f.delete();
-                                throw new LibraryException(String.format("The file obtained from %s is not a valid zip file", url.toString()), e);
-                            }
-                        }
-                    }
-                    connection.disconnect();
-                } catch (ConnectException e) {
-                    throw new LibraryException(String.format("Connection refused by the server at %s", url.toString()), e);
-                } catch (FileNotFoundException e) {
-                    throw new LibraryException(String.format("The URL %s points to a resource which doesn't exist", url.toString()), e);
-                } finally {
-                    if(input != null) {
-                        IOUtils.closeQuietly(input);
-                    }
-                    subProgress.worked(1);
-                }
-            }
+            LibraryDownloader downloader = new LibraryDownloader(getLibPath(), this.options.get("email"), this.options.get("auth"));
+            downloader.download(this.libUrls, progress);
         }
         catch(IOException ioe) {
             throw ioe;
@@ -1265,21 +1528,50 @@ run:
     class Walker extends FileSystemWalker {
 
         private Set<String> skipDirs;
+        // Matches the contents of all skip dirs, same as FilenameUtils.wildcardMatch(path, skipDir + "/*")
+        private Pattern skipPattern;
 
         public Walker(Set<String> skipDirs) {
-            this.skipDirs = skipDirs;
+            if (skipDirs != null && !skipDirs.isEmpty()) {
+                this.skipDirs = new HashSet<String>();
+                StringBuilder regex = new StringBuilder();
+                for (String sd : skipDirs) {
+                    this.skipDirs.add(FilenameUtils.normalize(sd, true));
+                    if (regex.length() > 0) {
+                        regex.append('|');
+                    }
+                    regex.append(wildcardToRegex(sd));
+                }
+                this.skipPattern = Pattern.compile("(?:" + regex + ")/.*", Pattern.DOTALL);
+            }
+        }
+
+        private String wildcardToRegex(String wildcard) {
+            StringBuilder regex = new StringBuilder();
+            StringBuilder literal = new StringBuilder();
+            for (char c : wildcard.toCharArray()) {
+                if (c == '*' || c == '?') {
+                    if (literal.length() > 0) {
+                        regex.append(Pattern.quote(literal.toString()));
+                        literal.setLength(0);
+                    }
+                    regex.append(c == '*' ? ".*" : ".");
+                } else {
+                    literal.append(c);
+                }
+            }
+            if (literal.length() > 0) {
+                regex.append(Pattern.quote(literal.toString()));
+            }
+            return regex.toString();
         }
 
         @Override
         public void handleFile(String path, Collection<String> results) {
             path = FilenameUtils.normalize(path, true);
             boolean include = true;
-            if (skipDirs != null) {
-                for (String sd : skipDirs) {
-                    if (FilenameUtils.wildcardMatch(path, sd + "/*")) {
-                        include = false;
-                    }
-                }
+            if (skipPattern != null && skipPattern.matcher(path).matches()) {
+                include = false;
             }
             // ignore all .files, for instance the .project file that is generated by many Eclipse based editors
             if (FilenameUtils.getBaseName(path).isEmpty()) {
@@ -1287,8 +1579,7 @@ run:
             }
             if (include) {
                 String ext = "." + FilenameUtils.getExtension(path);
-                Class<? extends Builder<?>> builderClass = extToBuilder.get(ext);
-                if (builderClass != null)
+                if (hasBuilder(ext))
                     results.add(path);
             }
         }
@@ -1297,13 +1588,8 @@ run:
         public boolean handleDirectory(String path, Collection<String> results) {
             path = FilenameUtils.normalize(path, true);
             if (skipDirs != null) {
-                for (String sd : skipDirs) {
-                    if (FilenameUtils.equalsNormalized(sd, path)) {
-                        return false;
-                    }
-                    if (FilenameUtils.wildcardMatch(path, sd + "/*")) {
-                        return false;
-                    }
+                if (skipDirs.contains(path) || skipPattern.matcher(path).matches()) {
+                    return false;
                 }
             }
             return super.handleDirectory(path, results);
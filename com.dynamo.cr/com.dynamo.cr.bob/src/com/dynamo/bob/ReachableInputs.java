@@ -0,0 +1,187 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+// 
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+// 
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FilenameUtils;
+
+import com.dynamo.bob.fs.IResource;
+import com.dynamo.bob.pipeline.GameProjectBuilder;
+import com.dynamo.bob.pipeline.LuaScanner;
+import com.dynamo.bob.util.BobProjectProperties;
+
+/**
+ * Finds the inputs that are reachable from the roots of game.project, i.e. the
+ * inputs that can end up in the archive.
+ *
+ * The references are found by scanning the sources rather than the compiled
+ * outputs, so that the set is known before any task is created. Any quoted
+ * string that looks like a project path is considered a reference, which
+ * covers the resource fields of the text formats (including embedded
+ * instances and components), script properties and Lua modules. The scan
+ * errs on the side of including too much, a false reference only costs the
+ * build time of that input.
+ */
+class ReachableInputs {
+
+    // A quoted project path. Embedded components escape their quotes, so a path ends at a backslash as well
+    private static final Pattern QUOTED_PATH_PATTERN = Pattern.compile("[\"'](/[^\"'\\\\\\r\\n]+)");
+
+    private static final Set<String> LUA_EXTS = new HashSet<String>(Arrays.asList("lua", "script", "gui_script", "render_script"));
+
+    // Number of bytes checked for null bytes to determine if a file is binary
+    private static final int BINARY_CHECK_SIZE = 8000;
+
+    private final Project project;
+    private final Set<String> inputs;
+    // Output extension to the input extensions producing it, used for compiled paths in game.project
+    private final Map<String, List<String>> outExtToInExts;
+
+    ReachableInputs(Project project, Collection<String> inputs) {
+        this.project = project;
+        this.inputs = new HashSet<String>(inputs);
+        this.outExtToInExts = project.getOutExtToInExts();
+    }
+
+    /**
+     * Find the reachable inputs.
+     * @return the subset of the inputs that is reachable from game.project
+     * @throws IOException
+     */
+    Set<String> find() throws IOException {
+        Set<String> reachable = new LinkedHashSet<String>();
+        Deque<String> queue = new ArrayDeque<String>();
+
+        List<String> roots = new ArrayList<String>();
+        roots.add(project.getGameProjectResource().getPath());
+        roots.addAll(GameProjectBuilder.getRootResourcePaths(project));
+
+        // Any other path in game.project, e.g. texture profiles or the debug init script
+        BobProjectProperties properties = project.getProjectProperties();
+        for (String category : properties.getCategoryNames()) {
+            for (String key : properties.getKeys(category)) {
+                String value = properties.getStringValue(category, key);
+                if (value == null) {
+                    continue;
+                }
+                for (String path : value.split(",")) {
+                    path = path.trim();
+                    if (path.startsWith("/")) {
+                        roots.add(path);
+                    }
+                }
+            }
+        }
+
+        // Custom resources are copied as they are, but might be inputs too
+        for (String s : properties.getStringValue("project", "custom_resources", "").split(",")) {
+            s = s.trim();
+            if (s.length() > 0) {
+                List<String> paths = new ArrayList<String>();
+                project.findResourcePaths(s, paths);
+                roots.addAll(paths);
+            }
+        }
+
+        for (String root : roots) {
+            if (!resolve(root, reachable, queue)) {
+                Bob.verbose("Root resource '%s' is not an input", root);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            String input = queue.removeFirst();
+            for (String reference : findReferences(input)) {
+                resolve(reference, reachable, queue);
+            }
+        }
+        return reachable;
+    }
+
+    private boolean resolve(String path, Set<String> reachable, Deque<String> queue) {
+        path = FilenameUtils.normalize(Project.stripLeadingSlash(path), true);
+        if (path == null) {
+            return false;
+        }
+        if (inputs.contains(path)) {
+            if (reachable.add(path)) {
+                queue.addLast(path);
+            }
+            return true;
+        }
+
+        // A compiled path, find the input that produces it
+        String ext = "." + FilenameUtils.getExtension(path);
+        List<String> inExts = outExtToInExts.get(ext);
+        boolean found = false;
+        if (inExts != null) {
+            String base = path.substring(0, path.length() - ext.length());
+            for (String inExt : inExts) {
+                String input = base + inExt;
+                if (inputs.contains(input)) {
+                    found = true;
+                    if (reachable.add(input)) {
+                        queue.addLast(input);
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private List<String> findReferences(String input) throws IOException {
+        List<String> references = new ArrayList<String>();
+        IResource resource = project.getResource(input);
+        byte[] content = resource.getContent();
+        if (content == null || isBinary(content)) {
+            return references;
+        }
+
+        String text = new String(content, StandardCharsets.UTF_8);
+        Matcher matcher = QUOTED_PATH_PATTERN.matcher(text);
+        while (matcher.find()) {
+            references.add(matcher.group(1));
+        }
+
+        if (LUA_EXTS.contains(FilenameUtils.getExtension(input))) {
+            for (String module : LuaScanner.scan(text)) {
+                references.add("/" + module.replace('.', '/') + ".lua");
+            }
+        }
+        return references;
+    }
+
+    private static boolean isBinary(byte[] content) {
+        int n = Math.min(content.length, BINARY_CHECK_SIZE);
+        for (int i = 0; i < n; ++i) {
+            if (content[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -23,6 +23,14 @@ public class TaskResult {
     private Task<?> task;
     private Throwable exception;
     private int lineNumber = 0;
+    private boolean cached = false;
+    private long startTime = 0;
+    private long wallTime = 0;
+    private long cpuTime = 0;
+    private long bytesRead = 0;
+    private long bytesWritten = 0;
+    private long threadId = 0;
+    private String threadName = "";
 
     public TaskResult(Task<?> task) {
         this.task = task;
@@ -104,4 +112,99 @@ public class TaskResult {
     public int getLineNumber() {
         return this.lineNumber;
     }
+
+    /**
+     * Set if the task was up to date, i.e. not built.
+     * @param cached true if the outputs of the task were up to date
+     */
+    public void setCached(boolean cached) {
+        this.cached = cached;
+    }
+
+    /**
+     * Return whether the task was up to date, i.e. not built.
+     * @return true if the outputs of the task were up to date
+     */
+    public boolean isCached() {
+        return this.cached;
+    }
+
+    /**
+     * Set the timing of the task.
+     * @param startTime start time, from System.nanoTime()
+     * @param wallTime elapsed time in nanoseconds
+     * @param cpuTime CPU time of the thread running the task in nanoseconds
+     */
+    public void setTime(long startTime, long wallTime, long cpuTime) {
+        this.startTime = startTime;
+        this.wallTime = wallTime;
+        this.cpuTime = cpuTime;
+    }
+
+    /**
+     * Get start time.
+     * @return start time, from System.nanoTime()
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Get elapsed time, including the signature calculation.
+     * @return elapsed time in nanoseconds
+     */
+    public long getWallTime() {
+        return wallTime;
+    }
+
+    /**
+     * Get CPU time.
+     * @return CPU time of the thread running the task in nanoseconds
+     */
+    public long getCpuTime() {
+        return cpuTime;
+    }
+
+    /**
+     * Set the size of the inputs and outputs of the task.
+     * @param bytesRead total size of the inputs
+     * @param bytesWritten total size of the outputs
+     */
+    public void setBytes(long bytesRead, long bytesWritten) {
+        this.bytesRead = bytesRead;
+        this.bytesWritten = bytesWritten;
+    }
+
+    /**
+     * Get the total size of the inputs.
+     * @return size in bytes
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Get the total size of the outputs. Zero if the task wasn't built.
+     * @return size in bytes
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Set the thread the task was run on.
+     * @param thread thread
+     */
+    public void setThread(Thread thread) {
+        this.threadId = thread.getId();
+        this.threadName = thread.getName();
+    }
+
+    public long getThreadId() {
+        return threadId;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
 }
@@ -23,7 +23,13 @@ import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
@@ -45,14 +51,19 @@ public class ArchiveBuilder {
     public static final int HASH_LENGTH = 20;
     public static final int MD5_HASH_DIGEST_BYTE_LENGTH = 16; // 128 bits
 
-    private static final byte[] KEY = "aQj8CScgNP4VsfXK".getBytes();
+    static final byte[] KEY = "aQj8CScgNP4VsfXK".getBytes();
 
     private static final List<String> ENCRYPTED_EXTS = Arrays.asList("luac", "scriptc", "gui_scriptc", "render_scriptc");
 
+    // Maximum size of the data of new entries to keep in memory when writing incrementally
+    private static final long MAX_NEW_DATA_SIZE = 64 * 1024 * 1024;
+
     private List<ArchiveEntry> entries = new ArrayList<ArchiveEntry>();
     private String root;
     private ManifestBuilder manifestBuilder = null;
     private LZ4Compressor lz4Compressor;
+    // Scratch buffer for the compressor, reused between entries
+    private byte[] compressBuffer = new byte[0];
     private byte[] archiveIndexMD5 = new byte[MD5_HASH_DIGEST_BYTE_LENGTH];
 
     public ArchiveBuilder(String root, ManifestBuilder manifestBuilder) {
@@ -99,22 +110,32 @@ public class ArchiveBuilder {
     }
 
     public byte[] loadResourceData(String filepath) throws IOException {
-        File fhandle = new File(filepath);
-        return FileUtils.readFileToByteArray(fhandle);
+        return Files.readAllBytes(new File(filepath).toPath());
     }
 
-    public byte[] compressResourceData(byte[] buffer) {
+    // Compress into the scratch buffer and return the compressed size
+    private int compressToBuffer(byte[] buffer) {
         int maximumCompressedSize = lz4Compressor.maxCompressedLength(buffer.length);
-        byte[] compressedContent = new byte[maximumCompressedSize];
-        int compressedSize = lz4Compressor.compress(buffer, compressedContent);
-        return Arrays.copyOfRange(compressedContent, 0, compressedSize);
+        if (compressBuffer.length < maximumCompressedSize) {
+            compressBuffer = new byte[maximumCompressedSize];
+        }
+        return lz4Compressor.compress(buffer, 0, buffer.length, compressBuffer, 0, maximumCompressedSize);
     }
 
-    public boolean shouldUseCompressedResourceData(byte[] original, byte[] compressed) {
-        double ratio = (double) compressed.length / (double) original.length;
+    public byte[] compressResourceData(byte[] buffer) {
+        int compressedSize = compressToBuffer(buffer);
+        return Arrays.copyOfRange(compressBuffer, 0, compressedSize);
+    }
+
+    private static boolean shouldUseCompressedResourceData(int originalSize, int compressedSize) {
+        double ratio = (double) compressedSize / (double) originalSize;
         return ratio <= 0.95;
     }
 
+    public boolean shouldUseCompressedResourceData(byte[] original, byte[] compressed) {
+        return shouldUseCompressedResourceData(original.length, compressed.length);
+    }
+
     public byte[] encryptResourceData(byte[] buffer) {
         return Crypt.encryptCTR(buffer, KEY);
     }
@@ -165,71 +186,202 @@ public class ArchiveBuilder {
         return result;
     }
 
-    public void write(RandomAccessFile archiveIndex, RandomAccessFile archiveData, Path resourcePackDirectory, List<String> excludedResources) throws IOException {
-        // INDEX
-        archiveIndex.writeInt(VERSION); // Version
-        archiveIndex.writeInt(0); // Pad
-        archiveIndex.writeLong(0); // UserData, used in runtime to distinguish between if the index and resources are memory mapped or loaded from disk
-        archiveIndex.writeInt(0); // EntryCount
-        archiveIndex.writeInt(0); // EntryOffset
-        archiveIndex.writeInt(0); // HashOffset
-        archiveIndex.writeInt(0); // HashLength
-        archiveIndex.write(new byte[MD5_HASH_DIGEST_BYTE_LENGTH]);
-        
-        int archiveIndexHeaderOffset = (int) archiveIndex.getFilePointer();
+    // Load the data of an entry as it is stored in the archive, i.e. compressed and encrypted
+    private byte[] loadEntryData(ArchiveEntry entry) throws IOException {
+        byte[] buffer = this.loadResourceData(entry.fileName);
+        if (entry.compressedSize != ArchiveEntry.FLAG_UNCOMPRESSED) {
+            // Compress data, only copying it out of the scratch buffer if it is used
+            int compressedSize = this.compressToBuffer(buffer);
+            if (shouldUseCompressedResourceData(buffer.length, compressedSize)) {
+                buffer = Arrays.copyOfRange(compressBuffer, 0, compressedSize);
+                entry.compressedSize = compressedSize;
+            } else {
+                entry.compressedSize = ArchiveEntry.FLAG_UNCOMPRESSED;
+            }
+        }
 
-        for (int i = entries.size() - 1; i >= 0; --i) {
-            ArchiveEntry entry = entries.get(i);
-            byte[] buffer = this.loadResourceData(entry.fileName);
+        // Encrypt data
+        String extension = FilenameUtils.getExtension(entry.fileName);
+        if (ENCRYPTED_EXTS.indexOf(extension) != -1) {
+            entry.flags = (entry.flags | ArchiveEntry.FLAG_ENCRYPTED);
+            buffer = this.encryptResourceData(buffer);
+        }
+        return buffer;
+    }
+
+    // Hash the data of an entry and add it to the manifest. Returns false if the
+    // entry is excluded, in which case it's written to the resource pack instead
+    private boolean addEntry(ArchiveEntry entry, byte[] buffer, Path resourcePackDirectory, List<String> excludedResources) throws IOException {
+        String normalisedPath = FilenameUtils.separatorsToUnix(entry.relName);
+
+        // Calculate hash digest values for resource
+        String hexDigest = null;
+        try {
+            byte[] hashDigest = ManifestBuilder.CryptographicOperations.hash(buffer, manifestBuilder.getResourceHashAlgorithm());
+            entry.hash = new byte[HASH_MAX_LENGTH];
+            System.arraycopy(hashDigest, 0, entry.hash, 0, hashDigest.length);
+            hexDigest = ManifestBuilder.CryptographicOperations.hexdigest(hashDigest);
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IOException("Unable to create a Resource Pack, the hashing algorithm is not supported!");
+        }
+
+        int resourceEntryFlags = ResourceEntryFlag.BUNDLED.getNumber();
+        boolean excluded = this.excludeResource(normalisedPath, excludedResources);
+        if (excluded) {
+            resourceEntryFlags = ResourceEntryFlag.EXCLUDED.getNumber();
             byte archiveEntryFlags = (byte) entry.flags;
-            int resourceEntryFlags = ResourceEntryFlag.BUNDLED.getNumber();
             if (entry.compressedSize != ArchiveEntry.FLAG_UNCOMPRESSED) {
-                // Compress data
-                byte[] compressed = this.compressResourceData(buffer);
-                if (this.shouldUseCompressedResourceData(buffer, compressed)) {
-                    archiveEntryFlags = (byte)(archiveEntryFlags | ArchiveEntry.FLAG_COMPRESSED);
-                    buffer = compressed;
-                    entry.compressedSize = compressed.length;
-                } else {
-                    entry.compressedSize = ArchiveEntry.FLAG_UNCOMPRESSED;
-                }
+                archiveEntryFlags = (byte) (archiveEntryFlags | ArchiveEntry.FLAG_COMPRESSED);
             }
+            this.writeResourcePack(hexDigest, resourcePackDirectory.toString(), buffer, archiveEntryFlags, entry.size);
+        }
 
-            // Encrypt data
-            String extension = FilenameUtils.getExtension(entry.fileName);
-            if (ENCRYPTED_EXTS.indexOf(extension) != -1) {
-                archiveEntryFlags = (byte) (archiveEntryFlags | ArchiveEntry.FLAG_ENCRYPTED);
-                entry.flags = (entry.flags | ArchiveEntry.FLAG_ENCRYPTED);
-                buffer = this.encryptResourceData(buffer);
-            }
+        manifestBuilder.addResourceEntry(normalisedPath, buffer, resourceEntryFlags);
+        return !excluded;
+    }
 
-            // Add entry to manifest
-            String normalisedPath = FilenameUtils.separatorsToUnix(entry.relName);
+    private static int getStoredSize(ArchiveEntry entry) {
+        return entry.compressedSize == ArchiveEntry.FLAG_UNCOMPRESSED ? entry.size : entry.compressedSize;
+    }
 
-            // Calculate hash digest values for resource
-            String hexDigest = null;
-            try {
-                byte[] hashDigest = ManifestBuilder.CryptographicOperations.hash(buffer, manifestBuilder.getResourceHashAlgorithm());
-                entry.hash = new byte[HASH_MAX_LENGTH];
-                System.arraycopy(hashDigest, 0, entry.hash, 0, hashDigest.length);
-                hexDigest = ManifestBuilder.CryptographicOperations.hexdigest(hashDigest);
-            } catch (NoSuchAlgorithmException exception) {
-                throw new IOException("Unable to create a Resource Pack, the hashing algorithm is not supported!");
-            }
+    private static long align(long offset, int align) {
+        return (offset + (align - 1)) & ~(align - 1);
+    }
+
+    public void write(RandomAccessFile archiveIndex, RandomAccessFile archiveData, Path resourcePackDirectory, List<String> excludedResources) throws IOException {
+        for (int i = entries.size() - 1; i >= 0; --i) {
+            ArchiveEntry entry = entries.get(i);
+            byte[] buffer = loadEntryData(entry);
 
             // Write resource to data archive
-            if (this.excludeResource(normalisedPath, excludedResources)) {
-                resourceEntryFlags = ResourceEntryFlag.EXCLUDED.getNumber();
-                this.writeResourcePack(hexDigest, resourcePackDirectory.toString(), buffer, archiveEntryFlags, entry.size);
-                entries.remove(i);
-            } else {
+            if (addEntry(entry, buffer, resourcePackDirectory, excludedResources)) {
                 alignBuffer(archiveData, 4);
                 entry.resourceOffset = (int) archiveData.getFilePointer();
                 archiveData.write(buffer, 0, buffer.length);
+            } else {
+                entries.remove(i);
+            }
+        }
+
+        writeIndex(archiveIndex);
+    }
+
+    /**
+     * Write the archive, updating the data file of a previous archive in place.
+     * Entries whose data, as stored, is found by hash in the previous archive keep
+     * their offsets and aren't written at all. Other entries are written to the
+     * space of the previous entries that are no longer used, or appended. The
+     * index is always written from scratch. If less than half of the data file
+     * can be kept, it's written from scratch instead so that the unused space
+     * doesn't keep growing.
+     * @param archiveIndex file to write the index to
+     * @param archiveData data file of the previous archive, updated in place
+     * @param previousEntries entries of the index of the previous archive
+     * @param resourcePackDirectory directory to write excluded entries to
+     * @param excludedResources excluded resources
+     * @throws IOException
+     */
+    public void writeIncremental(RandomAccessFile archiveIndex, RandomAccessFile archiveData, List<ArchiveEntry> previousEntries, Path resourcePackDirectory, List<String> excludedResources) throws IOException {
+        Map<String, ArchiveEntry> previousByHash = new HashMap<String, ArchiveEntry>();
+        for (ArchiveEntry previous : previousEntries) {
+            previousByHash.put(ManifestBuilder.CryptographicOperations.hexdigest(previous.hash), previous);
+        }
+
+        // All entries are hashed before anything is written, since the space of
+        // a previous entry can't be reused until it's known to be unused
+        List<ArchiveEntry> keptEntries = new ArrayList<ArchiveEntry>();
+        Set<Integer> keptOffsets = new HashSet<Integer>();
+        long keptSize = 0;
+        long end = 0;
+        List<ArchiveEntry> newEntries = new ArrayList<ArchiveEntry>();
+        // Data of the new entries, as long as it fits in the budget, the rest is loaded again when written
+        Map<ArchiveEntry, byte[]> newData = new IdentityHashMap<ArchiveEntry, byte[]>();
+        long newDataSize = 0;
+        for (int i = entries.size() - 1; i >= 0; --i) {
+            ArchiveEntry entry = entries.get(i);
+            byte[] buffer = loadEntryData(entry);
+            if (!addEntry(entry, buffer, resourcePackDirectory, excludedResources)) {
+                entries.remove(i);
+                continue;
+            }
+
+            ArchiveEntry previous = previousByHash.get(ManifestBuilder.CryptographicOperations.hexdigest(entry.hash));
+            if (previous != null && getStoredSize(previous) == buffer.length) {
+                entry.resourceOffset = previous.resourceOffset;
+                keptEntries.add(entry);
+                if (keptOffsets.add(previous.resourceOffset)) {
+                    keptSize += buffer.length;
+                    end = Math.max(end, previous.resourceOffset + buffer.length);
+                }
+            } else {
+                newEntries.add(entry);
+                if (newDataSize + buffer.length <= MAX_NEW_DATA_SIZE) {
+                    newData.put(entry, buffer);
+                    newDataSize += buffer.length;
+                }
+            }
+        }
+
+        // Space of the previous entries that are no longer used, sorted by offset
+        List<long[]> freeRanges = new ArrayList<long[]>();
+        if (keptSize * 2 < archiveData.length()) {
+            newEntries.addAll(keptEntries);
+            end = 0;
+        } else {
+            Set<Integer> freeOffsets = new HashSet<Integer>();
+            for (ArchiveEntry previous : previousEntries) {
+                int offset = previous.resourceOffset;
+                if (offset < end && !keptOffsets.contains(offset) && freeOffsets.add(offset)) {
+                    freeRanges.add(new long[] { offset, offset + getStoredSize(previous) });
+                }
             }
+            Collections.sort(freeRanges, new Comparator<long[]>() {
+                @Override
+                public int compare(long[] a, long[] b) {
+                    return Long.compare(a[0], b[0]);
+                }
+            });
+        }
 
-            manifestBuilder.addResourceEntry(normalisedPath, buffer, resourceEntryFlags);
+        for (ArchiveEntry entry : newEntries) {
+            byte[] buffer = newData.get(entry);
+            if (buffer == null) {
+                buffer = loadEntryData(entry);
+            }
+            long offset = -1;
+            for (long[] range : freeRanges) {
+                long start = align(range[0], 4);
+                if (start + buffer.length <= range[1]) {
+                    offset = start;
+                    range[0] = start + buffer.length;
+                    break;
+                }
+            }
+            if (offset == -1) {
+                offset = align(end, 4);
+                end = offset + buffer.length;
+            }
+            entry.resourceOffset = (int) offset;
+            archiveData.seek(offset);
+            archiveData.write(buffer, 0, buffer.length);
         }
+        archiveData.setLength(end);
+
+        writeIndex(archiveIndex);
+    }
+
+    private void writeIndex(RandomAccessFile archiveIndex) throws IOException {
+        // INDEX
+        archiveIndex.writeInt(VERSION); // Version
+        archiveIndex.writeInt(0); // Pad
+        archiveIndex.writeLong(0); // UserData, used in runtime to distinguish between if the index and resources are memory mapped or loaded from disk
+        archiveIndex.writeInt(0); // EntryCount
+        archiveIndex.writeInt(0); // EntryOffset
+        archiveIndex.writeInt(0); // HashOffset
+        archiveIndex.writeInt(0); // HashLength
+        archiveIndex.write(new byte[MD5_HASH_DIGEST_BYTE_LENGTH]);
+
+        int archiveIndexHeaderOffset = (int) archiveIndex.getFilePointer();
 
         // Write sorted hashes to index file
         Collections.sort(entries);
@@ -14,21 +14,45 @@ package com.dynamo.bob.archive;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import com.dynamo.crypt.Crypt;
+import com.dynamo.liveupdate.proto.Manifest.HashAlgorithm;
 import com.dynamo.liveupdate.proto.Manifest.ManifestData;
 import com.dynamo.liveupdate.proto.Manifest.ManifestFile;
 import com.dynamo.liveupdate.proto.Manifest.ResourceEntry;
+import com.dynamo.liveupdate.proto.Manifest.ResourceEntryFlag;
+
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
 
 public class ArchiveReader {
     public static final int VERSION = 4;
     public static final int HASH_BUFFER_BYTESIZE = 64; // 512 bits
 
+    // Version, pad, user data, entry count, entry offset, hash offset, hash length and MD5 of the rest of the index
+    private static final int INDEX_HEADER_SIZE = 48;
+    private static final int ENTRY_BYTESIZE = 16;
+
     private ArrayList<ArchiveEntry> entries = null;
 
     private int entryCount = 0;
@@ -39,96 +63,146 @@ public class ArchiveReader {
     private final String archiveIndexFilepath;
     private final String archiveDataFilepath;
     private final String manifestFilepath;
-    private RandomAccessFile archiveIndexFile = null;
+    private final boolean memoryMapped;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private ByteBuffer archiveIndex = null;
     private RandomAccessFile archiveDataFile = null;
+    private ByteBuffer archiveData = null;
     private ManifestFile manifestFile = null;
+    private ManifestData manifestData = null;
+
+    private final LZ4FastDecompressor lz4Decompressor = LZ4Factory.fastestInstance().fastDecompressor();
 
     public ArchiveReader(String archiveIndexFilepath, String archiveDataFilepath, String manifestFilepath) {
+        this(archiveIndexFilepath, archiveDataFilepath, manifestFilepath, false);
+    }
+
+    /**
+     * Create a reader of an archive.
+     * @param archiveIndexFilepath path to the .arci file
+     * @param archiveDataFilepath path to the .arcd file
+     * @param manifestFilepath path to the .dmanifest file, or null to read the archive without it
+     * @param memoryMapped map the archive files into memory instead of reading them. The
+     * files can't be modified or deleted on Windows while the mapping is alive, which is
+     * until it's garbage collected, so this is only for reading archives that are done
+     */
+    public ArchiveReader(String archiveIndexFilepath, String archiveDataFilepath, String manifestFilepath, boolean memoryMapped) {
         this.archiveIndexFilepath = archiveIndexFilepath;
         this.archiveDataFilepath = archiveDataFilepath;
         this.manifestFilepath = manifestFilepath;
+        this.memoryMapped = memoryMapped;
+    }
+
+    /**
+     * Set the number of threads used by verify and extractAll, the number of processors by default.
+     * @param threadCount number of threads
+     */
+    public void setThreadCount(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+    }
+
+    private static ByteBuffer map(RandomAccessFile file) throws IOException {
+        return file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
     }
 
     public void read() throws IOException {
-    	this.archiveIndexFile = new RandomAccessFile(this.archiveIndexFilepath, "r");
+        // The index is parsed in one go, it's small compared to the data
+        if (this.memoryMapped) {
+            RandomAccessFile archiveIndexFile = new RandomAccessFile(this.archiveIndexFilepath, "r");
+            try {
+                this.archiveIndex = map(archiveIndexFile);
+            } finally {
+                archiveIndexFile.close();
+            }
+        } else {
+            this.archiveIndex = ByteBuffer.wrap(Files.readAllBytes(new File(this.archiveIndexFilepath).toPath()));
+        }
+
         this.archiveDataFile = new RandomAccessFile(this.archiveDataFilepath, "r");
-        
-        this.archiveIndexFile.seek(0);
-        this.archiveDataFile.seek(0);
-        
+        if (this.memoryMapped) {
+            this.archiveData = map(this.archiveDataFile);
+        }
+
         if (this.manifestFilepath != null) {
-	        InputStream manifestInputStream = new FileInputStream(this.manifestFilepath);
-	        this.manifestFile = ManifestFile.parseFrom(manifestInputStream);
-	        manifestInputStream.close();
+            InputStream manifestInputStream = new FileInputStream(this.manifestFilepath);
+            try {
+                this.manifestFile = ManifestFile.parseFrom(manifestInputStream);
+            } finally {
+                manifestInputStream.close();
+            }
+            this.manifestData = ManifestData.parseFrom(this.manifestFile.getData());
+        }
+
+        if (this.archiveIndex.limit() < INDEX_HEADER_SIZE) {
+            throw new IOException("Archive index is truncated: " + this.archiveIndexFilepath);
         }
 
         // Version
-        int indexVersion = this.archiveIndexFile.readInt();
+        int indexVersion = this.archiveIndex.getInt(0);
         if (indexVersion == ArchiveReader.VERSION) {
             readArchiveData();
         } else {
             throw new IOException("Unsupported archive index version: " + indexVersion);
         }
     }
-    
-    private boolean matchHash(byte[] a, byte[] b, int hlen) {
-    	if (a.length < hlen || b.length < hlen) {
-    		return false;
-    	}
-    	
-    	for (int i = 0; i < hlen; ++i) {
-    		if (a[i] != b[i]) {
-    			return false;
-    		}
-    	}
-    	
-    	return true;
+
+    private String hexdigest(byte[] hash) {
+        return ManifestBuilder.CryptographicOperations.hexdigest(Arrays.copyOf(hash, this.hashLength));
     }
 
     private void readArchiveData() throws IOException {
         // INDEX
-        archiveIndexFile.readInt(); // Pad
-        archiveIndexFile.readLong(); // UserData, should be 0
-        entryCount = archiveIndexFile.readInt();
-        entryOffset = archiveIndexFile.readInt();
-        hashOffset = archiveIndexFile.readInt();
-        hashLength = archiveIndexFile.readInt();
+        // 4: Pad
+        // 8: UserData, should be 0
+        entryCount = archiveIndex.getInt(16);
+        entryOffset = archiveIndex.getInt(20);
+        hashOffset = archiveIndex.getInt(24);
+        hashLength = archiveIndex.getInt(28);
+
+        long hashEnd = hashOffset + (long) entryCount * HASH_BUFFER_BYTESIZE;
+        long entryEnd = entryOffset + (long) entryCount * ENTRY_BYTESIZE;
+        if (entryCount < 0 || hashOffset < 0 || entryOffset < 0 || hashLength < 0 || hashLength > HASH_BUFFER_BYTESIZE
+                || hashEnd > archiveIndex.limit() || entryEnd > archiveIndex.limit()) {
+            throw new IOException("Corrupt archive index: " + this.archiveIndexFilepath);
+        }
+
+        // Resources by hash, so that the urls can be looked up for each entry
+        Map<String, String> urls = new HashMap<String, String>();
+        if (this.manifestData != null) {
+            for (ResourceEntry resource : this.manifestData.getResourcesList()) {
+                urls.put(hexdigest(resource.getHash().getData().toByteArray()), resource.getUrl());
+            }
+        }
 
         entries = new ArrayList<ArchiveEntry>(entryCount);
 
         // Hashes are stored linearly in memory instead of within each entry, so the hashes are read in a separate loop.
         // Once the hashes are read, the rest of the entries are read.
-
-        archiveIndexFile.seek(hashOffset);
-        // Read entry hashes
+        ByteBuffer hashes = archiveIndex.duplicate();
         for (int i = 0; i < entryCount; ++i) {
-            archiveIndexFile.seek(hashOffset + i * HASH_BUFFER_BYTESIZE);
             ArchiveEntry e = new ArchiveEntry("");
             e.hash = new byte[HASH_BUFFER_BYTESIZE];
-            archiveIndexFile.read(e.hash, 0, hashLength);
-
-            if (this.manifestFile != null) {
-                ManifestData manifestData = ManifestData.parseFrom(this.manifestFile.getData());
-                for (ResourceEntry resource : manifestData.getResourcesList()) {
-	            	if (matchHash(e.hash, resource.getHash().getData().toByteArray(), this.hashLength)) {
-	            		e.fileName = resource.getUrl();
-	            		e.relName = resource.getUrl();
-	            	}
-	            }
-            }
-            
+            hashes.position(hashOffset + i * HASH_BUFFER_BYTESIZE);
+            hashes.get(e.hash, 0, hashLength);
+
+            String url = urls.get(hexdigest(e.hash));
+            if (url != null) {
+                e.fileName = url;
+                e.relName = url;
+            }
+
             entries.add(e);
         }
 
         // Read entries
-        archiveIndexFile.seek(entryOffset);
-        for (int i=0; i<entryCount; ++i) {
+        for (int i = 0; i < entryCount; ++i) {
             ArchiveEntry e = entries.get(i);
+            int offset = entryOffset + i * ENTRY_BYTESIZE;
 
-            e.resourceOffset = archiveIndexFile.readInt();
-            e.size = archiveIndexFile.readInt();
-            e.compressedSize = archiveIndexFile.readInt();
-            e.flags = archiveIndexFile.readInt();
+            e.resourceOffset = archiveIndex.getInt(offset);
+            e.size = archiveIndex.getInt(offset + 4);
+            e.compressedSize = archiveIndex.getInt(offset + 8);
+            e.flags = archiveIndex.getInt(offset + 12);
         }
     }
 
@@ -136,47 +210,339 @@ public class ArchiveReader {
         return entries;
     }
 
-    public byte[] getEntryContent(ArchiveEntry entry) throws IOException {
-        byte[] buf = new byte[entry.size];
-        archiveDataFile.seek(entry.resourceOffset);
-        archiveDataFile.read(buf, 0, entry.size);
+    private static int getStoredSize(ArchiveEntry entry) {
+        return entry.compressedSize == ArchiveEntry.FLAG_UNCOMPRESSED ? entry.size : entry.compressedSize;
+    }
 
+    private long getDataLength() throws IOException {
+        return this.archiveData != null ? this.archiveData.limit() : this.archiveDataFile.length();
+    }
+
+    /**
+     * Get the data of an entry as it's stored in the archive, i.e. compressed and
+     * encrypted. Safe to call from several threads.
+     * @param entry the entry
+     * @return the data
+     * @throws IOException
+     */
+    public byte[] getEntryData(ArchiveEntry entry) throws IOException {
+        int storedSize = getStoredSize(entry);
+        if (entry.resourceOffset < 0 || storedSize < 0 || (long) entry.resourceOffset + storedSize > getDataLength()) {
+            throw new IOException(String.format("Entry data is outside of the archive (offset %d, size %d)", entry.resourceOffset, storedSize));
+        }
+
+        byte[] buf = new byte[storedSize];
+        if (this.archiveData != null) {
+            ByteBuffer data = this.archiveData.duplicate();
+            data.position(entry.resourceOffset);
+            data.get(buf);
+        } else {
+            // Positional reads, so that the entries can be read in parallel
+            FileChannel channel = this.archiveDataFile.getChannel();
+            ByteBuffer dst = ByteBuffer.wrap(buf);
+            while (dst.hasRemaining()) {
+                if (channel.read(dst, entry.resourceOffset + dst.position()) < 0) {
+                    throw new IOException("Unexpected end of archive data");
+                }
+            }
+        }
         return buf;
     }
 
-    public void extractAll(String path) throws IOException {
+    // Decrypt and decompress the data of an entry, in the reverse order of ArchiveBuilder
+    private byte[] decodeEntryData(ArchiveEntry entry, byte[] data) throws IOException {
+        if ((entry.flags & ArchiveEntry.FLAG_ENCRYPTED) != 0) {
+            data = Crypt.decryptCTR(data, ArchiveBuilder.KEY);
+        }
+        if (entry.compressedSize != ArchiveEntry.FLAG_UNCOMPRESSED) {
+            if (entry.size < 0) {
+                throw new IOException("Invalid entry size: " + entry.size);
+            }
+            byte[] content = new byte[entry.size];
+            try {
+                int compressedSize = lz4Decompressor.decompress(data, 0, content, 0, entry.size);
+                if (compressedSize != data.length) {
+                    throw new IOException(String.format("Decompressed %d of %d bytes", compressedSize, data.length));
+                }
+            } catch (LZ4Exception e) {
+                throw new IOException("Failed to decompress entry: " + e.getMessage(), e);
+            }
+            return content;
+        }
+        return data;
+    }
+
+    /**
+     * Get the content of an entry, i.e. the decrypted and decompressed data.
+     * Safe to call from several threads.
+     * @param entry the entry
+     * @return the content
+     * @throws IOException
+     */
+    public byte[] getEntryContent(ArchiveEntry entry) throws IOException {
+        return decodeEntryData(entry, getEntryData(entry));
+    }
+
+    private HashAlgorithm getResourceHashAlgorithm() throws IOException {
+        if (this.manifestData != null) {
+            return this.manifestData.getHeader().getResourceHashAlgorithm();
+        }
+        // Without a manifest, the algorithm is known from the length of the hashes
+        for (HashAlgorithm algorithm : HashAlgorithm.values()) {
+            if (ManifestBuilder.CryptographicOperations.getHashSize(algorithm) == this.hashLength) {
+                return algorithm;
+            }
+        }
+        throw new IOException("Unknown resource hash length: " + this.hashLength);
+    }
+
+    private interface EntryTask<T> {
+        T run(ArchiveEntry entry) throws IOException;
+    }
 
-        int entryCount = entries.size();
+    // Run a task for all entries, in parallel, and return the results that aren't null in the order of the entries
+    private <T> List<T> forEachEntry(final EntryTask<T> task) throws IOException {
+        // A few chunks per thread, so that a thread that gets the large entries doesn't hold up the rest
+        final int chunkCount = Math.max(1, Math.min(entries.size(), threadCount * 4));
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadCount, chunkCount));
+        try {
+            List<Future<List<T>>> futures = new ArrayList<Future<List<T>>>(chunkCount);
+            for (int i = 0; i < chunkCount; ++i) {
+                final int begin = (int) ((long) entries.size() * i / chunkCount);
+                final int end = (int) ((long) entries.size() * (i + 1) / chunkCount);
+                futures.add(executor.submit(new Callable<List<T>>() {
+                    @Override
+                    public List<T> call() throws IOException {
+                        List<T> results = new ArrayList<T>();
+                        for (int j = begin; j < end; ++j) {
+                            T result = task.run(entries.get(j));
+                            if (result != null) {
+                                results.add(result);
+                            }
+                        }
+                        return results;
+                    }
+                }));
+            }
 
-        System.out.println("Extracting entries to " + path + ": ");
-        for (int i = 0; i < entryCount; i++) {
-            ArchiveEntry entry = entries.get(i);
-            String outdir = path + entry.fileName;
-            System.out.println("> " + entry.fileName);
-            int readSize = entry.compressedSize;
+            List<T> results = new ArrayList<T>();
+            for (Future<List<T>> future : futures) {
+                results.addAll(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private String getEntryName(ArchiveEntry entry) {
+        return entry.fileName.isEmpty() ? hexdigest(entry.hash) : entry.fileName;
+    }
+
+    /**
+     * Verify the archive. The data of each entry is hashed and compared with the
+     * hash in the index, and then decrypted and decompressed. If the archive was
+     * read with a manifest, the index must be the one of the manifest and the
+     * entries must match the bundled resources of the manifest.
+     * @return a description of each problem found, empty if the archive is valid
+     * @throws IOException
+     */
+    public List<String> verify() throws IOException {
+        List<String> errors = new ArrayList<String>();
 
-            // extract
-            byte[] buf = new byte[entry.size];
-            archiveDataFile.seek(entry.resourceOffset);
-            archiveDataFile.read(buf, 0, readSize);
+        final HashAlgorithm hashAlgorithm = getResourceHashAlgorithm();
+        try {
+            ByteBuffer index = archiveIndex.duplicate();
+            index.position(INDEX_HEADER_SIZE);
+            byte[] indexBytes = new byte[index.remaining()];
+            index.get(indexBytes);
+            byte[] indexMD5 = ManifestBuilder.CryptographicOperations.hash(indexBytes, HashAlgorithm.HASH_MD5);
 
-            File fo = new File(outdir);
-            fo.getParentFile().mkdirs();
-            FileOutputStream os = new FileOutputStream(fo);
-            os.write(buf);
-            os.close();
+            byte[] headerMD5 = new byte[ArchiveBuilder.MD5_HASH_DIGEST_BYTE_LENGTH];
+            index = archiveIndex.duplicate();
+            index.position(INDEX_HEADER_SIZE - headerMD5.length);
+            index.get(headerMD5);
+            if (!Arrays.equals(indexMD5, headerMD5)) {
+                errors.add("Archive index: MD5 doesn't match the index header");
+            }
+            if (this.manifestFile != null && !Arrays.equals(indexMD5, this.manifestFile.getArchiveIdentifier().toByteArray())) {
+                errors.add("Archive index: MD5 doesn't match the archive identifier of the manifest");
+            }
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        errors.addAll(forEachEntry(new EntryTask<String>() {
+            @Override
+            public String run(ArchiveEntry entry) throws IOException {
+                String name = getEntryName(entry);
+                if (manifestData != null && entry.fileName.isEmpty()) {
+                    return name + ": not in the manifest";
+                }
+                try {
+                    byte[] data = getEntryData(entry);
+                    byte[] hash = ManifestBuilder.CryptographicOperations.hash(data, hashAlgorithm);
+                    if (hash.length != hashLength || !Arrays.equals(hash, Arrays.copyOf(entry.hash, hashLength))) {
+                        return name + ": hash mismatch";
+                    }
+                    decodeEntryData(entry, data);
+                } catch (IOException e) {
+                    return name + ": " + e.getMessage();
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IOException(e);
+                }
+                return null;
+            }
+        }));
+
+        if (this.manifestData != null) {
+            Set<String> hashes = new HashSet<String>(entries.size());
+            for (ArchiveEntry entry : entries) {
+                hashes.add(hexdigest(entry.hash));
+            }
+            for (ResourceEntry resource : this.manifestData.getResourcesList()) {
+                boolean bundled = (resource.getFlags() & ResourceEntryFlag.BUNDLED.getNumber()) != 0;
+                if (bundled && !hashes.contains(hexdigest(resource.getHash().getData().toByteArray()))) {
+                    errors.add(resource.getUrl() + ": missing from the archive");
+                }
+            }
         }
+
+        return errors;
+    }
+
+    /**
+     * Extract the content of all entries, in parallel. Entries are named by their
+     * url if the archive was read with a manifest, otherwise by their hash.
+     * @param path directory to extract to
+     * @throws IOException
+     */
+    public void extractAll(final String path) throws IOException {
+        forEachEntry(new EntryTask<Void>() {
+            @Override
+            public Void run(ArchiveEntry entry) throws IOException {
+                File fo = new File(path, getEntryName(entry));
+                fo.getParentFile().mkdirs();
+                Files.write(fo.toPath(), getEntryContent(entry));
+                return null;
+            }
+        });
     }
 
     public void close() throws IOException {
-        if (archiveIndexFile != null) {
-            archiveIndexFile.close();
-            archiveIndexFile = null;
-        }
+        archiveIndex = null;
+        archiveData = null;
 
         if (archiveDataFile != null) {
             archiveDataFile.close();
             archiveDataFile = null;
         }
     }
+
+    private static void printUsageAndTerminate(String message) {
+        System.err.println("Usage: ArchiveReader <archive> [-m] [-j <threads>] [-x <directory>]\n");
+        System.err.println("  <archive>         - filepath of the archive, without extension.");
+        System.err.println("                      The arci and arcd files are read, and the dmanifest");
+        System.err.println("                      file if it exists.");
+        System.err.println("  -m                - Memory map the archive (default false).");
+        System.err.println("  -j <threads>      - Number of threads (default number of processors).");
+        System.err.println("  -x <directory>    - Extract the entries to <directory> once verified.");
+        if (message != null) {
+            System.err.println("\nError: " + message);
+        }
+
+        System.exit(1);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            printUsageAndTerminate("Too few arguments");
+        }
+
+        File filepathArchiveIndex   = new File(args[0] + ".arci");
+        File filepathArchiveData    = new File(args[0] + ".arcd");
+        File filepathManifest       = new File(args[0] + ".dmanifest");
+
+        boolean memoryMapped = false;
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        String extractPath = null;
+        for (int i = 1; i < args.length; ++i) {
+            if (args[i].equals("-m")) {
+                memoryMapped = true;
+            } else if (args[i].equals("-j") && i + 1 < args.length) {
+                try {
+                    threadCount = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    printUsageAndTerminate("Invalid number of threads: " + args[i]);
+                }
+            } else if (args[i].equals("-x") && i + 1 < args.length) {
+                extractPath = args[++i];
+            } else {
+                printUsageAndTerminate("Unknown argument: " + args[i]);
+            }
+        }
+
+        if (!filepathArchiveIndex.isFile() || !filepathArchiveData.isFile()) {
+            printUsageAndTerminate("archive does not exist: " + new File(args[0]).getAbsolutePath());
+        }
+        String manifest = filepathManifest.isFile() ? filepathManifest.getAbsolutePath() : null;
+        if (manifest == null) {
+            System.out.println("No manifest found, only verifying the archive itself");
+        }
+
+        ArchiveReader reader = new ArchiveReader(filepathArchiveIndex.getAbsolutePath(), filepathArchiveData.getAbsolutePath(), manifest, memoryMapped);
+        reader.setThreadCount(threadCount);
+        List<String> errors;
+        try {
+            long start = System.nanoTime();
+            reader.read();
+            long readTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            errors = reader.verify();
+            long verifyTime = System.nanoTime() - start;
+
+            long storedBytes = 0;
+            long contentBytes = 0;
+            for (ArchiveEntry entry : reader.getEntries()) {
+                storedBytes += getStoredSize(entry);
+                contentBytes += entry.size;
+            }
+            double seconds = Math.max(verifyTime, 1) / 1e9;
+            System.out.println(String.format("Read index of %d entries in %.3f s", reader.getEntries().size(), readTime / 1e9));
+            System.out.println(String.format("Verified %.1f MB (%.1f MB uncompressed) in %.3f s, %.1f MB/s with %d threads",
+                    storedBytes / 1e6, contentBytes / 1e6, seconds, storedBytes / 1e6 / seconds, reader.threadCount));
+
+            for (String error : errors) {
+                System.out.println("> " + error);
+            }
+
+            if (errors.isEmpty() && extractPath != null) {
+                System.out.println("Extracting " + reader.getEntries().size() + " entries to " + extractPath);
+                start = System.nanoTime();
+                reader.extractAll(extractPath);
+                System.out.println(String.format("Extracted in %.3f s", (System.nanoTime() - start) / 1e9));
+            }
+        } finally {
+            reader.close();
+        }
+
+        if (!errors.isEmpty()) {
+            System.out.println(errors.size() + " problems found.");
+            System.exit(1);
+        }
+        System.out.println("Done.");
+    }
 }
@@ -52,6 +52,7 @@ import com.dynamo.liveupdate.proto.Manifest.ManifestData;
 import com.dynamo.liveupdate.proto.Manifest.ManifestFile;
 import com.dynamo.liveupdate.proto.Manifest.ManifestHeader;
 import com.dynamo.liveupdate.proto.Manifest.ResourceEntry;
+import com.dynamo.liveupdate.proto.Manifest.ResourceEntryFlag;
 import com.dynamo.liveupdate.proto.Manifest.SignAlgorithm;
 import com.google.protobuf.ByteString;
 
@@ -573,4 +574,23 @@ public class ManifestBuilder {
         return this.buildManifestFile().toByteArray();
     }
 
+    /**
+     * Get the hashes of the excluded resources in a manifest, in the same format
+     * as the names of the resource pack entries. Bundled resources aren't
+     * included, since they were never published as resource pack entries.
+     * @param manifest content of a .dmanifest file
+     * @return set of hex digests
+     * @throws IOException if the manifest can't be parsed
+     */
+    public static Set<String> getResourceHashes(byte[] manifest) throws IOException {
+        ManifestData manifestData = ManifestData.parseFrom(ManifestFile.parseFrom(manifest).getData());
+        Set<String> hashes = new HashSet<String>();
+        for (ResourceEntry entry : manifestData.getResourcesList()) {
+            if ((entry.getFlags() & ResourceEntryFlag.EXCLUDED.getNumber()) != 0) {
+                hashes.add(CryptographicOperations.hexdigest(entry.getHash().getData().toByteArray()));
+            }
+        }
+        return hashes;
+    }
+
 }
\ No newline at end of file
@@ -13,13 +13,16 @@
 package com.dynamo.bob.archive.publisher;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.dynamo.bob.CompileExceptionError;
+import com.dynamo.bob.archive.ManifestBuilder;
 import com.dynamo.bob.fs.IResource;
 
 public abstract class Publisher {
@@ -27,6 +30,8 @@ public abstract class Publisher {
     private final PublisherSettings settings;
     private final Map<String, File> entries = new HashMap<String, File>();
     protected String platform = "";
+    // Hashes of the resources that have already been published, null to publish everything
+    private Set<String> publishedHashes = null;
 
     public Publisher(PublisherSettings settings) {
         this.settings = settings;
@@ -72,7 +77,23 @@ public abstract class Publisher {
         return outputs;
     }
 
+    /**
+     * Only publish the resources that aren't excluded resources of an already
+     * published manifest, typically the one of the previous release. Since a
+     * changed resource gets a new hash only new and changed resources are
+     * published. Resources that were bundled before are published, since they
+     * were never uploaded.
+     * @param manifest content of the published .dmanifest
+     * @throws IOException if the manifest can't be parsed
+     */
+    public void setPublishedManifest(byte[] manifest) throws IOException {
+        this.publishedHashes = ManifestBuilder.getResourceHashes(manifest);
+    }
+
     public final void AddEntry(String hexDigest, File fhandle) {
+        if (this.publishedHashes != null && this.publishedHashes.contains(hexDigest)) {
+            return;
+        }
         this.entries.put(hexDigest, fhandle);
     }
 
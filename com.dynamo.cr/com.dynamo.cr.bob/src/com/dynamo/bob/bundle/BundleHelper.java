@@ -20,11 +20,13 @@ import java.io.InputStream;
 import java.io.StringWriter;
 import java.net.URL;
 import java.net.ConnectException;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.text.ParseException;
 import java.util.Arrays;
 import java.util.ArrayList;
@@ -96,6 +98,59 @@ public class BundleHelper {
         }
     }
 
+    // Only hard link where DefaultResource can see the link count and break the link before the build output is written again
+    private static final boolean CAN_HARD_LINK = FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+
+    /**
+     * Copy a build output, e.g. the game archive, into the bundle. The file is
+     * hard linked when possible, which takes no time or disk space regardless of
+     * the size of the archive. Otherwise it's copied with channel transfers, which
+     * lets the OS copy the data without passing it through the Java heap.
+     * @param src build output
+     * @param dst file in the bundle
+     * @throws IOException
+     */
+    public static void copyBuildOutput(File src, File dst) throws IOException {
+        File dir = dst.getAbsoluteFile().getParentFile();
+        if (dir != null) {
+            dir.mkdirs();
+        }
+        Files.deleteIfExists(dst.toPath());
+        if (CAN_HARD_LINK) {
+            try {
+                Files.createLink(dst.toPath(), src.toPath());
+                return;
+            } catch (IOException | UnsupportedOperationException e) {
+                // E.g. the bundle is on a different file system, copy instead
+            }
+        }
+        try (FileChannel in = FileChannel.open(src.toPath(), StandardOpenOption.READ)) {
+            transferTo(in, 0, in.size(), dst);
+        }
+        dst.setLastModified(src.lastModified());
+    }
+
+    /**
+     * Write a range of a file to a new file.
+     * @param in channel to read from, its position is not changed
+     * @param position position of the first byte to write
+     * @param count number of bytes to write
+     * @param dst file to write
+     * @throws IOException
+     */
+    public static void transferTo(FileChannel in, long position, long count, File dst) throws IOException {
+        try (FileChannel out = FileChannel.open(dst.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long end = position + count;
+            while (position < end) {
+                long n = in.transferTo(position, end - position, out);
+                if (n <= 0) {
+                    throw new IOException(String.format("Unexpected end of file when copying to '%s'", dst));
+                }
+                position += n;
+            }
+        }
+    }
+
     public BundleHelper(Project project, Platform platform, File bundleDir, String variant) throws CompileExceptionError {
         this.projectProperties = project.getProjectProperties();
 
@@ -1106,7 +1161,7 @@ public class BundleHelper {
                         if (info.resource != null && info.resource.endsWith(ExtenderClient.appManifestFilename)) {
                             for (ExtenderResource extResource : allSource) {
                                 if (extResource.getAbsPath().endsWith(info.resource)) {
-                                    issueResource = ((ExtenderUtil.FSAppManifestResource)extResource).getResource();
+                                    issueResource = ((ExtenderUtil.FSAppManifestResource)ExtenderUtil.unwrap(extResource)).getResource();
                                     info.message = info.message.replace(extResource.getPath(), issueResource.getPath());
                                     break;
                                 }
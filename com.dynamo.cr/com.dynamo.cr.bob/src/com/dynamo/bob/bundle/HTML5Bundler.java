@@ -12,18 +12,14 @@
 
 package com.dynamo.bob.bundle;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -73,27 +69,28 @@ public class HTML5Bundler implements IBundler {
         }
 
         void performSplit(File destDir) throws IOException {
-            InputStream input = null;
-            try {
-                input = new BufferedInputStream(new FileInputStream(source));
-                long remaining = source.length();
-                while (0 < remaining) {
-                    int thisRead = (int)Math.min(SplitFileSegmentSize, remaining);
+            long size = source.length();
+            if (0 < size && size <= SplitFileSegmentSize) {
+                // A single piece, which doesn't have to be copied at all
+                File output = new File(destDir, source.getName() + subdivisions.size());
+                BundleHelper.copyBuildOutput(source, output);
+                subdivisions.add(output);
+                return;
+            }
 
-                    byte[] readBuffer = new byte[thisRead];
-                    long bytesRead = input.read(readBuffer, 0, thisRead);
-                    assert(bytesRead == thisRead);
+            // Transfer each piece directly from the source file, without reading it into the heap
+            try (FileChannel input = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+                long position = 0;
+                while (position < size) {
+                    long thisRead = Math.min(SplitFileSegmentSize, size - position);
 
                     File output = new File(destDir, source.getName() + subdivisions.size());
-                    writeChunk(output, readBuffer);
+                    BundleHelper.transferTo(input, position, thisRead, output);
                     subdivisions.add(output);
 
-                    remaining -= thisRead;
+                    position += thisRead;
                 }
             }
-            finally {
-                IOUtils.closeQuietly(input);
-            }
         }
 
         void writeJson(JsonGenerator generator) throws IOException {
@@ -123,17 +120,6 @@ public class HTML5Bundler implements IBundler {
 
             generator.writeEndObject();
         }
-
-        void writeChunk(File dest, byte[] data) throws IOException {
-            OutputStream output = null;
-            try {
-                output = new BufferedOutputStream(new FileOutputStream(dest));
-                output.write(data);
-            }
-            finally {
-                IOUtils.closeQuietly(output);
-            }
-        }
     }
 
     URL getResource(String name) {
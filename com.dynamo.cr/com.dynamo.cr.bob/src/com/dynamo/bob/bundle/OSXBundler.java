@@ -104,7 +104,7 @@ public class OSXBundler implements IBundler {
 
         // Copy archive and game.projectc
         for (String name : Arrays.asList("game.projectc", "game.arci", "game.arcd", "game.dmanifest", "game.public.der")) {
-            FileUtils.copyFile(new File(buildDir, name), new File(resourcesDir, name));
+            BundleHelper.copyBuildOutput(new File(buildDir, name), new File(resourcesDir, name));
         }
 
         BundleHelper.throwIfCanceled(canceled);
@@ -77,7 +77,7 @@ public class Win32Bundler implements IBundler {
 
         // Copy archive and game.projectc
         for (String name : Arrays.asList("game.projectc", "game.arci", "game.arcd", "game.dmanifest", "game.public.der")) {
-            FileUtils.copyFile(new File(buildDir, name), new File(appDir, name));
+            BundleHelper.copyBuildOutput(new File(buildDir, name), new File(appDir, name));
         }
 
         BundleHelper.throwIfCanceled(canceled);
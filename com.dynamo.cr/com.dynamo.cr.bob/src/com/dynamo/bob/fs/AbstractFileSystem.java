@@ -14,10 +14,19 @@ package com.dynamo.bob.fs;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Vector;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import org.apache.commons.io.FilenameUtils;
 
@@ -25,18 +34,22 @@ public abstract class AbstractFileSystem<F extends IFileSystem, R extends IResou
     protected F fileSystem;
     protected String rootDirectory;
     protected String buildDirectory;
-    protected Map<String, R> resources = new HashMap<String, R>();
-    protected Vector<IMountPoint> mountPoints;
+    // Interned resources by path, so that a path always maps to the same resource object
+    protected ConcurrentMap<String, IResource> resources = new ConcurrentHashMap<String, IResource>();
+    protected List<IMountPoint> mountPoints;
+    // Mount points that can have resources in a top level directory, built on demand
+    private ConcurrentMap<String, List<IMountPoint>> mountPointsByTopLevelDir = new ConcurrentHashMap<String, List<IMountPoint>>();
 
     @SuppressWarnings("unchecked")
     public AbstractFileSystem() {
         fileSystem = (F) this;
-        mountPoints = new Vector<IMountPoint>();
+        mountPoints = new CopyOnWriteArrayList<IMountPoint>();
     }
 
     @Override
     public void setRootDirectory(String rootDirectory) {
         this.rootDirectory = FilenameUtils.normalizeNoEndSeparator(rootDirectory, true);
+        this.resources.clear();
     }
 
     @Override
@@ -61,11 +74,15 @@ public abstract class AbstractFileSystem<F extends IFileSystem, R extends IResou
     public void addMountPoint(IMountPoint mountPoint) throws IOException {
         mountPoint.mount();
         this.mountPoints.add(mountPoint);
+        this.mountPointsByTopLevelDir.clear();
+        this.resources.clear();
     }
 
     @Override
     public void clearMountPoints() {
         this.mountPoints.clear();
+        this.mountPointsByTopLevelDir.clear();
+        this.resources.clear();
     }
 
     @Override
@@ -75,8 +92,48 @@ public abstract class AbstractFileSystem<F extends IFileSystem, R extends IResou
         }
     }
 
+    /**
+     * Get the interned resource for a path.
+     * @param path root relative path
+     * @return the resource, or null if the path hasn't been interned
+     */
+    protected IResource getInterned(String path) {
+        return this.resources.get(path);
+    }
+
+    /**
+     * Intern a resource, unless another thread got there first.
+     * @param path root relative path
+     * @param resource resource for the path
+     * @return the interned resource
+     */
+    protected IResource intern(String path, IResource resource) {
+        IResource existing = this.resources.putIfAbsent(path, resource);
+        return existing != null ? existing : resource;
+    }
+
+    private List<IMountPoint> getMountPoints(String path) {
+        int sep = path.indexOf('/');
+        String dir = sep != -1 ? path.substring(0, sep) : "";
+        List<IMountPoint> result = this.mountPointsByTopLevelDir.get(dir);
+        if (result == null) {
+            result = new ArrayList<IMountPoint>();
+            for (IMountPoint mountPoint : this.mountPoints) {
+                Set<String> dirs = mountPoint.getTopLevelDirectories();
+                if (dirs == null || dirs.contains(dir)) {
+                    result.add(mountPoint);
+                }
+            }
+            this.mountPointsByTopLevelDir.put(dir, result);
+        }
+        return result;
+    }
+
     protected IResource getFromMountPoints(String path) {
-        for (IMountPoint mountPoint : this.mountPoints) {
+        if (this.mountPoints.isEmpty()) {
+            return null;
+        }
+        for (IMountPoint mountPoint : getMountPoints(path)) {
             IResource resource = mountPoint.get(path);
             if (resource != null) {
                 return resource;
@@ -85,16 +142,102 @@ public abstract class AbstractFileSystem<F extends IFileSystem, R extends IResou
         return null;
     }
 
+    /**
+     * Called for every file found when walking the root directory, with the
+     * attributes read while walking. Called from the walker threads.
+     * @param path path of the file, as passed to the walker
+     * @param attrs attributes of the file
+     */
+    protected void fileWalked(String path, BasicFileAttributes attrs) {
+    }
+
+    @Override
+    public void clearWalkCache() {
+    }
+
+    /**
+     * Walks a directory and its sub directories in parallel on the common pool. The walker is only
+     * called by one thread at a time, and the results of each directory are kept
+     * separate and joined in traversal order, so the result is the same as for a
+     * sequential walk.
+     */
+    @SuppressWarnings("serial")
+    private static class WalkTask extends RecursiveTask<List<String>> {
+        private final AbstractFileSystem<?, ?> fileSystem;
+        private final IWalker walker;
+        private final String path;
+        private final Path dir;
+
+        WalkTask(AbstractFileSystem<?, ?> fileSystem, IWalker walker, String path, Path dir) {
+            this.fileSystem = fileSystem;
+            this.walker = walker;
+            this.path = path;
+            this.dir = dir;
+        }
+
+        @Override
+        protected List<String> compute() {
+            // Results of the files in this directory interleaved with the tasks of its sub directories
+            List<Object> parts = new ArrayList<Object>();
+            List<String> current = new ArrayList<String>();
+            parts.add(current);
+
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path child : stream) {
+                    String childPath = FilenameUtils.concat(path, child.getFileName().toString());
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(child, BasicFileAttributes.class);
+                    } catch (IOException e) {
+                        // E.g. a broken symbolic link, handled as a file like before
+                        attrs = null;
+                    }
+                    if (attrs != null && attrs.isDirectory()) {
+                        boolean enter;
+                        synchronized (walker) {
+                            enter = walker.handleDirectory(childPath, current);
+                        }
+                        if (enter) {
+                            WalkTask task = new WalkTask(fileSystem, walker, childPath, child);
+                            task.fork();
+                            parts.add(task);
+                            current = new ArrayList<String>();
+                            parts.add(current);
+                        }
+                    } else {
+                        if (attrs != null) {
+                            fileSystem.fileWalked(childPath, attrs);
+                        }
+                        synchronized (walker) {
+                            walker.handleFile(childPath, current);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(String.format("Failed to list directory '%s'", dir), e);
+            }
+
+            List<String> results = new ArrayList<String>();
+            for (Object part : parts) {
+                if (part instanceof WalkTask) {
+                    results.addAll(((WalkTask) part).join());
+                } else {
+                    @SuppressWarnings("unchecked")
+                    List<String> list = (List<String>) part;
+                    results.addAll(list);
+                }
+            }
+            return results;
+        }
+    }
+
     private void walk(IWalker walker, String path, Collection<String> results) {
         String absolutePath = FilenameUtils.normalizeNoEndSeparator(FilenameUtils.concat(this.rootDirectory, path));
         File file = new File(absolutePath);
 
         if (file.isDirectory()) {
             if (walker.handleDirectory(path, results)) {
-                String[] children = file.list();
-                for (String child : children) {
-                    walk(walker, FilenameUtils.concat(path, child), results);
-                }
+                results.addAll(ForkJoinPool.commonPool().invoke(new WalkTask(this, walker, path, file.toPath())));
             }
         } else {
             walker.handleFile(path, results);
@@ -15,6 +15,7 @@ package com.dynamo.bob.fs;
 import static org.apache.commons.io.FilenameUtils.concat;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -24,6 +25,8 @@ import org.apache.commons.io.FilenameUtils;
 public abstract class AbstractResource<F extends IFileSystem> implements IResource {
     protected F fileSystem;
     protected String path;
+    // Absolute path and the root directory it was calculated from
+    private volatile String[] absPath;
 
     public AbstractResource(F fileSystem, String path) {
         this.fileSystem = fileSystem;
@@ -32,8 +35,13 @@ public abstract class AbstractResource<F extends IFileSystem> implements IResour
 
     @Override
     public boolean isOutput() {
-        return path.startsWith(fileSystem.getBuildDirectory() + "/")
-        || path.startsWith(fileSystem.getBuildDirectory() + "\\");
+        String buildDirectory = fileSystem.getBuildDirectory();
+        int n = buildDirectory.length();
+        if (path.length() > n && path.startsWith(buildDirectory)) {
+            char c = path.charAt(n);
+            return c == '/' || c == '\\';
+        }
+        return false;
     }
 
     @Override
@@ -44,8 +52,17 @@ public abstract class AbstractResource<F extends IFileSystem> implements IResour
     }
 
     @Override
-    public byte[] sha1() throws IOException {
+    public ByteBuffer getContentBuffer() throws IOException {
         byte[] content = getContent();
+        if (content == null) {
+            return null;
+        }
+        return ByteBuffer.wrap(content).asReadOnlyBuffer();
+    }
+
+    @Override
+    public byte[] sha1() throws IOException {
+        ByteBuffer content = getContentBuffer();
         if (content == null) {
             throw new IllegalArgumentException(String.format("Resource '%s' is not created", path));
         }
@@ -61,7 +78,13 @@ public abstract class AbstractResource<F extends IFileSystem> implements IResour
 
     @Override
     public String getAbsPath() {
-        return concat(fileSystem.getRootDirectory(), path);
+        String rootDirectory = fileSystem.getRootDirectory();
+        String[] cached = absPath;
+        if (cached == null || cached[0] != rootDirectory) {
+            cached = new String[] { rootDirectory, concat(rootDirectory, path) };
+            absPath = cached;
+        }
+        return cached[1];
     }
 
     @Override
@@ -96,6 +119,10 @@ public abstract class AbstractResource<F extends IFileSystem> implements IResour
 
     @Override
     public boolean equals(Object obj) {
+        // Resources are interned by the file system, so this is the common case
+        if (obj == this) {
+            return true;
+        }
         if (obj instanceof IResource) {
             IResource r = (IResource) obj;
             return this.path.equals(r.getPath());
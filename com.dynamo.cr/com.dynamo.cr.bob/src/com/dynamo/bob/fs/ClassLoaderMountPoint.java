@@ -16,6 +16,8 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
@@ -93,6 +95,21 @@ public class ClassLoaderMountPoint implements IMountPoint {
         return null;
     }
 
+    @Override
+    public Set<String> getTopLevelDirectories() {
+        // A filter such as "builtins/**" limits the resources to a single directory
+        if (this.filter != null) {
+            int sep = this.filter.indexOf('/');
+            if (sep > 0) {
+                String dir = this.filter.substring(0, sep);
+                if (dir.indexOf('*') == -1 && dir.indexOf('?') == -1) {
+                    return Collections.singleton(dir);
+                }
+            }
+        }
+        return null;
+    }
+
     @Override
     public void mount() throws IOException {
     }
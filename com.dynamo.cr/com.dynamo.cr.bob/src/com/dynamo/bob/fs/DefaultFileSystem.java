@@ -21,10 +21,17 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
@@ -38,22 +45,165 @@ public class DefaultFileSystem extends AbstractFileSystem<DefaultFileSystem, Def
         byte[] sha1;
     }
 
+    static class ContentEntry {
+        long mTime;
+        byte[] content;
+    }
+
+    public static final long DEFAULT_CONTENT_CACHE_SIZE = 64 * 1024 * 1024;
+
+    // Files at least this large are memory mapped instead of read into the heap
+    private static final long MAP_THRESHOLD = 1024 * 1024;
+
+    // A mapped file can't be written to or deleted on Windows until the buffer has been garbage collected
+    private static final boolean CAN_MAP = System.getProperty("os.name").toLowerCase().indexOf("win") == -1;
+
     private Map<String, CacheEntry> cache = new HashMap<String, DefaultFileSystem.CacheEntry>();
 
+    // Content of recently hashed files, since most files are read once for the signature and again by the builder
+    private final LinkedHashMap<String, ContentEntry> contentCache = new LinkedHashMap<String, ContentEntry>(256, 0.75f, true);
+    private long contentCacheSize = DEFAULT_CONTENT_CACHE_SIZE;
+    private long contentCacheUsed = 0;
+    // Modification times read when walking the sources, used once by the first sha1 check of each file in the next build
+    private final ConcurrentHashMap<String, Long> walkedModificationTimes = new ConcurrentHashMap<String, Long>();
+
+    /**
+     * Set the maximum number of bytes of file content to keep in memory.
+     * @param size size in bytes, 0 to disable the content cache
+     */
+    public synchronized void setContentCacheSize(long size) {
+        this.contentCacheSize = size;
+        trimContentCache();
+    }
+
     @Override
     public IResource get(String path) {
         // Paths are always root relative.
         if (path.startsWith("/"))
             path = path.substring(1);
-        IResource resource = getFromMountPoints(path);
+        IResource resource = getInterned(path);
         if (resource != null) {
             return resource;
         }
-        return new DefaultResource(this, path);
+        resource = getFromMountPoints(path);
+        if (resource == null) {
+            resource = new DefaultResource(this, path);
+        }
+        return intern(path, resource);
+    }
+
+    private synchronized byte[] getCachedContent(String path, long mTime, long size, boolean take) {
+        ContentEntry e = contentCache.get(path);
+        if (e != null) {
+            if (e.mTime == mTime && e.content.length == size) {
+                if (take) {
+                    invalidateContent(path);
+                }
+                return e.content;
+            }
+            invalidateContent(path);
+        }
+        return null;
+    }
+
+    private synchronized void putCachedContent(String path, long mTime, byte[] content) {
+        // Don't let a single file evict everything else
+        if (content.length > contentCacheSize / 8) {
+            return;
+        }
+        invalidateContent(path);
+        ContentEntry e = new ContentEntry();
+        e.mTime = mTime;
+        e.content = content;
+        contentCache.put(path, e);
+        contentCacheUsed += content.length;
+        trimContentCache();
+    }
+
+    private void trimContentCache() {
+        Iterator<ContentEntry> it = contentCache.values().iterator();
+        while (contentCacheUsed > contentCacheSize && it.hasNext()) {
+            contentCacheUsed -= it.next().content.length;
+            it.remove();
+        }
+    }
+
+    synchronized void invalidateContent(String path) {
+        ContentEntry e = contentCache.remove(path);
+        if (e != null) {
+            contentCacheUsed -= e.content.length;
+        }
+    }
+
+    private static byte[] readFully(File file, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException(String.format("File '%s' is too large to be read", file.getPath()));
+        }
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) == -1) {
+                    throw new IOException(String.format("File '%s' was truncated while being read", file.getPath()));
+                }
+            }
+            return buffer.array();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Read the content of a file. Content cached when the file was hashed is
+     * handed over to the caller and dropped from the cache, so that it is
+     * neither read nor copied again. Cached content is only checked against the
+     * modification time and size of the file, like the digest cache. A file
+     * changed outside of the file system without changing its size, within the
+     * resolution of the modification time, is returned stale. Files written or
+     * removed through the file system are never stale.
+     * @param resource resource to read
+     * @return the content, owned by the caller, or null if the file doesn't exist
+     * @throws IOException
+     */
+    byte[] getContent(DefaultResource resource) throws IOException {
+        File file = new File(resource.getAbsPath());
+        if (!file.isFile()) {
+            return null;
+        }
+        long size = file.length();
+        byte[] content = getCachedContent(resource.getPath(), file.lastModified(), size, true);
+        if (content != null) {
+            return content;
+        }
+        return readFully(file, size);
+    }
+
+    ByteBuffer getContentBuffer(DefaultResource resource) throws IOException {
+        File file = new File(resource.getAbsPath());
+        if (!file.isFile()) {
+            return null;
+        }
+        long mTime = file.lastModified();
+        long size = file.length();
+        if (CAN_MAP && size >= MAP_THRESHOLD) {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            try {
+                // The mapping stays valid after the channel has been closed
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } finally {
+                channel.close();
+            }
+        }
+        byte[] content = getCachedContent(resource.getPath(), mTime, size, false);
+        if (content == null) {
+            content = readFully(file, size);
+            putCachedContent(resource.getPath(), mTime, content);
+        }
+        return ByteBuffer.wrap(content).asReadOnlyBuffer();
     }
 
     private byte[] calcSha1(DefaultResource resource) throws IOException {
-        byte[] content = resource.getContent();
+        ByteBuffer content = getContentBuffer(resource);
         if (content == null) {
             throw new IllegalArgumentException(String.format("Resource '%s' is not created", resource.getPath()));
         }
@@ -67,15 +217,27 @@ public class DefaultFileSystem extends AbstractFileSystem<DefaultFileSystem, Def
         return sha1.digest();
     }
 
+    @Override
+    protected void fileWalked(String path, BasicFileAttributes attrs) {
+        walkedModificationTimes.put(FilenameUtils.normalize(path, true), attrs.lastModifiedTime().toMillis());
+    }
+
+    @Override
+    public void clearWalkCache() {
+        walkedModificationTimes.clear();
+    }
+
     byte[] sha1(DefaultResource resource) throws IOException {
         String absPath = resource.getAbsPath();
         File file = new File(absPath);
+        Long walkedModificationTime = walkedModificationTimes.remove(resource.getPath());
+        long mTime = walkedModificationTime != null ? walkedModificationTime : file.lastModified();
         CacheEntry e = cache.get(resource.getPath());
-        if (e != null && file.lastModified() == e.mTime) {
+        if (e != null && mTime == e.mTime) {
             return e.sha1;
         } else {
             e = new CacheEntry();
-            e.mTime = file.lastModified();
+            e.mTime = mTime;
             e.sha1 = calcSha1(resource);
             cache.put(resource.getPath(), e);
             return e.sha1;
@@ -12,13 +12,13 @@
 
 package com.dynamo.bob.fs;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
@@ -29,24 +29,11 @@ public class DefaultResource extends AbstractResource<DefaultFileSystem> {
         super(fileSystem, path);
     }
 
-    @Override
-    public byte[] getContent() throws IOException {
-        File f = new File(getAbsPath());
-        if (!f.exists())
-            return null;
-
-        byte[] buf = new byte[(int) f.length()];
-        BufferedInputStream is = new BufferedInputStream(new FileInputStream(f));
-        try {
-            is.read(buf);
-            return buf;
-        } finally {
-            is.close();
-        }
-    }
-
-    @Override
-    public void setContent(byte[] content) throws IOException {
+    /**
+     * Create the directory of the file, or break the link if the file is hard
+     * linked (e.g. into a bundle) so that writing doesn't change the other copies.
+     */
+    private File prepareWrite() throws IOException {
         File f = new File(getAbsPath());
         if (!f.exists()) {
             String dir = FilenameUtils.getFullPath(getAbsPath());
@@ -54,7 +41,34 @@ public class DefaultResource extends AbstractResource<DefaultFileSystem> {
             if (!dirFile.exists()) {
                 dirFile.mkdirs();
             }
+        } else if (getLinkCount(f) > 1) {
+            f.delete();
+        }
+        return f;
+    }
+
+    private static int getLinkCount(File f) {
+        try {
+            return (Integer) Files.getAttribute(f.toPath(), "unix:nlink");
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            return 1;
         }
+    }
+
+    @Override
+    public byte[] getContent() throws IOException {
+        return this.fileSystem.getContent(this);
+    }
+
+    @Override
+    public ByteBuffer getContentBuffer() throws IOException {
+        return this.fileSystem.getContentBuffer(this);
+    }
+
+    @Override
+    public void setContent(byte[] content) throws IOException {
+        this.fileSystem.invalidateContent(this.path);
+        File f = prepareWrite();
 
         BufferedOutputStream os = new BufferedOutputStream(new FileOutputStream(f));
         try {
@@ -66,14 +80,8 @@ public class DefaultResource extends AbstractResource<DefaultFileSystem> {
 
     @Override
     public void setContent(InputStream stream) throws IOException {
-        File f = new File(getAbsPath());
-        if (!f.exists()) {
-            String dir = FilenameUtils.getFullPath(getAbsPath());
-            File dirFile = new File(dir);
-            if (!dirFile.exists()) {
-                dirFile.mkdirs();
-            }
-        }
+        this.fileSystem.invalidateContent(this.path);
+        File f = prepareWrite();
 
         try {
             FileUtils.copyInputStreamToFile(stream, f);
@@ -95,6 +103,7 @@ public class DefaultResource extends AbstractResource<DefaultFileSystem> {
 
     @Override
     public void remove() {
+        this.fileSystem.invalidateContent(this.path);
         new File(getAbsPath()).delete();
     }
 
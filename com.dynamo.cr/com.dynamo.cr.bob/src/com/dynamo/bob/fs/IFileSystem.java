@@ -87,6 +87,12 @@ public interface IFileSystem {
      */
     public void saveCache();
 
+    /**
+     * Forget the file attributes read when walking the file system. They are
+     * only valid for the build following the walk.
+     */
+    public void clearWalkCache();
+
     /**
      * Add a mount point to the file system, e.g. a zip archive or Java class loader.
      * @param mountPoint mount point to add
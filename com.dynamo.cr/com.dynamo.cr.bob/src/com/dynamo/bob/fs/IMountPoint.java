@@ -14,6 +14,7 @@ package com.dynamo.bob.fs;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Set;
 
 import com.dynamo.bob.fs.IFileSystem.IWalker;
 
@@ -30,6 +31,14 @@ public interface IMountPoint {
      */
     IResource get(String path);
 
+    /**
+     * Get the top level directories that the mount point has resources in. The
+     * file system uses this to skip the mount point for paths in other directories.
+     * Only valid after the mount point has been mounted.
+     * @return the top level directories, or null if resources can be anywhere
+     */
+    Set<String> getTopLevelDirectories();
+
     /**
      * Mount the mount point.
      * @throws IOException
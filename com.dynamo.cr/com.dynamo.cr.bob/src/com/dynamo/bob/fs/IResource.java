@@ -14,6 +14,7 @@ package com.dynamo.bob.fs;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 
 /**
@@ -38,6 +39,16 @@ public interface IResource {
      */
     byte[] getContent() throws IOException;
 
+    /**
+     * Get a read-only view of the content for resource. Unlike {@link IResource#getContent()}
+     * the content isn't necessarily copied, large files are memory mapped and small
+     * files might be shared with a content cache. The view must not be kept after
+     * the resource has been changed.
+     * @return read-only content. <code>null</code> if the resource doesn't exists
+     * @throws IOException
+     */
+    ByteBuffer getContentBuffer() throws IOException;
+
     /**
      * Set content for resource. #
      * @note only valid operation for output-resources, see {@link IResource#output()}
@@ -0,0 +1,520 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+// 
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+// 
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.fs;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Read-only index of a zip archive.
+ *
+ * The central directory is parsed once when the archive is opened and the entries
+ * are stored in a path trie, so that lookups and walks of a sub directory don't
+ * have to scan all entries. Only the central directory is read when indexing,
+ * and entries are read with positional reads straight into an array of the exact
+ * uncompressed size.
+ *
+ * The archive is only open while indexing and while reading an entry, and it
+ * isn't memory mapped, since Windows doesn't allow an open or mapped file to be
+ * replaced, e.g. when a library is downloaded again. Reading fails if the archive
+ * has changed since it was indexed.
+ */
+public class ZipIndex implements Closeable {
+
+    private static final int LOCAL_HEADER_SIG = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+    private static final int END_SIG = 0x06054b50;
+    private static final int ZIP64_END_SIG = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_SIZE = 22;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int MAX_COMMENT_SIZE = 0xffff;
+
+    private static final int EXTRA_ZIP64 = 0x0001;
+    private static final int EXTRA_EXTENDED_TIMESTAMP = 0x5455;
+
+    public static final int STORED = 0;
+    public static final int DEFLATED = 8;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    public static class Entry {
+        private final String name;
+        private final int flags;
+        private final int method;
+        private final long compressedSize;
+        private final long size;
+        private final long localHeaderOffset;
+        private final long lastModified;
+        private volatile long dataOffset = -1;
+
+        Entry(String name, int flags, int method, long compressedSize, long size, long localHeaderOffset, long lastModified) {
+            this.name = name;
+            this.flags = flags;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+            this.lastModified = lastModified;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getMethod() {
+            return method;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+    }
+
+    private static class Node {
+        Map<String, Node> children;
+        Entry entry;
+
+        Node getOrCreate(String name) {
+            if (children == null) {
+                // Keep the archive order when walking
+                children = new LinkedHashMap<String, Node>();
+            }
+            Node child = children.get(name);
+            if (child == null) {
+                child = new Node();
+                children.put(name, child);
+            }
+            return child;
+        }
+
+        Node get(String name) {
+            return children != null ? children.get(name) : null;
+        }
+
+        void collect(List<Entry> result) {
+            if (entry != null) {
+                result.add(entry);
+            }
+            if (children != null) {
+                for (Node child : children.values()) {
+                    child.collect(result);
+                }
+            }
+        }
+    }
+
+    private final File file;
+    private final String path;
+    private long length;
+    private long lastModified;
+    private volatile boolean closed;
+    private final List<Entry> entries = new ArrayList<Entry>();
+    private final Node root = new Node();
+
+    private ZipIndex(File file) {
+        this.file = file;
+        this.path = file.getPath();
+    }
+
+    /**
+     * Open and index a zip archive.
+     * @param file archive to open
+     * @return the index, which must be closed
+     * @throws ZipException if the file is not a valid zip archive
+     * @throws IOException
+     */
+    public static ZipIndex open(File file) throws IOException {
+        ZipIndex index = new ZipIndex(file);
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            index.length = channel.size();
+            index.lastModified = file.lastModified();
+            index.readCentralDirectory(channel, index.length);
+        } finally {
+            channel.close();
+        }
+        return index;
+    }
+
+    /**
+     * @return all entries in the order of the central directory
+     */
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Find an entry. Like ZipFile.getEntry, a directory entry is also found when
+     * the trailing separator is omitted.
+     * @param name entry name
+     * @return the entry or null if it doesn't exist
+     */
+    public Entry getEntry(String name) {
+        Node node = root;
+        int start = 0;
+        int length = name.length();
+        while (node != null && start < length) {
+            int end = name.indexOf('/', start);
+            if (end == -1) {
+                end = length;
+            }
+            node = node.get(name.substring(start, end));
+            start = end + 1;
+        }
+        return node != null && node != root ? node.entry : null;
+    }
+
+    /**
+     * Collect all entries whose name starts with the specified prefix.
+     * @param prefix name prefix, which does not have to end at a separator
+     * @param result list to add the entries to
+     */
+    public void collect(String prefix, List<Entry> result) {
+        Node node = root;
+        int start = 0;
+        int sep;
+        while ((sep = prefix.indexOf('/', start)) != -1) {
+            node = node.get(prefix.substring(start, sep));
+            if (node == null) {
+                return;
+            }
+            start = sep + 1;
+        }
+        String last = prefix.substring(start);
+        if (last.isEmpty()) {
+            node.collect(result);
+        } else if (node.children != null) {
+            for (Map.Entry<String, Node> child : node.children.entrySet()) {
+                if (child.getKey().startsWith(last)) {
+                    child.getValue().collect(result);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the raw (possibly compressed) data of an entry.
+     * @param entry entry to read
+     * @return read-only buffer positioned at the start of the entry data
+     * @throws IOException
+     */
+    public ByteBuffer getRawData(Entry entry) throws IOException {
+        FileChannel channel = openChannel();
+        try {
+            return readBuffer(channel, getDataOffset(channel, entry), entry.compressedSize).asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Read the content of a stored (uncompressed) entry.
+     * @param entry entry to read
+     * @return buffer positioned at the start of the content
+     * @throws ZipException if the entry is compressed
+     * @throws IOException
+     */
+    public ByteBuffer getStoredData(Entry entry) throws IOException {
+        if (entry.method != STORED) {
+            throw new ZipException(String.format("Entry '%s' in '%s' is compressed", entry.name, path));
+        }
+        return getRawData(entry);
+    }
+
+    /**
+     * Read the uncompressed content of an entry.
+     * @param entry entry to read
+     * @return the content
+     * @throws IOException
+     */
+    public byte[] read(Entry entry) throws IOException {
+        if ((entry.flags & 1) != 0) {
+            throw new ZipException(String.format("Entry '%s' in '%s' is encrypted", entry.name, path));
+        }
+        if (entry.size > Integer.MAX_VALUE) {
+            throw new ZipException(String.format("Entry '%s' in '%s' is too large", entry.name, path));
+        }
+        byte[] content = new byte[(int) entry.size];
+        FileChannel channel = openChannel();
+        try {
+            long offset = getDataOffset(channel, entry);
+            switch (entry.method) {
+            case STORED:
+                if (entry.compressedSize != entry.size) {
+                    throw new ZipException(String.format("Invalid size of stored entry '%s' in '%s'", entry.name, path));
+                }
+                // Read straight into the content
+                readRange(channel, offset, ByteBuffer.wrap(content));
+                break;
+            case DEFLATED:
+                inflate(entry, readBuffer(channel, offset, entry.compressedSize), content);
+                break;
+            default:
+                throw new ZipException(String.format("Unsupported compression method %d of entry '%s' in '%s'", entry.method, entry.name, path));
+            }
+        } finally {
+            channel.close();
+        }
+        return content;
+    }
+
+    private void inflate(Entry entry, ByteBuffer data, byte[] content) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try {
+            // Inflate straight from the buffer, which is backed by an array
+            inflater.setInput(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            boolean padded = false;
+            int offset = 0;
+            while (offset < content.length) {
+                int n = inflater.inflate(content, offset, content.length - offset);
+                if (n == 0) {
+                    if (inflater.needsInput() && !padded) {
+                        // The inflater might need one extra byte of input when there is no zlib header
+                        inflater.setInput(new byte[1]);
+                        padded = true;
+                        continue;
+                    }
+                    if (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()) {
+                        break;
+                    }
+                }
+                offset += n;
+            }
+            if (offset != content.length) {
+                throw new ZipException(String.format("Invalid size of compressed entry '%s' in '%s'", entry.name, path));
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException(String.format("Invalid compressed data in entry '%s' in '%s': %s", entry.name, path, e.getMessage()));
+        } finally {
+            inflater.end();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+    }
+
+    private FileChannel openChannel() throws IOException {
+        if (closed) {
+            throw new IOException(String.format("'%s' is closed", path));
+        }
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        // The offsets of the index are only valid for the archive that was indexed
+        if (channel.size() != length || file.lastModified() != lastModified) {
+            channel.close();
+            throw new IOException(String.format("'%s' has changed since it was opened", path));
+        }
+        return channel;
+    }
+
+    private ByteBuffer readBuffer(FileChannel channel, long offset, long length) throws IOException {
+        if (offset < 0 || length < 0 || offset + length > this.length) {
+            throw new ZipException(String.format("Invalid offset in '%s'", path));
+        }
+        if (length > Integer.MAX_VALUE) {
+            throw new ZipException(String.format("Entry at offset %d in '%s' is too large", offset, path));
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        readRange(channel, offset, buffer);
+        buffer.flip();
+        return buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void readRange(FileChannel channel, long offset, ByteBuffer buffer) throws IOException {
+        if (offset < 0 || offset + buffer.remaining() > this.length) {
+            throw new ZipException(String.format("Invalid offset in '%s'", path));
+        }
+        // Positional reads, so that entries can be read concurrently
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new ZipException(String.format("Unexpected end of '%s'", path));
+            }
+        }
+    }
+
+    private long getDataOffset(FileChannel channel, Entry entry) throws IOException {
+        long offset = entry.dataOffset;
+        if (offset == -1) {
+            ByteBuffer header = readBuffer(channel, entry.localHeaderOffset, LOCAL_HEADER_SIZE);
+            if (header.getInt(0) != LOCAL_HEADER_SIG) {
+                throw new ZipException(String.format("Invalid local header of entry '%s' in '%s'", entry.name, path));
+            }
+            int nameLength = header.getShort(26) & 0xffff;
+            int extraLength = header.getShort(28) & 0xffff;
+            offset = entry.localHeaderOffset + LOCAL_HEADER_SIZE + nameLength + extraLength;
+            entry.dataOffset = offset;
+        }
+        return offset;
+    }
+
+    private void readCentralDirectory(FileChannel channel, long length) throws IOException {
+        if (length < END_SIZE) {
+            throw new ZipException(String.format("'%s' is not a zip archive", path));
+        }
+
+        // The end of central directory record is followed by a comment of up to 64k
+        long tailOffset = Math.max(0, length - END_SIZE - MAX_COMMENT_SIZE);
+        ByteBuffer tail = readBuffer(channel, tailOffset, length - tailOffset);
+        int end = -1;
+        for (int i = tail.limit() - END_SIZE; i >= 0; --i) {
+            if (tail.getInt(i) == END_SIG && i + END_SIZE + (tail.getShort(i + 20) & 0xffff) <= tail.limit()) {
+                end = i;
+                break;
+            }
+        }
+        if (end == -1) {
+            throw new ZipException(String.format("'%s' is not a zip archive", path));
+        }
+
+        long count = tail.getShort(end + 10) & 0xffff;
+        long cdSize = tail.getInt(end + 12) & 0xffffffffL;
+        long cdOffset = tail.getInt(end + 16) & 0xffffffffL;
+
+        long locatorOffset = tailOffset + end - ZIP64_LOCATOR_SIZE;
+        if ((count == 0xffff || cdSize == 0xffffffffL || cdOffset == 0xffffffffL) && locatorOffset >= 0) {
+            ByteBuffer locator = readBuffer(channel, locatorOffset, ZIP64_LOCATOR_SIZE);
+            if (locator.getInt(0) == ZIP64_LOCATOR_SIG) {
+                ByteBuffer end64 = readBuffer(channel, locator.getLong(8), 56);
+                if (end64.getInt(0) != ZIP64_END_SIG) {
+                    throw new ZipException(String.format("Invalid zip64 end record in '%s'", path));
+                }
+                count = end64.getLong(32);
+                cdSize = end64.getLong(40);
+                cdOffset = end64.getLong(48);
+            }
+        }
+
+        ByteBuffer cd = readBuffer(channel, cdOffset, cdSize);
+        int pos = 0;
+        for (long i = 0; i < count; ++i) {
+            if (pos + CENTRAL_HEADER_SIZE > cd.limit() || cd.getInt(pos) != CENTRAL_HEADER_SIG) {
+                throw new ZipException(String.format("Invalid central directory in '%s'", path));
+            }
+            int flags = cd.getShort(pos + 8) & 0xffff;
+            int method = cd.getShort(pos + 10) & 0xffff;
+            int dosTime = cd.getInt(pos + 12);
+            long compressedSize = cd.getInt(pos + 20) & 0xffffffffL;
+            long size = cd.getInt(pos + 24) & 0xffffffffL;
+            int nameLength = cd.getShort(pos + 28) & 0xffff;
+            int extraLength = cd.getShort(pos + 30) & 0xffff;
+            int commentLength = cd.getShort(pos + 32) & 0xffff;
+            long localHeaderOffset = cd.getInt(pos + 42) & 0xffffffffL;
+
+            int namePos = pos + CENTRAL_HEADER_SIZE;
+            if (namePos + nameLength + extraLength > cd.limit()) {
+                throw new ZipException(String.format("Invalid central directory in '%s'", path));
+            }
+            byte[] nameBytes = new byte[nameLength];
+            for (int j = 0; j < nameLength; ++j) {
+                nameBytes[j] = cd.get(namePos + j);
+            }
+            String name = new String(nameBytes, UTF8);
+
+            long lastModified = dosToJavaTime(dosTime);
+            int extraPos = namePos + nameLength;
+            int extraEnd = extraPos + extraLength;
+            while (extraPos + 4 <= extraEnd) {
+                int tag = cd.getShort(extraPos) & 0xffff;
+                int tagSize = cd.getShort(extraPos + 2) & 0xffff;
+                int data = extraPos + 4;
+                if (data + tagSize > extraEnd) {
+                    break;
+                }
+                if (tag == EXTRA_ZIP64) {
+                    // Only the fields that overflowed are present, in this order
+                    int p = data;
+                    if (size == 0xffffffffL && p + 8 <= data + tagSize) {
+                        size = cd.getLong(p);
+                        p += 8;
+                    }
+                    if (compressedSize == 0xffffffffL && p + 8 <= data + tagSize) {
+                        compressedSize = cd.getLong(p);
+                        p += 8;
+                    }
+                    if (localHeaderOffset == 0xffffffffL && p + 8 <= data + tagSize) {
+                        localHeaderOffset = cd.getLong(p);
+                    }
+                } else if (tag == EXTRA_EXTENDED_TIMESTAMP && tagSize >= 5 && (cd.get(data) & 1) != 0) {
+                    lastModified = (cd.getInt(data + 1) & 0xffffffffL) * 1000;
+                }
+                extraPos = data + tagSize;
+            }
+
+            add(new Entry(name, flags, method, compressedSize, size, localHeaderOffset, lastModified));
+            pos = extraEnd + commentLength;
+        }
+    }
+
+    private void add(Entry entry) {
+        entries.add(entry);
+        Node node = root;
+        String name = entry.name;
+        int start = 0;
+        int length = name.length();
+        while (start < length) {
+            int end = name.indexOf('/', start);
+            if (end == -1) {
+                end = length;
+            }
+            node = node.getOrCreate(name.substring(start, end));
+            start = end + 1;
+        }
+        if (node != root) {
+            node.entry = entry;
+        }
+    }
+
+    private static long dosToJavaTime(int dosTime) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(((dosTime >> 25) & 0x7f) + 1980,
+                     ((dosTime >> 21) & 0x0f) - 1,
+                     (dosTime >> 16) & 0x1f,
+                     (dosTime >> 11) & 0x1f,
+                     (dosTime >> 5) & 0x3f,
+                     (dosTime << 1) & 0x3e);
+        return calendar.getTimeInMillis();
+    }
+}
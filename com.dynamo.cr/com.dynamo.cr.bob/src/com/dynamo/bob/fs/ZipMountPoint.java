@@ -12,16 +12,17 @@
 
 package com.dynamo.bob.fs;
 
-import java.io.ByteArrayOutputStream;
-import java.io.Closeable;
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 import java.util.zip.ZipException;
 
 import org.apache.commons.io.FilenameUtils;
@@ -34,30 +35,32 @@ public class ZipMountPoint implements IMountPoint {
 
     IFileSystem fileSystem;
     String archivePath;
-    ZipFile file;
+    ZipIndex index;
     Set<String> includeDirs = null;
     String includeBaseDir = "";
     private boolean isProject = true; // is it a Defold project?
 
     private class ZipResource extends AbstractResource<IFileSystem> {
-        ZipEntry entry;
+        ZipIndex index;
+        ZipIndex.Entry entry;
 
-        public ZipResource(IFileSystem fileSystem, String path, ZipEntry entry) {
+        public ZipResource(IFileSystem fileSystem, String path, ZipIndex index, ZipIndex.Entry entry) {
             super(fileSystem, path);
+            this.index = index;
             this.entry = entry;
         }
 
         @Override
         public byte[] getContent() throws IOException {
-            InputStream is = null;
-            try {
-                ByteArrayOutputStream os = new ByteArrayOutputStream((int)this.entry.getSize());
-                is = file.getInputStream(this.entry);
-                IOUtils.copy(is, os);
-                return os.toByteArray();
-            } finally {
-                IOUtils.closeQuietly(is);
+            return this.index.read(this.entry);
+        }
+
+        @Override
+        public ByteBuffer getContentBuffer() throws IOException {
+            if (this.entry.getMethod() == ZipIndex.STORED) {
+                return this.index.getStoredData(this.entry).asReadOnlyBuffer();
             }
+            return super.getContentBuffer();
         }
 
         @Override
@@ -82,7 +85,7 @@ public class ZipMountPoint implements IMountPoint {
 
         @Override
         public long getLastModified() {
-            return entry.getLastModifiedTime().toMillis();
+            return entry.getLastModified();
         }
 
         @Override
@@ -105,74 +108,78 @@ public class ZipMountPoint implements IMountPoint {
 
     @Override
     public IResource get(String path) {
-        ZipEntry entry = null;
-        if (this.isProject) {
-            if (this.file != null && includes(path)) {
-                entry = this.file.getEntry(this.includeBaseDir + path);
+        ZipIndex.Entry entry = null;
+        if (this.index != null) {
+            if (!this.isProject || includes(path)) {
+                entry = this.index.getEntry(this.includeBaseDir + path);
             }
-        } else {
-            entry = this.file.getEntry(this.includeBaseDir + path);
         }
         if (entry != null) {
-            return new ZipResource(this.fileSystem, path, entry);
+            return new ZipResource(this.fileSystem, path, this.index, entry);
         }
         return null;
     }
 
+    @Override
+    public Set<String> getTopLevelDirectories() {
+        return this.isProject ? this.includeDirs : null;
+    }
+
     @Override
     public void mount() throws IOException {
         try {
-            this.file = new ZipFile(this.archivePath);
+            this.index = ZipIndex.open(new File(this.archivePath));
 
             if (this.isProject) {
-                this.includeBaseDir = LibraryUtil.findIncludeBaseDir(this.file);
-                this.includeDirs = LibraryUtil.readIncludeDirsFromArchive(this.includeBaseDir, this.file);
+                this.includeBaseDir = findIncludeBaseDir(this.index);
+                this.includeDirs = readIncludeDirs(this.index, this.includeBaseDir);
             }
         } catch (ZipException e) {
+            unmount();
             throw new IOException(String.format("Failed to mount zip file '%s': %s", this.archivePath, e));
         } catch (ParseException e) {
+            unmount();
             throw new IOException(e);
         }
     }
 
     @Override
     public void unmount() {
-        // Zip files are not quietly closeable on their own
-        IOUtils.closeQuietly(new Closeable() {
-            @Override
-            public void close() throws IOException {
-                if (file != null) {
-                    file.close();
-                }
-            }
-        });
-        this.file = null;
+        IOUtils.closeQuietly(this.index);
+        this.index = null;
     }
 
     @Override
     public void walk(String path, IWalker walker, Collection<String> results) {
         path = FilenameUtils.normalizeNoEndSeparator(path, true);
-        if (this.file != null) {
-            Enumeration<? extends ZipEntry> entries = this.file.entries();
-            while (entries.hasMoreElements()) {
-                ZipEntry entry = entries.nextElement();
-                String entryPath = entry.getName();
-                if (this.isProject) {
-                    if (entryPath.startsWith(this.includeBaseDir)) {
-                        entryPath = entryPath.substring(this.includeBaseDir.length());
-                        if (includes(entryPath) && entryPath.startsWith(path)) {
-                            if (entry.isDirectory()) {
-                                walker.handleDirectory(entryPath, results);
-                            } else {
-                                walker.handleFile(entryPath, results);
-                            }
-                        }
+        if (this.index != null) {
+            List<ZipIndex.Entry> entries = new ArrayList<ZipIndex.Entry>();
+            if (this.isProject) {
+                if (path.isEmpty()) {
+                    // Only visit the included directories
+                    for (String dir : this.includeDirs) {
+                        this.index.collect(this.includeBaseDir + dir + "/", entries);
                     }
                 } else {
+                    this.index.collect(this.includeBaseDir + path, entries);
+                }
+                for (ZipIndex.Entry entry : entries) {
+                    String entryPath = entry.getName().substring(this.includeBaseDir.length());
+                    if (includes(entryPath)) {
+                        if (entry.isDirectory()) {
+                            walker.handleDirectory(entryPath, results);
+                        } else {
+                            walker.handleFile(entryPath, results);
+                        }
+                    }
+                }
+            } else {
+                this.index.collect("", entries);
+                for (ZipIndex.Entry entry : entries) {
                     if (entry.isDirectory()) {
-                        walker.handleDirectory(entryPath, results);
+                        walker.handleDirectory(entry.getName(), results);
                     } else {
-                        walker.handleFile(entryPath, results);
+                        walker.handleFile(entry.getName(), results);
                     }
                 }
             }
@@ -189,4 +196,23 @@ public class ZipMountPoint implements IMountPoint {
         }
         return false;
     }
+
+    private static String findIncludeBaseDir(ZipIndex index) {
+        // Need to get the base path, find first instance of game.project
+        for (ZipIndex.Entry entry : index.getEntries()) {
+            String entryPath = entry.getName();
+            if (entryPath.endsWith("/game.project")) {
+                return entryPath.substring(0, entryPath.length() - "/game.project".length() + 1);
+            }
+        }
+        return "";
+    }
+
+    private static Set<String> readIncludeDirs(ZipIndex index, String includeBaseDir) throws IOException, ParseException {
+        ZipIndex.Entry projectEntry = index.getEntry(includeBaseDir + "game.project");
+        if (projectEntry == null || projectEntry.isDirectory()) {
+            return new HashSet<String>();
+        }
+        return LibraryUtil.readIncludeDirs(new ByteArrayInputStream(index.read(projectEntry)));
+    }
 }
@@ -13,6 +13,7 @@
 package com.dynamo.bob.pipeline;
 
 import java.io.IOException;
+import java.security.MessageDigest;
 
 import com.dynamo.atlas.proto.AtlasProto.Atlas;
 import com.dynamo.atlas.proto.AtlasProto.AtlasImage;
@@ -24,6 +25,7 @@ import com.dynamo.bob.Task;
 import com.dynamo.bob.Task.TaskBuilder;
 import com.dynamo.bob.fs.IResource;
 import com.dynamo.bob.textureset.TextureSetGenerator.TextureSetResult;
+import com.dynamo.bob.util.RGBAImage;
 import com.dynamo.bob.util.TextureUtil;
 import com.dynamo.graphics.proto.Graphics.TextureImage;
 import com.dynamo.graphics.proto.Graphics.TextureProfile;
@@ -58,6 +60,14 @@ public class AtlasBuilder extends Builder<Void>  {
         return taskBuilder.build();
     }
 
+    @Override
+    public void signature(MessageDigest digest) {
+        // The texture profiles are filtered by the target platform
+        if (this.project.getProjectProperties().getStringValue("graphics", "texture_profiles") != null) {
+            platformSignature(digest);
+        }
+    }
+
     @Override
     public void build(Task<Void> task) throws CompileExceptionError, IOException {
         TextureSetResult result = AtlasUtil.generateTextureSet(project, task.input(0));
@@ -71,9 +81,13 @@ public class AtlasBuilder extends Builder<Void>  {
         TextureImage texture;
         try {
             boolean compress = project.option("texture-compression", "false").equals("true");
-            texture = TextureGenerator.generate(result.image, texProfile, compress);
+            texture = TextureGenerator.generate(result.rasters, texProfile, compress);
         } catch (TextureGeneratorException e) {
             throw new CompileExceptionError(task.input(0), -1, e.getMessage(), e);
+        } finally {
+            for (RGBAImage image : result.rasters) {
+                image.close();
+            }
         }
 
         for(TextureImage.Image img  : texture.getAlternativesList()) {
@@ -13,7 +13,6 @@
 package com.dynamo.bob.pipeline;
 
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -21,8 +20,7 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
-
-import javax.imageio.ImageIO;
+import java.util.logging.Logger;
 
 import org.apache.commons.io.FilenameUtils;
 
@@ -32,14 +30,19 @@ import com.dynamo.atlas.proto.AtlasProto.AtlasImage;
 import com.dynamo.bob.CompileExceptionError;
 import com.dynamo.bob.Project;
 import com.dynamo.bob.fs.IResource;
+import com.dynamo.bob.textureset.MaxRectsLayoutStrategy.ImageDoesNotFitException;
 import com.dynamo.bob.textureset.TextureSetGenerator;
 import com.dynamo.bob.textureset.TextureSetGenerator.AnimDesc;
 import com.dynamo.bob.textureset.TextureSetGenerator.AnimIterator;
 import com.dynamo.bob.textureset.TextureSetGenerator.TextureSetResult;
+import com.dynamo.bob.util.ImageCache;
 import com.dynamo.tile.proto.Tile.Playback;
 import com.dynamo.tile.proto.Tile.SpriteTrimmingMode;
 
 public class AtlasUtil {
+
+    private static Logger logger = Logger.getLogger(AtlasUtil.class.getName());
+
     public static class MappedAnimDesc extends AnimDesc {
         List<String> ids;
 
@@ -150,14 +153,12 @@ public class AtlasUtil {
     }
 
     public static List<BufferedImage> loadImages(List<IResource> resources) throws IOException, CompileExceptionError {
-        List<BufferedImage> images = new ArrayList<BufferedImage>(resources.size());
-
-        for (IResource resource : resources) {
-            BufferedImage image = ImageIO.read(new ByteArrayInputStream(resource.getContent()));
-            if (image == null) {
+        List<BufferedImage> images = ImageCache.read(resources);
+        for (int i = 0; i < images.size(); ++i) {
+            if (images.get(i) == null) {
+                IResource resource = resources.get(i);
                 throw new CompileExceptionError(resource, -1, "Unable to load image " + resource.getPath());
             }
-            images.add(image);
         }
         return images;
     }
@@ -223,9 +224,21 @@ public class AtlasUtil {
             imagePaths.set(i, transformer.transform(imagePaths.get(i)));
         }
         MappedAnimIterator iterator = new MappedAnimIterator(animDescs, imagePaths);
-        return TextureSetGenerator.generate(images, imageHullSizes, imagePaths, iterator,
-                Math.max(0, atlas.getMargin()),
-                Math.max(0, atlas.getInnerPadding()),
-                Math.max(0, atlas.getExtrudeBorders()), true, false, null);
+
+        // Multi-page atlases are stored as texture arrays, which the engine can't load yet
+        int maxPageSize = atlas.getMaxPageSize();
+        if (maxPageSize > 0 && !project.option("multi-page-atlases", "false").equals("true")) {
+            logger.warning(String.format("%s: max_page_size is ignored, multi-page atlases require the experimental 'multi-page-atlases' option", atlasResource.getPath()));
+            maxPageSize = 0;
+        }
+        try {
+            return TextureSetGenerator.generateRaster(images, imageHullSizes, imagePaths, iterator,
+                    Math.max(0, atlas.getMargin()),
+                    Math.max(0, atlas.getInnerPadding()),
+                    Math.max(0, atlas.getExtrudeBorders()), true, false, null,
+                    maxPageSize);
+        } catch (ImageDoesNotFitException e) {
+            throw new CompileExceptionError(atlasResource, -1, e.getMessage(), e);
+        }
     }
 }
@@ -16,13 +16,12 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.List;
-import java.util.Iterator;
 import java.util.Arrays;
 
-import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonFactory;
 import org.codehaus.jackson.JsonParseException;
-import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
 
 import com.dynamo.bob.Builder;
 import com.dynamo.bob.BuilderParams;
@@ -33,6 +32,7 @@ import com.dynamo.bob.fs.IResource;
 import com.dynamo.buffer.proto.BufferProto.BufferDesc;
 import com.dynamo.buffer.proto.BufferProto.StreamDesc;
 import com.dynamo.buffer.proto.BufferProto.ValueType;
+import com.google.protobuf.CodedOutputStream;
 
 
 @BuilderParams(name="Buffer", inExts=".buffer", outExt=".bufferc")
@@ -40,6 +40,9 @@ public class BufferBuilder extends Builder<Void> {
 
     static String allowedTypeStrings = "uint8, uint16, uint32, uint64, int8, int16, int32, int64, float32";
 
+    // WireFormat.WIRETYPE_LENGTH_DELIMITED, which isn't public in this version of protobuf
+    private static final int WIRETYPE_LENGTH_DELIMITED = 2;
+
     @Override
     public Task<Void> create(IResource input) throws IOException, CompileExceptionError {
 
@@ -67,139 +70,194 @@ public class BufferBuilder extends Builder<Void> {
         }
     }
 
-    static Integer[] fillIntArray(StreamDesc.Builder builder, JsonNode dataNode) {
-        int dataCount = dataNode.size();
-        Integer[] out = new Integer[dataCount];
-        for (int i = 0; i < dataCount; ++i) {
-            out[i] = (int)dataNode.get(i).asDouble();
+    /**
+     * Values of a stream, kept as doubles since that is how the values are read
+     * and the stream type may not be known until the whole stream has been read.
+     */
+    static class DoubleArray {
+        double[] values = new double[64];
+        int size = 0;
+
+        void add(double value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[size++] = value;
         }
-        return out;
     }
 
-    static Long[] fillLongArray(StreamDesc.Builder builder, JsonNode dataNode) {
-        int dataCount = dataNode.size();
-        Long[] out = new Long[dataCount];
-        for (int i = 0; i < dataCount; ++i) {
-            out[i] = (long)dataNode.get(i).asDouble();
+    // Same conversions as for a JSON tree, containers have no value
+    private static double readValue(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.START_ARRAY || token == JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return 0.0;
         }
-        return out;
+        return parser.getValueAsDouble(0.0);
     }
 
-    static Float[] fillFloatArray(StreamDesc.Builder builder, JsonNode dataNode) {
-        int dataCount = dataNode.size();
-        Float[] out = new Float[dataCount];
-        for (int i = 0; i < dataCount; ++i) {
-            out[i] = (float)dataNode.get(i).asDouble();
+    private static String readText(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.START_ARRAY || token == JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return "";
         }
-        return out;
-    }
-
-    static void fillUint(StreamDesc.Builder builder, JsonNode dataNode) {
-        builder.addAllUi(Arrays.asList(fillIntArray(builder, dataNode)));
-    }
-
-    static void fillInt(StreamDesc.Builder builder, JsonNode dataNode) {
-        builder.addAllI(Arrays.asList(fillIntArray(builder, dataNode)));
+        return parser.getText();
     }
 
-    static void fillUlong(StreamDesc.Builder builder, JsonNode dataNode) {
-        builder.addAllUi64(Arrays.asList(fillLongArray(builder, dataNode)));
-    }
-
-    static void fillLong(StreamDesc.Builder builder, JsonNode dataNode) {
-        builder.addAllI64(Arrays.asList(fillLongArray(builder, dataNode)));
-    }
-
-    static void fillFloat(StreamDesc.Builder builder, JsonNode dataNode) {
-        builder.addAllF(Arrays.asList(fillFloatArray(builder, dataNode)));
-    }
-
-    static void fillData(StreamDesc.Builder builder, JsonNode dataNode, ValueType type)
-    {
+    /**
+     * Write the data of a stream in the wire format of the StreamDesc field that
+     * corresponds to the stream type, without boxing every value.
+     */
+    static void writeData(CodedOutputStream out, DoubleArray data, ValueType type) throws IOException {
+        double[] values = data.values;
         switch (type) {
             case VALUE_TYPE_INT8:
             case VALUE_TYPE_INT16:
             case VALUE_TYPE_INT32:
-                fillInt(builder, dataNode);
+                for (int i = 0; i < data.size; ++i) {
+                    out.writeInt32(StreamDesc.I_FIELD_NUMBER, (int)values[i]);
+                }
                 break;
 
             case VALUE_TYPE_UINT8:
             case VALUE_TYPE_UINT16:
             case VALUE_TYPE_UINT32:
-                fillUint(builder, dataNode);
+                for (int i = 0; i < data.size; ++i) {
+                    out.writeUInt32(StreamDesc.UI_FIELD_NUMBER, (int)values[i]);
+                }
                 break;
 
             case VALUE_TYPE_UINT64:
-                fillUlong(builder, dataNode);
+                for (int i = 0; i < data.size; ++i) {
+                    out.writeUInt64(StreamDesc.UI64_FIELD_NUMBER, (long)values[i]);
+                }
                 break;
 
             case VALUE_TYPE_INT64:
-                fillLong(builder, dataNode);
+                for (int i = 0; i < data.size; ++i) {
+                    out.writeInt64(StreamDesc.I64_FIELD_NUMBER, (long)values[i]);
+                }
                 break;
 
             case VALUE_TYPE_FLOAT32:
-                fillFloat(builder, dataNode);
+                for (int i = 0; i < data.size; ++i) {
+                    out.writeFloat(StreamDesc.F_FIELD_NUMBER, (float)values[i]);
+                }
                 break;
         }
     }
 
-    @Override
-    public void build(Task<Void> task) throws CompileExceptionError, IOException {
-        ByteArrayInputStream bufferJsonIs = new ByteArrayInputStream(task.input(0).getContent());
-
-        BufferDesc.Builder bufferDescBuilder = BufferDesc.newBuilder();
+    /**
+     * Read a stream object and write it to the output as a BufferDesc stream.
+     * The fields are written in the same order as a generated StreamDesc would
+     * write them, so the output is the same as if the message had been built.
+     */
+    private static void buildStream(IResource input, JsonParser parser, CodedOutputStream out) throws IOException, CompileExceptionError {
+        String streamName = null;
+        String streamTypeString = null;
+        Integer streamValueCount = null;
+        DoubleArray data = null;
+
+        if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if (field.equals("name")) {
+                    streamName = readText(parser);
+                } else if (field.equals("type")) {
+                    streamTypeString = readText(parser);
+                } else if (field.equals("count")) {
+                    streamValueCount = (int)readValue(parser);
+                } else if (field.equals("data")) {
+                    data = new DoubleArray();
+                    if (parser.getCurrentToken() == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            data.add(readValue(parser));
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } else {
+            parser.skipChildren();
+        }
 
-        try {
-            ObjectMapper m = new ObjectMapper();
-            JsonNode bufferNode = m.readValue(new InputStreamReader(bufferJsonIs, "UTF-8"), JsonNode.class);
+        // Check that all required fields are available for a stream.
 
-            Iterator<JsonNode> streamNodes = bufferNode.getElements();
-            while (streamNodes.hasNext()) {
-                JsonNode streamNode = streamNodes.next();
+        // name field
+        if (streamName == null) {
+            throw new CompileExceptionError(input, 0, "Stream is missing required name field.");
+        }
 
-                // Get and check that all required fields are available for a stream.
+        // type field (we also make sure it is a supported type)
+        if (streamTypeString == null) {
+            throw new CompileExceptionError(input, 0, "Stream '" + streamName + "' is missing required type field.");
+        }
+        ValueType streamType = stringTypeToDDFType(streamTypeString);
+        if (streamType == null) {
+            throw new CompileExceptionError(input, 0, "Unknown stream type: " + streamTypeString + " (allowed types: " + allowedTypeStrings + ").");
+        }
 
-                // name field
-                if (streamNode.get("name") == null) {
-                    throw new CompileExceptionError(task.input(0), 0, "Stream is missing required name field.");
-                }
-                String streamName = streamNode.get("name").asText();
+        // count field, the number of values of each element
+        if (streamValueCount == null) {
+            throw new CompileExceptionError(input, 0, "Stream '" + streamName + "' is missing required count field.");
+        }
+        if (streamValueCount <= 0) {
+            throw new CompileExceptionError(input, 0, "Stream '" + streamName + "' must have a count larger than zero.");
+        }
+        if (data != null && data.size % streamValueCount != 0) {
+            throw new CompileExceptionError(input, 0, "Stream '" + streamName + "' has " + data.size + " values, which is not a multiple of its count " + streamValueCount + ".");
+        }
 
-                // type field (we also make sure it is a supported type)
-                if (streamNode.get("type") == null) {
-                    throw new CompileExceptionError(task.input(0), 0, "Stream '" + streamName + "' is missing required type field.");
-                }
-                String streamTypeString = streamNode.get("type").asText();
-                ValueType streamType = stringTypeToDDFType(streamTypeString);
-                if (streamType == null) {
-                    throw new CompileExceptionError(task.input(0), 0, "Unknown stream type: " + streamTypeString + " (allowed types: " + allowedTypeStrings + ").");
-                }
+        ByteArrayOutputStream streamBytes = new ByteArrayOutputStream(data != null ? data.size * 5 + 64 : 64);
+        CodedOutputStream streamOut = CodedOutputStream.newInstance(streamBytes);
+        streamOut.writeString(StreamDesc.NAME_FIELD_NUMBER, streamName);
+        streamOut.writeEnum(StreamDesc.VALUE_TYPE_FIELD_NUMBER, streamType.getNumber());
+        streamOut.writeUInt32(StreamDesc.VALUE_COUNT_FIELD_NUMBER, streamValueCount);
+        // Fill corresponding protobuf data field depending on what the stream type is.
+        if (data != null) {
+            writeData(streamOut, data, streamType);
+        }
+        streamOut.flush();
 
-                // count field
-                if (streamNode.get("count") == null) {
-                    throw new CompileExceptionError(task.input(0), 0, "Stream '" + streamName + "' is missing required count field.");
-                }
-                int streamValueCount = streamNode.get("count").asInt();
+        out.writeTag(BufferDesc.STREAMS_FIELD_NUMBER, WIRETYPE_LENGTH_DELIMITED);
+        out.writeRawVarint32(streamBytes.size());
+        out.writeRawBytes(streamBytes.toByteArray());
+    }
 
-                StreamDesc.Builder streamDescBuilder = StreamDesc.newBuilder();
-                streamDescBuilder.setName(streamName);
-                streamDescBuilder.setValueType(streamType);
-                streamDescBuilder.setValueCount(streamValueCount);
+    @Override
+    public void build(Task<Void> task) throws CompileExceptionError, IOException {
+        IResource input = task.input(0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        CodedOutputStream codedOut = CodedOutputStream.newInstance(out);
 
-                // Fill corresponding protobuf data field depending on what the stream type is.
-                JsonNode dataNode = streamNode.get("data");
-                if (dataNode != null) {
-                    fillData(streamDescBuilder, dataNode, streamType);
+        try {
+            JsonParser parser = new JsonFactory().createJsonParser(new InputStreamReader(new ByteArrayInputStream(input.getContent()), "UTF-8"));
+            try {
+                // Streams are the elements of the root array (or the values of the root object)
+                JsonToken root = parser.nextToken();
+                if (root == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        buildStream(input, parser, codedOut);
+                    }
+                } else if (root == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        parser.nextToken();
+                        buildStream(input, parser, codedOut);
+                    }
                 }
-
-                bufferDescBuilder.addStreams(streamDescBuilder.build());
+            } finally {
+                parser.close();
             }
         } catch (JsonParseException e) {
-            throw new CompileExceptionError(task.input(0), 0, "JSON error while parsing buffer resource: " + e.getMessage());
+            throw new CompileExceptionError(input, 0, "JSON error while parsing buffer resource: " + e.getMessage());
         }
 
-        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
-        bufferDescBuilder.build().writeTo(out);
+        codedOut.flush();
         out.close();
         task.output(0).setContent(out.toByteArray());
     }
@@ -17,9 +17,6 @@ import com.dynamo.bob.CopyBuilder;
 
 public class CopyBuilders {
 
-    @BuilderParams(name = "Wav", inExts = ".wav", outExt = ".wavc")
-    public static class WavBuilder extends CopyBuilder {}
-
     @BuilderParams(name = "Ogg", inExts = ".ogg", outExt = ".oggc")
     public static class OggBuilder extends CopyBuilder {}
 
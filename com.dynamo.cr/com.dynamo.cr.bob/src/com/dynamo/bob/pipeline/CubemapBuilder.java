@@ -12,9 +12,10 @@
 
 package com.dynamo.bob.pipeline;
 
-import java.io.ByteArrayInputStream;
+import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.security.MessageDigest;
 import java.util.EnumSet;
 
 import com.dynamo.bob.Builder;
@@ -23,6 +24,7 @@ import com.dynamo.bob.CompileExceptionError;
 import com.dynamo.bob.Task;
 import com.dynamo.bob.Task.TaskBuilder;
 import com.dynamo.bob.fs.IResource;
+import com.dynamo.bob.util.ImageCache;
 import com.dynamo.bob.util.TextureUtil;
 import com.dynamo.bob.TexcLibrary.FlipAxis;
 import com.dynamo.graphics.proto.Graphics.Cubemap;
@@ -30,7 +32,6 @@ import com.dynamo.graphics.proto.Graphics.TextureImage;
 import com.dynamo.graphics.proto.Graphics.TextureImage.Image;
 import com.dynamo.graphics.proto.Graphics.TextureImage.Type;
 import com.dynamo.graphics.proto.Graphics.TextureProfile;
-import com.google.protobuf.ByteString;
 
 @BuilderParams(name = "Cubemap", inExts = {".cubemap"}, outExt = ".texturec")
 public class CubemapBuilder extends Builder<Void> {
@@ -62,6 +63,14 @@ public class CubemapBuilder extends Builder<Void> {
         return taskBuilder.build();
     }
 
+    @Override
+    public void signature(MessageDigest digest) {
+        // The texture profiles are filtered by the target platform
+        if (this.project.getProjectProperties().getStringValue("graphics", "texture_profiles") != null) {
+            platformSignature(digest);
+        }
+    }
+
     @Override
     public void build(Task<Void> task) throws CompileExceptionError,
             IOException {
@@ -71,7 +80,10 @@ public class CubemapBuilder extends Builder<Void> {
         TextureImage[] textures = new TextureImage[6];
         try {
             for (int i = 0; i < 6; i++) {
-                ByteArrayInputStream is = new ByteArrayInputStream(task.input(i + 1).getContent());
+                BufferedImage image = ImageCache.read(task.input(i + 1));
+                if (image == null) {
+                    throw new CompileExceptionError(task.input(i + 1), -1, "Unknown texture format.");
+                }
                 boolean compress = project.option("texture-compression", "false").equals("true");
                 // NOTE: Cubemap sides should not have a flipped Y axis (as opposed to any other texture).
                 // I could only find tidbits of information regarding this online, as far as I understand
@@ -85,7 +97,7 @@ public class CubemapBuilder extends Builder<Void> {
                 //
                 // So for cube map textures we don't flip on any axis, meaning the texture data begin at the
                 // upper left corner of the input image.
-                TextureImage texture = TextureGenerator.generate(is, texProfile, compress, EnumSet.noneOf(FlipAxis.class));
+                TextureImage texture = TextureGenerator.generate(image, texProfile, compress, EnumSet.noneOf(FlipAxis.class));
                 textures[i] = texture;
             }
             validate(task, textures);
@@ -93,34 +105,7 @@ public class CubemapBuilder extends Builder<Void> {
             throw new CompileExceptionError(task.input(0), -1, e.getMessage(), e);
         }
 
-        TextureImage.Builder builder = TextureImage.newBuilder(textures[0]);
-
-        for (int i = 0; i < builder.getAlternativesCount(); i++) {
-            Image.Builder imageBuilder = TextureImage.Image.newBuilder(textures[0].getAlternatives(i));
-
-            ByteArrayOutputStream os = new ByteArrayOutputStream(1024 * 4);
-            for (int j = 0; j < imageBuilder.getMipMapSizeCount(); j++) {
-                int mipSize = imageBuilder.getMipMapSize(j);
-                byte[] buf = new byte[mipSize];
-                for (int k = 0; k < 6; k++) {
-                    ByteString data = textures[k].getAlternatives(i).getData();
-                    int mipOffset = imageBuilder.getMipMapOffset(j);
-                    data.copyTo(buf, mipOffset, 0, mipSize);
-                    os.write(buf);
-                }
-            }
-            os.flush();
-            imageBuilder.setData(ByteString.copyFrom(os.toByteArray()));
-            for (int j = 0; j < imageBuilder.getMipMapSizeCount(); j++) {
-                imageBuilder.setMipMapOffset(j, imageBuilder.getMipMapOffset(j) * 6);
-            }
-            builder.setAlternatives(i, imageBuilder);
-        }
-
-        builder.setCount(6);
-        builder.setType(Type.TYPE_CUBEMAP);
-
-        TextureImage texture = builder.build();
+        TextureImage texture = TextureUtil.createCombinedTextureImage(textures, Type.TYPE_CUBEMAP);
         ByteArrayOutputStream out = new ByteArrayOutputStream(1024 * 1024);
         texture.writeTo(out);
         out.close();
@@ -21,6 +21,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -163,6 +164,144 @@ public class ExtenderUtil {
         }
     }
 
+    /**
+     * Content of the resources uploaded when building several architectures at
+     * once. Most files are uploaded for every architecture, and the extender client
+     * reads each file more than once to hash and upload it, so the content is read
+     * once and shared between the builds. Resources are identified by the absolute
+     * path of their file, its size and its modification time, since files written for
+     * each architecture, like the resolved manifests, have the same project path.
+     * Content is no longer kept once the budget is used up.
+     */
+    public static class SharedContent {
+        public static final long DEFAULT_BUDGET = 256 * 1024 * 1024;
+
+        private final Map<String, byte[]> contents = new HashMap<String, byte[]>();
+        private final long budget;
+        private long used = 0;
+
+        public SharedContent(long budget) {
+            this.budget = budget;
+        }
+
+        /**
+         * Wrap resources so that their content is shared through this instance.
+         * @param resources resources to upload
+         * @return the wrapped resources, in the same order
+         */
+        public List<ExtenderResource> share(List<ExtenderResource> resources) {
+            List<ExtenderResource> shared = new ArrayList<ExtenderResource>(resources.size());
+            for (ExtenderResource resource : resources) {
+                shared.add(new SharedExtenderResource(this, resource));
+            }
+            return shared;
+        }
+
+        private static String getKey(ExtenderResource resource) {
+            // The "absolute" path of a file resource is its path in the upload
+            File file = resource instanceof FileExtenderResource ? ((FileExtenderResource) resource).getFile() : new File(resource.getAbsPath());
+            if (file.isFile()) {
+                return file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+            }
+            return resource.getAbsPath() + ":" + resource.getLastModified();
+        }
+
+        byte[] getContent(SharedExtenderResource shared) throws IOException {
+            ExtenderResource resource = shared.getResource();
+            if (resource instanceof FileExtenderResource && !((FileExtenderResource) resource).getFile().exists()) {
+                return null;
+            }
+            String key = getKey(resource);
+            synchronized (this) {
+                byte[] content = contents.get(key);
+                if (content != null) {
+                    return content;
+                }
+            }
+            // Read outside of the lock, at worst a file is read more than once
+            byte[] content = resource.getContent();
+            if (content != null) {
+                synchronized (this) {
+                    if (!contents.containsKey(key) && used + content.length <= budget) {
+                        contents.put(key, content);
+                        used += content.length;
+                    }
+                }
+            }
+            return content;
+        }
+    }
+
+    private static class SharedExtenderResource implements ExtenderResource {
+
+        private SharedContent sharedContent;
+        private ExtenderResource resource;
+        // The hash is looked up more than once per build, the content is only hashed once
+        private byte[] sha1;
+        SharedExtenderResource(SharedContent sharedContent, ExtenderResource resource) {
+            this.sharedContent = sharedContent;
+            this.resource = resource;
+        }
+
+        public ExtenderResource getResource() {
+            return resource;
+        }
+
+        @Override
+        public synchronized byte[] sha1() throws IOException {
+            if (sha1 == null) {
+                byte[] content = getContent();
+                if (content == null) {
+                    return resource.sha1();
+                }
+                MessageDigest digest;
+                try {
+                    digest = MessageDigest.getInstance("SHA1");
+                } catch (NoSuchAlgorithmException e) {
+                    throw new RuntimeException(e);
+                }
+                sha1 = digest.digest(content);
+            }
+            return sha1.clone();
+        }
+
+        @Override
+        public String getAbsPath() {
+            return resource.getAbsPath();
+        }
+
+        @Override
+        public String getPath() {
+            return resource.getPath();
+        }
+
+        @Override
+        public byte[] getContent() throws IOException {
+            return sharedContent.getContent(this);
+        }
+
+        @Override
+        public long getLastModified() {
+            return resource.getLastModified();
+        }
+
+        @Override
+        public String toString() {
+            return resource.toString();
+        }
+    }
+
+    /**
+     * @param resource resource, possibly wrapped by {@link SharedContent#share(List)}
+     * @return the resource that was wrapped, or the resource itself
+     */
+    public static ExtenderResource unwrap(ExtenderResource resource) {
+        if (resource instanceof SharedExtenderResource) {
+            return ((SharedExtenderResource) resource).getResource();
+        }
+        return resource;
+    }
+
     private static class EmptyResource implements IResource {
     	private String rootDir;
     	private String path;
@@ -182,6 +321,11 @@ public class ExtenderUtil {
 			return new byte[0];
 		}
 
+		@Override
+		public ByteBuffer getContentBuffer() throws IOException {
+			return ByteBuffer.allocate(0);
+		}
+
 		@Override
 		public void setContent(byte[] content) throws IOException {
 		}
@@ -833,6 +977,7 @@ public class ExtenderUtil {
     public static IResource getResource(String path, List<ExtenderResource> source) {
         for (ExtenderResource r : source) {
             if (r.getPath().equals(path)) {
+                r = unwrap(r);
                 if (r instanceof ExtenderUtil.FSExtenderResource) {
                     ExtenderUtil.FSExtenderResource fsr = (ExtenderUtil.FSExtenderResource)r;
                     return fsr.getResource();
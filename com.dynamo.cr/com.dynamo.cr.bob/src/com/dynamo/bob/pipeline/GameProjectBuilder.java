@@ -24,6 +24,8 @@ import java.lang.reflect.Method;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -39,6 +41,7 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 
+import com.dynamo.bob.Bob;
 import com.dynamo.bob.Builder;
 import com.dynamo.bob.BuilderParams;
 import com.dynamo.bob.CompileExceptionError;
@@ -48,10 +51,13 @@ import com.dynamo.bob.Project;
 import com.dynamo.bob.Task;
 import com.dynamo.bob.Task.TaskBuilder;
 import com.dynamo.bob.archive.ArchiveBuilder;
+import com.dynamo.bob.archive.ArchiveEntry;
+import com.dynamo.bob.archive.ArchiveReader;
 import com.dynamo.bob.archive.EngineVersion;
 import com.dynamo.bob.archive.ManifestBuilder;
 import com.dynamo.bob.fs.IResource;
 import com.dynamo.bob.util.BobProjectProperties;
+import com.dynamo.bob.util.BuildTracer;
 import com.dynamo.camera.proto.Camera.CameraDesc;
 import com.dynamo.gameobject.proto.GameObject.CollectionDesc;
 import com.dynamo.gameobject.proto.GameObject.PrototypeDesc;
@@ -151,6 +157,46 @@ public class GameProjectBuilder extends Builder<Void> {
         return file;
     }
 
+    /**
+     * Read the index of the archive of the previous build, so that its data
+     * file can be updated in place.
+     * @return the entries of the previous archive, or null if there is none that can be used
+     */
+    private static List<ArchiveEntry> readPreviousArchive(File archiveIndexHandle, File archiveDataHandle) {
+        if (!archiveIndexHandle.isFile() || !archiveDataHandle.isFile()) {
+            return null;
+        }
+        ArchiveReader reader = new ArchiveReader(archiveIndexHandle.getAbsolutePath(), archiveDataHandle.getAbsolutePath(), null);
+        try {
+            reader.read();
+            return reader.getEntries();
+        } catch (IOException e) {
+            Bob.verbose("Unable to read the previous archive, writing it from scratch: %s", e.getMessage());
+            return null;
+        } finally {
+            try {
+                reader.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    private static RandomAccessFile openForUpdate(File handle) throws IOException {
+        // The data file may be hard linked into a bundle, which must not change
+        int linkCount;
+        try {
+            linkCount = (Integer) Files.getAttribute(handle.toPath(), "unix:nlink");
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            linkCount = 1;
+        }
+        if (linkCount > 1) {
+            File copy = File.createTempFile(handle.getName(), ".tmp", handle.getParentFile());
+            Files.copy(handle.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.move(copy.toPath(), handle.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return new RandomAccessFile(handle, "rw");
+    }
+
     @Override
     public Task<Void> create(IResource input) throws IOException, CompileExceptionError {
         boolean shouldPublish = project.option("liveupdate", "false").equals("true");
@@ -228,7 +274,7 @@ public class GameProjectBuilder extends Builder<Void> {
         return builder.build();
     }
 
-    private void createArchive(Collection<String> resources, RandomAccessFile archiveIndex, RandomAccessFile archiveData, ManifestBuilder manifestBuilder, List<String> excludedResources, Path resourcePackDirectory) throws IOException, CompileExceptionError {
+    private void createArchive(Collection<String> resources, RandomAccessFile archiveIndex, RandomAccessFile archiveData, List<ArchiveEntry> previousEntries, ManifestBuilder manifestBuilder, List<String> excludedResources, Path resourcePackDirectory) throws IOException, CompileExceptionError {
         String root = FilenameUtils.concat(project.getRootDirectory(), project.getBuildDirectory());
         ArchiveBuilder archiveBuilder = new ArchiveBuilder(root, manifestBuilder);
         boolean doCompress = project.getProjectProperties().getBooleanValue("project", "compress_archive", true);
@@ -240,7 +286,11 @@ public class GameProjectBuilder extends Builder<Void> {
             archiveBuilder.add(s, compress);
         }
 
-        archiveBuilder.write(archiveIndex, archiveData, resourcePackDirectory, excludedResources);
+        if (previousEntries != null) {
+            archiveBuilder.writeIncremental(archiveIndex, archiveData, previousEntries, resourcePackDirectory, excludedResources);
+        } else {
+            archiveBuilder.write(archiveIndex, archiveData, resourcePackDirectory, excludedResources);
+        }
         manifestBuilder.setArchiveIdentifier(archiveBuilder.getArchiveIndexHash());
         archiveIndex.close();
         archiveData.close();
@@ -400,6 +450,29 @@ public class GameProjectBuilder extends Builder<Void> {
         }
     }
 
+    /**
+     * Get the (compiled) root resources of the project, i.e. the resources the engine
+     * loads on startup. Everything else in the archive is reached from these.
+     * @param project project
+     * @return list of root relative paths
+     */
+    public static List<String> getRootResourcePaths(Project project) {
+        List<String> paths = new ArrayList<String>();
+        // Root nodes to follow (default values from engine.cpp)
+        for (String[] tuples : new String[][] { {"bootstrap", "main_collection", "/logic/main.collectionc"},
+                                                {"bootstrap", "render", "/builtins/render/default.renderc"},
+                                                {"bootstrap", "debug_init_script", null},
+                                                {"input", "game_binding", "/input/game.input_bindingc"},
+                                                {"input", "gamepads", "/builtins/input/default.gamepadsc"},
+                                                {"display", "display_profiles", "/builtins/render/default.display_profilesc"}}) {
+            String path = project.getProjectProperties().getStringValue(tuples[0], tuples[1], tuples[2]);
+            if (path != null) {
+                paths.add(path);
+            }
+        }
+        return paths;
+    }
+
     public static HashSet<String> findResources(Project project, ResourceNode rootNode) throws CompileExceptionError {
         HashSet<String> resources = new HashSet<String>();
 
@@ -412,19 +485,10 @@ public class GameProjectBuilder extends Builder<Void> {
 
         } else {
 
-            // Root nodes to follow (default values from engine.cpp)
-            for (String[] tuples : new String[][] { {"bootstrap", "main_collection", "/logic/main.collectionc"},
-                                                    {"bootstrap", "render", "/builtins/render/default.renderc"},
-                                                    {"bootstrap", "debug_init_script", null},
-                                                    {"input", "game_binding", "/input/game.input_bindingc"},
-                                                    {"input", "gamepads", "/builtins/input/default.gamepadsc"},
-                                                    {"display", "display_profiles", "/builtins/render/default.display_profilesc"}}) {
-                String path = project.getProjectProperties().getStringValue(tuples[0], tuples[1], tuples[2]);
+            for (String path : getRootResourcePaths(project)) {
                 HashSet<String> visitedNodes = new HashSet<String>();
-                if (path != null) {
-                    findResources(project, project.getResource(path), resources);
-                    buildResourceGraph(project, project.getResource(path), rootNode, visitedNodes);
-                }
+                findResources(project, project.getResource(path), resources);
+                buildResourceGraph(project, project.getResource(path), rootNode, visitedNodes);
             }
 
         }
@@ -526,6 +590,12 @@ public class GameProjectBuilder extends Builder<Void> {
         }
     }
 
+    @Override
+    public void signature(MessageDigest digest) {
+        // The archive, the manifest and the texture profiles are created for the target platform
+        platformSignature(digest);
+    }
+
     @Override
     public void build(Task<Void> task) throws CompileExceptionError, IOException {
         FileInputStream archiveIndexInputStream = null;
@@ -558,20 +628,42 @@ public class GameProjectBuilder extends Builder<Void> {
                 project.getPublisher().setPlatform(platform);
                 File archiveIndexHandle = File.createTempFile("defold.index_", ".arci");
                 RandomAccessFile archiveIndex = createRandomAccessFile(archiveIndexHandle);
-                File archiveDataHandle = File.createTempFile("defold.data_", ".arcd");
-                RandomAccessFile archiveData = createRandomAccessFile(archiveDataHandle);
+                // Update the data file of the previous build in place if asked to, only writing new and changed resources
+                File archiveDataHandle;
+                RandomAccessFile archiveData;
+                List<ArchiveEntry> previousEntries = null;
+                if (project.hasOption("incremental-archive")) {
+                    File previousIndexHandle = new File(task.getOutputs().get(1).getAbsPath());
+                    archiveDataHandle = new File(task.getOutputs().get(2).getAbsPath());
+                    previousEntries = readPreviousArchive(previousIndexHandle, archiveDataHandle);
+                    // The previous index must not be left behind pointing at data that is being overwritten
+                    previousIndexHandle.delete();
+                }
+                if (previousEntries != null) {
+                    archiveData = openForUpdate(archiveDataHandle);
+                } else {
+                    archiveDataHandle = File.createTempFile("defold.data_", ".arcd");
+                    archiveData = createRandomAccessFile(archiveDataHandle);
+                }
                 Path resourcePackDirectory = Files.createTempDirectory("defold.resourcepack_");
-                createArchive(resources, archiveIndex, archiveData, manifestBuilder, excludedResources, resourcePackDirectory);
+                try (BuildTracer.Span span = project.getBuildTracer().span("createArchive")) {
+                    createArchive(resources, archiveIndex, archiveData, previousEntries, manifestBuilder, excludedResources, resourcePackDirectory);
+                }
 
                 // Create manifest
-                byte[] manifestFile = manifestBuilder.buildManifest();
+                byte[] manifestFile;
+                try (BuildTracer.Span span = project.getBuildTracer().span("buildManifest")) {
+                    manifestFile = manifestBuilder.buildManifest();
+                }
 
                 // Write outputs to the build system
                 archiveIndexInputStream = new FileInputStream(archiveIndexHandle);
                 task.getOutputs().get(1).setContent(archiveIndexInputStream);
 
-                archiveDataInputStream = new FileInputStream(archiveDataHandle);
-                task.getOutputs().get(2).setContent(archiveDataInputStream);
+                if (previousEntries == null) {
+                    archiveDataInputStream = new FileInputStream(archiveDataHandle);
+                    task.getOutputs().get(2).setContent(archiveDataInputStream);
+                }
 
                 task.getOutputs().get(3).setContent(manifestFile);
 
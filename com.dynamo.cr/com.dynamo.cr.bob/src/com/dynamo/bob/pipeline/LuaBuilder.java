@@ -14,14 +14,19 @@ package com.dynamo.bob.pipeline;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.security.MessageDigest;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -29,6 +34,7 @@ import javax.vecmath.Quat4d;
 import javax.vecmath.Vector3d;
 import javax.vecmath.Vector4d;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
 
 import com.dynamo.bob.Bob;
@@ -57,8 +63,20 @@ import com.google.protobuf.Message;
  */
 public abstract class LuaBuilder extends Builder<Void> {
 
+    private static Logger logger = Logger.getLogger(LuaBuilder.class.getName());
+
+    // Save bytecode (b) with debug info (g) and the chunk name given by us (f)
+    private static final String BYTECODE_FLAGS = "-bgf";
+
     private static ArrayList<Platform> needsLuaSource = new ArrayList<Platform>(Arrays.asList(Platform.JsWeb, Platform.WasmWeb));
 
+    @Override
+    public void signature(MessageDigest digest) {
+        // Only the platforms that need the source get a different output
+        Platform platform = Platform.get(project.option("platform", ""));
+        digest.update((byte) (needsLuaSource.contains(platform) ? 1 : 0));
+    }
+
     @Override
     public Task<Void> create(IResource input) throws IOException, CompileExceptionError {
         Task.TaskBuilder<Void> taskBuilder = Task.<Void>newBuilder(this)
@@ -87,7 +105,83 @@ public abstract class LuaBuilder extends Builder<Void> {
         return string.getBytes();
     }
 
+    // Identity of the luajit executables, by path
+    private static Map<String, String> executableIds = new ConcurrentHashMap<String, String>();
+
+    private static String getExecutableId(String exe) throws IOException {
+        File file = new File(exe);
+        String path = file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+        String id = executableIds.get(path);
+        if (id == null) {
+            InputStream is = new FileInputStream(file);
+            try {
+                id = DigestUtils.sha1Hex(is);
+            } finally {
+                IOUtils.closeQuietly(is);
+            }
+            executableIds.put(path, id);
+        }
+        return id;
+    }
+
+    // Identity of the lua files in share/luajit, which luajit loads to save bytecode
+    private static String shareId = null;
+
+    private static synchronized String getShareId() throws IOException {
+        if (shareId == null) {
+            InputStream is = Bob.class.getResourceAsStream("/lib/luajit-share.zip");
+            try {
+                shareId = is != null ? DigestUtils.sha1Hex(is) : "";
+            } finally {
+                IOUtils.closeQuietly(is);
+            }
+        }
+        return shareId;
+    }
+
+    // Entries of the bytecode cache are removed when they haven't been used for this long
+    private static final long BYTECODE_CACHE_MAX_AGE = 30L * 24 * 60 * 60 * 1000;
+    private static AtomicBoolean bytecodeCachePruned = new AtomicBoolean(false);
+
+    private LuaBytecodeCache getBytecodeCache() {
+        LuaBytecodeCache cache = new LuaBytecodeCache(new File(this.project.getBuildCachePath(), "luajit"));
+        // Once per process is enough, the cache is shared by all builds
+        if (bytecodeCachePruned.compareAndSet(false, true)) {
+            try {
+                cache.prune(BYTECODE_CACHE_MAX_AGE);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to prune the luajit bytecode cache", e);
+            }
+        }
+        return cache;
+    }
+
     public byte[] constructBytecode(Task<Void> task, String luajitExe, byte[] byteString) throws IOException, CompileExceptionError {
+        // See runLuaJIT for the details of the chunk name
+        String chunkName = task.input(0).getPath();
+        if (chunkName.length() >= 59) {
+            chunkName = chunkName.substring(chunkName.length() - 59);
+        }
+        chunkName = "=" + chunkName;
+        String exe = Bob.getExe(Platform.getHostPlatform(), luajitExe);
+
+        // Scripts are often compiled again with the same input, e.g. when building for another platform
+        LuaBytecodeCache cache = getBytecodeCache();
+        String key = LuaBytecodeCache.getKey(byteString, chunkName, getExecutableId(exe) + ":" + getShareId(), BYTECODE_FLAGS);
+        byte[] bytecode = cache.get(key);
+        if (bytecode == null) {
+            bytecode = runLuaJIT(task, exe, chunkName, byteString);
+            try {
+                cache.put(key, bytecode);
+            } catch (IOException e) {
+                // The cache is an optimization, e.g. a full disk shouldn't fail the build
+                logger.log(Level.WARNING, "Failed to cache the luajit bytecode of " + task.input(0).getPath(), e);
+            }
+        }
+        return bytecode;
+    }
+
+    private byte[] runLuaJIT(Task<Void> task, String exe, String chunkName, byte[] byteString) throws IOException, CompileExceptionError {
 
         java.io.FileOutputStream fo = null;
         RandomAccessFile rdr = null;
@@ -117,12 +211,7 @@ public abstract class LuaBuilder extends Builder<Void> {
             // If a script error occurs in runtime we want Lua to report the end of the filepath
             // associated with the chunk, since this is where the filename is visible.
             //
-            String chunkName = task.input(0).getPath();
-            if (chunkName.length() >= 59) {
-                chunkName = chunkName.substring(chunkName.length() - 59);
-            }
-            chunkName = "=" + chunkName;
-            ProcessBuilder pb = new ProcessBuilder(new String[] { Bob.getExe(Platform.getHostPlatform(), luajitExe), "-bgf", chunkName, inputFile.getAbsolutePath(), outputFile.getAbsolutePath() }).redirectErrorStream(true);
+            ProcessBuilder pb = new ProcessBuilder(new String[] { exe, BYTECODE_FLAGS, chunkName, inputFile.getAbsolutePath(), outputFile.getAbsolutePath() }).redirectErrorStream(true);
 
             java.util.Map<String, String> env = pb.environment();
             env.put("LUA_PATH", Bob.getPath("share/luajit/") + "/?.lua");
@@ -0,0 +1,179 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+// 
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+// 
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.pipeline;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Persistent cache of LuaJIT bytecode, shared by all builds of a project so
+ * that switching platform or variant doesn't compile the scripts again.
+ *
+ * Entries are keyed by the source, the chunk name, the luajit executable and
+ * the bytecode flags. An entry only holds the sha1 of its bytecode, which is
+ * stored separately under that name, so identical bytecode is stored once.
+ * The modification time of an entry is updated when it's used, and entries
+ * that haven't been used for a while are removed by {@link #prune(long)}.
+ */
+public class LuaBytecodeCache {
+
+    // Bump to invalidate all entries, e.g. if the bytecode writer changes
+    static final int VERSION = 1;
+
+    private final File keysDir;
+    private final File blobsDir;
+
+    public LuaBytecodeCache(File dir) {
+        this.keysDir = new File(dir, "keys");
+        this.blobsDir = new File(dir, "blobs");
+    }
+
+    private static MessageDigest createSha1() {
+        try {
+            return MessageDigest.getInstance("SHA1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void updateString(MessageDigest sha1, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        sha1.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+        sha1.update(bytes);
+    }
+
+    private static String sha1Hex(byte[] data) {
+        return new String(Hex.encodeHex(createSha1().digest(data)));
+    }
+
+    /**
+     * Create the key of a cache entry.
+     * @param source the source given to luajit
+     * @param chunkName chunk name passed to luajit
+     * @param executableId identity of the luajit executable and the lua files it loads, e.g. their sha1
+     * @param flags luajit bytecode flags
+     * @return the key
+     */
+    public static String getKey(byte[] source, String chunkName, String executableId, String flags) {
+        MessageDigest sha1 = createSha1();
+        sha1.update(ByteBuffer.allocate(4).putInt(VERSION).array());
+        sha1.update(createSha1().digest(source));
+        updateString(sha1, chunkName);
+        updateString(sha1, executableId);
+        updateString(sha1, flags);
+        return new String(Hex.encodeHex(sha1.digest()));
+    }
+
+    /**
+     * Get the bytecode of an entry.
+     * @param key entry key
+     * @return the bytecode, or null if there is no valid entry
+     * @throws IOException
+     */
+    public byte[] get(String key) throws IOException {
+        File keyFile = new File(keysDir, key);
+        if (!keyFile.isFile()) {
+            return null;
+        }
+        String blobName = FileUtils.readFileToString(keyFile, StandardCharsets.UTF_8).trim();
+        File blobFile = new File(blobsDir, blobName);
+        if (!blobFile.isFile()) {
+            return null;
+        }
+        byte[] bytecode = FileUtils.readFileToByteArray(blobFile);
+        // A damaged blob is a miss, and is written again when the entry is put
+        if (!sha1Hex(bytecode).equals(blobName)) {
+            blobFile.delete();
+            return null;
+        }
+        keyFile.setLastModified(System.currentTimeMillis());
+        return bytecode;
+    }
+
+    /**
+     * Store the bytecode of an entry.
+     * @param key entry key
+     * @param bytecode bytecode
+     * @throws IOException
+     */
+    public void put(String key, byte[] bytecode) throws IOException {
+        String blobName = sha1Hex(bytecode);
+        File blobFile = new File(blobsDir, blobName);
+        if (!blobFile.isFile() || blobFile.length() != bytecode.length) {
+            write(blobFile, bytecode);
+        }
+        write(new File(keysDir, key), blobName.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Remove the entries that haven't been used for a while, and the bytecode
+     * that is no longer used by any entry.
+     * @param maxAge remove entries not used for this many milliseconds
+     * @throws IOException
+     */
+    public void prune(long maxAge) throws IOException {
+        long expired = System.currentTimeMillis() - maxAge;
+        Set<String> usedBlobs = new HashSet<String>();
+        File[] keyFiles = keysDir.listFiles();
+        if (keyFiles != null) {
+            for (File keyFile : keyFiles) {
+                if (keyFile.lastModified() < expired) {
+                    keyFile.delete();
+                } else if (keyFile.isFile()) {
+                    try {
+                        usedBlobs.add(FileUtils.readFileToString(keyFile, StandardCharsets.UTF_8).trim());
+                    } catch (IOException e) {
+                        // Removed by another build
+                    }
+                }
+            }
+        }
+        File[] blobFiles = blobsDir.listFiles();
+        if (blobFiles != null) {
+            for (File blobFile : blobFiles) {
+                // Recent blobs might belong to an entry that another build is about to write
+                if (!usedBlobs.contains(blobFile.getName()) && blobFile.lastModified() < expired) {
+                    blobFile.delete();
+                }
+            }
+        }
+    }
+
+    // Several builds may share the cache, only complete files are moved into place
+    private static void write(File file, byte[] content) throws IOException {
+        file.getParentFile().mkdirs();
+        File tmpFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        try {
+            FileUtils.writeByteArrayToFile(tmpFile, content);
+            try {
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            tmpFile.delete();
+        }
+    }
+}
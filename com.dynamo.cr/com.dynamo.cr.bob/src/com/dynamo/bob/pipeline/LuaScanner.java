@@ -13,8 +13,9 @@
 package com.dynamo.bob.pipeline;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -23,40 +24,10 @@ import javax.vecmath.Vector3d;
 import javax.vecmath.Vector4d;
 
 import com.dynamo.bob.pipeline.LuaScanner.Property.Status;
-import com.dynamo.bob.util.MurmurHash;
 import com.dynamo.gameobject.proto.GameObject.PropertyType;
 
 public class LuaScanner {
 
-    private static Pattern multiLineCommentPattern = Pattern.compile("--\\[\\[.*?--\\]\\]",
-            Pattern.DOTALL | Pattern.MULTILINE);
-
-    private static String comment = "\\s*?(-{2,}.*?)?$";
-    private static String identifier = "[_\\p{L}][_\\p{L}0-9]*";
-    private static String beforeRequire = ".*?";
-    private static String afterRequire = "\\s*(,{0,1}|\\." + identifier + ",{0,1})" + comment;
-    
-    
-    private static Pattern requirePattern1 = Pattern.compile(beforeRequire + "require\\s*?\"(.*?)\"" + afterRequire,
-             Pattern.DOTALL | Pattern.MULTILINE);
-
-    private static Pattern requirePattern2 = Pattern.compile(beforeRequire + "require\\s*?\\(\\s*?\"(.*?)\"\\s*?\\)" + afterRequire,
-             Pattern.DOTALL | Pattern.MULTILINE);
-
-    private static Pattern requirePattern3 = Pattern.compile(beforeRequire + "require\\s*?'(.*?)'" + afterRequire,
-             Pattern.DOTALL | Pattern.MULTILINE);
-
-    /**
-     * Note: we need four different patterns here to match the same beginning and ending character for
-     * a string (eg " or '). We can't match on [\"']. If we do we'd have a false positive for the
-     * following line:
-     * 
-     * local s = 'require "should_not_match"'
-     */
-    private static Pattern requirePattern4 = Pattern.compile(beforeRequire + "require\\s*?\\(\\s*?'(.*?)'\\s*?\\)" + afterRequire,
-             Pattern.DOTALL | Pattern.MULTILINE);
-
-    private static Pattern propertyDeclPattern = Pattern.compile("go.property\\((.*?)\\);?(\\s*?--.*?)?$");
     private static Pattern propertyArgsPattern = Pattern.compile("[\"'](.*?)[\"']\\s*,(.*)");
 
     // http://docs.python.org/dev/library/re.html#simulating-scanf
@@ -71,58 +42,290 @@ public class LuaScanner {
     private static Pattern[] patterns = new Pattern[] { numPattern, hashPattern, urlPattern,
             vec3Pattern, vec4Pattern, quatPattern, boolPattern, resourcePattern};
 
+    private enum TokenType {
+        NAME,
+        NUMBER,
+        STRING,
+        LONG_STRING,
+        OPERATOR,
+        COMMENT
+    }
+
+    private static class Token {
+        final String source;
+        final TokenType type;
+        final int start;
+        final int end;
+        /// 0-based line of the first character
+        final int line;
+
+        Token(String source, TokenType type, int start, int end, int line) {
+            this.source = source;
+            this.type = type;
+            this.start = start;
+            this.end = end;
+            this.line = line;
+        }
+
+        boolean is(TokenType type, String text) {
+            return this.type == type && end - start == text.length() && source.startsWith(text, start);
+        }
+
+        boolean isTerminatedString() {
+            return type == TokenType.STRING && end - start >= 2 && source.charAt(end - 1) == source.charAt(start);
+        }
+    }
 
-    private static String stripSingleLineComments(String str) {
-        str = str.replace("\r", "");
-        StringBuffer sb = new StringBuffer();
-        String[] lines = str.split("\n");
-        for (String line : lines) {
-            String lineTrimmed = line.trim();
-            // Strip single line comments but preserve "pure" multi-line comments
-            // Note that ---[[ is a single line comment
-            // You can enable a block in Lua by adding a hyphen, e.g.
-            /*
-             ---[[
-             The block is enabled
-             --]]
-             */
-            if (!lineTrimmed.startsWith("--") || lineTrimmed.startsWith("--[[") || lineTrimmed.startsWith("--]]")) {
-                sb.append(line);
+    private static boolean isNameStart(char c) {
+        return c == '_' || Character.isLetter(c);
+    }
+
+    private static boolean isNamePart(char c) {
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // The level of a long bracket, [[ or [==[, starting at i, or -1 if there is none
+    private static int longBracketLevel(String str, int i) {
+        int n = str.length();
+        if (i >= n || str.charAt(i) != '[') {
+            return -1;
+        }
+        int j = i + 1;
+        while (j < n && str.charAt(j) == '=') {
+            ++j;
+        }
+        return j < n && str.charAt(j) == '[' ? j - i - 1 : -1;
+    }
+
+    // The end of the long bracket starting at i, or the end of the string if it isn't closed
+    private static int skipLongBracket(String str, int i, int level) {
+        int n = str.length();
+        for (int j = i + level + 2; j < n; ++j) {
+            if (str.charAt(j) == ']') {
+                int k = j + 1;
+                while (k < n && str.charAt(k) == '=') {
+                    ++k;
+                }
+                if (k < n && k - j - 1 == level && str.charAt(k) == ']') {
+                    return k + 1;
+                }
             }
-            sb.append("\n");
         }
-        return sb.toString();
+        return n;
     }
 
-    private static String stripComments(String str) {
-        str = stripSingleLineComments(str);
-        Matcher matcher = multiLineCommentPattern.matcher(str);
-
-        StringBuffer sb = new StringBuffer();
-        while (matcher.find()) {
-            // Replace comment with n lines in order to preserve line indices
-            int n = matcher.group().split("\n").length;
-            StringBuffer lines = new StringBuffer(n);
-            for (int i = 0; i < n-1; ++i) lines.append('\n');
-            matcher.appendReplacement(sb, lines.toString());
+    private static int countLines(String str, int start, int end) {
+        int lines = 0;
+        for (int i = start; i < end; ++i) {
+            if (str.charAt(i) == '\n') {
+                ++lines;
+            }
         }
-        matcher.appendTail(sb);
-        return sb.toString();
+        return lines;
     }
 
-    public static List<String> scan(String str) {
-        String strStripped = stripComments(str);
-        List<Pattern> requirePatterns = Arrays.asList(requirePattern1, requirePattern2, requirePattern3, requirePattern4);
+    /**
+     * Split Lua source into tokens in a single pass. Only the tokens needed to
+     * find requires and property declarations are told apart; operators are
+     * single characters, except for the dot operators.
+     */
+    private static List<Token> tokenize(String str, boolean keepComments) {
+        List<Token> tokens = new ArrayList<Token>();
+        int n = str.length();
+        int i = 0;
+        int line = 0;
+        // Like Lua, skip a first line starting with #, e.g. #!/usr/bin/lua
+        if (str.startsWith("#")) {
+            while (i < n && str.charAt(i) != '\n') {
+                ++i;
+            }
+        }
+        while (i < n) {
+            char c = str.charAt(i);
+            if (c == '\n') {
+                ++line;
+                ++i;
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                ++i;
+                continue;
+            }
 
+            int start = i;
+            int startLine = line;
+            TokenType type;
+            int level;
+            if (c == '-' && i + 1 < n && str.charAt(i + 1) == '-') {
+                type = TokenType.COMMENT;
+                level = longBracketLevel(str, i + 2);
+                if (level >= 0) {
+                    i = skipLongBracket(str, i + 2, level);
+                    line += countLines(str, start, i);
+                } else {
+                    while (i < n && str.charAt(i) != '\n' && str.charAt(i) != '\r') {
+                        ++i;
+                    }
+                }
+            } else if ((level = longBracketLevel(str, i)) >= 0) {
+                type = TokenType.LONG_STRING;
+                i = skipLongBracket(str, i, level);
+                line += countLines(str, start, i);
+            } else if (c == '"' || c == '\'') {
+                type = TokenType.STRING;
+                ++i;
+                while (i < n) {
+                    char d = str.charAt(i);
+                    if (d == c) {
+                        ++i;
+                        break;
+                    } else if (d == '\\' && i + 1 < n) {
+                        // An escaped line break continues the string on the next line
+                        if (str.charAt(i + 1) == '\n') {
+                            ++line;
+                        }
+                        i += 2;
+                    } else if (d == '\n') {
+                        // Unfinished string
+                        break;
+                    } else {
+                        ++i;
+                    }
+                }
+            } else if (isNameStart(c)) {
+                type = TokenType.NAME;
+                while (i < n && isNamePart(str.charAt(i))) {
+                    ++i;
+                }
+            } else if (isDigit(c) || (c == '.' && i + 1 < n && isDigit(str.charAt(i + 1)))) {
+                type = TokenType.NUMBER;
+                while (i < n) {
+                    char d = str.charAt(i);
+                    if ((d == '+' || d == '-') && "eEpP".indexOf(str.charAt(i - 1)) >= 0) {
+                        ++i;
+                    } else if (d == '.' || isNamePart(d)) {
+                        ++i;
+                    } else {
+                        break;
+                    }
+                }
+            } else if (c == '.') {
+                // ., .. or ...
+                type = TokenType.OPERATOR;
+                while (i < n && i - start < 3 && str.charAt(i) == '.') {
+                    ++i;
+                }
+            } else {
+                type = TokenType.OPERATOR;
+                ++i;
+            }
+
+            if (type != TokenType.COMMENT || keepComments) {
+                tokens.add(new Token(str, type, start, i, startLine));
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isOnLine(List<Token> tokens, int i, int line, TokenType type, String text) {
+        if (i >= tokens.size()) {
+            return false;
+        }
+        Token token = tokens.get(i);
+        return token.line == line && (text != null ? token.is(type, text) : token.type == type);
+    }
+
+    private static boolean isLastOnLine(List<Token> tokens, int i, int line) {
+        return i >= tokens.size() || tokens.get(i).line != line;
+    }
+
+    /*
+     * Matches
+     *   require "a", require 'a', require("a") or require('a')
+     * optionally followed by a field access and a comma, as in a table
+     * declaration, and nothing but a comment on the rest of the line.
+     * Returns the module name or null.
+     */
+    private static String parseRequire(List<Token> tokens, int i) {
+        int line = tokens.get(i).line;
+        Token module;
+        int j = i + 1;
+        if (isOnLine(tokens, j, line, TokenType.STRING, null)) {
+            module = tokens.get(j);
+            j += 1;
+        } else if (isOnLine(tokens, j, line, TokenType.OPERATOR, "(")
+                && isOnLine(tokens, j + 1, line, TokenType.STRING, null)
+                && isOnLine(tokens, j + 2, line, TokenType.OPERATOR, ")")) {
+            module = tokens.get(j + 1);
+            j += 3;
+        } else {
+            return null;
+        }
+        if (!module.isTerminatedString()) {
+            return null;
+        }
+        if (isOnLine(tokens, j, line, TokenType.OPERATOR, ".") && isOnLine(tokens, j + 1, line, TokenType.NAME, null)) {
+            j += 2;
+        }
+        if (isOnLine(tokens, j, line, TokenType.OPERATOR, ",")) {
+            j += 1;
+        }
+        if (!isLastOnLine(tokens, j, line)) {
+            return null;
+        }
+        return module.source.substring(module.start + 1, module.end - 1);
+    }
+
+    /*
+     * Matches a go.property(...) declaration on a line of its own, optionally
+     * followed by a semicolon. Returns the index of the closing parenthesis
+     * or -1.
+     */
+    private static int findPropertyDeclaration(List<Token> tokens, int i) {
+        Token first = tokens.get(i);
+        int line = first.line;
+        if (!first.is(TokenType.NAME, "go") || (i > 0 && tokens.get(i - 1).line == line)) {
+            return -1;
+        }
+        if (!isOnLine(tokens, i + 1, line, TokenType.OPERATOR, ".")
+                || !isOnLine(tokens, i + 2, line, TokenType.NAME, "property")
+                || !isOnLine(tokens, i + 3, line, TokenType.OPERATOR, "(")) {
+            return -1;
+        }
+        int depth = 0;
+        for (int j = i + 3; j < tokens.size() && tokens.get(j).line == line; ++j) {
+            Token token = tokens.get(j);
+            if (token.is(TokenType.OPERATOR, "(")) {
+                ++depth;
+            } else if (token.is(TokenType.OPERATOR, ")") && --depth == 0) {
+                int k = j + 1;
+                if (isOnLine(tokens, k, line, TokenType.OPERATOR, ";")) {
+                    ++k;
+                }
+                return isLastOnLine(tokens, k, line) ? j : -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find the modules required by a script.
+     * @param str Lua source
+     * @return the module names, in the order they are required
+     */
+    public static List<String> scan(String str) {
+        List<Token> tokens = tokenize(str, false);
         ArrayList<String> modules = new ArrayList<String>();
-        String[] lines = strStripped.split("\n");
-        for (String line : lines) {
-            line = line.trim();
-            // NOTE: At some point we should have a proper lua parser
-            for(Pattern requirePattern : requirePatterns) {
-                Matcher propMatcher = requirePattern.matcher(line);
-                if (propMatcher.matches()) {
-                    modules.add(propMatcher.group(1));
+        for (int i = 0; i < tokens.size(); ++i) {
+            // NOTE: Only the simple forms of require are found, not e.g. require(name)
+            if (tokens.get(i).is(TokenType.NAME, "require")) {
+                String module = parseRequire(tokens, i);
+                if (module != null) {
+                    modules.add(module);
                 }
             }
         }
@@ -154,51 +357,98 @@ public class LuaScanner {
         }
     }
 
+    /**
+     * Remove the comments and the property declarations from a script. The
+     * declarations are replaced by spaces and multi-line comments by line
+     * breaks, so that line numbers are kept.
+     * @param str Lua source
+     * @return the stripped source
+     */
     public static String stripProperties(String str) {
-        str = stripComments(str);
-        str = str.replace("\r", "");
-        StringBuffer sb = new StringBuffer();
-        String[] lines = str.split("\n");
-        for (String line : lines) {
-            Matcher propDeclMatcher = propertyDeclPattern.matcher(line.trim());
-            if (!propDeclMatcher.matches()) {
-                sb.append(line);
-            } else {
-                for (int i = 0; i < line.length(); ++i) {
-                    sb.append(" ");
+        List<Token> tokens = tokenize(str, true);
+
+        // Declarations are found among the code tokens only
+        List<Token> code = new ArrayList<Token>(tokens.size());
+        for (Token token : tokens) {
+            if (token.type != TokenType.COMMENT) {
+                code.add(token);
+            }
+        }
+        Map<Integer, Integer> declarations = new HashMap<Integer, Integer>();
+        for (int i = 0; i < code.size(); ++i) {
+            int end = findPropertyDeclaration(code, i);
+            if (end >= 0) {
+                if (isOnLine(code, end + 1, code.get(i).line, TokenType.OPERATOR, ";")) {
+                    ++end;
                 }
+                declarations.put(code.get(i).start, code.get(end).end);
+                i = end;
             }
-            sb.append("\n");
         }
+
+        StringBuilder sb = new StringBuilder(str.length());
+        int pos = 0;
+        for (Token token : tokens) {
+            if (token.start < pos) {
+                // Part of a removed declaration
+                continue;
+            }
+            Integer declarationEnd = declarations.get(token.start);
+            if (declarationEnd != null) {
+                sb.append(str, pos, token.start);
+                for (int i = token.start; i < declarationEnd; ++i) {
+                    sb.append(' ');
+                }
+                pos = declarationEnd;
+            } else if (token.type == TokenType.COMMENT) {
+                sb.append(str, pos, token.start);
+                int lines = countLines(str, token.start, token.end);
+                if (lines > 0) {
+                    for (int i = 0; i < lines; ++i) {
+                        sb.append('\n');
+                    }
+                } else if (str.startsWith("--[", token.start) && longBracketLevel(str, token.start + 2) >= 0) {
+                    // Don't join the tokens on either side of the comment
+                    sb.append(' ');
+                }
+                pos = token.end;
+            }
+        }
+        sb.append(str, pos, str.length());
         return sb.toString();
     }
 
+    /**
+     * Find the property declarations, go.property(name, value), of a script.
+     * Only declarations on lines of their own are found.
+     * @param str Lua source
+     * @return the properties, in the order they are declared
+     */
     public static List<Property> scanProperties(String str) {
-        String strStripped = stripComments(str);
+        List<Token> tokens = tokenize(str, false);
 
         List<Property> properties = new ArrayList<Property>();
-        String[] lines = strStripped.split("\n");
-        int l = 0; // 0-based line number
-        for (String line : lines) {
-            line = line.trim();
-            Matcher propDeclMatcher = propertyDeclPattern.matcher(line);
-            if (propDeclMatcher.matches()) {
-                Property property = new Property(l);
-                Matcher propArgsMatcher = propertyArgsPattern.matcher(propDeclMatcher.group(1).trim());
-                if (!propArgsMatcher.matches()) {
-                    property.status = Status.INVALID_ARGS;
+        for (int i = 0; i < tokens.size(); ++i) {
+            int end = findPropertyDeclaration(tokens, i);
+            if (end < 0) {
+                continue;
+            }
+            Property property = new Property(tokens.get(i).line);
+            String args = str.substring(tokens.get(i + 3).end, tokens.get(end).start);
+            Matcher propArgsMatcher = propertyArgsPattern.matcher(args.trim());
+            if (!propArgsMatcher.matches()) {
+                property.status = Status.INVALID_ARGS;
+            } else {
+                property.name = propArgsMatcher.group(1).trim();
+                property.rawValue = propArgsMatcher.group(2).trim();
+                if (parseProperty(property.rawValue, property)) {
+                    property.status = Status.OK;
                 } else {
-                    property.name = propArgsMatcher.group(1).trim();
-                    property.rawValue = propArgsMatcher.group(2).trim();
-                    if (parseProperty(property.rawValue, property)) {
-                        property.status = Status.OK;
-                    } else {
-                        property.status = Status.INVALID_VALUE;
-                    }
+                    property.status = Status.INVALID_VALUE;
                 }
-                properties.add(property);
             }
-            ++l;
+            properties.add(property);
+            i = end;
         }
         return properties;
     }
@@ -25,6 +25,7 @@ import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.Locale;
 import java.util.regex.Pattern;
 import java.util.ArrayList;
@@ -67,6 +68,11 @@ public abstract class ShaderProgramBuilder extends Builder<Void> {
         return taskBuilder.build();
     }
 
+    @Override
+    public void signature(MessageDigest digest) {
+        platformSignature(digest);
+    }
+
     abstract void writeExtraDirectives(PrintWriter writer);
 
     private ShaderDesc.Shader.Builder tranformGLSL(ByteArrayInputStream is, IResource resource, String resourceOutput, String platform, boolean isDebug)  throws IOException, CompileExceptionError {
@@ -24,6 +24,10 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import javax.vecmath.Point2d;
 import javax.vecmath.Point3d;
@@ -278,7 +282,7 @@ public class SpineSceneBuilder extends Builder<Void> {
         }
     }
 
-    private static void animationToDDF(SpineSceneUtil scene, String id, RigUtil.Animation animation, AnimationSet.Builder animSetBuilder, double sampleRate) {
+    private static RigAnimation.Builder animationToDDF(SpineSceneUtil scene, String id, RigUtil.Animation animation, double sampleRate) {
         RigAnimation.Builder animBuilder = RigAnimation.newBuilder();
         animBuilder.setId(MurmurHash.hash64(id));
         animBuilder.setDuration((float)animation.duration);
@@ -352,7 +356,37 @@ public class SpineSceneBuilder extends Builder<Void> {
             animBuilder.addEventTracks(builder);
         }
 
-        animSetBuilder.addAnimations(animBuilder);
+        return animBuilder;
+    }
+
+    /**
+     * Sample the animations of a scene. The animations only read the scene, so
+     * they are sampled in parallel on the common pool, but added in the same order as
+     * they are iterated.
+     */
+    private static void animationsToDDF(final SpineSceneUtil scene, AnimationSet.Builder animSetBuilder, final double sampleRate) throws IOException {
+        List<ForkJoinTask<RigAnimation.Builder>> tasks = new ArrayList<ForkJoinTask<RigAnimation.Builder>>();
+        for (final Map.Entry<String, RigUtil.Animation> entry : scene.animations.entrySet()) {
+            tasks.add(ForkJoinPool.commonPool().submit(new Callable<RigAnimation.Builder>() {
+                @Override
+                public RigAnimation.Builder call() {
+                    return animationToDDF(scene, entry.getKey(), entry.getValue(), sampleRate);
+                }
+            }));
+        }
+        for (ForkJoinTask<RigAnimation.Builder> task : tasks) {
+            try {
+                animSetBuilder.addAnimations(task.get());
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new RuntimeException(cause);
+            }
+        }
     }
 
     private static class MeshIndex {
@@ -424,9 +458,7 @@ public class SpineSceneBuilder extends Builder<Void> {
 
             // AnimationSet
             AnimationSet.Builder animSetBuilder = AnimationSet.newBuilder();
-            for (Map.Entry<String, RigUtil.Animation> entry : scene.animations.entrySet()) {
-                animationToDDF(scene, entry.getKey(), entry.getValue(), animSetBuilder, builder.getSampleRate());
-            }
+            animationsToDDF(scene, animSetBuilder, builder.getSampleRate());
             out = new ByteArrayOutputStream(64 * 1024);
             animSetBuilder.build().writeTo(out);
             out.close();
@@ -12,9 +12,10 @@
 
 package com.dynamo.bob.pipeline;
 
-import java.io.ByteArrayInputStream;
+import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.security.MessageDigest;
 
 import com.dynamo.bob.Builder;
 import com.dynamo.bob.BuilderParams;
@@ -23,6 +24,7 @@ import com.dynamo.bob.Project;
 import com.dynamo.bob.Task;
 import com.dynamo.bob.Task.TaskBuilder;
 import com.dynamo.bob.fs.IResource;
+import com.dynamo.bob.util.ImageCache;
 import com.dynamo.bob.util.TextureUtil;
 import com.dynamo.graphics.proto.Graphics.TextureImage;
 import com.dynamo.graphics.proto.Graphics.TextureProfile;
@@ -48,17 +50,28 @@ public class TextureBuilder extends Builder<Void> {
         return taskBuilder.build();
     }
 
+    @Override
+    public void signature(MessageDigest digest) {
+        // The texture profiles are filtered by the target platform
+        if (this.project.getProjectProperties().getStringValue("graphics", "texture_profiles") != null) {
+            platformSignature(digest);
+        }
+    }
+
     @Override
     public void build(Task<Void> task) throws CompileExceptionError,
             IOException {
 
         TextureProfile texProfile = TextureUtil.getTextureProfileByPath(this.project.getTextureProfiles(), task.input(0).getPath());
 
-        ByteArrayInputStream is = new ByteArrayInputStream(task.input(0).getContent());
+        BufferedImage image = ImageCache.read(task.input(0));
+        if (image == null) {
+            throw new CompileExceptionError(task.input(0), -1, "Unknown texture format.");
+        }
         TextureImage texture;
         try {
             boolean compress = project.option("texture-compression", "false").equals("true");
-            texture = TextureGenerator.generate(is, texProfile, compress);
+            texture = TextureGenerator.generate(image, texProfile, compress);
         } catch (TextureGeneratorException e) {
             throw new CompileExceptionError(task.input(0), -1, e.getMessage(), e);
         }
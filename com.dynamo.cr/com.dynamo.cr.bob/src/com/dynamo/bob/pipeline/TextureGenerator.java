@@ -22,12 +22,15 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.EnumSet;
 
-import javax.imageio.ImageIO;
+import org.apache.commons.io.IOUtils;
 
 import com.dynamo.bob.TexcLibrary;
 import com.dynamo.bob.TexcLibrary.ColorSpace;
@@ -36,6 +39,8 @@ import com.dynamo.bob.TexcLibrary.PixelFormat;
 import com.dynamo.bob.TexcLibrary.CompressionLevel;
 import com.dynamo.bob.TexcLibrary.CompressionType;
 import com.dynamo.bob.TexcLibrary.FlipAxis;
+import com.dynamo.bob.util.ImageCache;
+import com.dynamo.bob.util.RGBAImage;
 import com.dynamo.bob.util.TextureUtil;
 import com.dynamo.graphics.proto.Graphics.PlatformProfile;
 import com.dynamo.graphics.proto.Graphics.TextureImage;
@@ -150,17 +155,12 @@ public class TextureGenerator {
         return targetFormat;
     }
 
-    private static TextureImage.Image generateFromColorAndFormat(BufferedImage image, ColorModel colorModel, TextureFormat textureFormat, TextureFormatAlternative.CompressionLevel compressionLevel, TextureImage.CompressionType compressionType, boolean generateMipMaps, int maxTextureSize, boolean compress, boolean premulAlpha, EnumSet<FlipAxis> flipAxis) throws TextureGeneratorException, IOException {
-
+    // Read back the pixels of an ABGR or BGR image into a direct RGBA buffer that can be handed to TEXC_Create
+    private static ByteBuffer readPixels(BufferedImage image) {
         int width = image.getWidth();
         int height = image.getHeight();
-        int componentCount = colorModel.getNumComponents();
-        Integer pixelFormat = PixelFormat.R8G8B8A8;
-        int texcCompressionLevel;
-        int texcCompressionType;
-
-        int dataSize = width * height * 4;
-        ByteBuffer buffer = ByteBuffer.allocateDirect(dataSize);
+        int bands = image.getRaster().getNumBands();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(width * height * 4);
 
         // On Linux we run out of memory while trying to load a 4K texture.
         // We split the pixel read out into blocks with 512 scan lines per block.
@@ -168,15 +168,43 @@ public class TextureGenerator {
 
             int count = Math.min(height - y, 512);
 
-            int[] rasterData = new int[count*width*4];
+            int[] rasterData = new int[count*width*bands];
             image.getRaster().getPixels(0, y, width, count, rasterData);
-            for (int i = 0; i < rasterData.length; ++i) {
-                buffer.put((byte) (rasterData[i] & 0xff));
+            if (bands == 4) {
+                for (int i = 0; i < rasterData.length; ++i) {
+                    buffer.put((byte) (rasterData[i] & 0xff));
+                }
+            } else {
+                // Opaque images are padded with alpha
+                for (int i = 0; i < rasterData.length; i += 3) {
+                    buffer.put((byte) (rasterData[i] & 0xff));
+                    buffer.put((byte) (rasterData[i + 1] & 0xff));
+                    buffer.put((byte) (rasterData[i + 2] & 0xff));
+                    buffer.put((byte) 0xff);
+                }
             }
         }
 
         buffer.flip();
-        Pointer texture = TexcLibrary.TEXC_Create(width, height, PixelFormat.R8G8B8A8, ColorSpace.SRGB, buffer);
+        return buffer;
+    }
+
+    // Get the levels of a texture, shared by all formats with the same size and settings
+    private static List<ByteBuffer> getMipMaps(Map<String, List<ByteBuffer>> mipMapCache, ByteBuffer pixels, int width, int height, int newWidth, int newHeight, boolean generateMipMaps, boolean premulAlpha) {
+        String key = String.format("%dx%d_%b_%b", newWidth, newHeight, generateMipMaps, premulAlpha);
+        List<ByteBuffer> mipMaps = mipMapCache.get(key);
+        if (mipMaps == null) {
+            mipMaps = TextureResampler.generate(pixels, width, height, newWidth, newHeight, generateMipMaps, premulAlpha);
+            mipMapCache.put(key, mipMaps);
+        }
+        return mipMaps;
+    }
+
+    private static TextureImage.Image generateFromColorAndFormat(ByteBuffer pixels, int width, int height, TextureFormat textureFormat, TextureFormatAlternative.CompressionLevel compressionLevel, TextureImage.CompressionType compressionType, boolean generateMipMaps, int maxTextureSize, boolean compress, boolean premulAlpha, EnumSet<FlipAxis> flipAxis, Map<String, List<ByteBuffer>> mipMapCache) throws TextureGeneratorException, IOException {
+
+        Integer pixelFormat = PixelFormat.R8G8B8A8;
+        int texcCompressionLevel;
+        int texcCompressionType;
 
         // convert from protobuf specified compressionlevel to texc int
         texcCompressionLevel = compressionLevelLUT.get(compressionLevel);
@@ -203,131 +231,117 @@ public class TextureGenerator {
             throw new TextureGeneratorException("Invalid texture format.");
         }
 
-        try {
+        int newWidth  = width;
+        int newHeight = height;
 
-            int newWidth  = image.getWidth();
-            int newHeight = image.getHeight();
-
-            newWidth = TextureUtil.closestPOT(newWidth);
-            newHeight = TextureUtil.closestPOT(newHeight);
-
-            // Shrink sides until width & height fit max texture size specified in tex profile
-            if (maxTextureSize > 0) {
-                while (newWidth > maxTextureSize || newHeight > maxTextureSize) {
-                    newWidth = Math.max(newWidth / 2, 1);
-                    newHeight = Math.max(newHeight / 2, 1);
-                }
+        newWidth = TextureUtil.closestPOT(newWidth);
+        newHeight = TextureUtil.closestPOT(newHeight);
 
-                assert(newWidth <= maxTextureSize && newHeight <= maxTextureSize);
+        // Shrink sides until width & height fit max texture size specified in tex profile
+        if (maxTextureSize > 0) {
+            while (newWidth > maxTextureSize || newHeight > maxTextureSize) {
+                newWidth = Math.max(newWidth / 2, 1);
+                newHeight = Math.max(newHeight / 2, 1);
             }
 
-            // PVR textures need to be square on iOS
-            if ((newHeight != newWidth) &&
-                (textureFormat == TextureFormat.TEXTURE_FORMAT_RGB_PVRTC_4BPPV1 ||
-                textureFormat == TextureFormat.TEXTURE_FORMAT_RGBA_PVRTC_4BPPV1 ||
-                textureFormat == TextureFormat.TEXTURE_FORMAT_RGB_PVRTC_2BPPV1 ||
-                textureFormat == TextureFormat.TEXTURE_FORMAT_RGBA_PVRTC_2BPPV1)) {
-
-                Logger logger = Logger.getLogger(TextureGenerator.class.getName());
-                logger.log(Level.WARNING, "PVR compressed texture is not square and will be resized.");
+            assert(newWidth <= maxTextureSize && newHeight <= maxTextureSize);
+        }
 
-                newWidth = Math.max(newWidth, newHeight);
-                newHeight = newWidth;
-            }
+        // PVR textures need to be square on iOS
+        if ((newHeight != newWidth) &&
+            (textureFormat == TextureFormat.TEXTURE_FORMAT_RGB_PVRTC_4BPPV1 ||
+            textureFormat == TextureFormat.TEXTURE_FORMAT_RGBA_PVRTC_4BPPV1 ||
+            textureFormat == TextureFormat.TEXTURE_FORMAT_RGB_PVRTC_2BPPV1 ||
+            textureFormat == TextureFormat.TEXTURE_FORMAT_RGBA_PVRTC_2BPPV1)) {
 
-            // Premultiply before scale so filtering cannot introduce colour artefacts.
-            if (premulAlpha && !ColorModel.getRGBdefault().isAlphaPremultiplied()) {
-                if (!TexcLibrary.TEXC_PreMultiplyAlpha(texture)) {
-                    throw new TextureGeneratorException("could not premultiply alpha");
-                }
-            }
+            Logger logger = Logger.getLogger(TextureGenerator.class.getName());
+            logger.log(Level.WARNING, "PVR compressed texture is not square and will be resized.");
 
-            if (width != newWidth || height != newHeight) {
-                if (!TexcLibrary.TEXC_Resize(texture, newWidth, newHeight)) {
-                    throw new TextureGeneratorException("could not resize texture to POT");
-                }
-            }
+            newWidth = Math.max(newWidth, newHeight);
+            newHeight = newWidth;
+        }
 
-            if (generateMipMaps) {
-                if (!TexcLibrary.TEXC_GenMipMaps(texture)) {
-                    throw new TextureGeneratorException("could not generate mip-maps");
+        // Resizing and mip maps are done by the resampler, which premultiplies before filtering so
+        // that filtering cannot introduce colour artefacts. Texc transcodes each level separately.
+        premulAlpha = premulAlpha && !ColorModel.getRGBdefault().isAlphaPremultiplied();
+        List<ByteBuffer> mipMaps = getMipMaps(mipMapCache, pixels, width, height, newWidth, newHeight, generateMipMaps, premulAlpha);
+
+        TextureImage.Image.Builder raw = TextureImage.Image.newBuilder().setWidth(newWidth).setHeight(newHeight)
+                .setOriginalWidth(width).setOriginalHeight(height).setFormat(textureFormat);
+
+        List<ByteString> data = new ArrayList<ByteString>();
+        int compressionFlags = 0;
+        int w = newWidth;
+        int h = newHeight;
+        int offset = 0;
+        for (ByteBuffer mipMap : mipMaps) {
+            Pointer texture = TexcLibrary.TEXC_Create(w, h, PixelFormat.R8G8B8A8, ColorSpace.SRGB, mipMap.duplicate());
+            try {
+                // Loop over all axis that should be flipped.
+                for (FlipAxis flip : flipAxis) {
+                    if (!TexcLibrary.TEXC_Flip(texture, flip.getValue())) {
+                        throw new TextureGeneratorException("could not flip on " + flip.toString());
+                    }
                 }
-            }
 
-            // Loop over all axis that should be flipped.
-            for (FlipAxis flip : flipAxis) {
-                if (!TexcLibrary.TEXC_Flip(texture, flip.getValue())) {
-                    throw new TextureGeneratorException("could not flip on " + flip.toString());
+                if (!TexcLibrary.TEXC_Transcode(texture, pixelFormat, ColorSpace.SRGB, texcCompressionLevel, texcCompressionType, DitherType.DT_DEFAULT)) {
+                    throw new TextureGeneratorException("could not transcode");
                 }
-            }
 
-            if (!TexcLibrary.TEXC_Transcode(texture, pixelFormat, ColorSpace.SRGB, texcCompressionLevel, texcCompressionType, DitherType.DT_DEFAULT)) {
-                throw new TextureGeneratorException("could not transcode");
-            }
+                int bufferSize = TexcLibrary.TEXC_GetTotalDataSize(texture);
+                ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+                int dataSize = TexcLibrary.TEXC_GetData(texture, buffer, bufferSize);
+                buffer.limit(dataSize);
+                data.add(ByteString.copyFrom(buffer));
 
-            int bufferSize = TexcLibrary.TEXC_GetTotalDataSize(texture);
-            buffer = ByteBuffer.allocateDirect(bufferSize);
-            dataSize = TexcLibrary.TEXC_GetData(texture, buffer, bufferSize);
-            buffer.limit(dataSize);
-
-            TextureImage.Image.Builder raw = TextureImage.Image.newBuilder().setWidth(newWidth).setHeight(newHeight)
-                    .setOriginalWidth(width).setOriginalHeight(height).setFormat(textureFormat);
-
-            int w = newWidth;
-            int h = newHeight;
-            int offset = 0;
-            int mipMap = 0;
-            while (w != 0 || h != 0) {
-                w = Math.max(w, 1);
-                h = Math.max(h, 1);
                 raw.addMipMapOffset(offset);
-                int size = TexcLibrary.TEXC_GetDataSizeUncompressed(texture, mipMap);
+                int size = TexcLibrary.TEXC_GetDataSizeUncompressed(texture, 0);
                 raw.addMipMapSize(size);
-                int size_compressed = TexcLibrary.TEXC_GetDataSizeCompressed(texture, mipMap);
+                int size_compressed = TexcLibrary.TEXC_GetDataSizeCompressed(texture, 0);
                 if(size_compressed != 0) {
                     size = size_compressed;
                 }
                 raw.addMipMapSizeCompressed(size_compressed);
                 offset += size;
-                w >>= 1;
-                h >>= 1;
-                mipMap += 1;
-
-                if (!generateMipMaps) // Run section only once for non-mipmaps
-                    break;
+                compressionFlags |= TexcLibrary.TEXC_GetCompressionFlags(texture);
+            } finally {
+                TexcLibrary.TEXC_Destroy(texture);
             }
+            w = Math.max(w / 2, 1);
+            h = Math.max(h / 2, 1);
+        }
 
-            raw.setData(ByteString.copyFrom(buffer));
-            raw.setFormat(textureFormat);
-            raw.setCompressionType(compressionType);
-            raw.setCompressionFlags(TexcLibrary.TEXC_GetCompressionFlags(texture));
+        raw.setData(ByteString.copyFrom(data));
+        raw.setFormat(textureFormat);
+        raw.setCompressionType(compressionType);
+        raw.setCompressionFlags(compressionFlags);
 
-            return raw.build();
+        return raw.build();
+    }
 
+    private static BufferedImage readImage(InputStream inputStream) throws IOException {
+        try {
+            return ImageCache.decode(IOUtils.toByteArray(inputStream));
         } finally {
-            TexcLibrary.TEXC_Destroy(texture);
+            inputStream.close();
         }
-
     }
 
     // For convenience, some methods without the flipAxis and/or compress argument.
     // It will always try to flip on Y axis since this is the byte order that OpenGL expects for regular/most textures,
     // for those methods without this argument.
     public static TextureImage generate(InputStream inputStream) throws TextureGeneratorException, IOException {
-        BufferedImage origImage = ImageIO.read(inputStream);
-        inputStream.close();
+        BufferedImage origImage = readImage(inputStream);
         return generate(origImage, null, false, EnumSet.of(FlipAxis.FLIP_AXIS_Y));
     }
 
     public static TextureImage generate(InputStream inputStream, TextureProfile texProfile) throws TextureGeneratorException, IOException {
-        BufferedImage origImage = ImageIO.read(inputStream);
-        inputStream.close();
+        BufferedImage origImage = readImage(inputStream);
         return generate(origImage, texProfile, false, EnumSet.of(FlipAxis.FLIP_AXIS_Y));
     }
 
     public static TextureImage generate(InputStream inputStream, TextureProfile texProfile, boolean compress) throws TextureGeneratorException, IOException {
-        BufferedImage origImage = ImageIO.read(inputStream);
-        inputStream.close();
+        BufferedImage origImage = readImage(inputStream);
         if (origImage == null) {
             throw new TextureGeneratorException("Unknown texture format.");
         }
@@ -335,8 +349,7 @@ public class TextureGenerator {
     }
 
     public static TextureImage generate(InputStream inputStream, TextureProfile texProfile, boolean compress, EnumSet<FlipAxis> flipAxis) throws TextureGeneratorException, IOException {
-        BufferedImage origImage = ImageIO.read(inputStream);
-        inputStream.close();
+        BufferedImage origImage = readImage(inputStream);
         return generate(origImage, texProfile, compress, flipAxis);
     }
 
@@ -347,9 +360,9 @@ public class TextureGenerator {
     // Main TextureGenerator.generate method that has all required arguments and the expected BufferedImage type for origImage.
     public static TextureImage generate(BufferedImage origImage, TextureProfile texProfile, boolean compress, EnumSet<FlipAxis> flipAxis) throws TextureGeneratorException, IOException {
         // Convert image into readable format
-        // Always convert to ABGR since the texc lib demands that for resizing etc
+        // The texc lib demands RGBA for resizing etc, which readPixels can produce from ABGR and BGR images
         BufferedImage image;
-        if (origImage.getType() != BufferedImage.TYPE_4BYTE_ABGR) {
+        if (origImage.getType() != BufferedImage.TYPE_4BYTE_ABGR && origImage.getType() != BufferedImage.TYPE_3BYTE_BGR) {
             image = convertImage(origImage, BufferedImage.TYPE_4BYTE_ABGR);
         } else {
             image = origImage;
@@ -358,7 +371,52 @@ public class TextureGenerator {
         // Setup texture format and settings
         ColorModel colorModel = origImage.getColorModel();
         int componentCount = colorModel.getNumComponents();
+        return generate(readPixels(image), image.getWidth(), image.getHeight(), componentCount, texProfile, compress, flipAxis);
+    }
+
+    public static TextureImage generate(RGBAImage image, TextureProfile texProfile, boolean compress) throws TextureGeneratorException, IOException {
+        return generate(image, texProfile, compress, EnumSet.of(FlipAxis.FLIP_AXIS_Y));
+    }
+
+    // Generate from pixels that are already laid out for texc, e.g. an atlas composited by TextureSetGenerator.
+    // No intermediate BufferedImage or read back is needed. If the image is already stored bottom-up we don't
+    // need texc to flip it on the Y axis.
+    public static TextureImage generate(RGBAImage image, TextureProfile texProfile, boolean compress, EnumSet<FlipAxis> flipAxis) throws TextureGeneratorException, IOException {
+        EnumSet<FlipAxis> axis = flipAxis.clone();
+        if (image.isFlippedY()) {
+            if (axis.contains(FlipAxis.FLIP_AXIS_Y)) {
+                axis.remove(FlipAxis.FLIP_AXIS_Y);
+            } else {
+                axis.add(FlipAxis.FLIP_AXIS_Y);
+            }
+        }
+        return generate(image.getData(), image.getWidth(), image.getHeight(), 4, texProfile, compress, axis);
+    }
+
+    // Generate a texture array with one image per page, e.g. for a multi-page atlas.
+    // A single page results in a regular 2D texture.
+    public static TextureImage generate(List<RGBAImage> pages, TextureProfile texProfile, boolean compress) throws TextureGeneratorException, IOException {
+        if (pages.size() == 1) {
+            return generate(pages.get(0), texProfile, compress);
+        }
+
+        TextureImage[] textures = new TextureImage[pages.size()];
+        for (int i = 0; i < textures.length; ++i) {
+            textures[i] = generate(pages.get(i), texProfile, compress);
+            for (TextureImage.Image image : textures[i].getAlternativesList()) {
+                // The pages are laid out with a shared mip map offset, which requires identical sizes
+                if (image.getCompressionType() != TextureImage.CompressionType.COMPRESSION_TYPE_DEFAULT) {
+                    throw new TextureGeneratorException("WebP compression is not supported for texture arrays");
+                }
+            }
+        }
+        return TextureUtil.createCombinedTextureImage(textures, Type.TYPE_2D_ARRAY);
+    }
+
+    private static TextureImage generate(ByteBuffer pixels, int width, int height, int componentCount, TextureProfile texProfile, boolean compress, EnumSet<FlipAxis> flipAxis) throws TextureGeneratorException, IOException {
         TextureImage.Builder textureBuilder = TextureImage.newBuilder();
+        // The levels are generated once and reused for every format and platform
+        Map<String, List<ByteBuffer>> mipMapCache = new HashMap<String, List<ByteBuffer>>();
 
         if (texProfile != null) {
 
@@ -375,7 +433,7 @@ public class TextureGenerator {
                     textureFormat = pickOptimalFormat(componentCount, textureFormat);
 
                     try {
-                        TextureImage.Image raw = generateFromColorAndFormat(image, colorModel, textureFormat, compressionLevel, compressionType, platformProfile.getMipmaps(), platformProfile.getMaxTextureSize(), compress, platformProfile.getPremultiplyAlpha(), flipAxis);
+                        TextureImage.Image raw = generateFromColorAndFormat(pixels, width, height, textureFormat, compressionLevel, compressionType, platformProfile.getMipmaps(), platformProfile.getMaxTextureSize(), compress, platformProfile.getPremultiplyAlpha(), flipAxis, mipMapCache);
                         textureBuilder.addAlternatives(raw);
                     } catch (TextureGeneratorException e) {
                         throw e;
@@ -395,7 +453,7 @@ public class TextureGenerator {
 
             // Guess texture format based on number color components of input image
             TextureFormat textureFormat = pickOptimalFormat(componentCount, TextureFormat.TEXTURE_FORMAT_RGBA);
-            TextureImage.Image raw = generateFromColorAndFormat(image, colorModel, textureFormat, TextureFormatAlternative.CompressionLevel.NORMAL, TextureImage.CompressionType.COMPRESSION_TYPE_DEFAULT, true, 0, false, true, flipAxis);
+            TextureImage.Image raw = generateFromColorAndFormat(pixels, width, height, textureFormat, TextureFormatAlternative.CompressionLevel.NORMAL, TextureImage.CompressionType.COMPRESSION_TYPE_DEFAULT, true, 0, false, true, flipAxis, mipMapCache);
             textureBuilder.addAlternatives(raw);
             textureBuilder.setCount(1);
 
@@ -0,0 +1,397 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+// 
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+// 
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.pipeline;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Resizes 8-bit sRGB RGBA images and generates their mip maps, replacing the
+ * linear filter of texc. Filtering is done with a separable Lanczos filter in
+ * linear color space, with the color weighted by alpha so that the color of
+ * transparent pixels doesn't bleed into the visible ones.
+ *
+ * Both passes are done together in bands of rows, and the source pixels are
+ * converted one row at a time, so the only full size float image is the
+ * level being generated.
+ */
+public class TextureResampler {
+
+    // Lobes of the Lanczos filter
+    private static final int LANCZOS_RADIUS = 3;
+    // Images smaller than this are not worth splitting over several threads
+    private static final int PARALLEL_THRESHOLD = 64 * 64;
+    // Bounds the rows filtered horizontally at once for each band
+    private static final int MAX_BAND_ROWS = 64;
+
+    private static final float[] srgbToLinear = new float[256];
+    // sRGB values in the range [0, 255] for linear values in steps of 1/LINEAR_STEPS
+    private static final int LINEAR_STEPS = 65535;
+    private static final float[] linearToSrgb = new float[LINEAR_STEPS + 1];
+    static {
+        for (int i = 0; i < 256; ++i) {
+            double c = i / 255.0;
+            srgbToLinear[i] = (float) (c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4));
+        }
+        for (int i = 0; i <= LINEAR_STEPS; ++i) {
+            double c = (double) i / LINEAR_STEPS;
+            linearToSrgb[i] = (float) (255.0 * (c <= 0.0031308 ? c * 12.92 : 1.055 * Math.pow(c, 1.0 / 2.4) - 0.055));
+        }
+    }
+
+    /**
+     * Rows of an image with float channels per pixel. The first three channels
+     * are the linear color multiplied by alpha, the fourth is alpha. Images that
+     * won't be premultiplied also keep the unweighted linear color in the last
+     * three channels, as the color of fully transparent areas.
+     */
+    private interface Source {
+        int getWidth();
+        int getHeight();
+        int getChannels();
+        void getRow(int y, float[] row, int offset);
+    }
+
+    private static class FloatImage implements Source {
+        final int width;
+        final int height;
+        final int channels;
+        final float[] data;
+
+        FloatImage(int width, int height, int channels) {
+            this.width = width;
+            this.height = height;
+            this.channels = channels;
+            this.data = new float[width * height * channels];
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public int getChannels() {
+            return channels;
+        }
+
+        @Override
+        public void getRow(int y, float[] row, int offset) {
+            int rowSize = width * channels;
+            System.arraycopy(data, y * rowSize, row, offset, rowSize);
+        }
+    }
+
+    /**
+     * The 8-bit sRGB source pixels, converted a row at a time when read.
+     */
+    private static class PixelSource implements Source {
+        final ByteBuffer pixels;
+        final int width;
+        final int height;
+        final int channels;
+
+        PixelSource(ByteBuffer pixels, int width, int height, int channels) {
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+            this.channels = channels;
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public int getChannels() {
+            return channels;
+        }
+
+        @Override
+        public void getRow(int y, float[] row, int offset) {
+            int src = y * width * 4;
+            int dst = offset;
+            for (int x = 0; x < width; ++x, src += 4, dst += channels) {
+                float r = srgbToLinear[pixels.get(src + 0) & 0xff];
+                float g = srgbToLinear[pixels.get(src + 1) & 0xff];
+                float b = srgbToLinear[pixels.get(src + 2) & 0xff];
+                float a = (pixels.get(src + 3) & 0xff) / 255.0f;
+                row[dst + 0] = r * a;
+                row[dst + 1] = g * a;
+                row[dst + 2] = b * a;
+                row[dst + 3] = a;
+                if (channels > 4) {
+                    row[dst + 4] = r;
+                    row[dst + 5] = g;
+                    row[dst + 6] = b;
+                }
+            }
+        }
+    }
+
+    /**
+     * The source pixels contributing to each destination pixel along one axis.
+     */
+    private static class Contributors {
+        final int[] first;
+        final int[] count;
+        final float[][] weights;
+
+        Contributors(int srcSize, int dstSize) {
+            first = new int[dstSize];
+            count = new int[dstSize];
+            weights = new float[dstSize][];
+
+            double scale = (double) dstSize / srcSize;
+            // Widen the filter when downsampling so it also removes the frequencies that don't fit
+            double filterScale = Math.max(1.0 / scale, 1.0);
+            double support = LANCZOS_RADIUS * filterScale;
+            for (int i = 0; i < dstSize; ++i) {
+                double center = (i + 0.5) / scale;
+                int start = Math.max((int) Math.floor(center - support), 0);
+                int end = Math.min((int) Math.ceil(center + support), srcSize);
+                float[] w = new float[end - start];
+                double sum = 0.0;
+                for (int j = start; j < end; ++j) {
+                    double weight = lanczos((j + 0.5 - center) / filterScale);
+                    w[j - start] = (float) weight;
+                    sum += weight;
+                }
+                for (int j = 0; j < w.length; ++j) {
+                    w[j] /= sum;
+                }
+                first[i] = start;
+                count[i] = w.length;
+                weights[i] = w;
+            }
+        }
+    }
+
+    private static double lanczos(double x) {
+        x = Math.abs(x);
+        if (x < 1e-8) {
+            return 1.0;
+        }
+        if (x >= LANCZOS_RADIUS) {
+            return 0.0;
+        }
+        double px = Math.PI * x;
+        return LANCZOS_RADIUS * Math.sin(px) * Math.sin(px / LANCZOS_RADIUS) / (px * px);
+    }
+
+    private interface BandTask {
+        void run(int start, int end);
+    }
+
+    // Run a task for bands of rows, split over the common pool for larger images
+    private static void forEachBand(final int rows, int pixels, final BandTask task) {
+        int bandCount = Math.max((rows + MAX_BAND_ROWS - 1) / MAX_BAND_ROWS, 1);
+        if (pixels < PARALLEL_THRESHOLD) {
+            for (int i = 0; i < bandCount; ++i) {
+                task.run((int) ((long) rows * i / bandCount), (int) ((long) rows * (i + 1) / bandCount));
+            }
+            return;
+        }
+        bandCount = Math.min(rows, Math.max(bandCount, ForkJoinPool.getCommonPoolParallelism() * 4));
+        List<Callable<Void>> bands = new ArrayList<Callable<Void>>(bandCount);
+        for (int i = 0; i < bandCount; ++i) {
+            final int start = (int) ((long) rows * i / bandCount);
+            final int end = (int) ((long) rows * (i + 1) / bandCount);
+            bands.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    task.run(start, end);
+                    return null;
+                }
+            });
+        }
+        ForkJoinPool.commonPool().invokeAll(bands);
+    }
+
+    private static float toSrgb(float linear) {
+        if (!(linear > 0.0f)) {
+            return 0.0f;
+        }
+        if (linear >= 1.0f) {
+            return 255.0f;
+        }
+        return linearToSrgb[(int) (linear * LINEAR_STEPS + 0.5f)];
+    }
+
+    private static int toByte(float value) {
+        return Math.max(0, Math.min(255, (int) (value + 0.5f)));
+    }
+
+    private static ByteBuffer toBytes(final FloatImage image, final boolean premultiplyAlpha) {
+        final ByteBuffer pixels = ByteBuffer.allocateDirect(image.width * image.height * 4);
+        forEachBand(image.height, image.width * image.height, new BandTask() {
+            @Override
+            public void run(int start, int end) {
+                int src = start * image.width * image.channels;
+                int dst = start * image.width * 4;
+                float[] data = image.data;
+                for (int i = start * image.width; i < end * image.width; ++i, src += image.channels, dst += 4) {
+                    float a = Math.max(0.0f, Math.min(1.0f, data[src + 3]));
+                    float r, g, b;
+                    if (a > 1.0f / 512.0f) {
+                        r = toSrgb(data[src + 0] / a);
+                        g = toSrgb(data[src + 1] / a);
+                        b = toSrgb(data[src + 2] / a);
+                    } else if (image.channels > 4) {
+                        r = toSrgb(data[src + 4]);
+                        g = toSrgb(data[src + 5]);
+                        b = toSrgb(data[src + 6]);
+                    } else {
+                        r = g = b = 0.0f;
+                    }
+                    // Premultiplied the same way as texc, on the sRGB values
+                    if (premultiplyAlpha) {
+                        r *= a;
+                        g *= a;
+                        b *= a;
+                    }
+                    pixels.put(dst + 0, (byte) toByte(r));
+                    pixels.put(dst + 1, (byte) toByte(g));
+                    pixels.put(dst + 2, (byte) toByte(b));
+                    pixels.put(dst + 3, (byte) toByte(a * 255.0f));
+                }
+            }
+        });
+        return pixels;
+    }
+
+    private static void resizeRow(float[] src, int srcOffset, float[] dst, int dstOffset, int width, int channels, Contributors contributors) {
+        for (int x = 0; x < width; ++x, dstOffset += channels) {
+            float[] weights = contributors.weights[x];
+            int offset = srcOffset + contributors.first[x] * channels;
+            for (int i = 0; i < contributors.count[x]; ++i, offset += channels) {
+                float w = weights[i];
+                for (int c = 0; c < channels; ++c) {
+                    dst[dstOffset + c] += src[offset + c] * w;
+                }
+            }
+        }
+    }
+
+    private static FloatImage resize(final Source src, final int width, final int height) {
+        final int channels = src.getChannels();
+        final int srcWidth = src.getWidth();
+        final FloatImage dst = new FloatImage(width, height, channels);
+        final Contributors columns = width != srcWidth ? new Contributors(srcWidth, width) : null;
+        final Contributors rows = height != src.getHeight() ? new Contributors(src.getHeight(), height) : null;
+        forEachBand(height, srcWidth * src.getHeight(), new BandTask() {
+            @Override
+            public void run(int start, int end) {
+                // Filter the source rows of the band horizontally, then the band vertically
+                int first = rows != null ? rows.first[start] : start;
+                int last = rows != null ? rows.first[end - 1] + rows.count[end - 1] : end;
+                int rowSize = width * channels;
+                float[] band = new float[(last - first) * rowSize];
+                float[] srcRow = columns != null ? new float[srcWidth * channels] : null;
+                for (int y = first; y < last; ++y) {
+                    if (columns != null) {
+                        src.getRow(y, srcRow, 0);
+                        resizeRow(srcRow, 0, band, (y - first) * rowSize, width, channels, columns);
+                    } else {
+                        src.getRow(y, band, (y - first) * rowSize);
+                    }
+                }
+                if (rows == null) {
+                    System.arraycopy(band, 0, dst.data, start * rowSize, band.length);
+                    return;
+                }
+                for (int y = start; y < end; ++y) {
+                    // Accumulate whole rows, which keeps the memory access sequential
+                    int dstRow = y * rowSize;
+                    float[] weights = rows.weights[y];
+                    for (int i = 0; i < rows.count[y]; ++i) {
+                        float w = weights[i];
+                        int bandRow = (rows.first[y] + i - first) * rowSize;
+                        for (int j = 0; j < rowSize; ++j) {
+                            dst.data[dstRow + j] += band[bandRow + j] * w;
+                        }
+                    }
+                }
+            }
+        });
+        return dst;
+    }
+
+    private static ByteBuffer premultiply(ByteBuffer pixels, int width, int height) {
+        ByteBuffer result = ByteBuffer.allocateDirect(width * height * 4);
+        for (int i = 0; i < width * height * 4; i += 4) {
+            int a = pixels.get(i + 3) & 0xff;
+            for (int c = 0; c < 3; ++c) {
+                result.put(i + c, (byte) (((pixels.get(i + c) & 0xff) * a + 127) / 255));
+            }
+            result.put(i + 3, (byte) a);
+        }
+        return result;
+    }
+
+    /**
+     * Resize an image and generate its mip maps. A level that has the size of
+     * the source image is not filtered.
+     * @param pixels RGBA pixels in sRGB color space, 4 bytes per pixel
+     * @param width width of the image
+     * @param height height of the image
+     * @param newWidth width of the first level
+     * @param newHeight height of the first level
+     * @param mipMaps true to generate all levels down to 1x1, false for only the first level
+     * @param premultiplyAlpha true to premultiply the colors of the levels with alpha
+     * @return the levels, as direct buffers in the same format as pixels
+     */
+    public static List<ByteBuffer> generate(ByteBuffer pixels, int width, int height, int newWidth, int newHeight, boolean mipMaps, boolean premultiplyAlpha) {
+        List<ByteBuffer> levels = new ArrayList<ByteBuffer>();
+        ByteBuffer source = pixels.duplicate();
+        source.rewind();
+
+        boolean resized = newWidth != width || newHeight != height;
+        if (!resized) {
+            levels.add(premultiplyAlpha ? premultiply(source, width, height) : source);
+            if (!mipMaps || (width == 1 && height == 1)) {
+                return levels;
+            }
+        }
+
+        // Each level is filtered from the previous one at full precision
+        Source image = new PixelSource(source, width, height, premultiplyAlpha ? 4 : 7);
+        if (resized) {
+            FloatImage level = resize(image, newWidth, newHeight);
+            levels.add(toBytes(level, premultiplyAlpha));
+            image = level;
+        }
+        if (mipMaps) {
+            while (image.getWidth() > 1 || image.getHeight() > 1) {
+                FloatImage level = resize(image, Math.max(image.getWidth() / 2, 1), Math.max(image.getHeight() / 2, 1));
+                levels.add(toBytes(level, premultiplyAlpha));
+                image = level;
+            }
+        }
+        return levels;
+    }
+}
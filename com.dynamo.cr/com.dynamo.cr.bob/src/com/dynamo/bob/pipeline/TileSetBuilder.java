@@ -17,8 +17,7 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-
-import javax.imageio.ImageIO;
+import java.security.MessageDigest;
 
 import org.apache.commons.io.FilenameUtils;
 
@@ -31,6 +30,7 @@ import com.dynamo.bob.Task.TaskBuilder;
 import com.dynamo.bob.fs.IResource;
 import com.dynamo.bob.textureset.TextureSetGenerator.TextureSetResult;
 import com.dynamo.bob.tile.TileSetGenerator;
+import com.dynamo.bob.util.ImageCache;
 import com.dynamo.bob.util.TextureUtil;
 import com.dynamo.graphics.proto.Graphics.TextureImage;
 import com.dynamo.graphics.proto.Graphics.TextureProfile;
@@ -87,6 +87,14 @@ public class TileSetBuilder extends Builder<Void>  {
         }
     }
 
+    @Override
+    public void signature(MessageDigest digest) {
+        // The texture profiles are filtered by the target platform
+        if (this.project.getProjectProperties().getStringValue("graphics", "texture_profiles") != null) {
+            platformSignature(digest);
+        }
+    }
+
     @Override
     public void build(Task<Void> task) throws CompileExceptionError,
             IOException {
@@ -105,7 +113,7 @@ public class TileSetBuilder extends Builder<Void>  {
 
         BufferedImage image = null;
         if (imageRes.exists()) {
-            image = ImageIO.read(new ByteArrayInputStream(imageRes.getContent()));
+            image = ImageCache.read(imageRes);
         }
         if (image != null && (image.getWidth() < tileSet.getTileWidth() || image.getHeight() < tileSet.getTileHeight())) {
             throw new CompileExceptionError(task.input(0), -1, String.format(
@@ -115,7 +123,10 @@ public class TileSetBuilder extends Builder<Void>  {
 
         BufferedImage collisionImage = null;
         if (collisionRes.exists()) {
-            BufferedImage origImage = ImageIO.read(new ByteArrayInputStream(collisionRes.getContent()));
+            BufferedImage origImage = ImageCache.read(collisionRes);
+            if (origImage == null) {
+                throw new CompileExceptionError(collisionRes, -1, "Unable to load image " + collisionRes.getPath());
+            }
             collisionImage = new BufferedImage(origImage.getWidth(), origImage.getHeight(),
                     BufferedImage.TYPE_4BYTE_ABGR);
             Graphics2D g2d = collisionImage.createGraphics();
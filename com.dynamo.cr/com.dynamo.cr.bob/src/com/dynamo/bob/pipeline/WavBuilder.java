@@ -0,0 +1,151 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+// 
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+// 
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.pipeline;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.FileUtils;
+
+import com.dynamo.bob.Builder;
+import com.dynamo.bob.BuilderParams;
+import com.dynamo.bob.CompileExceptionError;
+import com.dynamo.bob.Task;
+import com.dynamo.bob.Task.TaskBuilder;
+import com.dynamo.bob.fs.IResource;
+import com.dynamo.bob.util.PathUtil;
+import com.dynamo.sound.proto.Sound.SoundPathSettings;
+import com.dynamo.sound.proto.Sound.SoundProfile;
+import com.dynamo.sound.proto.Sound.SoundProfiles;
+
+/**
+ * Builds .wav files, converted according to the sound profile matching the
+ * path of the file, if any. Converted files are kept in the build cache
+ * since resampling and loudness analysis of long files is slow.
+ */
+@BuilderParams(name = "Wav", inExts = ".wav", outExt = ".wavc")
+public class WavBuilder extends Builder<Void> {
+
+    @Override
+    public Task<Void> create(IResource input) throws IOException {
+        TaskBuilder<Void> taskBuilder = Task.<Void>newBuilder(this)
+                .setName(params.name())
+                .addInput(input)
+                .addOutput(input.changeExt(params.outExt()));
+
+        // The sound profiles decide how the file is converted, add them as an input
+        String soundProfilesPath = this.project.getProjectProperties().getStringValue("sound", "sound_profiles");
+        if (soundProfilesPath != null) {
+            taskBuilder.addInput(this.project.getResource(soundProfilesPath));
+        }
+
+        return taskBuilder.build();
+    }
+
+    /**
+     * Get the sound profile for a resource path.
+     * @param soundProfiles sound profiles, or null
+     * @param path root relative resource path
+     * @return the profile, or null if no profile matches the path
+     */
+    public static SoundProfile getSoundProfileByPath(SoundProfiles soundProfiles, String path) {
+        if (soundProfiles == null) {
+            return null;
+        }
+
+        // Path settings look absolute to the user, like the texture profiles
+        path = "/" + path;
+        for (SoundPathSettings pathSettings : soundProfiles.getPathSettingsList()) {
+            if (PathUtil.wildcardMatch(path, pathSettings.getPath())) {
+                for (SoundProfile profile : soundProfiles.getProfilesList()) {
+                    if (profile.getName().equals(pathSettings.getProfile())) {
+                        return profile;
+                    }
+                }
+                break;
+            }
+        }
+        return null;
+    }
+
+    private static String getCacheKey(SoundProfile profile, IResource input) throws IOException {
+        MessageDigest sha1;
+        try {
+            sha1 = MessageDigest.getInstance("SHA1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        sha1.update(ByteBuffer.allocate(4).putInt(WavTranscoder.VERSION).array());
+        sha1.update(profile.toByteArray());
+        sha1.update(input.sha1());
+        return new String(Hex.encodeHex(sha1.digest()));
+    }
+
+    private byte[] transcode(IResource input, SoundProfile profile) throws IOException, CompileExceptionError {
+        File cacheFile = new File(new File(this.project.getBuildCachePath(), "sound"), getCacheKey(profile, input));
+        if (cacheFile.isFile()) {
+            return FileUtils.readFileToByteArray(cacheFile);
+        }
+
+        byte[] content;
+        try {
+            content = WavTranscoder.transcode(input.getContent(), profile);
+        } catch (IOException e) {
+            throw new CompileExceptionError(input, -1, "Failed to convert sound: " + e.getMessage(), e);
+        }
+
+        // Several builds may share the cache, only complete files are moved into place
+        cacheFile.getParentFile().mkdirs();
+        File tmpFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheFile.getParentFile());
+        try {
+            FileUtils.writeByteArrayToFile(tmpFile, content);
+            try {
+                Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            tmpFile.delete();
+        }
+        return content;
+    }
+
+    @Override
+    public void build(Task<Void> task) throws CompileExceptionError, IOException {
+        IResource input = task.input(0);
+
+        SoundProfile profile = null;
+        if (task.getInputs().size() > 1) {
+            IResource profilesInput = task.input(1);
+            if (!profilesInput.exists()) {
+                throw new CompileExceptionError(input, -1, "Could not find supplied sound_profiles file: " + profilesInput.getPath());
+            }
+            SoundProfiles.Builder profilesBuilder = SoundProfiles.newBuilder();
+            ProtoUtil.merge(profilesInput, profilesBuilder);
+            profile = getSoundProfileByPath(profilesBuilder.build(), input.getPath());
+        }
+
+        if (profile == null) {
+            task.output(0).setContent(input.getContent());
+        } else {
+            task.output(0).setContent(transcode(input, profile));
+        }
+    }
+}
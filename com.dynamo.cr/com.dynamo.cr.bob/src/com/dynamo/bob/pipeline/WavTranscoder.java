@@ -0,0 +1,420 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+// 
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+// 
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.pipeline;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.dynamo.sound.proto.Sound.SoundProfile;
+
+/**
+ * Converts wav files according to a sound profile: mono downmix, resampling
+ * to a lower sample rate, loudness normalization and 8 or 16 bit PCM output,
+ * which are the formats the runtime can play.
+ */
+public class WavTranscoder {
+
+    // Increase when the output for the same input and profile changes
+    public static final int VERSION = 1;
+
+    private static final int FORMAT_PCM = 1;
+    private static final int FORMAT_IEEE_FLOAT = 3;
+    private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+
+    // Zero crossings of the resampling filter on each side of a sample
+    private static final int RESAMPLE_ZERO_CROSSINGS = 16;
+    // Entries per zero crossing in the table of the resampling filter
+    private static final int RESAMPLE_TABLE_RESOLUTION = 256;
+
+    // The resampling filter for distances from the center from 0 to 1, relative to its half width
+    private static final double[] resampleFilter = createResampleFilter();
+
+    /**
+     * Decoded sound, the samples of each channel are in the range [-1, 1].
+     */
+    public static class Sound {
+        public int format;
+        public int sampleRate;
+        public int bitsPerSample;
+        public float[][] channels;
+
+        public int getFrameCount() {
+            return channels[0].length;
+        }
+    }
+
+    private static int fourCC(String id) {
+        return id.charAt(0) | (id.charAt(1) << 8) | (id.charAt(2) << 16) | (id.charAt(3) << 24);
+    }
+
+    public static Sound decode(byte[] data) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        if (data.length < 12 || buffer.getInt(0) != fourCC("RIFF") || buffer.getInt(8) != fourCC("WAVE")) {
+            throw new IOException("Not a wav file");
+        }
+        Sound sound = null;
+        int channelCount = 0;
+        int blockAlign = 0;
+        int dataOffset = -1;
+        int dataSize = 0;
+        int offset = 12;
+        while (offset + 8 <= data.length) {
+            int id = buffer.getInt(offset);
+            long size = buffer.getInt(offset + 4) & 0xffffffffL;
+            int start = offset + 8;
+            if (id == fourCC("fmt ")) {
+                if (start + 16 > data.length) {
+                    throw new IOException("The wav file is truncated");
+                }
+                sound = new Sound();
+                sound.format = buffer.getShort(start) & 0xffff;
+                channelCount = buffer.getShort(start + 2) & 0xffff;
+                sound.sampleRate = buffer.getInt(start + 4);
+                blockAlign = buffer.getShort(start + 12) & 0xffff;
+                sound.bitsPerSample = buffer.getShort(start + 14) & 0xffff;
+                if (sound.format == FORMAT_EXTENSIBLE && size >= 40 && start + 26 <= data.length) {
+                    // The format is the first two bytes of the sub format guid
+                    sound.format = buffer.getShort(start + 24) & 0xffff;
+                }
+            } else if (id == fourCC("data")) {
+                dataOffset = start;
+                dataSize = (int) Math.min(size, data.length - start);
+            }
+            // Chunks are padded to an even size
+            offset = (int) Math.min(data.length, start + size + (size & 1));
+        }
+        if (sound == null || dataOffset < 0) {
+            throw new IOException("The wav file has no format or data");
+        }
+
+        int bytesPerSample = sound.bitsPerSample / 8;
+        boolean pcm = sound.format == FORMAT_PCM && sound.bitsPerSample % 8 == 0 && bytesPerSample >= 1 && bytesPerSample <= 4;
+        boolean ieeeFloat = sound.format == FORMAT_IEEE_FLOAT && (bytesPerSample == 4 || bytesPerSample == 8);
+        if (!pcm && !ieeeFloat) {
+            throw new IOException(String.format("Unsupported wav format %d with %d bits per sample", sound.format, sound.bitsPerSample));
+        }
+        if (channelCount == 0 || sound.sampleRate <= 0 || blockAlign < channelCount * bytesPerSample) {
+            throw new IOException("Invalid wav format");
+        }
+
+        int frameCount = dataSize / blockAlign;
+        sound.channels = new float[channelCount][frameCount];
+        for (int f = 0; f < frameCount; ++f) {
+            int frameOffset = dataOffset + f * blockAlign;
+            for (int c = 0; c < channelCount; ++c) {
+                int i = frameOffset + c * bytesPerSample;
+                float v;
+                if (ieeeFloat) {
+                    v = bytesPerSample == 4 ? buffer.getFloat(i) : (float) buffer.getDouble(i);
+                } else {
+                    switch (bytesPerSample) {
+                    case 1:
+                        v = ((data[i] & 0xff) - 128) / 128.0f;
+                        break;
+                    case 2:
+                        v = buffer.getShort(i) / 32768.0f;
+                        break;
+                    case 3:
+                        v = (((data[i] & 0xff) | ((data[i + 1] & 0xff) << 8) | (data[i + 2] << 16))) / 8388608.0f;
+                        break;
+                    default:
+                        v = (float) (buffer.getInt(i) / 2147483648.0);
+                        break;
+                    }
+                }
+                sound.channels[c][f] = v;
+            }
+        }
+        return sound;
+    }
+
+    /**
+     * Encode as a PCM wav file.
+     * @param sound sound to encode
+     * @param bitsPerSample 8 or 16
+     * @return wav file data
+     */
+    public static byte[] encode(Sound sound, int bitsPerSample) {
+        int channelCount = sound.channels.length;
+        int frameCount = sound.getFrameCount();
+        int bytesPerSample = bitsPerSample / 8;
+        int dataSize = frameCount * channelCount * bytesPerSample;
+        int padding = dataSize & 1;
+        ByteBuffer buffer = ByteBuffer.allocate(44 + dataSize + padding).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(fourCC("RIFF"));
+        buffer.putInt(36 + dataSize + padding);
+        buffer.putInt(fourCC("WAVE"));
+        buffer.putInt(fourCC("fmt "));
+        buffer.putInt(16);
+        buffer.putShort((short) FORMAT_PCM);
+        buffer.putShort((short) channelCount);
+        buffer.putInt(sound.sampleRate);
+        buffer.putInt(sound.sampleRate * channelCount * bytesPerSample);
+        buffer.putShort((short) (channelCount * bytesPerSample));
+        buffer.putShort((short) bitsPerSample);
+        buffer.putInt(fourCC("data"));
+        buffer.putInt(dataSize);
+
+        // Triangular dither for 8 bit output, with a fixed seed so that the output is the same for every build
+        Random random = new Random(0);
+        for (int f = 0; f < frameCount; ++f) {
+            for (int c = 0; c < channelCount; ++c) {
+                float v = sound.channels[c][f];
+                if (bitsPerSample == 8) {
+                    double dither = random.nextDouble() - random.nextDouble();
+                    long s = Math.round(v * 127.0 + dither) + 128;
+                    buffer.put((byte) Math.max(0, Math.min(255, s)));
+                } else {
+                    long s = Math.round(v * 32767.0);
+                    buffer.putShort((short) Math.max(-32768, Math.min(32767, s)));
+                }
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Mix all channels into one.
+     */
+    public static float[][] downmix(float[][] channels) {
+        int frameCount = channels[0].length;
+        float[] mono = new float[frameCount];
+        for (float[] channel : channels) {
+            for (int f = 0; f < frameCount; ++f) {
+                mono[f] += channel[f];
+            }
+        }
+        for (int f = 0; f < frameCount; ++f) {
+            mono[f] /= channels.length;
+        }
+        return new float[][] { mono };
+    }
+
+    private static double[] createResampleFilter() {
+        int size = RESAMPLE_ZERO_CROSSINGS * RESAMPLE_TABLE_RESOLUTION;
+        // One extra zero entry to interpolate against
+        double[] filter = new double[size + 2];
+        for (int i = 0; i <= size; ++i) {
+            double x = (double) i / size;
+            double sinc = i == 0 ? 1.0 : Math.sin(Math.PI * RESAMPLE_ZERO_CROSSINGS * x) / (Math.PI * RESAMPLE_ZERO_CROSSINGS * x);
+            // Blackman window
+            double window = 0.42 + 0.5 * Math.cos(Math.PI * x) + 0.08 * Math.cos(2.0 * Math.PI * x);
+            filter[i] = sinc * window;
+        }
+        return filter;
+    }
+
+    private static double resampleFilter(double x) {
+        double position = Math.abs(x) * (resampleFilter.length - 2);
+        int i = (int) position;
+        if (i >= resampleFilter.length - 2) {
+            return 0.0;
+        }
+        return resampleFilter[i] + (resampleFilter[i + 1] - resampleFilter[i]) * (position - i);
+    }
+
+    /**
+     * Resample to a lower sample rate, with a windowed sinc filter that removes
+     * the frequencies the lower rate can't represent.
+     */
+    public static float[] resample(float[] samples, int fromRate, int toRate) {
+        if (toRate >= fromRate) {
+            return samples;
+        }
+        double step = (double) fromRate / toRate;
+        // Cutoff in cycles per input sample, slightly below the nyquist frequency of the output
+        double cutoff = 0.5 * 0.95 / step;
+        double halfWidth = RESAMPLE_ZERO_CROSSINGS / (2.0 * cutoff);
+        int outCount = (int) ((long) samples.length * toRate / fromRate);
+        float[] out = new float[outCount];
+        for (int i = 0; i < outCount; ++i) {
+            double center = i * step;
+            int first = (int) Math.ceil(center - halfWidth);
+            int last = (int) Math.floor(center + halfWidth);
+            double sum = 0.0;
+            double weightSum = 0.0;
+            for (int j = first; j <= last; ++j) {
+                double weight = resampleFilter((j - center) / halfWidth);
+                weightSum += weight;
+                if (j >= 0 && j < samples.length) {
+                    sum += samples[j] * weight;
+                }
+            }
+            out[i] = (float) (sum / weightSum);
+        }
+        return out;
+    }
+
+    private static void biquad(float[] in, double[] out, double b0, double b1, double b2, double a1, double a2) {
+        double x1 = 0, x2 = 0, y1 = 0, y2 = 0;
+        for (int i = 0; i < in.length; ++i) {
+            double x = in[i];
+            double y = b0 * x + b1 * x1 + b2 * x2 - a1 * y1 - a2 * y2;
+            x2 = x1;
+            x1 = x;
+            y2 = y1;
+            y1 = y;
+            out[i] = y;
+        }
+    }
+
+    /**
+     * Integrated loudness according to ITU-R BS.1770, with K-weighting and gating.
+     * @return loudness in LUFS, or negative infinity for silence
+     */
+    public static double loudness(float[][] channels, int sampleRate) {
+        int frameCount = channels[0].length;
+        if (frameCount == 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        // Mean square of the K-weighted signal in 400 ms blocks overlapping by 75%,
+        // or a single block for sounds shorter than that
+        int blockSize = Math.min(frameCount, (int) Math.round(sampleRate * 0.4));
+        int stepSize = Math.max(1, blockSize / 4);
+        int blockCount = (frameCount - blockSize) / stepSize + 1;
+        double[] blocks = new double[blockCount];
+
+        // K-weighting: a high shelf followed by a high pass, for the given sample rate
+        double k = Math.tan(Math.PI * 1681.974450955533 / sampleRate);
+        double q = 0.7071752369554196;
+        double vh = Math.pow(10.0, 3.999843853973347 / 20.0);
+        double vb = Math.pow(vh, 0.4996667741545416);
+        double a0 = 1.0 + k / q + k * k;
+        double[] shelf = new double[] {
+                (vh + vb * k / q + k * k) / a0, 2.0 * (k * k - vh) / a0, (vh - vb * k / q + k * k) / a0,
+                2.0 * (k * k - 1.0) / a0, (1.0 - k / q + k * k) / a0 };
+        k = Math.tan(Math.PI * 38.13547087602444 / sampleRate);
+        q = 0.5003270373238773;
+        a0 = 1.0 + k / q + k * k;
+        double[] highPass = new double[] { 1.0, -2.0, 1.0, 2.0 * (k * k - 1.0) / a0, (1.0 - k / q + k * k) / a0 };
+
+        double[] filtered = new double[frameCount];
+        float[] stage = new float[frameCount];
+        for (float[] channel : channels) {
+            biquad(channel, filtered, shelf[0], shelf[1], shelf[2], shelf[3], shelf[4]);
+            for (int i = 0; i < frameCount; ++i) {
+                stage[i] = (float) filtered[i];
+            }
+            biquad(stage, filtered, highPass[0], highPass[1], highPass[2], highPass[3], highPass[4]);
+            for (int b = 0; b < blockCount; ++b) {
+                double sum = 0.0;
+                int start = b * stepSize;
+                for (int i = start; i < start + blockSize; ++i) {
+                    sum += filtered[i] * filtered[i];
+                }
+                blocks[b] += sum / blockSize;
+            }
+        }
+
+        // Absolute gate at -70 LUFS, then a relative gate 10 LU below the loudness of the remaining blocks
+        List<Double> gated = new ArrayList<Double>();
+        for (double z : blocks) {
+            if (-0.691 + 10.0 * Math.log10(z) > -70.0) {
+                gated.add(z);
+            }
+        }
+        if (gated.isEmpty()) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        double relativeGate = -0.691 + 10.0 * Math.log10(mean(gated)) - 10.0;
+        List<Double> kept = new ArrayList<Double>();
+        for (double z : gated) {
+            if (-0.691 + 10.0 * Math.log10(z) > relativeGate) {
+                kept.add(z);
+            }
+        }
+        return -0.691 + 10.0 * Math.log10(mean(kept));
+    }
+
+    private static double mean(List<Double> values) {
+        double sum = 0.0;
+        for (double v : values) {
+            sum += v;
+        }
+        return sum / values.size();
+    }
+
+    /**
+     * Scale a sound to a loudness. The gain is limited so that the peaks don't clip.
+     * @param channels channels to scale in place
+     * @param sampleRate sample rate
+     * @param targetLoudness loudness in LUFS
+     */
+    public static void normalize(float[][] channels, int sampleRate, double targetLoudness) {
+        double loudness = loudness(channels, sampleRate);
+        if (Double.isInfinite(loudness)) {
+            return;
+        }
+        float peak = 0.0f;
+        for (float[] channel : channels) {
+            for (float v : channel) {
+                peak = Math.max(peak, Math.abs(v));
+            }
+        }
+        double gain = Math.min(Math.pow(10.0, (targetLoudness - loudness) / 20.0), 1.0 / peak);
+        for (float[] channel : channels) {
+            for (int i = 0; i < channel.length; ++i) {
+                channel[i] *= gain;
+            }
+        }
+    }
+
+    /**
+     * Transcode a wav file according to a sound profile.
+     * @param data wav file data
+     * @param profile sound profile
+     * @return the transcoded wav file, or data if the file already matches the profile
+     * @throws IOException if the file is not a wav file that can be read
+     */
+    public static byte[] transcode(byte[] data, SoundProfile profile) throws IOException {
+        Sound sound = decode(data);
+        int sourceChannelCount = sound.channels.length;
+        int sourceRate = sound.sampleRate;
+
+        if (profile.getMono() && sound.channels.length > 1) {
+            sound.channels = downmix(sound.channels);
+        }
+        if (profile.hasSampleRate() && profile.getSampleRate() < sound.sampleRate) {
+            if (profile.getSampleRate() <= 0) {
+                throw new IOException(String.format("Invalid sample rate %d in sound profile '%s'", profile.getSampleRate(), profile.getName()));
+            }
+            for (int c = 0; c < sound.channels.length; ++c) {
+                sound.channels[c] = resample(sound.channels[c], sound.sampleRate, profile.getSampleRate());
+            }
+            sound.sampleRate = profile.getSampleRate();
+        }
+        if (profile.hasLoudness()) {
+            normalize(sound.channels, sound.sampleRate, profile.getLoudness());
+        }
+
+        // The runtime plays 8 and 16 bit PCM, other formats are converted to 16 bit
+        int bitsPerSample = sound.format == FORMAT_PCM && sound.bitsPerSample == 8 ? 8 : 16;
+        if (profile.hasBitsPerSample()) {
+            bitsPerSample = profile.getBitsPerSample();
+            if (bitsPerSample != 8 && bitsPerSample != 16) {
+                throw new IOException(String.format("Invalid bits per sample %d in sound profile '%s', must be 8 or 16", bitsPerSample, profile.getName()));
+            }
+        }
+
+        boolean changed = sound.channels.length != sourceChannelCount || sound.sampleRate != sourceRate || profile.hasLoudness()
+                || sound.format != FORMAT_PCM || sound.bitsPerSample != bitsPerSample;
+        if (!changed) {
+            return data;
+        }
+        return encode(sound, bitsPerSample);
+    }
+}
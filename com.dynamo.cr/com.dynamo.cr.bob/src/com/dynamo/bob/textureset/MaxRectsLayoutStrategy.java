@@ -26,6 +26,17 @@ import com.dynamo.bob.textureset.TextureSetLayout.Rect;
  */
 public class MaxRectsLayoutStrategy implements TextureSetLayoutStrategy {
 
+    /**
+     * Thrown when an image is larger than the max page size.
+     */
+    public static class ImageDoesNotFitException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public ImageDoesNotFitException(String message) {
+            super(message);
+        }
+    }
+
     public static class Settings {
         public int maxPageWidth;
         public int maxPageHeight;
@@ -91,16 +102,16 @@ public class MaxRectsLayoutStrategy implements TextureSetLayoutStrategy {
             if (settings.rotation) {
                 if ((rect.width > settings.maxPageWidth || rect.height > settings.maxPageHeight)
                     && (rect.width > settings.maxPageHeight || rect.height > settings.maxPageWidth)) {
-                    throw new RuntimeException("Image does not fit with max page size " + settings.maxPageWidth + "x" + settings.maxPageHeight
+                    throw new ImageDoesNotFitException("Image does not fit with max page size " + settings.maxPageWidth + "x" + settings.maxPageHeight
                         + " and padding " + settings.paddingX + "," + settings.paddingY + ": " + rect);
                 }
             } else {
                 if (rect.width > settings.maxPageWidth) {
-                    throw new RuntimeException("Image does not fit with max page width " + settings.maxPageWidth + " and paddingX "
+                    throw new ImageDoesNotFitException("Image does not fit with max page width " + settings.maxPageWidth + " and paddingX "
                         + settings.paddingX + ": " + rect);
                 }
                 if (rect.height > settings.maxPageHeight && (!settings.rotation || rect.width > settings.maxPageHeight)) {
-                    throw new RuntimeException("Image does not fit in max page height " + settings.maxPageHeight + " and paddingY "
+                    throw new ImageDoesNotFitException("Image does not fit in max page height " + settings.maxPageHeight + " and paddingY "
                         + settings.paddingY + ": " + rect);
                 }
             }
@@ -21,6 +21,7 @@ import com.dynamo.bob.textureset.TextureSetLayout.Rect;
 
 import com.dynamo.bob.tile.ConvexHull2D;
 import com.dynamo.bob.tile.TileSetUtil;
+import com.dynamo.bob.util.RGBAImage;
 import com.dynamo.bob.util.TextureUtil;
 import com.dynamo.textureset.proto.TextureSetProto;
 import com.dynamo.textureset.proto.TextureSetProto.SpriteGeometry;
@@ -164,12 +165,14 @@ public class TextureSetGenerator {
     public static class TextureSetResult {
         public final TextureSet.Builder builder;
         public BufferedImage image;
+        public List<RGBAImage> rasters;
         public final List<UVTransform> uvTransforms;
         public final LayoutResult layoutResult;
 
         public TextureSetResult(TextureSet.Builder builder, List<UVTransform> uvTransforms, LayoutResult layoutResult) {
             this.builder = builder;
             this.image = null;
+            this.rasters = null;
             this.uvTransforms = uvTransforms;
             this.layoutResult = layoutResult;
         }
@@ -299,6 +302,17 @@ public class TextureSetGenerator {
                                                 AnimIterator iterator,
                                                int margin, int innerPadding, int extrudeBorders,
                                                boolean rotate, boolean useTileGrid, Grid gridSize) {
+        return calculateLayout(images, imageHulls, use_geometries, iterator, margin, innerPadding, extrudeBorders, rotate, useTileGrid, gridSize, 0);
+    }
+
+    /**
+     * Same as above, but packed layouts are split into pages of at most maxPageSize x maxPageSize.
+     * The page of each image is stored in the page_indices of the texture set, when there is more than one page.
+     */
+    public static TextureSetResult calculateLayout(List<Rect> images, List<SpriteGeometry> imageHulls, int use_geometries,
+                                                AnimIterator iterator,
+                                               int margin, int innerPadding, int extrudeBorders,
+                                               boolean rotate, boolean useTileGrid, Grid gridSize, int maxPageSize) {
 
         int totalSizeIncrease = 2 * (innerPadding + extrudeBorders);
 
@@ -315,7 +329,7 @@ public class TextureSetGenerator {
         if (useTileGrid) {
             layout = TextureSetLayout.gridLayout(margin, resizedImages, gridSize);
         } else {
-            layout = TextureSetLayout.packedLayout(margin, resizedImages, rotate);
+            layout = TextureSetLayout.packedLayout(margin, resizedImages, rotate, maxPageSize);
         }
 
         layout.getRectangles().sort(Comparator.comparing(o -> o.index));
@@ -327,6 +341,12 @@ public class TextureSetGenerator {
 
         vertexData.left.setUseGeometries(use_geometries);
 
+        if (layout.getPageCount() > 1) {
+            for (Rect rect : layout.getRectangles()) {
+                vertexData.left.addPageIndices(rect.page);
+            }
+        }
+
         if (imageHulls != null) {
             for (Rect rect : layout.getRectangles()) {
                 SpriteGeometry geometry = imageHulls.get(rect.index);
@@ -383,26 +403,7 @@ public class TextureSetGenerator {
     public static TextureSetResult generate(List<BufferedImage> images, List<Integer> imageHullSizes, List<String> paths, AnimIterator iterator,
             int margin, int innerPadding, int extrudeBorders, boolean rotate, boolean useTileGrid, Grid gridSize) {
 
-        List<Rect> imageRects = rectanglesFromImages(images, paths);
-
-        int usesSpriteTrimming = 0;
-        for (Integer hullSize : imageHullSizes) {
-            usesSpriteTrimming += hullSize;
-        }
-
-        // if all sizes are 0, we still need to generate hull (or rect) data
-        // since it will still be part of the new code path if there is another atlas with trimming enabled
-        List<SpriteGeometry> imageHulls = new ArrayList<SpriteGeometry>();
-        int use_geometries = 0;
-        for (int i = 0; i < images.size(); ++i) {
-            BufferedImage image = images.get(i);
-            use_geometries |= imageHullSizes.get(i) > 0 ? 1 : 0;
-            imageHulls.add(buildConvexHull(image, imageHullSizes.get(i)));
-        }
-
-        // The layout step will expand the rect, and possibly rotate them
-        TextureSetResult result = calculateLayout(imageRects, imageHulls, use_geometries, iterator,
-                                                        margin, innerPadding, extrudeBorders, rotate, useTileGrid, gridSize);
+        TextureSetResult result = generateLayout(images, imageHullSizes, paths, iterator, margin, innerPadding, extrudeBorders, rotate, useTileGrid, gridSize, 0);
 
         for (int i = 0; i < images.size(); ++i) {
             BufferedImage image = images.get(i);
@@ -433,6 +434,115 @@ public class TextureSetGenerator {
         return result;
     }
 
+    /**
+     * Same as {@link #generate}, but the images are composited straight into {@link RGBAImage}s
+     * (stored bottom-up) instead of a BufferedImage, one per page of the layout. Padding, border
+     * extrusion and rotation are applied while copying, so no intermediate images are created.
+     * The result can be passed directly to TextureGenerator. The caller must close the rasters
+     * of the returned result.
+     *
+     * @param maxPageSize max width and height of each page, 0 for a single page
+     */
+    public static TextureSetResult generateRaster(List<BufferedImage> images, List<Integer> imageHullSizes, List<String> paths, AnimIterator iterator,
+            int margin, int innerPadding, int extrudeBorders, boolean rotate, boolean useTileGrid, Grid gridSize, int maxPageSize) {
+
+        TextureSetResult result = generateLayout(images, imageHullSizes, paths, iterator, margin, innerPadding, extrudeBorders, rotate, useTileGrid, gridSize, maxPageSize);
+        result.rasters = compositeRaster(images, result.layoutResult, true);
+        return result;
+    }
+
+    private static TextureSetResult generateLayout(List<BufferedImage> images, List<Integer> imageHullSizes, List<String> paths, AnimIterator iterator,
+            int margin, int innerPadding, int extrudeBorders, boolean rotate, boolean useTileGrid, Grid gridSize, int maxPageSize) {
+
+        List<Rect> imageRects = rectanglesFromImages(images, paths);
+
+        // if all sizes are 0, we still need to generate hull (or rect) data
+        // since it will still be part of the new code path if there is another atlas with trimming enabled
+        List<SpriteGeometry> imageHulls = new ArrayList<SpriteGeometry>();
+        int use_geometries = 0;
+        for (int i = 0; i < images.size(); ++i) {
+            BufferedImage image = images.get(i);
+            use_geometries |= imageHullSizes.get(i) > 0 ? 1 : 0;
+            imageHulls.add(buildConvexHull(image, imageHullSizes.get(i)));
+        }
+
+        // The layout step will expand the rect, and possibly rotate them
+        return calculateLayout(imageRects, imageHulls, use_geometries, iterator,
+                               margin, innerPadding, extrudeBorders, rotate, useTileGrid, gridSize, maxPageSize);
+    }
+
+    /**
+     * Composite the (unpadded) images into RGBA rasters according to the layout, one per page.
+     * Each destination pixel is mapped back to its source pixel, which takes care of
+     * inner padding (transparent), border extrusion (clamped) and 90 degree rotation.
+     * The rectangles of the layout must have their indices set to the corresponding image.
+     */
+    public static List<RGBAImage> compositeRaster(List<BufferedImage> images, LayoutResult layoutResult, boolean flipY) {
+        Layout layout = layoutResult.layout;
+        int width = layout.getWidth();
+        int height = layout.getHeight();
+        int padding = layoutResult.innerPadding;
+        int extrude = layoutResult.extrudeBorders;
+
+        List<RGBAImage> rasters = new ArrayList<RGBAImage>(layout.getPageCount());
+        for (int page = 0; page < layout.getPageCount(); ++page) {
+            rasters.add(RGBAImage.allocate(width, height, flipY));
+        }
+        byte[] row = null;
+        int[] pixels = null;
+
+        for (Rect r : layout.getRectangles()) {
+            BufferedImage image = images.get(r.index);
+            ByteBuffer data = rasters.get(r.page).getData();
+            int srcWidth = image.getWidth();
+            int srcHeight = image.getHeight();
+            int paddedWidth = srcWidth + 2 * padding;
+            int paddedHeight = srcHeight + 2 * padding;
+
+            if (pixels == null || pixels.length < srcWidth * srcHeight) {
+                pixels = new int[srcWidth * srcHeight];
+            }
+            image.getRGB(0, 0, srcWidth, srcHeight, pixels, 0, srcWidth);
+
+            if (row == null || row.length < r.width * 4) {
+                row = new byte[r.width * 4];
+            }
+
+            for (int dy = 0; dy < r.height; ++dy) {
+                for (int dx = 0; dx < r.width; ++dx) {
+                    // Undo the rotation (90 degrees clockwise, see rotateImage)
+                    int ux = r.rotated ? dy : dx;
+                    int uy = r.rotated ? r.width - 1 - dx : dy;
+                    // Undo the border extrusion
+                    int px = Math.min(Math.max(ux - extrude, 0), paddedWidth - 1);
+                    int py = Math.min(Math.max(uy - extrude, 0), paddedHeight - 1);
+                    // Undo the inner padding
+                    int sx = px - padding;
+                    int sy = py - padding;
+
+                    int argb = 0;
+                    if (sx >= 0 && sx < srcWidth && sy >= 0 && sy < srcHeight) {
+                        argb = pixels[sy * srcWidth + sx];
+                    }
+                    int o = dx * 4;
+                    row[o + 0] = (byte) (argb >> 16);
+                    row[o + 1] = (byte) (argb >> 8);
+                    row[o + 2] = (byte) argb;
+                    row[o + 3] = (byte) (argb >> 24);
+                }
+
+                int y = r.y + dy;
+                if (flipY) {
+                    y = height - 1 - y;
+                }
+                data.position((y * width + r.x) * 4);
+                data.put(row, 0, r.width * 4);
+            }
+            data.rewind();
+        }
+        return rasters;
+    }
+
     private static BufferedImage rotateImage(BufferedImage src) {
         int width = src.getWidth();
         int height = src.getHeight();
@@ -497,6 +607,7 @@ public class TextureSetGenerator {
             Rect r = new Rect(rect.id, rect.index, rect.width - borderWidth * 2, rect.height - borderWidth * 2);
             r.x = rect.x + borderWidth;
             r.y = rect.y + borderWidth;
+            r.page = rect.page;
             r.rotated = rect.rotated;
             result.add(r);
         }
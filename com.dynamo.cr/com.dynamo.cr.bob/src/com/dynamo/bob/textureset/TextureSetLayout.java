@@ -43,6 +43,7 @@ public class TextureSetLayout {
         public String id;
         public int index; // for easier keeping the original order
         public int x, y, width, height;
+        public int page;
         public boolean rotated;
 
         public Rect(String id, int index, int x, int y, int width, int height) {
@@ -72,6 +73,7 @@ public class TextureSetLayout {
             this.y = other.y;
             this.width = other.width;
             this.height = other.height;
+            this.page = other.page;
             this.rotated = other.rotated;
         }
 
@@ -89,9 +91,21 @@ public class TextureSetLayout {
         private final List<Rect> rectangles;
         private final int width;
         private final int height;
+        private final int pageCount;
         public Layout(int width, int height, List<Rect> rectangles) {
+            this(width, height, 1, rectangles);
+        }
+
+        /**
+         * @param width width of each page
+         * @param height height of each page
+         * @param pageCount number of pages, see {@link Rect#page}
+         * @param rectangles the rectangles of all pages
+         */
+        public Layout(int width, int height, int pageCount, List<Rect> rectangles) {
             this.width = width;
             this.height = height;
+            this.pageCount = pageCount;
             this.rectangles = rectangles;
         }
 
@@ -104,6 +118,9 @@ public class TextureSetLayout {
         public int getHeight() {
             return height;
         }
+        public int getPageCount() {
+            return pageCount;
+        }
 
     }
 
@@ -115,6 +132,19 @@ public class TextureSetLayout {
         return createMaxRectsLayout(margin, rectangles, rotate);
     }
 
+    /**
+     * Packed layout where the pages are never larger than maxPageSize. Rectangles that don't fit
+     * on the first page spill over into additional pages of the same size.
+     * @param maxPageSize max width and height of a page, 0 for a single page of unlimited size
+     */
+    public static Layout packedLayout(int margin, List<Rect> rectangles, boolean rotate, int maxPageSize) {
+        if (maxPageSize <= 0 || rectangles.size() == 0) {
+            return packedLayout(margin, rectangles, rotate);
+        }
+
+        return createPagedMaxRectsLayout(margin, rectangles, rotate, maxPageSize);
+    }
+
     private static int getExponentNextOrMatchingPowerOfTwo(int value) {
         int exponent = 0;
         while (value > (1<<exponent)) {
@@ -158,14 +188,8 @@ public class TextureSetLayout {
         return layout;
     }
 
-    /**
-     * @param margin
-     * @param rectangles
-     * @param rotate
-     * @return
-     */
-    public static Layout createMaxRectsLayout(int margin, List<Rect> rectangles, boolean rotate) {
-        // Sort by area first, then longest side
+    // Sort by area first, then longest side
+    private static void sortRectangles(List<Rect> rectangles) {
         Collections.sort(rectangles, new Comparator<Rect>() {
             @Override
             public int compare(Rect o1, Rect o2) {
@@ -179,6 +203,16 @@ public class TextureSetLayout {
                 return n2 - n1;
             }
         });
+    }
+
+    /**
+     * @param margin
+     * @param rectangles
+     * @param rotate
+     * @return
+     */
+    public static Layout createMaxRectsLayout(int margin, List<Rect> rectangles, boolean rotate) {
+        sortRectangles(rectangles);
 
         // Calculate total area of rectangles and the max length of a rectangle
         int maxLengthScale = 0;
@@ -220,4 +254,44 @@ public class TextureSetLayout {
 
         return layouts.get(0);
     }
+
+    /**
+     * Max rects layout that spills over into new pages instead of growing the page beyond maxPageSize.
+     * All pages get the size of the largest page, so that they can be stored as a texture array.
+     * @param margin
+     * @param rectangles
+     * @param rotate
+     * @param maxPageSize max width and height of a page, rounded down to a power of two
+     * @return layout with the page index set for each rectangle
+     */
+    public static Layout createPagedMaxRectsLayout(int margin, List<Rect> rectangles, boolean rotate, int maxPageSize) {
+        sortRectangles(rectangles);
+
+        MaxRectsLayoutStrategy.Settings settings = new MaxRectsLayoutStrategy.Settings();
+        settings.maxPageHeight = Integer.highestOneBit(maxPageSize);
+        settings.maxPageWidth = Integer.highestOneBit(maxPageSize);
+        settings.minPageHeight = Math.min(16, settings.maxPageHeight);
+        settings.minPageWidth = Math.min(16, settings.maxPageWidth);
+        settings.paddingX = margin;
+        settings.paddingY = margin;
+        settings.rotation = rotate;
+        settings.square = false;
+
+        MaxRectsLayoutStrategy strategy = new MaxRectsLayoutStrategy(settings);
+        List<Layout> layouts = strategy.createLayout(rectangles);
+
+        int width = 1;
+        int height = 1;
+        List<Rect> result = new ArrayList<Rect>(rectangles.size());
+        for (int page = 0; page < layouts.size(); ++page) {
+            Layout layout = layouts.get(page);
+            width = Math.max(width, layout.getWidth());
+            height = Math.max(height, layout.getHeight());
+            for (Rect r : layout.getRectangles()) {
+                r.page = page;
+                result.add(r);
+            }
+        }
+        return new Layout(width, height, layouts.size(), result);
+    }
 }
@@ -0,0 +1,204 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+// 
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+// 
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+
+import com.dynamo.bob.Task;
+import com.dynamo.bob.TaskResult;
+
+/**
+ * Records the timing of a build: spans for the build phases and a record per
+ * task, including the tasks that were up to date. The trace can be exported in
+ * the Chrome trace event format, which can be opened in chrome://tracing or
+ * https://ui.perfetto.dev
+ */
+public class BuildTracer {
+
+    private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+    private static class Event {
+        String name;
+        String category;
+        long startNanos;
+        long durationNanos;
+        long threadId;
+        String threadName;
+        Map<String, Object> args;
+    }
+
+    /**
+     * A span of time, ended by closing it.
+     */
+    public class Span implements AutoCloseable {
+        private final Event event = new Event();
+
+        private Span(String name, String category) {
+            Thread thread = Thread.currentThread();
+            event.name = name;
+            event.category = category;
+            event.threadId = thread.getId();
+            event.threadName = thread.getName();
+            event.startNanos = System.nanoTime();
+        }
+
+        /**
+         * Add an argument, shown with the span in the trace viewer.
+         * @param key argument name
+         * @param value argument value
+         * @return this span
+         */
+        public Span arg(String key, Object value) {
+            if (event.args == null) {
+                event.args = new LinkedHashMap<String, Object>();
+            }
+            event.args.put(key, value);
+            return this;
+        }
+
+        @Override
+        public void close() {
+            event.durationNanos = System.nanoTime() - event.startNanos;
+            addEvent(event);
+        }
+    }
+
+    private final long startNanos = System.nanoTime();
+    private final List<Event> events = new ArrayList<Event>();
+    private final List<TaskResult> tasks = new ArrayList<TaskResult>();
+
+    /**
+     * Begin a span for a build phase.
+     * @param name name of the phase
+     * @return span that must be closed when the phase is done
+     */
+    public Span span(String name) {
+        return new Span(name, "phase");
+    }
+
+    /**
+     * @return CPU time of the current thread in nanoseconds, or 0 if not supported
+     */
+    public static long getCurrentThreadCpuTime() {
+        if (threadBean.isCurrentThreadCpuTimeSupported()) {
+            return threadBean.getCurrentThreadCpuTime();
+        }
+        return 0;
+    }
+
+    /**
+     * Record a task, built or up to date.
+     * @param result result with the timing of the task
+     */
+    public void addTask(TaskResult result) {
+        Task<?> task = result.getTask();
+        String input = task.getInputs().isEmpty() ? "" : task.input(0).getPath();
+        Event event = new Event();
+        event.name = input.isEmpty() ? getBuilderName(result) : input;
+        event.category = result.isCached() ? "cached" : "task";
+        event.startNanos = result.getStartTime();
+        event.durationNanos = result.getWallTime();
+        event.threadId = result.getThreadId();
+        event.threadName = result.getThreadName();
+        event.args = new LinkedHashMap<String, Object>();
+        event.args.put("builder", getBuilderName(result));
+        event.args.put("input", input);
+        event.args.put("cpu_ms", result.getCpuTime() / 1000000.0);
+        event.args.put("bytes_read", result.getBytesRead());
+        event.args.put("bytes_written", result.getBytesWritten());
+        event.args.put("cached", result.isCached());
+        synchronized (this) {
+            tasks.add(result);
+        }
+        addEvent(event);
+    }
+
+    /**
+     * @return all recorded tasks, in the order they were completed
+     */
+    public synchronized List<TaskResult> getTasks() {
+        return new ArrayList<TaskResult>(tasks);
+    }
+
+    public static String getBuilderName(TaskResult result) {
+        return result.getTask().getBuilder().getClass().getSimpleName();
+    }
+
+    private synchronized void addEvent(Event event) {
+        events.add(event);
+    }
+
+    /**
+     * Write the trace in the Chrome trace event format.
+     * @param writer writer to write to, not closed
+     * @throws IOException
+     */
+    public synchronized void writeChromeTrace(Writer writer) throws IOException {
+        JsonGenerator generator = (new JsonFactory()).createJsonGenerator(writer);
+        generator.writeStartObject();
+        generator.writeFieldName("traceEvents");
+        generator.writeStartArray();
+
+        Map<Long, String> threadNames = new LinkedHashMap<Long, String>();
+        for (Event event : events) {
+            threadNames.put(event.threadId, event.threadName);
+
+            generator.writeStartObject();
+            generator.writeStringField("name", event.name);
+            generator.writeStringField("cat", event.category);
+            generator.writeStringField("ph", "X");
+            generator.writeNumberField("ts", (event.startNanos - startNanos) / 1000);
+            generator.writeNumberField("dur", event.durationNanos / 1000);
+            generator.writeNumberField("pid", 1);
+            generator.writeNumberField("tid", event.threadId);
+            if (event.args != null) {
+                generator.writeFieldName("args");
+                generator.writeStartObject();
+                for (Map.Entry<String, Object> arg : event.args.entrySet()) {
+                    generator.writeFieldName(arg.getKey());
+                    generator.writeObject(arg.getValue());
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+        }
+
+        for (Map.Entry<Long, String> thread : threadNames.entrySet()) {
+            generator.writeStartObject();
+            generator.writeStringField("name", "thread_name");
+            generator.writeStringField("ph", "M");
+            generator.writeNumberField("pid", 1);
+            generator.writeNumberField("tid", thread.getKey());
+            generator.writeFieldName("args");
+            generator.writeStartObject();
+            generator.writeStringField("name", thread.getValue());
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+
+        generator.writeEndArray();
+        generator.writeStringField("displayTimeUnit", "ms");
+        generator.writeEndObject();
+        generator.flush();
+    }
+}
@@ -0,0 +1,170 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+// 
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+// 
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.codec.binary.Hex;
+
+import com.dynamo.bob.fs.IResource;
+
+/**
+ * Decoded images, shared by the builders during a build so that an image used
+ * by several atlases and textures is only decoded once. Images are looked up
+ * by the sha1 of their content, so a changed file is never returned stale.
+ *
+ * Each caller gets its own copy of the pixels, so an image can't be changed for
+ * the other builders. Copying is much cheaper than decoding.
+ */
+public class ImageCache {
+
+    // Don't hold on to more decoded pixels than this
+    private static final long MAX_CACHED_BYTES = 256L * 1024 * 1024;
+
+    private static final LinkedHashMap<String, BufferedImage> cache = new LinkedHashMap<String, BufferedImage>(256, 0.75f, true);
+    private static long cachedBytes = 0;
+
+    private static long getSize(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight() * image.getColorModel().getPixelSize() / 8;
+    }
+
+    private static synchronized BufferedImage get(String key) {
+        return cache.get(key);
+    }
+
+    private static synchronized boolean put(String key, BufferedImage image) {
+        long size = getSize(image);
+        // Don't let a single image evict everything else
+        if (size > MAX_CACHED_BYTES / 8 || cache.containsKey(key)) {
+            return false;
+        }
+        cache.put(key, image);
+        cachedBytes += size;
+        Iterator<BufferedImage> it = cache.values().iterator();
+        while (cachedBytes > MAX_CACHED_BYTES && it.hasNext()) {
+            cachedBytes -= getSize(it.next());
+            it.remove();
+        }
+        return true;
+    }
+
+    // Copy the pixels, and keep the type, so that the copy doesn't have to be converted either
+    private static BufferedImage copy(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+        WritableRaster copy;
+        if (buffer instanceof DataBufferByte && buffer.getNumBanks() == 1 && raster.getParent() == null) {
+            byte[] data = ((DataBufferByte) buffer).getData();
+            copy = Raster.createWritableRaster(raster.getSampleModel(), new DataBufferByte(data.clone(), buffer.getSize(), buffer.getOffset()), null);
+        } else {
+            copy = image.copyData(null);
+        }
+        ColorModel colorModel = image.getColorModel();
+        return new BufferedImage(colorModel, copy, colorModel.isAlphaPremultiplied(), null);
+    }
+
+    /**
+     * Drop all cached images, e.g. at the end of a build.
+     */
+    public static synchronized void clear() {
+        cache.clear();
+        cachedBytes = 0;
+    }
+
+    /**
+     * Decode an image without caching it. PNG files are decoded by PngDecoder
+     * when possible, other files by ImageIO.
+     * @param data image file data
+     * @return the image, or null if the format isn't supported
+     * @throws IOException
+     */
+    public static BufferedImage decode(byte[] data) throws IOException {
+        BufferedImage image = PngDecoder.decode(data);
+        if (image == null) {
+            image = ImageIO.read(new ByteArrayInputStream(data));
+        }
+        return image;
+    }
+
+    /**
+     * Read the image of a resource, through the cache.
+     * @param resource image resource
+     * @return a copy of the image, or null if the format isn't supported
+     * @throws IOException
+     */
+    public static BufferedImage read(IResource resource) throws IOException {
+        String key = new String(Hex.encodeHex(resource.sha1()));
+        BufferedImage image = get(key);
+        if (image == null) {
+            image = decode(resource.getContent());
+            // Only a cached image is shared
+            if (image == null || !put(key, image)) {
+                return image;
+            }
+        }
+        return copy(image);
+    }
+
+    /**
+     * Read the images of several resources, decoded in parallel on the common pool.
+     * @param resources image resources
+     * @return copies of the images in the same order, null for resources with an unsupported format
+     * @throws IOException
+     */
+    public static List<BufferedImage> read(List<IResource> resources) throws IOException {
+        List<ForkJoinTask<BufferedImage>> tasks = new ArrayList<ForkJoinTask<BufferedImage>>(resources.size());
+        for (final IResource resource : resources) {
+            tasks.add(ForkJoinPool.commonPool().submit(new Callable<BufferedImage>() {
+                @Override
+                public BufferedImage call() throws IOException {
+                    return read(resource);
+                }
+            }));
+        }
+        List<BufferedImage> images = new ArrayList<BufferedImage>(resources.size());
+        for (ForkJoinTask<BufferedImage> task : tasks) {
+            try {
+                images.add(task.get());
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new RuntimeException(cause);
+            }
+        }
+        return images;
+    }
+}
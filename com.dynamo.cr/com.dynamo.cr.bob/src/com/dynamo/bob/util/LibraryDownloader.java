@@ -0,0 +1,298 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+// 
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+// 
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.util;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import com.dynamo.bob.Bob;
+import com.dynamo.bob.IProgress;
+import com.dynamo.bob.LibraryException;
+
+/**
+ * Downloads library archives into the library directory.
+ *
+ * Downloads run concurrently on a bounded number of threads. Each request is
+ * conditional (If-None-Match) on the SHA1 stored in the comment of the cached
+ * archive, and the connections are kept alive so that libraries hosted on the
+ * same server reuse them. Archives are streamed to a temporary file while their
+ * SHA1 is calculated and then moved into place, so an interrupted download never
+ * leaves a broken archive behind.
+ */
+public class LibraryDownloader {
+
+    public static final int DEFAULT_MAX_CONCURRENT_DOWNLOADS = 4;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String libPath;
+    private final String email;
+    private final String auth;
+    private int maxConcurrentDownloads = DEFAULT_MAX_CONCURRENT_DOWNLOADS;
+
+    /**
+     * @param libPath directory where the library archives are stored
+     * @param email value of the X-Email header, used when the URL has no basic auth credentials
+     * @param auth value of the X-Auth header, used when the URL has no basic auth credentials
+     */
+    public LibraryDownloader(String libPath, String email, String auth) {
+        this.libPath = libPath;
+        this.email = email;
+        this.auth = auth;
+    }
+
+    public void setMaxConcurrentDownloads(int maxConcurrentDownloads) {
+        this.maxConcurrentDownloads = Math.max(1, maxConcurrentDownloads);
+    }
+
+    /**
+     * Download (or verify that the cached copy is up to date) all libraries.
+     * @param libUrls library URLs
+     * @param progress progress, one unit of work per library
+     * @throws IOException
+     * @throws LibraryException if a library could not be downloaded
+     */
+    public void download(List<URL> libUrls, IProgress progress) throws IOException, LibraryException {
+        File libDir = new File(libPath);
+        FileUtils.forceMkdir(libDir);
+
+        List<File> libFiles = LibraryUtil.convertLibraryUrlsToFiles(libPath, libUrls);
+        int count = libUrls.size();
+        IProgress subProgress = progress.subProgress(count);
+        subProgress.beginTask("Download archives", count);
+        if (count == 0) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(count, maxConcurrentDownloads));
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>(count);
+            for (int i = 0; i < count; ++i) {
+                final URL url = libUrls.get(i);
+                final File file = libFiles.get(i);
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        downloadLibrary(url, file);
+                        return null;
+                    }
+                }));
+            }
+
+            // Wait in order, so that the reported error is deterministic
+            for (Future<Void> future : futures) {
+                waitFor(future, progress);
+                subProgress.worked(1);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void waitFor(Future<Void> future, IProgress progress) throws IOException, LibraryException {
+        while (true) {
+            if (progress.isCanceled()) {
+                throw new RuntimeException("Canceled");
+            }
+            try {
+                future.get(100, TimeUnit.MILLISECONDS);
+                return;
+            } catch (TimeoutException e) {
+                // Check for cancellation and keep waiting
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LibraryException("Interrupted while downloading libraries", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof LibraryException) {
+                    throw (LibraryException) cause;
+                } else if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new LibraryException(cause.getMessage(), cause);
+            }
+        }
+    }
+
+    private HttpURLConnection openConnection(URL url, String sha1) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        if (sha1 != null) {
+            connection.addRequestProperty("If-None-Match", sha1);
+        }
+
+        // Check if URL contains basic auth credentials
+        String basicAuthData = null;
+        try {
+            URI uri = new URI(url.toString());
+            basicAuthData = uri.getUserInfo();
+        } catch (URISyntaxException e1) {
+            // Ignored, could not get URI and basic auth data from URL.
+        }
+
+        // Pass correct headers along to server depending on auth alternative.
+        if (basicAuthData != null) {
+            String basicAuth = "Basic " + new String(new Base64().encode(basicAuthData.getBytes()));
+            connection.setRequestProperty("Authorization", basicAuth);
+        } else {
+            connection.addRequestProperty("X-Email", email);
+            connection.addRequestProperty("X-Auth", auth);
+        }
+        return connection;
+    }
+
+    private void downloadLibrary(URL url, File file) throws IOException, LibraryException {
+        String sha1 = null;
+        if (file.exists()) {
+            sha1 = LibraryUtil.readZipComment(file);
+        }
+
+        HttpURLConnection connection = openConnection(url, sha1);
+        InputStream input = null;
+        try {
+            connection.connect();
+            int code = connection.getResponseCode();
+            if (code == 304) {
+                // Reusing cached library
+                return;
+            }
+
+            if (code == 200 && sha1 != null) {
+                // GitHub uses eTags and we can check we have the up to date version by comparing SHA1 and server eTag if we get a 200 OK response
+                String serverETag = connection.getHeaderField("ETag");
+                if (serverETag != null && sha1.equals(serverETag.replace("\"", ""))) {
+                    // Reusing cached library
+                    return;
+                }
+            }
+
+            input = connection.getInputStream();
+            File tmpFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            try {
+                String contentSha1 = copyWithSha1(input, tmpFile);
+                verifyChecksum(url, connection, contentSha1);
+
+                try {
+                    ZipFile zip = new ZipFile(tmpFile);
+                    zip.close();
+                } catch (ZipException e) {
+                    throw new LibraryException(String.format("The file obtained from %s is not a valid zip file", url.toString()), e);
+                }
+
+                moveAtomically(tmpFile, file);
+                Bob.verbose("Downloaded %s (sha1 %s)", url.toString(), contentSha1);
+            } finally {
+                tmpFile.delete();
+            }
+        } catch (ConnectException e) {
+            throw new LibraryException(String.format("Connection refused by the server at %s", url.toString()), e);
+        } catch (FileNotFoundException e) {
+            throw new LibraryException(String.format("The URL %s points to a resource which doesn't exist", url.toString()), e);
+        } finally {
+            // Closing (rather than disconnecting) lets the connection go back to the keep-alive cache
+            if (input != null) {
+                IOUtils.closeQuietly(input);
+            } else {
+                closeQuietly(connection);
+            }
+        }
+    }
+
+    private static void closeQuietly(HttpURLConnection connection) {
+        try {
+            InputStream stream = connection.getResponseCode() >= 400 ? connection.getErrorStream() : connection.getInputStream();
+            if (stream != null) {
+                stream.close();
+            }
+        } catch (IOException e) {
+            // Nothing to reuse
+        }
+    }
+
+    private static String copyWithSha1(InputStream input, File file) throws IOException {
+        MessageDigest sha1;
+        try {
+            sha1 = MessageDigest.getInstance("SHA1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        DigestInputStream digestInput = new DigestInputStream(input, sha1);
+        OutputStream output = Files.newOutputStream(file.toPath());
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = digestInput.read(buffer)) != -1) {
+                output.write(buffer, 0, n);
+            }
+        } finally {
+            output.close();
+        }
+        return new String(Hex.encodeHex(sha1.digest()));
+    }
+
+    // Verify the content against the SHA1 checksum headers used by common artifact servers, when present
+    private static void verifyChecksum(URL url, HttpURLConnection connection, String contentSha1) throws LibraryException {
+        String expected = connection.getHeaderField("X-Checksum-Sha1");
+        if (expected == null) {
+            String digest = connection.getHeaderField("Digest");
+            if (digest != null) {
+                for (String part : digest.split(",")) {
+                    part = part.trim();
+                    if (part.regionMatches(true, 0, "sha=", 0, 4)) {
+                        expected = Hex.encodeHexString(Base64.decodeBase64(part.substring(4)));
+                    }
+                }
+            }
+        }
+        if (expected != null && !expected.trim().equalsIgnoreCase(contentSha1)) {
+            throw new LibraryException(String.format("The file obtained from %s has checksum %s but the server reported %s", url.toString(), contentSha1, expected), null);
+        }
+    }
+
+    private static void moveAtomically(File src, File dst) throws IOException {
+        try {
+            Files.move(src.toPath(), dst.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(src.toPath(), dst.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -17,9 +17,11 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.security.MessageDigest;
+import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
 import java.util.ArrayList;
@@ -75,6 +77,45 @@ public class LibraryUtil {
         return files;
     }
 
+    // End of central directory record: signature, fixed size and max comment length
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xffff;
+
+    /** Read the comment of a zip archive, without opening and indexing the whole archive.
+     * Library archives store their SHA1 in the comment.
+     *
+     * @param file zip archive
+     * @return the comment, or null if the archive has no comment or isn't a valid zip archive
+     * @throws IOException
+     */
+    public static String readZipComment(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long length = raf.length();
+            int tailSize = (int) Math.min(length, EOCD_SIZE + MAX_COMMENT_SIZE);
+            byte[] tail = new byte[tailSize];
+            raf.seek(length - tailSize);
+            raf.readFully(tail);
+
+            // Scan backwards for the end of central directory record
+            for (int i = tailSize - EOCD_SIZE; i >= 0; --i) {
+                int signature = (tail[i] & 0xff) | (tail[i + 1] & 0xff) << 8 | (tail[i + 2] & 0xff) << 16 | (tail[i + 3] & 0xff) << 24;
+                if (signature != EOCD_SIGNATURE) {
+                    continue;
+                }
+                int commentLength = (tail[i + 20] & 0xff) | (tail[i + 21] & 0xff) << 8;
+                if (i + EOCD_SIZE + commentLength != tailSize) {
+                    continue;
+                }
+                if (commentLength == 0) {
+                    return null;
+                }
+                return new String(tail, i + EOCD_SIZE, commentLength, StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
     /** Find base directory path inside a zip archive from where all include dirs should be based.
     * Effectively searches for the first game.project since all include dirs are relative to this.
     *
@@ -113,14 +154,7 @@ public class LibraryUtil {
             InputStream is = null;
             try {
                 is = archive.getInputStream(projectEntry);
-                BobProjectProperties properties = new BobProjectProperties();
-                properties.load(is);
-                String dirs = properties.getStringValue("library", "include_dirs", "");
-                for (String dir : dirs.split("[,\\s]")) {
-                    if (!dir.isEmpty()) {
-                        includeDirs.add(dir);
-                    }
-                }
+                includeDirs = readIncludeDirs(is);
             } finally {
                 IOUtils.closeQuietly(is);
             }
@@ -128,6 +162,28 @@ public class LibraryUtil {
         return includeDirs;
     }
 
+    /**
+     * Read the include dirs from the contents of a game.project file.
+     * The game.project is assumed to contain a comma separated list under the key library.include_dirs.
+     *
+     * @param is stream with the contents of the game.project file
+     * @return a set of include dir names
+     * @throws IOException
+     * @throws ParseException
+     */
+    public static Set<String> readIncludeDirs(InputStream is) throws IOException, ParseException {
+        Set<String> includeDirs = new HashSet<String>();
+        BobProjectProperties properties = new BobProjectProperties();
+        properties.load(is);
+        String dirs = properties.getStringValue("library", "include_dirs", "");
+        for (String dir : dirs.split("[,\\s]")) {
+            if (!dir.isEmpty()) {
+                includeDirs.add(dir);
+            }
+        }
+        return includeDirs;
+    }
+
     /**
      * Parse a comma separated string of URLs.
      * @param urls
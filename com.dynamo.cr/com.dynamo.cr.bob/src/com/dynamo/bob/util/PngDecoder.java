@@ -0,0 +1,328 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+// 
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+// 
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.util;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decoder for the PNG files most textures are stored as: 8 bits per sample and
+ * not interlaced. The pixels are written straight into the raster of the
+ * result, without the intermediate copies and color conversions of ImageIO.
+ *
+ * The images have the same number of components as the ones read by ImageIO,
+ * since that decides the texture format, but RGB(A) images are returned as
+ * TYPE_3BYTE_BGR and TYPE_4BYTE_ABGR so that they don't have to be converted
+ * again by the texture generator.
+ */
+public class PngDecoder {
+
+    private static final byte[] SIGNATURE = new byte[] { (byte) 137, 80, 78, 71, 13, 10, 26, 10 };
+
+    private static final int COLOR_TYPE_GRAY = 0;
+    private static final int COLOR_TYPE_RGB = 2;
+    private static final int COLOR_TYPE_PALETTE = 3;
+    private static final int COLOR_TYPE_GRAY_ALPHA = 4;
+    private static final int COLOR_TYPE_RGBA = 6;
+
+    private static int readInt(byte[] data, int offset) {
+        return ((data[offset] & 0xff) << 24) | ((data[offset + 1] & 0xff) << 16) | ((data[offset + 2] & 0xff) << 8) | (data[offset + 3] & 0xff);
+    }
+
+    private static int chunkType(String type) {
+        return (type.charAt(0) << 24) | (type.charAt(1) << 16) | (type.charAt(2) << 8) | type.charAt(3);
+    }
+
+    private static final int IHDR = chunkType("IHDR");
+    private static final int PLTE = chunkType("PLTE");
+    private static final int TRNS = chunkType("tRNS");
+    private static final int IDAT = chunkType("IDAT");
+    private static final int IEND = chunkType("IEND");
+
+    /**
+     * Check if data starts with the PNG signature.
+     */
+    public static boolean isPng(byte[] data) {
+        if (data.length < SIGNATURE.length) {
+            return false;
+        }
+        for (int i = 0; i < SIGNATURE.length; ++i) {
+            if (data[i] != SIGNATURE[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void unfilter(byte[] raw, int height, int rowBytes, int bytesPerPixel) throws IOException {
+        int stride = rowBytes + 1;
+        for (int y = 0; y < height; ++y) {
+            int row = y * stride + 1;
+            int prev = row - stride;
+            int filter = raw[row - 1];
+            switch (filter) {
+            case 0:
+                break;
+            case 1:
+                for (int i = bytesPerPixel; i < rowBytes; ++i) {
+                    raw[row + i] += raw[row + i - bytesPerPixel];
+                }
+                break;
+            case 2:
+                if (y > 0) {
+                    for (int i = 0; i < rowBytes; ++i) {
+                        raw[row + i] += raw[prev + i];
+                    }
+                }
+                break;
+            case 3:
+                for (int i = 0; i < rowBytes; ++i) {
+                    int left = i >= bytesPerPixel ? raw[row + i - bytesPerPixel] & 0xff : 0;
+                    int up = y > 0 ? raw[prev + i] & 0xff : 0;
+                    raw[row + i] += (left + up) >>> 1;
+                }
+                break;
+            case 4:
+                for (int i = 0; i < rowBytes; ++i) {
+                    int a = i >= bytesPerPixel ? raw[row + i - bytesPerPixel] & 0xff : 0;
+                    int b = y > 0 ? raw[prev + i] & 0xff : 0;
+                    int c = i >= bytesPerPixel && y > 0 ? raw[prev + i - bytesPerPixel] & 0xff : 0;
+                    int p = a + b - c;
+                    int pa = Math.abs(p - a);
+                    int pb = Math.abs(p - b);
+                    int pc = Math.abs(p - c);
+                    raw[row + i] += (pa <= pb && pa <= pc) ? a : (pb <= pc ? b : c);
+                }
+                break;
+            default:
+                throw new IOException("Invalid PNG filter type " + filter);
+            }
+        }
+    }
+
+    private static BufferedImage createGrayAlphaImage(int width, int height) {
+        ComponentColorModel colorModel = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY), true, false,
+                Transparency.TRANSLUCENT, DataBuffer.TYPE_BYTE);
+        PixelInterleavedSampleModel sampleModel = new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE, width, height, 2, width * 2, new int[] { 0, 1 });
+        WritableRaster raster = Raster.createWritableRaster(sampleModel, null);
+        return new BufferedImage(colorModel, raster, false, null);
+    }
+
+    /**
+     * Decode a PNG file.
+     * @param data PNG file data
+     * @return the image, or null if the file uses features this decoder doesn't
+     * handle, e.g. 16 bit samples or interlacing, and should be read with ImageIO
+     * @throws IOException if the file is not a valid PNG file
+     */
+    public static BufferedImage decode(byte[] data) throws IOException {
+        if (!isPng(data)) {
+            return null;
+        }
+
+        int width = 0;
+        int height = 0;
+        int bitDepth = 0;
+        int colorType = 0;
+        byte[] palette = null;
+        byte[] transparency = null;
+        ByteArrayOutputStream compressed = null;
+
+        int offset = SIGNATURE.length;
+        boolean end = false;
+        while (!end) {
+            if (offset + 8 > data.length) {
+                throw new IOException("Truncated PNG file");
+            }
+            int length = readInt(data, offset);
+            int type = readInt(data, offset + 4);
+            int start = offset + 8;
+            if (length < 0 || start + length + 4 > data.length) {
+                throw new IOException("Truncated PNG file");
+            }
+
+            if (type == IHDR) {
+                width = readInt(data, start);
+                height = readInt(data, start + 4);
+                bitDepth = data[start + 8] & 0xff;
+                colorType = data[start + 9] & 0xff;
+                int interlace = data[start + 12] & 0xff;
+                if (width <= 0 || height <= 0) {
+                    throw new IOException("Invalid PNG image size");
+                }
+                boolean supported = interlace == 0 && (bitDepth == 8 || (colorType == COLOR_TYPE_PALETTE && bitDepth < 8));
+                if (!supported) {
+                    return null;
+                }
+                compressed = new ByteArrayOutputStream(data.length);
+            } else if (type == PLTE) {
+                palette = new byte[length];
+                System.arraycopy(data, start, palette, 0, length);
+            } else if (type == TRNS) {
+                // ImageIO only applies the transparency of palette images in some Java versions
+                if (colorType != COLOR_TYPE_PALETTE) {
+                    return null;
+                }
+                transparency = new byte[length];
+                System.arraycopy(data, start, transparency, 0, length);
+            } else if (type == IDAT) {
+                if (compressed == null) {
+                    throw new IOException("PNG data before header");
+                }
+                compressed.write(data, start, length);
+            } else if (type == IEND) {
+                end = true;
+            } else if ((type & 0x20000000) == 0) {
+                // An unknown critical chunk
+                return null;
+            }
+            offset = start + length + 4;
+        }
+
+        if (compressed == null) {
+            throw new IOException("PNG file has no header");
+        }
+
+        int samplesPerPixel;
+        switch (colorType) {
+        case COLOR_TYPE_GRAY: samplesPerPixel = 1; break;
+        case COLOR_TYPE_RGB: samplesPerPixel = 3; break;
+        case COLOR_TYPE_PALETTE: samplesPerPixel = 1; break;
+        case COLOR_TYPE_GRAY_ALPHA: samplesPerPixel = 2; break;
+        case COLOR_TYPE_RGBA: samplesPerPixel = 4; break;
+        default:
+            throw new IOException("Invalid PNG color type " + colorType);
+        }
+        if (colorType == COLOR_TYPE_PALETTE && palette == null) {
+            throw new IOException("PNG palette image without a palette");
+        }
+
+        int bitsPerPixel = samplesPerPixel * bitDepth;
+        int bytesPerPixel = Math.max(bitsPerPixel / 8, 1);
+        long rowBytes = ((long) width * bitsPerPixel + 7) / 8;
+        long rawSize = (rowBytes + 1) * height;
+        if (rawSize > Integer.MAX_VALUE) {
+            throw new IOException("PNG image is too large");
+        }
+
+        byte[] raw = new byte[(int) rawSize];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.toByteArray());
+            int inflated = 0;
+            while (inflated < raw.length) {
+                int n = inflater.inflate(raw, inflated, raw.length - inflated);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated PNG image data");
+                }
+                inflated += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid PNG image data", e);
+        } finally {
+            inflater.end();
+        }
+
+        unfilter(raw, height, (int) rowBytes, bytesPerPixel);
+
+        BufferedImage image;
+        switch (colorType) {
+        case COLOR_TYPE_GRAY:
+            image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+            break;
+        case COLOR_TYPE_RGB:
+            image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+            break;
+        case COLOR_TYPE_GRAY_ALPHA:
+            image = createGrayAlphaImage(width, height);
+            break;
+        case COLOR_TYPE_RGBA:
+            image = new BufferedImage(width, height, BufferedImage.TYPE_4BYTE_ABGR);
+            break;
+        default: {
+            int size = palette.length / 3;
+            byte[] r = new byte[size];
+            byte[] g = new byte[size];
+            byte[] b = new byte[size];
+            for (int i = 0; i < size; ++i) {
+                r[i] = palette[i * 3 + 0];
+                g[i] = palette[i * 3 + 1];
+                b[i] = palette[i * 3 + 2];
+            }
+            IndexColorModel colorModel;
+            if (transparency != null) {
+                byte[] a = new byte[size];
+                for (int i = 0; i < size; ++i) {
+                    a[i] = i < transparency.length ? transparency[i] : (byte) 255;
+                }
+                colorModel = new IndexColorModel(8, size, r, g, b, a);
+            } else {
+                colorModel = new IndexColorModel(8, size, r, g, b);
+            }
+            image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, colorModel);
+            break;
+        }
+        }
+
+        byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        int stride = (int) rowBytes + 1;
+        for (int y = 0; y < height; ++y) {
+            int src = y * stride + 1;
+            int dst = y * width * samplesPerPixel;
+            switch (colorType) {
+            case COLOR_TYPE_RGB:
+                for (int x = 0; x < width; ++x, src += 3, dst += 3) {
+                    pixels[dst + 0] = raw[src + 2];
+                    pixels[dst + 1] = raw[src + 1];
+                    pixels[dst + 2] = raw[src + 0];
+                }
+                break;
+            case COLOR_TYPE_RGBA:
+                for (int x = 0; x < width; ++x, src += 4, dst += 4) {
+                    pixels[dst + 0] = raw[src + 3];
+                    pixels[dst + 1] = raw[src + 2];
+                    pixels[dst + 2] = raw[src + 1];
+                    pixels[dst + 3] = raw[src + 0];
+                }
+                break;
+            case COLOR_TYPE_PALETTE:
+                if (bitDepth < 8) {
+                    int mask = (1 << bitDepth) - 1;
+                    int perByte = 8 / bitDepth;
+                    for (int x = 0; x < width; ++x) {
+                        int shift = 8 - bitDepth * (x % perByte + 1);
+                        pixels[dst + x] = (byte) ((raw[src + x / perByte] >> shift) & mask);
+                    }
+                    break;
+                }
+                // Fall through, 8 bit indices are copied as they are
+            default:
+                System.arraycopy(raw, src, pixels, dst, width * samplesPerPixel);
+                break;
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,155 @@
+// Copyright 2020 The Defold Foundation
+// Licensed under the Defold License version 1.0 (the "License"); you may not use
+// this file except in compliance with the License.
+// 
+// You may obtain a copy of the License, together with FAQs at
+// https://www.defold.com/license
+// 
+// Unless required by applicable law or agreed to in writing, software distributed
+// under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+// CONDITIONS OF ANY KIND, either express or implied. See the License for the
+// specific language governing permissions and limitations under the License.
+
+package com.dynamo.bob.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An 8-bit per channel RGBA image stored in a direct buffer, laid out exactly
+ * the way TexcLibrary.TEXC_Create expects it. The direct buffers are pooled
+ * since atlases can easily be 4096x4096 (64MB) or larger, and allocating and
+ * zeroing a new native buffer per atlas is expensive.
+ *
+ * The image must be closed when the caller is done with it, returning the
+ * buffer to the pool.
+ */
+public class RGBAImage implements AutoCloseable {
+
+    // Don't hold on to more native memory than this between builds
+    private static final long MAX_POOLED_BYTES = 256L * 1024 * 1024;
+    private static final int ZERO_CHUNK_SIZE = 64 * 1024;
+    private static final byte[] zeros = new byte[ZERO_CHUNK_SIZE];
+
+    private static final List<ByteBuffer> pool = new ArrayList<ByteBuffer>();
+    private static long pooledBytes = 0;
+
+    private final int width;
+    private final int height;
+    private final boolean flippedY;
+    private ByteBuffer data;
+
+    private RGBAImage(int width, int height, boolean flippedY, ByteBuffer data) {
+        this.width = width;
+        this.height = height;
+        this.flippedY = flippedY;
+        this.data = data;
+    }
+
+    /**
+     * Allocate a new fully transparent image.
+     * @param width image width
+     * @param height image height
+     * @param flippedY true if the rows will be stored bottom-up
+     * @return new image, backed by a pooled buffer
+     */
+    public static RGBAImage allocate(int width, int height, boolean flippedY) {
+        int size = width * height * 4;
+        ByteBuffer data = acquire(size);
+        return new RGBAImage(width, height, flippedY, data);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return true if the first row in the buffer is the bottom row of the image
+     */
+    public boolean isFlippedY() {
+        return flippedY;
+    }
+
+    /**
+     * @return the pixel data, rewound and limited to width * height * 4 bytes
+     */
+    public ByteBuffer getData() {
+        if (data == null) {
+            throw new IllegalStateException("Image has been closed");
+        }
+        data.rewind();
+        return data;
+    }
+
+    /**
+     * Get a single pixel as a packed 0xAARRGGBB value. Mostly useful for tests.
+     * @param x column
+     * @param y row, top-down regardless of the storage order
+     * @return packed ARGB value
+     */
+    public int getARGB(int x, int y) {
+        int row = flippedY ? height - 1 - y : y;
+        int offset = (row * width + x) * 4;
+        int r = data.get(offset + 0) & 0xff;
+        int g = data.get(offset + 1) & 0xff;
+        int b = data.get(offset + 2) & 0xff;
+        int a = data.get(offset + 3) & 0xff;
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    @Override
+    public void close() {
+        if (data != null) {
+            release(data);
+            data = null;
+        }
+    }
+
+    private static void clear(ByteBuffer buffer) {
+        buffer.rewind();
+        while (buffer.hasRemaining()) {
+            buffer.put(zeros, 0, Math.min(ZERO_CHUNK_SIZE, buffer.remaining()));
+        }
+        buffer.rewind();
+    }
+
+    private static synchronized ByteBuffer acquire(int size) {
+        ByteBuffer best = null;
+        for (ByteBuffer buffer : pool) {
+            if (buffer.capacity() >= size && (best == null || buffer.capacity() < best.capacity())) {
+                best = buffer;
+            }
+        }
+        if (best != null) {
+            pool.remove(best);
+            pooledBytes -= best.capacity();
+            best.clear();
+            best.limit(size);
+            // Newly allocated direct buffers are zeroed, reused ones are not
+            clear(best);
+            return best;
+        }
+        return ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static synchronized void release(ByteBuffer buffer) {
+        if (pooledBytes + buffer.capacity() <= MAX_POOLED_BYTES) {
+            pool.add(buffer);
+            pooledBytes += buffer.capacity();
+        }
+    }
+
+    /**
+     * Drop all pooled buffers, e.g. at the end of a build.
+     */
+    public static synchronized void clearPool() {
+        pool.clear();
+        pooledBytes = 0;
+    }
+}
@@ -15,6 +15,9 @@ package com.dynamo.bob.util;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 
 import java.io.File;
 import java.io.InputStream;
@@ -25,6 +28,7 @@ import java.io.BufferedWriter;
 import com.dynamo.bob.Bob;
 import com.dynamo.bob.util.BobProjectProperties;
 import com.dynamo.bob.Project;
+import com.dynamo.bob.TaskResult;
 import com.dynamo.bob.archive.ArchiveReader;
 import com.dynamo.bob.archive.ArchiveEntry;
 
@@ -68,6 +72,20 @@ public class ReportGenerator {
         }
     }
 
+    private class BuilderEntry {
+        public String name;
+        public int tasks = 0;
+        public int cached = 0;
+        public long wallTime = 0;
+        public long cpuTime = 0;
+        public long bytesRead = 0;
+        public long bytesWritten = 0;
+
+        public BuilderEntry(String name) {
+            this.name = name;
+        }
+    }
+
     private Project project = null;
     private HashMap<String, ResourceEntry> resources;
 
@@ -224,6 +242,29 @@ public class ReportGenerator {
             }
             generator.writeEndArray();
 
+            // Build time per builder, slowest first
+            generator.writeFieldName("builders");
+            generator.writeStartArray();
+            for (BuilderEntry builder : getBuilderEntries()) {
+                generator.writeStartObject();
+                generator.writeFieldName("builder");
+                generator.writeString(builder.name);
+                generator.writeFieldName("tasks");
+                generator.writeNumber(builder.tasks);
+                generator.writeFieldName("cached");
+                generator.writeNumber(builder.cached);
+                generator.writeFieldName("wall_ms");
+                generator.writeNumber(builder.wallTime / 1000000L);
+                generator.writeFieldName("cpu_ms");
+                generator.writeNumber(builder.cpuTime / 1000000L);
+                generator.writeFieldName("bytes_read");
+                generator.writeNumber(builder.bytesRead);
+                generator.writeFieldName("bytes_written");
+                generator.writeNumber(builder.bytesWritten);
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+
             generator.writeEndObject();
         }
         finally {
@@ -236,6 +277,35 @@ public class ReportGenerator {
         return strWriter.toString();
     }
 
+    private List<BuilderEntry> getBuilderEntries() {
+        Map<String, BuilderEntry> builders = new HashMap<String, BuilderEntry>();
+        for (TaskResult result : project.getBuildTracer().getTasks()) {
+            String name = BuildTracer.getBuilderName(result);
+            BuilderEntry builder = builders.get(name);
+            if (builder == null) {
+                builder = new BuilderEntry(name);
+                builders.put(name, builder);
+            }
+            builder.tasks++;
+            if (result.isCached()) {
+                builder.cached++;
+            }
+            builder.wallTime += result.getWallTime();
+            builder.cpuTime += result.getCpuTime();
+            builder.bytesRead += result.getBytesRead();
+            builder.bytesWritten += result.getBytesWritten();
+        }
+
+        List<BuilderEntry> entries = new ArrayList<BuilderEntry>(builders.values());
+        Collections.sort(entries, new Comparator<BuilderEntry>() {
+            @Override
+            public int compare(BuilderEntry a, BuilderEntry b) {
+                return Long.compare(b.wallTime, a.wallTime);
+            }
+        });
+        return entries;
+    }
+
     /**
      * Generates and returns a HTML file, as a string (inlines the supplied
      * JSON report data).
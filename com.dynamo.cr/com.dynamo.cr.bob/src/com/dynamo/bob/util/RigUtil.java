@@ -703,13 +703,13 @@ public class RigUtil {
         return BezierUtil.curve(t, 0.0, curve.y0, curve.y1, 1.0);
     }
 
-    private static <T, Key extends RigUtil.AnimationKey> void sampleCurve(RigUtil.AnimationCurve curve, RigUtil.PropertyBuilder<T,Key> builder, double cursor, double t0, Key v0, double t1, Key v1) {
+    private static <T, Key extends RigUtil.AnimationKey> void sampleCurve(RigUtil.AnimationCurve curve, RigUtil.PropertyBuilder<T,Key> builder, double cursor, double t0, T v0, double t1, T v1) {
         double length = t1 - t0;
         double t = (cursor - t0) / length;
         if (curve != null && curve.interpolation == CurveIntepolation.BEZIER) {
             t = evalCurve(curve, t);
         }
-        builder.addComposite(builder.interpolate(t, builder.toComposite(v0), builder.toComposite(v1)));
+        builder.addComposite(builder.interpolate(t, v0, v1));
     }
 
     public static <T,Key extends RigUtil.AnimationKey> void sampleTrack(RigUtil.AbstractAnimationTrack<Key> track, RigUtil.PropertyBuilder<T, Key> propertyBuilder, T defaultValue, double startTime, double duration, double sampleRate, double spf, boolean interpolate) {
@@ -726,6 +726,9 @@ public class RigUtil {
         int keyCount = track.keys.size();
         Key key = null;
         Key next = track.keys.get(keyIndex);
+        // Values of the current keys, converted once per key rather than once per sample
+        T keyValue = null;
+        T nextValue = propertyBuilder.toComposite(next);
         T endValue = propertyBuilder.toComposite(track.keys.get(keyCount-1));
         int startI = (int)(startTime*sampleRate);
         for (int i = startI; i < startI+sampleCount; ++i) {
@@ -733,11 +736,14 @@ public class RigUtil {
             // Skip passed keys. Also handles corner case where the cursor is sufficiently close to the very first key frame.
             while ((next != null && next.t <= cursor) || (key == null && Math.abs(next.t - cursor) < EPSILON)) {
                 key = next;
+                keyValue = nextValue;
                 ++keyIndex;
                 if (keyIndex < keyCount) {
                     next = track.keys.get(keyIndex);
+                    nextValue = propertyBuilder.toComposite(next);
                 } else {
                     next = null;
+                    nextValue = null;
                 }
             }
             if (key != null) {
@@ -747,13 +753,13 @@ public class RigUtil {
                         // Check if cursor is past keyChangePoint, in that case sample next instead
                         double keyChangePoint = next.t - halfSample;
                         if (cursor > keyChangePoint) {
-                            propertyBuilder.addComposite(propertyBuilder.toComposite(next));
+                            propertyBuilder.addComposite(nextValue);
                         } else {
-                            propertyBuilder.addComposite(propertyBuilder.toComposite(key));
+                            propertyBuilder.addComposite(keyValue);
                         }
                     } else {
                         // Normal sampling
-                        sampleCurve(key.curve, propertyBuilder, cursor, key.t, key, next.t, next);
+                        sampleCurve(key.curve, propertyBuilder, cursor, key.t, keyValue, next.t, nextValue);
                     }
                 } else {
                     // Last key reached, use its value for remaining samples
@@ -17,21 +17,29 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
 
 import javax.vecmath.Point2d;
 import javax.vecmath.Point3d;
 
-import org.apache.commons.lang.ArrayUtils;
+import org.codehaus.jackson.JsonFactory;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
 import org.codehaus.jackson.map.JsonMappingException;
-import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.MappingJsonFactory;
+import org.codehaus.jackson.node.JsonNodeFactory;
+import org.codehaus.jackson.node.ObjectNode;
 
 import com.dynamo.bob.textureset.TextureSetGenerator.UVTransform;
 import com.dynamo.bob.util.RigUtil.Bone;
@@ -70,6 +78,43 @@ public class SpineSceneUtil {
 
     public static int slotSignalUnchanged = 0x10CCED;
 
+    private static final JsonFactory jsonFactory = new MappingJsonFactory();
+
+    // Timelines of an animation that are loaded, the others (e.g. deform) are skipped when reading
+    private static final Set<String> animationTimelines = new HashSet<String>(Arrays.asList("bones", "ik", "slots", "events", "drawOrder"));
+
+    private static final double[] EMPTY = new double[0];
+
+    /**
+     * An attachment as read from the skins. The mesh data, which is most of the
+     * data in a typical file, is kept in primitive arrays instead of json nodes.
+     */
+    private static class AttachmentData {
+        ObjectNode node = JsonNodeFactory.instance.objectNode();
+        double[] vertices = EMPTY;
+        double[] uvs = EMPTY;
+        double[] triangles = EMPTY;
+    }
+
+    private static class SkinData {
+        String name = "";
+        // Attachments by name, by slot name. Null if the skin has no attachments.
+        Map<String, Map<String, AttachmentData>> slots = null;
+    }
+
+    /**
+     * The sections of a spine json file that are loaded.
+     */
+    private static class SceneData {
+        JsonNode skeleton = null;
+        JsonNode bones = null;
+        JsonNode ik = null;
+        JsonNode slots = null;
+        JsonNode events = null;
+        List<SkinData> skins = null;
+        Map<String, JsonNode> animations = null;
+    }
+
     public String spineVersion = null;
     public String[] spineVersionParts = null;
     public boolean localBoneScaling = true;
@@ -260,19 +305,14 @@ public class SpineSceneUtil {
         };
     }
 
-    private void loadMesh(JsonNode attNode, MeshAttachment mesh, Bone bone, boolean skinned) throws LoadException {
-        String hex = JsonUtil.get(attNode, "color", "ffffffff");
+    private void loadMesh(AttachmentData att, MeshAttachment mesh, Bone bone, boolean skinned) throws LoadException {
+        String hex = JsonUtil.get(att.node, "color", "ffffffff");
         JsonUtil.hexToRGBA(hex, mesh.color);
 
-        Iterator<JsonNode> vertexIt = attNode.get("vertices").getElements();
-        Iterator<JsonNode> uvIt = attNode.get("uvs").getElements();
-        int vertexCount = 0;
-        while (uvIt.hasNext()) {
-            uvIt.next();
-            uvIt.next();
-            ++vertexCount;
-        }
-        uvIt = attNode.get("uvs").getElements();
+        double[] vertices = att.vertices;
+        double[] uvs = att.uvs;
+        int vertexIndex = 0;
+        int vertexCount = uvs.length / 2;
         mesh.vertices = new float[vertexCount * 5];
         mesh.boneIndices = new int[vertexCount * 4];
         mesh.boneWeights = new float[vertexCount * 4];
@@ -282,13 +322,13 @@ public class SpineSceneUtil {
             int boneOffset = i*4;
             weights.setSize(0);
             if (skinned) {
-                int boneCount = vertexIt.next().asInt();
+                int boneCount = (int)vertices[vertexIndex++];
                 p.set(0.0, 0.0, 0.0);
                 for (int bi = 0; bi < boneCount; ++bi) {
-                    int boneIndex = vertexIt.next().asInt();
-                    double x = vertexIt.next().asDouble();
-                    double y = vertexIt.next().asDouble();
-                    double weight = vertexIt.next().asDouble();
+                    int boneIndex = (int)vertices[vertexIndex++];
+                    double x = vertices[vertexIndex++];
+                    double y = vertices[vertexIndex++];
+                    double weight = vertices[vertexIndex++];
                     if (weight > 0.0) {
                         weights.add(new Weight(new Point3d(x, y, 0.0), boneIndex, (float)weight));
                     }
@@ -318,8 +358,8 @@ public class SpineSceneUtil {
                     mesh.boneWeights[boneOffset+bi] = w.weight / totalWeight;
                 }
             } else {
-                double x = vertexIt.next().asDouble();
-                double y = vertexIt.next().asDouble();
+                double x = vertices[vertexIndex++];
+                double y = vertices[vertexIndex++];
                 p.set(x, y, 0.0);
                 bone.worldT.apply(p);
                 mesh.boneIndices[boneOffset] = bone.index;
@@ -329,17 +369,14 @@ public class SpineSceneUtil {
             mesh.vertices[vi++] = (float)p.x;
             mesh.vertices[vi++] = (float)p.y;
             mesh.vertices[vi++] = (float)p.z;
-            mesh.vertices[vi++] = (float)uvIt.next().asDouble();
-            mesh.vertices[vi++] = (float)uvIt.next().asDouble();
+            mesh.vertices[vi++] = (float)uvs[i*2];
+            mesh.vertices[vi++] = (float)uvs[i*2+1];
         }
-        Iterator<JsonNode> triangleIt = attNode.get("triangles").getElements();
-        List<Integer> triangles = new ArrayList<Integer>(vertexCount);
-        while (triangleIt.hasNext()) {
-            for (int i = 0; i < 3; ++i) {
-                triangles.add(triangleIt.next().asInt());
-            }
+        double[] triangles = att.triangles;
+        mesh.triangles = new int[triangles.length];
+        for (int i = 0; i < triangles.length; ++i) {
+            mesh.triangles[i] = (int)triangles[i];
         }
-        mesh.triangles = ArrayUtils.toPrimitive(triangles.toArray(new Integer[triangles.size()]));
     }
 
     private void loadTrack(JsonNode propNode, AnimationTrack track) {
@@ -642,10 +679,8 @@ public class SpineSceneUtil {
         animation.duration = duration;
     }
 
-    private void loadAnimations(JsonNode animationsNode) {
-        Iterator<Map.Entry<String, JsonNode>> animationIt = animationsNode.getFields();
-        while (animationIt.hasNext()) {
-            Map.Entry<String, JsonNode> entry = animationIt.next();
+    private void loadAnimations(Map<String, JsonNode> animationNodes) {
+        for (Map.Entry<String, JsonNode> entry : animationNodes.entrySet()) {
             String animName = entry.getKey();
             JsonNode animNode = entry.getValue();
             Animation animation = new Animation();
@@ -655,19 +690,7 @@ public class SpineSceneUtil {
         }
     }
 
-    private static long getIteratorSize(Iterator<?> iterator) {
-        long size = 0;
-        while (iterator.hasNext()) {
-            size += 1;
-            iterator.next();
-        }
-
-        return size;
-    }
-
-    private static List<SkinSlot> loadSkin(SpineSceneUtil scene, String skinName, JsonNode skinNode, UVTransformProvider uvTransformProvider) throws LoadException {
-        Iterator<Map.Entry<String, JsonNode>> skinSlotIt = skinNode.getFields();
-
+    private static List<SkinSlot> loadSkin(SpineSceneUtil scene, String skinName, Map<String, Map<String, AttachmentData>> skinData, UVTransformProvider uvTransformProvider) throws LoadException {
         Map<String, SkinSlot> skinSlotsLut = new HashMap<String, SkinSlot>();
         List<SkinSlot> skinSlots = new ArrayList<SkinSlot>();
 
@@ -688,17 +711,14 @@ public class SpineSceneUtil {
             }
         }
 
-        while (skinSlotIt.hasNext()) {
-            Map.Entry<String, JsonNode> slotEntry = skinSlotIt.next();
+        for (Map.Entry<String, Map<String, AttachmentData>> slotEntry : skinData.entrySet()) {
             String slotName = slotEntry.getKey();
             SkinSlot slot = skinSlotsLut.get(slotName);
-            JsonNode slotNode = slotEntry.getValue();
 
-            Iterator<Map.Entry<String, JsonNode>> attIt = slotNode.getFields();
-            while (attIt.hasNext()) {
-                Map.Entry<String, JsonNode> attEntry = attIt.next();
+            for (Map.Entry<String, AttachmentData> attEntry : slotEntry.getValue().entrySet()) {
                 String attName = attEntry.getKey();
-                JsonNode attNode = attEntry.getValue();
+                AttachmentData att = attEntry.getValue();
+                JsonNode attNode = att.node;
 
                 String path = attName;
                 if (attNode.has("name")) {
@@ -722,15 +742,13 @@ public class SpineSceneUtil {
                     // many bones: bone index, bind position X, bind position Y, weight.
                     // A mesh is weighted if the number of vertices > number of UVs.
                     // http://esotericsoftware.com/spine-json-format
-                    long verticesSize = getIteratorSize(attNode.get("vertices").getElements());
-                    long uvSize = getIteratorSize(attNode.get("uvs").getElements());
-                    if (verticesSize > uvSize) {
-                        scene.loadMesh(attNode, mesh, bone, true);
+                    if (att.vertices.length > att.uvs.length) {
+                        scene.loadMesh(att, mesh, bone, true);
                     } else {
-                        scene.loadMesh(attNode, mesh, bone, false);
+                        scene.loadMesh(att, mesh, bone, false);
                     }
                 } else if (type.equals("skinnedmesh") || type.equals("weightedmesh")) {
-                    scene.loadMesh(attNode, mesh, bone, true);
+                    scene.loadMesh(att, mesh, bone, true);
                 } else {
                     mesh = null;
                 }
@@ -754,31 +772,23 @@ public class SpineSceneUtil {
         return skinSlots;
     }
 
-    private static void getAllAttachments(JsonNode skinJsonNode, SpineSceneUtil scene) throws LoadException {
-
-        Iterator<Map.Entry<String, JsonNode>> skinIt = skinJsonNode.getFields();
+    private static void getAllAttachments(List<SkinData> skins, SpineSceneUtil scene) throws LoadException {
 
         // Loop over all skin entries from JSON
-        while (skinIt.hasNext()) {
-            Map.Entry<String, JsonNode> entry = skinIt.next();
-            JsonNode skinNode = entry.getValue();
+        for (SkinData skin : skins) {
+            if (skin.slots == null) {
+                continue;
+            }
 
             // Loop over all slots in the skin
-            Iterator<Map.Entry<String, JsonNode>> skinSlotIt = skinNode.getFields();
-            while (skinSlotIt.hasNext()) {
-                Map.Entry<String, JsonNode> slotEntry = skinSlotIt.next();
+            for (Map.Entry<String, Map<String, AttachmentData>> slotEntry : skin.slots.entrySet()) {
                 String slotName = slotEntry.getKey();
-                JsonNode slotNode = slotEntry.getValue();
 
                 // Get corresponding BaseSlot
                 BaseSlot slot = scene.getBaseSlot(slotName);
 
                 // Collect all attachments this skin can attach to this slot
-                Iterator<Map.Entry<String, JsonNode>> attIt = slotNode.getFields();
-                while (attIt.hasNext()) {
-                    Map.Entry<String, JsonNode> attEntry = attIt.next();
-                    String attName = attEntry.getKey();
-
+                for (String attName : slotEntry.getValue().keySet()) {
                     if (!slot.attachmentsLut.containsKey(attName)) {
                         slot.attachmentsLut.put(attName, slot.attachments.size());
                         slot.attachments.add(attName);
@@ -796,53 +806,207 @@ public class SpineSceneUtil {
         }
     }
 
-    private static JsonNode findDefaultSkin(String[] spineVersionParts, JsonNode skinsNode) {
+    private static Map<String, Map<String, AttachmentData>> findDefaultSkin(List<SkinData> skins) {
+        for (SkinData skin : skins) {
+            if (skin.name.equals("default")) {
+                return skin.slots;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read an array of numbers, which is most of the data of meshes.
+     */
+    private static double[] readDoubles(JsonParser parser) throws IOException {
+        double[] values = new double[64];
+        int count = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            double value = 0.0;
+            if (parser.getCurrentToken() == JsonToken.START_ARRAY || parser.getCurrentToken() == JsonToken.START_OBJECT) {
+                parser.skipChildren();
+            } else {
+                value = parser.getValueAsDouble(0.0);
+            }
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = value;
+        }
+        return Arrays.copyOf(values, count);
+    }
+
+    private static AttachmentData readAttachment(JsonParser parser) throws IOException {
+        AttachmentData att = new AttachmentData();
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return att;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            if (parser.nextToken() == JsonToken.START_ARRAY && name.equals("vertices")) {
+                att.vertices = readDoubles(parser);
+            } else if (parser.getCurrentToken() == JsonToken.START_ARRAY && name.equals("uvs")) {
+                att.uvs = readDoubles(parser);
+            } else if (parser.getCurrentToken() == JsonToken.START_ARRAY && name.equals("triangles")) {
+                att.triangles = readDoubles(parser);
+            } else {
+                att.node.put(name, parser.readValueAsTree());
+            }
+        }
+        return att;
+    }
+
+    private static Map<String, Map<String, AttachmentData>> readSkinSlots(JsonParser parser) throws IOException {
+        Map<String, Map<String, AttachmentData>> slots = new LinkedHashMap<String, Map<String, AttachmentData>>();
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return slots;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String slotName = parser.getCurrentName();
+            Map<String, AttachmentData> attachments = new LinkedHashMap<String, AttachmentData>();
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String attName = parser.getCurrentName();
+                    parser.nextToken();
+                    attachments.put(attName, readAttachment(parser));
+                }
+            } else {
+                parser.skipChildren();
+            }
+            slots.put(slotName, attachments);
+        }
+        return slots;
+    }
+
+    private static List<SkinData> readSkins(JsonParser parser) throws IOException {
         // Since Spine 3.8 the skins node will be an array of dict, instead of
         // a dict with skin name as a key, and skin content as value.
-
-        JsonNode defaultNode = null;
-        if (spineVersionParts != null &&
-            Integer.parseInt(spineVersionParts[0]) >= 3 &&
-            Integer.parseInt(spineVersionParts[1]) >= 8) {
-            // Spine version 3.8 and above
-            Iterator<JsonNode> skinIt = skinsNode.getElements();
-            while (skinIt.hasNext()) {
-                JsonNode skinNode = skinIt.next();
-                String skinName = JsonUtil.get(skinNode, "name", "");
-                if (skinName.equals("default")) {
-                    defaultNode = skinNode.get("attachments");
-                    break;
+        Map<String, SkinData> skins = new LinkedHashMap<String, SkinData>();
+        if (parser.getCurrentToken() == JsonToken.START_ARRAY) {
+            List<SkinData> result = new ArrayList<SkinData>();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                SkinData skin = new SkinData();
+                if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String name = parser.getCurrentName();
+                        parser.nextToken();
+                        if (name.equals("name") && parser.getCurrentToken() != JsonToken.VALUE_NULL) {
+                            skin.name = parser.getText();
+                        } else if (name.equals("attachments")) {
+                            skin.slots = readSkinSlots(parser);
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
                 }
+                result.add(skin);
+            }
+            return result;
+        } else if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                SkinData skin = new SkinData();
+                skin.name = parser.getCurrentName();
+                parser.nextToken();
+                skin.slots = readSkinSlots(parser);
+                skins.put(skin.name, skin);
             }
         } else {
-            // Spine version below 3.8
-            defaultNode = JsonUtil.get(skinsNode, "default");
+            parser.skipChildren();
         }
+        return new ArrayList<SkinData>(skins.values());
+    }
 
-        return defaultNode;
+    private static Map<String, JsonNode> readAnimations(JsonParser parser) throws IOException {
+        Map<String, JsonNode> animations = new LinkedHashMap<String, JsonNode>();
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return animations;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String animName = parser.getCurrentName();
+            ObjectNode animNode = JsonNodeFactory.instance.objectNode();
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+                    if (animationTimelines.contains(name)) {
+                        animNode.put(name, parser.readValueAsTree());
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+            animations.put(animName, animNode);
+        }
+        return animations;
+    }
+
+    /**
+     * Read the sections of a spine json file. The file is read token by token,
+     * the meshes are read into primitive arrays and the sections that aren't
+     * loaded are skipped, so the whole file is never held as a tree of nodes.
+     */
+    private static SceneData readJson(JsonParser parser) throws IOException, LoadException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new LoadException("The spine json data must be an object.");
+        }
+        SceneData data = new SceneData();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            if (name.equals("skeleton")) {
+                data.skeleton = parser.readValueAsTree();
+            } else if (name.equals("bones")) {
+                data.bones = parser.readValueAsTree();
+            } else if (name.equals("ik")) {
+                data.ik = parser.readValueAsTree();
+            } else if (name.equals("slots")) {
+                data.slots = parser.readValueAsTree();
+            } else if (name.equals("events")) {
+                data.events = parser.readValueAsTree();
+            } else if (name.equals("skins")) {
+                data.skins = readSkins(parser);
+            } else if (name.equals("animations")) {
+                data.animations = readAnimations(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return data;
     }
 
     public static SpineSceneUtil loadJson(InputStream is, UVTransformProvider uvTransformProvider) throws LoadException {
         SpineSceneUtil scene = new SpineSceneUtil();
-        ObjectMapper m = new ObjectMapper();
         try {
-            JsonNode node = m.readValue(new InputStreamReader(is, "UTF-8"), JsonNode.class);
-            Iterator<JsonNode> boneIt = node.get("bones").getElements();
+            JsonParser parser = jsonFactory.createJsonParser(new InputStreamReader(is, "UTF-8"));
+            SceneData data;
+            try {
+                data = readJson(parser);
+            } finally {
+                parser.close();
+            }
+            Iterator<JsonNode> boneIt = data.bones.getElements();
             while (boneIt.hasNext()) {
                 JsonNode boneNode = boneIt.next();
                 scene.loadBone(boneNode);
             }
-            JsonNode ikNode = node.get("ik");
+            JsonNode ikNode = data.ik;
             if (ikNode != null) {
                 Iterator<JsonNode> ikIt = ikNode.getElements();
                 while (ikIt.hasNext()) {
                     scene.loadIK(ikIt.next());
                 }
             }
-            if (!node.has("slots")) {
+            if (data.slots == null) {
                 return scene;
             }
-            Iterator<JsonNode> slotIt = node.get("slots").getElements();
+            Iterator<JsonNode> slotIt = data.slots.getElements();
             int slotIndex = 0;
             int slotCount = 0;
             while (slotIt.hasNext()) {
@@ -867,10 +1031,12 @@ public class SpineSceneUtil {
 
             // Gather all available attachment points in all slots.
             // We do this by looping over all the different skins and their slots.
-            getAllAttachments(node.get("skins"), scene);
+            if (data.skins != null) {
+                getAllAttachments(data.skins, scene);
+            }
 
-            if (node.has("events")) {
-                Iterator<Map.Entry<String, JsonNode>> eventIt = node.get("events").getFields();
+            if (data.events != null) {
+                Iterator<Map.Entry<String, JsonNode>> eventIt = data.events.getFields();
                 while (eventIt.hasNext()) {
                     Map.Entry<String, JsonNode> eventEntry = eventIt.next();
                     Event event = new Event();
@@ -882,11 +1048,11 @@ public class SpineSceneUtil {
                     scene.events.put(event.name, event);
                 }
             }
-            if (!node.has("skins")) {
+            if (data.skins == null) {
                 return scene;
             }
 
-            JsonNode skeleton = node.get("skeleton");
+            JsonNode skeleton = data.skeleton;
             scene.spineVersion = (skeleton != null) ? JsonUtil.get(skeleton, "spine", (String) null) : null;
 
             // If Spine version is 3 and above it uses a different scaling model than 2.x.
@@ -898,49 +1064,23 @@ public class SpineSceneUtil {
             }
 
             // Load default skin first since other skins will be based on this.
-            JsonNode defaultSkinNode = findDefaultSkin(scene.spineVersionParts, node.get("skins"));
-            if (defaultSkinNode == null) {
+            Map<String, Map<String, AttachmentData>> defaultSkinData = findDefaultSkin(data.skins);
+            if (defaultSkinData == null) {
                 throw new LoadException("No default skin found!");
             }
-            scene.defaultSkin = loadSkin(scene, "default", defaultSkinNode, uvTransformProvider);
-
-            // Since Spine 3.8 the skins node will be an array of dict, instead of
-            // a dict with skin name as a key, and skin content as value.
-            if (scene.spineVersionParts != null &&
-                Integer.parseInt(scene.spineVersionParts[0]) >= 3 &&
-                Integer.parseInt(scene.spineVersionParts[1]) >= 8) {
-
-                Iterator<JsonNode> skinIt = node.get("skins").getElements();
-                while (skinIt.hasNext()) {
-                    JsonNode skinNode = skinIt.next();
-                    String skinName = JsonUtil.get(skinNode, "name", "");
-                    JsonNode attachments = skinNode.get("attachments");
-
-                    if (!skinName.equals("default"))
-                    {
-                        List<SkinSlot> skin = loadSkin(scene, skinName, attachments, uvTransformProvider);
-                        scene.skins.put(skinName, skin);
-                    }
-                }
-            } else {
-                // Spine version below 3.8
-                Iterator<Map.Entry<String, JsonNode>> skinIt = node.get("skins").getFields();
-                while (skinIt.hasNext()) {
-                    Map.Entry<String, JsonNode> entry = skinIt.next();
-                    String skinName = entry.getKey();
-                    JsonNode skinNode = entry.getValue();
-                    if (!skinName.equals("default"))
-                    {
-                        List<SkinSlot> skin = loadSkin(scene, skinName, skinNode, uvTransformProvider);
-                        scene.skins.put(skinName, skin);
-                    }
+            scene.defaultSkin = loadSkin(scene, "default", defaultSkinData, uvTransformProvider);
+
+            for (SkinData skin : data.skins) {
+                if (!skin.name.equals("default") && skin.slots != null) {
+                    List<SkinSlot> skinSlots = loadSkin(scene, skin.name, skin.slots, uvTransformProvider);
+                    scene.skins.put(skin.name, skinSlots);
                 }
             }
 
-            if (!node.has("animations")) {
+            if (data.animations == null) {
                 return scene;
             }
-            scene.loadAnimations(node.get("animations"));
+            scene.loadAnimations(data.animations);
 
             return scene;
         } catch (JsonParseException e) {
@@ -15,12 +15,18 @@ package com.dynamo.bob.util;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import com.dynamo.graphics.proto.Graphics.PathSettings;
+import com.dynamo.graphics.proto.Graphics.TextureImage;
+import com.dynamo.graphics.proto.Graphics.TextureImage.Image;
+import com.dynamo.graphics.proto.Graphics.TextureImage.Type;
 import com.dynamo.graphics.proto.Graphics.TextureProfile;
 import com.dynamo.graphics.proto.Graphics.TextureProfiles;
+import com.google.protobuf.ByteString;
 
 public class TextureUtil {
     public static int closestPOT(int i) {
@@ -198,4 +204,40 @@ public class TextureUtil {
         return null;
 
     }
+
+    /**
+     * Combine textures of identical size and format into a single texture with count images,
+     * e.g. the sides of a cubemap or the pages of a texture array. For each mip level, the
+     * mipmaps of all textures are laid out contiguously, and the mip_map_offset is scaled accordingly.
+     */
+    public static TextureImage createCombinedTextureImage(TextureImage[] textures, Type type) throws IOException {
+        int count = textures.length;
+        TextureImage.Builder builder = TextureImage.newBuilder(textures[0]);
+
+        for (int i = 0; i < builder.getAlternativesCount(); i++) {
+            Image.Builder imageBuilder = TextureImage.Image.newBuilder(textures[0].getAlternatives(i));
+
+            ByteArrayOutputStream os = new ByteArrayOutputStream(1024 * 4);
+            for (int j = 0; j < imageBuilder.getMipMapSizeCount(); j++) {
+                int mipSize = imageBuilder.getMipMapSize(j);
+                byte[] buf = new byte[mipSize];
+                for (int k = 0; k < count; k++) {
+                    ByteString data = textures[k].getAlternatives(i).getData();
+                    int mipOffset = imageBuilder.getMipMapOffset(j);
+                    data.copyTo(buf, mipOffset, 0, mipSize);
+                    os.write(buf);
+                }
+            }
+            os.flush();
+            imageBuilder.setData(ByteString.copyFrom(os.toByteArray()));
+            for (int j = 0; j < imageBuilder.getMipMapSizeCount(); j++) {
+                imageBuilder.setMipMapOffset(j, imageBuilder.getMipMapOffset(j) * count);
+            }
+            builder.setAlternatives(i, imageBuilder);
+        }
+
+        builder.setCount(count);
+        builder.setType(type);
+        return builder.build();
+    }
 }